@@ -0,0 +1,62 @@
+package analysis.experiments;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import calculator.ast.AstInterner;
+import calculator.ast.AstNode;
+import datastructures.interfaces.IList;
+
+/**
+ * Measures how much memory an expression with many repeated subexpressions takes:
+ *
+ * 1. Built from freshly allocated nodes, as the calculator used to.
+ * 2. Interned, so every repeated subexpression is stored once.
+ */
+public class Experiment10 {
+    // Note: we're measuring memory usage, which is deterministic
+    // So, there's no need to conduct trials
+    public static final long MAX_NUM_TERMS = 5000;
+    public static final long STEP = 100;
+
+    public static void main(String[] args) {
+        IList<Long> numTerms = AnalysisUtils.makeDoubleLinkedList(0L, MAX_NUM_TERMS, STEP);
+
+        System.out.println("Starting experiment 10, test 1");
+        IList<Long> test1Results = AnalysisUtils.runSingleTrial(numTerms, Experiment10::test1);
+
+        System.out.println("Starting experiment 10, test 2");
+        IList<Long> test2Results = AnalysisUtils.runSingleTrial(numTerms, Experiment10::test2);
+
+        System.out.println("Saving results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("NumTerms", numTerms);
+        writer.addColumn("ResultsTest1", test1Results);
+        writer.addColumn("ResultsTest2", test2Results);
+        writer.writeToFile("experimentdata/experiment10.csv");
+
+        System.out.println("All done!");
+    }
+
+    public static long test1(long numTerms) {
+        return AnalysisUtils.getApproximateMemoryUsed(makeRepetitiveExpression(numTerms));
+    }
+
+    public static long test2(long numTerms) {
+        return AnalysisUtils.getApproximateMemoryUsed(AstInterner.intern(makeRepetitiveExpression(numTerms)));
+    }
+
+    /**
+     * Returns '(x + 1) * (y - 2) + (x + 1) * (y - 2) + ...', with 'numTerms' terms.
+     */
+    private static AstNode makeRepetitiveExpression(long numTerms) {
+        AstNode sum = new AstNode(0);
+        for (long i = 0; i < numTerms; i++) {
+            AstNode term = AnalysisUtils.makeOperation(
+                    "*",
+                    AnalysisUtils.makeOperation("+", new AstNode("x"), new AstNode(1)),
+                    AnalysisUtils.makeOperation("-", new AstNode("y"), new AstNode(2)));
+            sum = AnalysisUtils.makeOperation("+", sum, term);
+        }
+        return sum;
+    }
+}
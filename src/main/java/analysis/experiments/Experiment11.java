@@ -0,0 +1,68 @@
+package analysis.experiments;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import calculator.ast.SimplificationMode;
+import calculator.interpreter.Calculator;
+import datastructures.interfaces.IList;
+
+/**
+ * Builds up an expression one assignment at a time ('y := y + 2 * x + 1', over and
+ * over), then defines 'x' and evaluates 'toDouble(y)' many times:
+ *
+ * 1. With the default simplifier, which only folds constants, so 'y' keeps growing.
+ * 2. With the canonical simplifier, which collects like terms, so 'y' stays small.
+ */
+public class Experiment11 {
+    public static final int NUM_TRIALS = 5;
+    public static final int NUM_EVALUATIONS = 1000;
+    public static final long MAX_NUM_ASSIGNMENTS = 500;
+    public static final long STEP = 25;
+
+    public static void main(String[] args) {
+        IList<Long> numAssignments = AnalysisUtils.makeDoubleLinkedList(0L, MAX_NUM_ASSIGNMENTS, STEP);
+
+        System.out.println("Starting experiment 11, test 1");
+        IList<Long> test1Results = AnalysisUtils.runTrials(numAssignments, Experiment11::test1, NUM_TRIALS);
+
+        System.out.println("Starting experiment 11, test 2");
+        IList<Long> test2Results = AnalysisUtils.runTrials(numAssignments, Experiment11::test2, NUM_TRIALS);
+
+        System.out.println("Saving experiment 11 results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("NumAssignments", numAssignments);
+        writer.addColumn("Test1Results", test1Results);
+        writer.addColumn("Test2Results", test2Results);
+        writer.writeToFile("experimentdata/experiment11.csv");
+
+        System.out.println("All done!");
+    }
+
+    public static long test1(long numAssignments) {
+        return buildAndEvaluate(SimplificationMode.CONSTANT_FOLDING, numAssignments);
+    }
+
+    public static long test2(long numAssignments) {
+        return buildAndEvaluate(SimplificationMode.CANONICAL, numAssignments);
+    }
+
+    private static long buildAndEvaluate(SimplificationMode mode, long numAssignments) {
+        Calculator calc = new Calculator();
+        calc.setSimplificationMode(mode);
+
+        long start = System.nanoTime();
+        calc.evaluate("y := 0");
+        for (long i = 0; i < numAssignments; i++) {
+            calc.evaluate("y := y + 2 * x + 1");
+        }
+
+        // Redefining 'x' each time stops toDouble from just reusing the previous answer
+        for (int i = 0; i < NUM_EVALUATIONS; i++) {
+            calc.evaluate("x := " + i);
+            calc.evaluate("toDouble(y)");
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,136 @@
+package analysis.experiments;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import calculator.ast.AstNode;
+import calculator.ast.ExpressionManipulators;
+import calculator.compiler.EvaluationMode;
+import calculator.interpreter.Environment;
+import datastructures.concrete.dictionaries.ArrayDictionary;
+import datastructures.interfaces.IList;
+
+/**
+ * Measures how long 'toDouble' takes on expressions whose terms repeat the same
+ * subexpressions, compared to expressions of the same size whose terms are all
+ * different:
+ *
+ * 1. Trig-heavy: 'sin(x + 1) ^ 2 + cos(x + 1) ^ 2 + ...' (every term is the same).
+ * 2. Trig-heavy: 'sin(x + 1) ^ 2 + cos(x + 2) ^ 2 + ...' (every term is different).
+ * 3. Polynomial-heavy: '(x + 1) * (x + 1) * (x + 1) + ...' (every term is the same).
+ * 4. Polynomial-heavy: '(x + 1) * (x + 2) * (x + 3) + ...' (every term is different).
+ *
+ * If repeated subexpressions are only evaluated once, tests 1 and 3 should be much
+ * faster than tests 2 and 4.
+ */
+public class Experiment12 {
+    public static final int NUM_TRIALS = 5;
+    public static final int NUM_TIMES_TO_REPEAT = 100;
+    public static final long MAX_NUM_TERMS = 2000;
+    public static final long STEP = 100;
+
+    public static void main(String[] args) {
+        IList<Long> numTerms = AnalysisUtils.makeDoubleLinkedList(0L, MAX_NUM_TERMS, STEP);
+
+        System.out.println("Starting experiment 12, test 1");
+        IList<Long> test1Results = AnalysisUtils.runTrials(numTerms, Experiment12::test1, NUM_TRIALS);
+
+        System.out.println("Starting experiment 12, test 2");
+        IList<Long> test2Results = AnalysisUtils.runTrials(numTerms, Experiment12::test2, NUM_TRIALS);
+
+        System.out.println("Starting experiment 12, test 3");
+        IList<Long> test3Results = AnalysisUtils.runTrials(numTerms, Experiment12::test3, NUM_TRIALS);
+
+        System.out.println("Starting experiment 12, test 4");
+        IList<Long> test4Results = AnalysisUtils.runTrials(numTerms, Experiment12::test4, NUM_TRIALS);
+
+        System.out.println("Saving experiment 12 results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("NumTerms", numTerms);
+        writer.addColumn("Test1Results", test1Results);
+        writer.addColumn("Test2Results", test2Results);
+        writer.addColumn("Test3Results", test3Results);
+        writer.addColumn("Test4Results", test4Results);
+        writer.writeToFile("experimentdata/experiment12.csv");
+
+        System.out.println("All done!");
+    }
+
+    public static long test1(long numTerms) {
+        return timeToDouble(makeTrigExpression(numTerms, true));
+    }
+
+    public static long test2(long numTerms) {
+        return timeToDouble(makeTrigExpression(numTerms, false));
+    }
+
+    public static long test3(long numTerms) {
+        return timeToDouble(makePolynomialExpression(numTerms, true));
+    }
+
+    public static long test4(long numTerms) {
+        return timeToDouble(makePolynomialExpression(numTerms, false));
+    }
+
+    private static long timeToDouble(AstNode expr) {
+        // We don't include the cost of constructing the expression when running this test
+        Environment env = AnalysisUtils.makeEnvironment(new ArrayDictionary<>(), EvaluationMode.PARALLEL_BATCH);
+        env.getVariables().put("x", new AstNode(3));
+        AstNode node = AnalysisUtils.makeOperation("toDouble", expr);
+
+        long start = System.nanoTime();
+        double temp = 0.0;
+        for (int i = 0; i < NUM_TIMES_TO_REPEAT; i++) {
+            temp += ExpressionManipulators.handleToDouble(env, node).getNumericValue();
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns 'x + c', where 'c' is the same for every term if 'shared' is true.
+     */
+    private static AstNode makeShift(long term, boolean shared) {
+        return AnalysisUtils.makeOperation("+", new AstNode("x"), new AstNode(shared ? 1 : term + 1));
+    }
+
+    private static AstNode makeTrigTerm(long term, boolean shared) {
+        String name = term % 2 == 0 ? "sin" : "cos";
+        return AnalysisUtils.makeOperation(
+                "^",
+                AnalysisUtils.makeOperation(name, makeShift(term, shared)),
+                new AstNode(2));
+    }
+
+    private static AstNode makePolynomialTerm(long term, boolean shared) {
+        return AnalysisUtils.makeOperation(
+                "*",
+                AnalysisUtils.makeOperation("*", makeShift(3 * term, shared), makeShift(3 * term + 1, shared)),
+                makeShift(3 * term + 2, shared));
+    }
+
+    private static AstNode makeTrigExpression(long numTerms, boolean shared) {
+        return makeSum(0, numTerms, shared, true);
+    }
+
+    private static AstNode makePolynomialExpression(long numTerms, boolean shared) {
+        return makeSum(0, numTerms, shared, false);
+    }
+
+    /**
+     * Returns the sum of terms 'start' (inclusive) to 'end' (exclusive). We split the sum
+     * in half each time, so evaluating it doesn't recurse thousands of levels deep.
+     */
+    private static AstNode makeSum(long start, long end, boolean shared, boolean trig) {
+        if (start == end) {
+            return new AstNode(0);
+        } else if (start + 1 == end) {
+            return trig ? makeTrigTerm(start, shared) : makePolynomialTerm(start, shared);
+        }
+        long middle = (start + end) / 2;
+        return AnalysisUtils.makeOperation(
+                "+",
+                makeSum(start, middle, shared, trig),
+                makeSum(middle, end, shared, trig));
+    }
+}
@@ -0,0 +1,99 @@
+package analysis.experiments;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import calculator.ast.AstNode;
+import calculator.parser.ParseCache;
+import calculator.parser.Parser;
+import datastructures.interfaces.IList;
+
+/**
+ * Measures how long it takes to parse a script of short lines, where the same ten
+ * statements are repeated over and over:
+ *
+ * 1. With a new Parser (and so a new lexer and parser) for every line.
+ * 2. With one Parser, reused for every line.
+ * 3. With one Parser and a ParseCache, the way Calculator.evaluate parses its input.
+ */
+public class Experiment13 {
+    public static final int NUM_TRIALS = 5;
+    public static final long MAX_NUM_LINES = 20000;
+    public static final long STEP = 1000;
+
+    private static final String[] STATEMENTS = {
+        "x := 3",
+        "y := x ^ 2 + 2 * x + 1",
+        "z := sin(x) * cos(y)",
+        "toDouble(z / (y - 4))",
+        "a := -(x - y) * (x + y)",
+        "simplify(a + 2 * 3)",
+        "b := (1 + 2) * (3 + 4) / 5",
+        "x := x + 1",
+        "toDouble(a ^ 0.5)",
+        "c := a + b + z",
+    };
+
+    public static void main(String[] args) {
+        IList<Long> numLines = AnalysisUtils.makeDoubleLinkedList(0L, MAX_NUM_LINES, STEP);
+
+        System.out.println("Starting experiment 13, test 1");
+        IList<Long> test1Results = AnalysisUtils.runTrials(numLines, Experiment13::test1, NUM_TRIALS);
+
+        System.out.println("Starting experiment 13, test 2");
+        IList<Long> test2Results = AnalysisUtils.runTrials(numLines, Experiment13::test2, NUM_TRIALS);
+
+        System.out.println("Starting experiment 13, test 3");
+        IList<Long> test3Results = AnalysisUtils.runTrials(numLines, Experiment13::test3, NUM_TRIALS);
+
+        System.out.println("Saving experiment 13 results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("NumLines", numLines);
+        writer.addColumn("Test1Results", test1Results);
+        writer.addColumn("Test2Results", test2Results);
+        writer.addColumn("Test3Results", test3Results);
+        writer.writeToFile("experimentdata/experiment13.csv");
+
+        System.out.println("All done!");
+    }
+
+    public static long test1(long numLines) {
+        long start = System.nanoTime();
+        for (long i = 0; i < numLines; i++) {
+            new Parser().parse(getLine(i) + "\n");
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+
+    public static long test2(long numLines) {
+        long start = System.nanoTime();
+        Parser parser = new Parser();
+        for (long i = 0; i < numLines; i++) {
+            parser.parse(getLine(i) + "\n");
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+
+    public static long test3(long numLines) {
+        long start = System.nanoTime();
+        Parser parser = new Parser();
+        ParseCache cache = new ParseCache();
+        for (long i = 0; i < numLines; i++) {
+            String line = getLine(i);
+            AstNode ast = cache.get(line);
+            if (ast == null) {
+                cache.put(line, parser.parse(line + "\n"));
+            }
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+
+    private static String getLine(long i) {
+        return STATEMENTS[(int) (i % STATEMENTS.length)];
+    }
+}
@@ -0,0 +1,154 @@
+package analysis.experiments;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import calculator.parser.Parser;
+import calculator.parser.PrattParser;
+import datastructures.interfaces.IList;
+
+import java.util.Random;
+
+/**
+ * Measures parse throughput over a corpus of randomly generated calculator programs,
+ * each 'STATEMENTS_PER_PROGRAM' statements long:
+ *
+ * 1. Parsing with ANTLR's full LL prediction only.
+ * 2. Parsing with SLL prediction first, falling back to LL only if that fails (the
+ *    default).
+ * 3. Parsing with the hand-written PrattParser instead of ANTLR.
+ *
+ * The corpus is the same for every trial, and is generated outside the timing.
+ */
+public class Experiment14 {
+    public static final int NUM_TRIALS = 5;
+    public static final int STATEMENTS_PER_PROGRAM = 20;
+    public static final int MAX_EXPRESSION_DEPTH = 5;
+    public static final long MAX_NUM_PROGRAMS = 2000;
+    public static final long STEP = 100;
+
+    private static final String[] FUNCTION_NAMES = {"sin", "cos", "toDouble", "simplify", "f"};
+
+    public static void main(String[] args) {
+        // The DFAs ANTLR builds are shared by both tests, so neither pays for building them
+        Parser.warmUp();
+
+        IList<Long> numPrograms = AnalysisUtils.makeDoubleLinkedList(0L, MAX_NUM_PROGRAMS, STEP);
+
+        System.out.println("Starting experiment 14, test 1");
+        IList<Long> test1Results = AnalysisUtils.runTrials(numPrograms, Experiment14::test1, NUM_TRIALS);
+
+        System.out.println("Starting experiment 14, test 2");
+        IList<Long> test2Results = AnalysisUtils.runTrials(numPrograms, Experiment14::test2, NUM_TRIALS);
+
+        System.out.println("Starting experiment 14, test 3");
+        IList<Long> test3Results = AnalysisUtils.runTrials(numPrograms, Experiment14::test3, NUM_TRIALS);
+
+        System.out.println("Saving experiment 14 results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("NumPrograms", numPrograms);
+        writer.addColumn("Test1Results", test1Results);
+        writer.addColumn("Test2Results", test2Results);
+        writer.addColumn("Test3Results", test3Results);
+        writer.writeToFile("experimentdata/experiment14.csv");
+
+        System.out.println("All done!");
+    }
+
+    public static long test1(long numPrograms) {
+        return parseAll(new Parser(false), makeCorpus(numPrograms));
+    }
+
+    public static long test2(long numPrograms) {
+        return parseAll(new Parser(), makeCorpus(numPrograms));
+    }
+
+    public static long test3(long numPrograms) {
+        String[] corpus = makeCorpus(numPrograms);
+        PrattParser parser = new PrattParser();
+
+        long start = System.nanoTime();
+        for (String program : corpus) {
+            parser.parse(program);
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+
+    private static long parseAll(Parser parser, String[] corpus) {
+        long start = System.nanoTime();
+        for (String program : corpus) {
+            parser.parse(program);
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+
+    private static String[] makeCorpus(long numPrograms) {
+        Random random = new Random(14);
+        String[] corpus = new String[(int) numPrograms];
+        for (int i = 0; i < corpus.length; i++) {
+            StringBuilder program = new StringBuilder();
+            for (int j = 0; j < STATEMENTS_PER_PROGRAM; j++) {
+                if (random.nextBoolean()) {
+                    program.append(makeVariable(random)).append(" := ");
+                }
+                appendExpression(random, program, MAX_EXPRESSION_DEPTH);
+                program.append("\n");
+            }
+            corpus[i] = program.toString();
+        }
+        return corpus;
+    }
+
+    private static String makeVariable(Random random) {
+        return String.valueOf((char) ('a' + random.nextInt(26)));
+    }
+
+    private static void appendExpression(Random random, StringBuilder out, int depth) {
+        int choice = depth == 0 ? random.nextInt(2) : random.nextInt(8);
+        switch (choice) {
+            case 0:
+                out.append(random.nextInt(100));
+                break;
+            case 1:
+                out.append(makeVariable(random));
+                break;
+            case 2:
+                out.append("-");
+                appendExpression(random, out, depth - 1);
+                break;
+            case 3:
+                out.append("(");
+                appendExpression(random, out, depth - 1);
+                out.append(")");
+                break;
+            case 4: {
+                out.append(FUNCTION_NAMES[random.nextInt(FUNCTION_NAMES.length)]).append("(");
+                int numArgs = 1 + random.nextInt(2);
+                for (int i = 0; i < numArgs; i++) {
+                    if (i > 0) {
+                        out.append(", ");
+                    }
+                    appendExpression(random, out, depth - 1);
+                }
+                out.append(")");
+                break;
+            }
+            default: {
+                // The operands of '^' can't be negated (or be other operations) without
+                // parentheses
+                char op = "+-*/^".charAt(random.nextInt(5));
+                String open = op == '^' ? "(" : "";
+                String close = op == '^' ? ")" : "";
+                out.append(open);
+                appendExpression(random, out, depth - 1);
+                out.append(close).append(" ").append(op).append(" ").append(open);
+                appendExpression(random, out, depth - 1);
+                out.append(close);
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package analysis.experiments;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import calculator.ast.AstNode;
+import calculator.ast.ExpressionManipulators;
+import calculator.compiler.EvaluationMode;
+import calculator.interpreter.Environment;
+import datastructures.concrete.dictionaries.ArrayDictionary;
+import datastructures.interfaces.IList;
+
+/**
+ * Measures how long 'toDouble' and 'plot' take on increasingly large expressions.
+ *
+ * Both functions spend nearly all of their time reading the numeric value of leaf
+ * nodes, so running this experiment before and after a change to how AstNode
+ * stores numbers shows how much that change is worth.
+ */
+public class Experiment5 {
+    public static final int NUM_TRIALS = 5;
+    public static final int NUM_TIMES_TO_REPEAT = 100;
+    public static final long MAX_EXPRESSION_SIZE = 5000;
+    public static final long STEP = 100;
+
+    public static void main(String[] args) {
+        IList<Long> expressionSizes = AnalysisUtils.makeDoubleLinkedList(0L, MAX_EXPRESSION_SIZE, STEP);
+
+        System.out.println("Starting experiment 5, test 1");
+        IList<Long> test1Results = AnalysisUtils.runTrials(expressionSizes, Experiment5::test1, NUM_TRIALS);
+
+        System.out.println("Starting experiment 5, test 2");
+        IList<Long> test2Results = AnalysisUtils.runTrials(expressionSizes, Experiment5::test2, NUM_TRIALS);
+
+        System.out.println("Saving experiment 5 results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("InputExpressionSize", expressionSizes);
+        writer.addColumn("Test1Results", test1Results);
+        writer.addColumn("Test2Results", test2Results);
+        writer.writeToFile("experimentdata/experiment5.csv");
+
+        System.out.println("All done!");
+    }
+
+    /**
+     * Returns a fresh environment where 'x' is defined to be 3.
+     */
+    private static Environment makeEnvironment() {
+        Environment env = AnalysisUtils.makeEnvironment(new ArrayDictionary<>(), EvaluationMode.PARALLEL_BATCH);
+        env.getVariables().put("x", new AstNode(3));
+        return env;
+    }
+
+    public static long test1(long expressionSize) {
+        // We don't include the cost of constructing the expression when running this test
+        Environment env = makeEnvironment();
+        AstNode node = AnalysisUtils.makeOperation(
+                "toDouble",
+                AnalysisUtils.makeLargeExpression(expressionSize, "x"));
+
+        long start = System.nanoTime();
+        double temp = 0.0;
+        for (int i = 0; i < NUM_TIMES_TO_REPEAT; i++) {
+            temp += ExpressionManipulators.handleToDouble(env, node).getNumericValue();
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+
+    public static long test2(long expressionSize) {
+        Environment env = makeEnvironment();
+        AstNode node = AnalysisUtils.makeOperation(
+                "plot",
+                AnalysisUtils.makeLargeExpression(expressionSize, "a"),
+                new AstNode("a"),
+                new AstNode(0),
+                new AstNode(10),
+                new AstNode(0.1));
+
+        long start = System.nanoTime();
+        ExpressionManipulators.plot(env, node);
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,102 @@
+package analysis.experiments;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import datastructures.concrete.dictionaries.ArrayDictionary;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.concrete.dictionaries.StringHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+
+import java.util.function.Supplier;
+
+/**
+ * Compares ArrayDictionary, ChainedHashDictionary and StringHashDictionary on the
+ * lookup pattern the Interpreter uses for function registries.
+ *
+ * For every operation node, the interpreter first checks whether the name is a
+ * special function and, if not, whether it is a custom function. Most names it sees
+ * (like "+" or "sin") are in neither registry, so misses matter as much as hits.
+ */
+public class Experiment6 {
+    public static final int NUM_TRIALS = 5;
+    public static final int NUM_TIMES_TO_REPEAT = 1000;
+    public static final long MAX_REGISTRY_SIZE = 2000;
+    public static final long STEP = 20;
+
+    // The operation names seen while interpreting a typical line, such as
+    // "y := toDouble(3 * sin(x) + x ^ 2 - f1(x) / 2)"
+    private static final String[] LOOKUP_PATTERN = {
+        "block", "assign", "simplify", "toDouble", "+", "-", "*", "sin",
+        "^", "/", "f1", "simplify", "negate", "cos", "plot", "f0",
+    };
+
+    public static void main(String[] args) {
+        IList<Long> registrySizes = AnalysisUtils.makeDoubleLinkedList(0L, MAX_REGISTRY_SIZE, STEP);
+
+        System.out.println("Starting experiment 6, test 1");
+        IList<Long> test1Results = AnalysisUtils.runTrials(registrySizes, Experiment6::test1, NUM_TRIALS);
+
+        System.out.println("Starting experiment 6, test 2");
+        IList<Long> test2Results = AnalysisUtils.runTrials(registrySizes, Experiment6::test2, NUM_TRIALS);
+
+        System.out.println("Starting experiment 6, test 3");
+        IList<Long> test3Results = AnalysisUtils.runTrials(registrySizes, Experiment6::test3, NUM_TRIALS);
+
+        System.out.println("Saving experiment 6 results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("InputRegistrySize", registrySizes);
+        writer.addColumn("Test1Results", test1Results);
+        writer.addColumn("Test2Results", test2Results);
+        writer.addColumn("Test3Results", test3Results);
+        writer.writeToFile("experimentdata/experiment6.csv");
+
+        System.out.println("All done!");
+    }
+
+    public static long test1(long registrySize) {
+        return timeLookups(registrySize, ArrayDictionary::new);
+    }
+
+    public static long test2(long registrySize) {
+        return timeLookups(registrySize, ChainedHashDictionary::new);
+    }
+
+    public static long test3(long registrySize) {
+        return timeLookups(registrySize, StringHashDictionary::new);
+    }
+
+    private static long timeLookups(long registrySize, Supplier<IDictionary<String, Integer>> factory) {
+        // We don't include the cost of constructing the registries when running this test.
+        // The special registry holds the builtins; the custom registry holds the
+        // builtins plus 'registrySize' user-defined functions named f0, f1, ...
+        IDictionary<String, Integer> specialFunctions = factory.get();
+        IDictionary<String, Integer> customFunctions = factory.get();
+        String[] specialNames = {"block", "assign", "quit", "exit", "clear", "randomlyPick", "if", "repeat"};
+        for (int i = 0; i < specialNames.length; i++) {
+            specialFunctions.put(specialNames[i], i);
+        }
+        customFunctions.put("simplify", 0);
+        customFunctions.put("toDouble", 1);
+        customFunctions.put("plot", 2);
+        for (int i = 0; i < registrySize; i++) {
+            customFunctions.put("f" + i, i);
+        }
+
+        long start = System.nanoTime();
+        long temp = 0L;
+        for (int i = 0; i < NUM_TIMES_TO_REPEAT; i++) {
+            for (String name : LOOKUP_PATTERN) {
+                Integer special = specialFunctions.getOrDefault(name, null);
+                if (special != null) {
+                    temp += special;
+                } else {
+                    temp += customFunctions.getOrDefault(name, -1);
+                }
+            }
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,84 @@
+package analysis.experiments;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import calculator.ast.AstNode;
+import calculator.ast.ExpressionManipulators;
+import calculator.compiler.CompiledExpression;
+import calculator.compiler.EvaluationMode;
+import calculator.compiler.ExpressionCompiler;
+import calculator.interpreter.Environment;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+
+/**
+ * Compares two ways of evaluating the same expression at many different points,
+ * the way 'plot' does:
+ *
+ * 1. Binding the variable and calling 'toDouble' (walking the AST) once per point.
+ * 2. Compiling the expression to bytecode once, then calling the compiled code
+ *    once per point. The time includes compiling.
+ */
+public class Experiment7 {
+    public static final int NUM_TRIALS = 5;
+    public static final int NUM_POINTS = 10000;
+    public static final long MAX_EXPRESSION_SIZE = 1000;
+    public static final long STEP = 50;
+
+    public static void main(String[] args) {
+        IList<Long> expressionSizes = AnalysisUtils.makeDoubleLinkedList(0L, MAX_EXPRESSION_SIZE, STEP);
+
+        System.out.println("Starting experiment 7, test 1");
+        IList<Long> test1Results = AnalysisUtils.runTrials(expressionSizes, Experiment7::test1, NUM_TRIALS);
+
+        System.out.println("Starting experiment 7, test 2");
+        IList<Long> test2Results = AnalysisUtils.runTrials(expressionSizes, Experiment7::test2, NUM_TRIALS);
+
+        System.out.println("Saving experiment 7 results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("InputExpressionSize", expressionSizes);
+        writer.addColumn("Test1Results", test1Results);
+        writer.addColumn("Test2Results", test2Results);
+        writer.writeToFile("experimentdata/experiment7.csv");
+
+        System.out.println("All done!");
+    }
+
+    public static long test1(long expressionSize) {
+        // We don't include the cost of constructing the expression when running this test
+        Environment env = AnalysisUtils.makeEnvironment(new ChainedHashDictionary<>(), EvaluationMode.PARALLEL_BATCH);
+        IDictionary<String, AstNode> variables = env.getVariables();
+        AstNode node = AnalysisUtils.makeOperation(
+                "toDouble",
+                AnalysisUtils.makeLargeExpression(expressionSize, "x"));
+
+        long start = System.nanoTime();
+        double temp = 0.0;
+        for (int i = 0; i < NUM_POINTS; i++) {
+            variables.put("x", new AstNode(i * 0.01));
+            temp += ExpressionManipulators.handleToDouble(env, node).getNumericValue();
+            variables.remove("x");
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+
+    public static long test2(long expressionSize) {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        AstNode expr = AnalysisUtils.makeLargeExpression(expressionSize, "x");
+
+        long start = System.nanoTime();
+        CompiledExpression compiled = ExpressionCompiler.compile(variables, expr, "x");
+        double[] args = new double[1];
+        double temp = 0.0;
+        for (int i = 0; i < NUM_POINTS; i++) {
+            args[0] = i * 0.01;
+            temp += compiled.evaluate(args);
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+}
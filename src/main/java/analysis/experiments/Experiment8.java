@@ -0,0 +1,107 @@
+package analysis.experiments;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import calculator.ast.AstNode;
+import calculator.ast.ExpressionManipulators;
+import calculator.compiler.ClosureCompiler;
+import calculator.compiler.CompiledExpression;
+import calculator.compiler.EvaluationMode;
+import calculator.compiler.ExpressionCompiler;
+import calculator.interpreter.Environment;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+
+/**
+ * Compares the three evaluation modes on the same repeated workload as Experiment 7:
+ *
+ * 1. Tree walking: binding the variable and calling 'toDouble' once per point.
+ * 2. Closures: converting the expression into a tree of lambdas once, then calling
+ *    it once per point. The time includes converting.
+ * 3. Bytecode: compiling the expression once, then calling the compiled code once
+ *    per point. The time includes compiling.
+ */
+public class Experiment8 {
+    public static final int NUM_TRIALS = 5;
+    public static final int NUM_POINTS = 10000;
+    public static final long MAX_EXPRESSION_SIZE = 1000;
+    public static final long STEP = 50;
+
+    public static void main(String[] args) {
+        IList<Long> expressionSizes = AnalysisUtils.makeDoubleLinkedList(0L, MAX_EXPRESSION_SIZE, STEP);
+
+        System.out.println("Starting experiment 8, test 1");
+        IList<Long> test1Results = AnalysisUtils.runTrials(expressionSizes, Experiment8::test1, NUM_TRIALS);
+
+        System.out.println("Starting experiment 8, test 2");
+        IList<Long> test2Results = AnalysisUtils.runTrials(expressionSizes, Experiment8::test2, NUM_TRIALS);
+
+        System.out.println("Starting experiment 8, test 3");
+        IList<Long> test3Results = AnalysisUtils.runTrials(expressionSizes, Experiment8::test3, NUM_TRIALS);
+
+        System.out.println("Saving experiment 8 results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("InputExpressionSize", expressionSizes);
+        writer.addColumn("Test1Results", test1Results);
+        writer.addColumn("Test2Results", test2Results);
+        writer.addColumn("Test3Results", test3Results);
+        writer.writeToFile("experimentdata/experiment8.csv");
+
+        System.out.println("All done!");
+    }
+
+    public static long test1(long expressionSize) {
+        // We don't include the cost of constructing the expression when running this test
+        Environment env = AnalysisUtils.makeEnvironment(new ChainedHashDictionary<>(), EvaluationMode.TREE_WALKING);
+        IDictionary<String, AstNode> variables = env.getVariables();
+        AstNode node = AnalysisUtils.makeOperation(
+                "toDouble",
+                AnalysisUtils.makeLargeExpression(expressionSize, "x"));
+
+        long start = System.nanoTime();
+        double temp = 0.0;
+        for (int i = 0; i < NUM_POINTS; i++) {
+            variables.put("x", new AstNode(i * 0.01));
+            temp += ExpressionManipulators.handleToDouble(env, node).getNumericValue();
+            variables.remove("x");
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+
+    public static long test2(long expressionSize) {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        AstNode expr = AnalysisUtils.makeLargeExpression(expressionSize, "x");
+
+        long start = System.nanoTime();
+        CompiledExpression compiled = ClosureCompiler.compile(variables, expr, "x");
+        double[] args = new double[1];
+        double temp = 0.0;
+        for (int i = 0; i < NUM_POINTS; i++) {
+            args[0] = i * 0.01;
+            temp += compiled.evaluate(args);
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+
+    public static long test3(long expressionSize) {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        AstNode expr = AnalysisUtils.makeLargeExpression(expressionSize, "x");
+
+        long start = System.nanoTime();
+        CompiledExpression compiled = ExpressionCompiler.compile(variables, expr, "x");
+        double[] args = new double[1];
+        double temp = 0.0;
+        for (int i = 0; i < NUM_POINTS; i++) {
+            args[0] = i * 0.01;
+            temp += compiled.evaluate(args);
+        }
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,78 @@
+package analysis.experiments;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import calculator.ast.AstNode;
+import calculator.ast.ExpressionManipulators;
+import calculator.compiler.EvaluationMode;
+import calculator.interpreter.Environment;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IList;
+
+/**
+ * Measures how long 'plot' takes as the number of points grows, for a fixed
+ * expression:
+ *
+ * 1. Compiling the expression to bytecode and evaluating it once per point.
+ * 2. Evaluating every point in one batch, one array loop per operation.
+ * 3. Splitting the batch into chunks evaluated on a ForkJoinPool.
+ */
+public class Experiment9 {
+    public static final int NUM_TRIALS = 5;
+    public static final long EXPRESSION_SIZE = 100;
+    public static final long MAX_NUM_POINTS = 1000000;
+    public static final long STEP = 50000;
+
+    public static void main(String[] args) {
+        IList<Long> numPoints = AnalysisUtils.makeDoubleLinkedList(STEP, MAX_NUM_POINTS + 1, STEP);
+
+        System.out.println("Starting experiment 9, test 1");
+        IList<Long> test1Results = AnalysisUtils.runTrials(numPoints, Experiment9::test1, NUM_TRIALS);
+
+        System.out.println("Starting experiment 9, test 2");
+        IList<Long> test2Results = AnalysisUtils.runTrials(numPoints, Experiment9::test2, NUM_TRIALS);
+
+        System.out.println("Starting experiment 9, test 3");
+        IList<Long> test3Results = AnalysisUtils.runTrials(numPoints, Experiment9::test3, NUM_TRIALS);
+
+        System.out.println("Saving experiment 9 results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("NumPoints", numPoints);
+        writer.addColumn("Test1Results", test1Results);
+        writer.addColumn("Test2Results", test2Results);
+        writer.addColumn("Test3Results", test3Results);
+        writer.writeToFile("experimentdata/experiment9.csv");
+
+        System.out.println("All done!");
+    }
+
+    public static long test1(long numPoints) {
+        return timePlot(numPoints, EvaluationMode.BYTECODE);
+    }
+
+    public static long test2(long numPoints) {
+        return timePlot(numPoints, EvaluationMode.BATCH);
+    }
+
+    public static long test3(long numPoints) {
+        return timePlot(numPoints, EvaluationMode.PARALLEL_BATCH);
+    }
+
+    private static long timePlot(long numPoints, EvaluationMode mode) {
+        // We don't include the cost of constructing the expression when running this test
+        Environment env = AnalysisUtils.makeEnvironment(new ChainedHashDictionary<>(), mode);
+        AstNode node = AnalysisUtils.makeOperation(
+                "plot",
+                AnalysisUtils.makeLargeExpression(EXPRESSION_SIZE, "x"),
+                new AstNode("x"),
+                new AstNode(0),
+                new AstNode(numPoints - 1),
+                new AstNode(1));
+
+        long start = System.nanoTime();
+        ExpressionManipulators.plot(env, node);
+
+        // Returns time elapsed
+        return System.nanoTime() - start;
+    }
+}
@@ -1,5 +1,14 @@
 package analysis.utils;
 
+import calculator.ast.AstNode;
+import calculator.ast.DependencyGraph;
+import calculator.ast.SimplificationMode;
+import calculator.ast.SimplifyCache;
+import calculator.compiler.EvaluationMode;
+import calculator.interpreter.Environment;
+import calculator.interpreter.FunctionRegistry;
+import calculator.interpreter.Interpreter;
+import datastructures.concrete.ArrayList;
 import datastructures.concrete.DoubleLinkedList;
 import datastructures.concrete.dictionaries.ArrayDictionary;
 import datastructures.interfaces.IDictionary;
@@ -37,6 +46,59 @@ public class AnalysisUtils {
         return dictionary;
     }
 
+    /**
+     * Constructs a balanced expression tree of the form
+     *
+     *     1.5 * x + 2.5 * x + 3.5 * x + ... + (numTerms + 0.5) * x
+     *
+     * using the given variable name. The tree is balanced so that evaluating it
+     * recursively never gets deeper than O(log(numTerms)) stack frames.
+     */
+    public static AstNode makeLargeExpression(long numTerms, String varName) {
+        if (numTerms <= 0) {
+            return new AstNode(0);
+        }
+        return makeLargeExpression(1, numTerms, varName);
+    }
+
+    private static AstNode makeLargeExpression(long low, long high, String varName) {
+        if (low == high) {
+            return makeOperation("*", new AstNode(low + 0.5), new AstNode(varName));
+        }
+        long mid = low + (high - low) / 2;
+        return makeOperation(
+                "+",
+                makeLargeExpression(low, mid, varName),
+                makeLargeExpression(mid + 1, high, varName));
+    }
+
+    /**
+     * Constructs an operation AstNode with the given name and children.
+     */
+    public static AstNode makeOperation(String name, AstNode... children) {
+        IList<AstNode> list = new ArrayList<>(children.length);
+        for (AstNode child : children) {
+            list.add(child);
+        }
+        return new AstNode(name, list);
+    }
+
+    /**
+     * Constructs an environment holding the given variables, with the builtin functions,
+     * the given evaluation mode and constant folding, whose plots are thrown away.
+     */
+    public static Environment makeEnvironment(IDictionary<String, AstNode> variables, EvaluationMode mode) {
+        return new Environment(
+                variables,
+                new NullImageDrawer(),
+                FunctionRegistry.BUILTINS,
+                new Interpreter(),
+                mode,
+                new SimplifyCache(),
+                new DependencyGraph(),
+                SimplificationMode.CONSTANT_FOLDING);
+    }
+
     /**
      * Handles running a single experiment.
      *
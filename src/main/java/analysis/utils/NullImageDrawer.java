@@ -0,0 +1,25 @@
+package analysis.utils;
+
+import calculator.gui.ImageDrawer;
+import datastructures.interfaces.IList;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * An ImageDrawer that silently discards everything it is asked to draw.
+ *
+ * This lets experiments time the 'plot' function without also timing
+ * JFreeChart or needing an actual window to draw on.
+ */
+public class NullImageDrawer extends ImageDrawer {
+    public NullImageDrawer() {
+        super(null, 800, 800);
+    }
+
+    @Override
+    public void drawScatterPlot(String title, String xAxisLabel, String yAxisLabel,
+                                IList<Double> xValues, IList<Double> yValues,
+                                Rectangle2D drawRegion) {
+        // Deliberately empty
+    }
+}
@@ -0,0 +1,139 @@
+package calculator;
+
+import calculator.errors.EvaluationError;
+import calculator.errors.QuitError;
+import calculator.interpreter.Calculator;
+import calculator.parser.Parser;
+import calculator.parser.StatementSplitter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Runs a script through the calculator without a window, writing the result of each
+ * statement to an output file, one per line. Failed statements produce a line
+ * starting with 'ERROR:', and don't stop the script; 'quit' or 'exit' does.
+ *
+ * The script is read one line at a time and each statement is evaluated as soon as
+ * it is complete (see StatementSplitter), so memory use doesn't depend on the size of
+ * the script -- only on the calculator's own state, such as its variables.
+ *
+ * Usage: java calculator.BatchRunner script.calc results.txt
+ */
+public class BatchRunner {
+    /**
+     * Statements longer than this many characters (usually because of a '(' that is
+     * never closed) are reported as errors and thrown away.
+     */
+    public static final int MAX_STATEMENT_LENGTH = 1 << 20;
+
+    private final Calculator calculator;
+
+    public BatchRunner(Calculator calculator) {
+        this.calculator = calculator;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java calculator.BatchRunner <script.calc> <results.txt>");
+            System.exit(1);
+        }
+
+        Parser.warmUp();
+        Summary summary;
+        try (BufferedReader input = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+             BufferedWriter output = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            summary = new BatchRunner(new Calculator()).run(input, output);
+        }
+        System.out.println(summary);
+    }
+
+    /**
+     * Evaluates every statement of the script, writing the results to 'output'. The
+     * output isn't flushed, so it should be buffered (and flushed or closed afterwards).
+     */
+    public Summary run(BufferedReader input, Writer output) throws IOException {
+        StatementSplitter splitter = new StatementSplitter();
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+
+        try {
+            String line;
+            while ((line = input.readLine()) != null) {
+                if (splitter.addLine(line)) {
+                    this.evaluate(splitter, output, summary);
+                } else if (splitter.getLength() > MAX_STATEMENT_LENGTH) {
+                    int lineNumber = splitter.getFirstLineNumber();
+                    splitter.takeStatement();
+                    summary.numStatements += 1;
+                    writeError(output, summary, lineNumber, String.format(
+                            "Statement is longer than %d characters", MAX_STATEMENT_LENGTH));
+                }
+            }
+
+            // Let the calculator complain about whatever is left
+            if (splitter.hasPartialStatement()) {
+                this.evaluate(splitter, output, summary);
+            }
+        } catch (QuitError ex) {
+            // Do nothing: stop running the script
+        }
+
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    private void evaluate(StatementSplitter splitter, Writer output, Summary summary) throws IOException {
+        int lineNumber = splitter.getFirstLineNumber();
+        String statement = splitter.takeStatement();
+        summary.numStatements += 1;
+        try {
+            output.write(this.calculator.evaluate(statement));
+            output.write('\n');
+        } catch (EvaluationError ex) {
+            writeError(output, summary, lineNumber, ex.getMessage());
+        }
+    }
+
+    private static void writeError(Writer output, Summary summary, int lineNumber, String message)
+            throws IOException {
+        summary.numErrors += 1;
+        output.write(String.format("ERROR: line %d: %s\n", lineNumber, message));
+    }
+
+    /**
+     * How many statements a run evaluated, and how long it took.
+     */
+    public static class Summary {
+        private long numStatements;
+        private long numErrors;
+        private long elapsedNanos;
+
+        public long getNumStatements() {
+            return this.numStatements;
+        }
+
+        public long getNumErrors() {
+            return this.numErrors;
+        }
+
+        public long getElapsedNanos() {
+            return this.elapsedNanos;
+        }
+
+        public double getStatementsPerSecond() {
+            return this.elapsedNanos == 0 ? 0.0 : this.numStatements / (this.elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Evaluated %d statements (%d errors) in %.3f seconds: %.1f statements/second",
+                    this.numStatements, this.numErrors, this.elapsedNanos / 1e9, this.getStatementsPerSecond());
+        }
+    }
+}
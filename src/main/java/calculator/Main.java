@@ -1,9 +1,11 @@
 package calculator;
 
 import calculator.gui.MainWindow;
+import calculator.parser.Parser;
 
 public class Main {
     public static void main(String[] args) {
+        Parser.warmUp();
         MainWindow.launch();
     }
 }
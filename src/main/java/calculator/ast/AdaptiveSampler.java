@@ -0,0 +1,171 @@
+package calculator.ast;
+
+import calculator.compiler.CompiledExpression;
+import datastructures.concrete.DoubleArrayList;
+
+import java.util.PriorityQueue;
+
+/**
+ * Chooses where to sample a function of one variable so that drawing straight lines
+ * between the samples stays within a given distance of the actual curve.
+ *
+ * We start with a coarse uniform grid, then repeatedly split whichever interval is
+ * furthest from being straight: the distance between the function's value at the
+ * midpoint of an interval and the midpoint of the chord across it. Intervals are
+ * split largest-error-first, so if the point budget runs out, the points we did
+ * spend went to where the curve bends the most.
+ *
+ * Samples are kept in a binary tree of intervals, so reading them back in order
+ * needs no sorting.
+ */
+class AdaptiveSampler {
+    // Enough to catch features the midpoint test alone could step over
+    private static final int INITIAL_INTERVALS = 64;
+
+    // Intervals narrower than this fraction of the whole range are never split
+    private static final double MIN_WIDTH_FRACTION = 1.0 / (1 << 24);
+
+    private final CompiledExpression function;
+    private final double[] args;
+    private int numEvaluations;
+
+    private AdaptiveSampler(CompiledExpression function) {
+        this.function = function;
+        this.args = new double[1];
+        this.numEvaluations = 0;
+    }
+
+    /**
+     * Samples the given function (whose only parameter is the x value) from 'min' to
+     * 'max', inclusive, and adds the samples to 'xValues' and 'yValues' in increasing
+     * order of x.
+     *
+     * Stops refining once every interval is within 'tolerance' of a straight line, or
+     * once 'maxEvaluations' points have been evaluated, whichever comes first.
+     */
+    public static void sample(CompiledExpression function, double min, double max,
+                              double tolerance, int maxEvaluations,
+                              DoubleArrayList xValues, DoubleArrayList yValues) {
+        new AdaptiveSampler(function).sample(min, max, tolerance, maxEvaluations, xValues, yValues);
+    }
+
+    private void sample(double min, double max, double tolerance, int maxEvaluations,
+                        DoubleArrayList xValues, DoubleArrayList yValues) {
+        if (min == max) {
+            xValues.addDouble(min);
+            yValues.addDouble(this.evaluate(min));
+            return;
+        }
+
+        double minWidth = (max - min) * MIN_WIDTH_FRACTION;
+        PriorityQueue<Interval> worstFirst = new PriorityQueue<>(
+                (a, b) -> Double.compare(b.error, a.error));
+
+        Interval[] initial = new Interval[INITIAL_INTERVALS];
+        double x0 = min;
+        double y0 = this.evaluate(x0);
+        for (int i = 0; i < INITIAL_INTERVALS; i++) {
+            double x1 = i == INITIAL_INTERVALS - 1 ? max : min + (max - min) * (i + 1) / INITIAL_INTERVALS;
+            double y1 = this.evaluate(x1);
+            initial[i] = this.makeInterval(x0, y0, x1, y1);
+            worstFirst.add(initial[i]);
+            x0 = x1;
+            y0 = y1;
+        }
+
+        // Each split costs two evaluations, one for the midpoint of each half
+        while (!worstFirst.isEmpty() && this.numEvaluations + 2 <= maxEvaluations) {
+            Interval worst = worstFirst.remove();
+            if (worst.error <= tolerance) {
+                break;
+            }
+            if (worst.x1 - worst.x0 <= minWidth) {
+                continue;
+            }
+            worst.left = this.makeInterval(worst.x0, worst.y0, worst.xMid, worst.yMid);
+            worst.right = this.makeInterval(worst.xMid, worst.yMid, worst.x1, worst.y1);
+            worstFirst.add(worst.left);
+            worstFirst.add(worst.right);
+        }
+
+        for (Interval interval : initial) {
+            this.collect(interval, xValues, yValues);
+        }
+        xValues.addDouble(max);
+        yValues.addDouble(initial[INITIAL_INTERVALS - 1].y1);
+    }
+
+    private double evaluate(double x) {
+        this.numEvaluations += 1;
+        this.args[0] = x;
+        return this.function.evaluate(this.args);
+    }
+
+    private Interval makeInterval(double x0, double y0, double x1, double y1) {
+        double xMid = x0 + (x1 - x0) / 2;
+        double yMid = this.evaluate(xMid);
+        return new Interval(x0, y0, xMid, yMid, x1, y1);
+    }
+
+    /**
+     * Adds every sample in the given interval, except its right endpoint, in order.
+     */
+    private void collect(Interval interval, DoubleArrayList xValues, DoubleArrayList yValues) {
+        if (interval.left == null) {
+            xValues.addDouble(interval.x0);
+            yValues.addDouble(interval.y0);
+            xValues.addDouble(interval.xMid);
+            yValues.addDouble(interval.yMid);
+        } else {
+            this.collect(interval.left, xValues, yValues);
+            this.collect(interval.right, xValues, yValues);
+        }
+    }
+
+    private static class Interval {
+        public final double x0;
+        public final double y0;
+        public final double xMid;
+        public final double yMid;
+        public final double x1;
+        public final double y1;
+
+        // How far the curve is from the chord across this interval, at its midpoint
+        public final double error;
+
+        public Interval left;
+        public Interval right;
+
+        public Interval(double x0, double y0, double xMid, double yMid, double x1, double y1) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.xMid = xMid;
+            this.yMid = yMid;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.error = computeError(y0, yMid, y1);
+            this.left = null;
+            this.right = null;
+        }
+
+        private static double computeError(double y0, double yMid, double y1) {
+            boolean finite0 = isFinite(y0);
+            boolean finiteMid = isFinite(yMid);
+            boolean finite1 = isFinite(y1);
+            if (finite0 && finiteMid && finite1) {
+                return Math.abs(yMid - (y0 + y1) / 2);
+            } else if (finite0 || finiteMid || finite1) {
+                // The function blows up or is undefined somewhere in here: zoom in on
+                // where that happens
+                return Double.POSITIVE_INFINITY;
+            } else {
+                // There is nothing to draw anywhere in this interval
+                return 0.0;
+            }
+        }
+
+        private static boolean isFinite(double value) {
+            return !Double.isNaN(value) && !Double.isInfinite(value);
+        }
+    }
+}
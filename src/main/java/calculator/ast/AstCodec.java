@@ -0,0 +1,358 @@
+package calculator.ast;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes named ASTs (such as a calculator's variables) in a compact binary
+ * form, which is much smaller than the expressions written out as text and much
+ * faster to read back than parsing them.
+ *
+ * The format is:
+ *
+ * - The magic number MAGIC and the format VERSION.
+ * - The name table: every distinct variable and operation name, written once, most
+ *   used first (and alphabetically among names used equally often). Nodes refer to
+ *   names by their index in the table, so the common operators take a single byte.
+ *   Each name is written as the number of UTF-8 bytes it shares with the start of
+ *   the name before it, then the length and bytes of the rest, so 'v11' after 'v10'
+ *   only takes 3 bytes.
+ * - Every distinct node, children before parents, so each node refers to its
+ *   children by how many nodes back they were written. A subtree shared by several
+ *   parents (which interning makes common) is written only once.
+ * - The bindings: a name index and a node index for each named tree.
+ *
+ * Each node starts with a header, whose low 2 bits are its kind and whose other bits
+ * depend on the kind:
+ *
+ * - INTEGER: the value, zigzag-encoded (so small negative numbers stay small). Only
+ *   whole numbers small enough to be exact are written this way.
+ * - DOUBLE: nothing; the 8 raw bytes of the IEEE double follow, so every value is
+ *   restored exactly.
+ * - VARIABLE: the index of its name.
+ * - OPERATION: the index of its name, then 2 bits holding the number of children (or
+ *   3, if the number of children follows separately). The offset of each child
+ *   follows.
+ *
+ * Headers, counts and indices are all unsigned variable-length integers: 7 bits per
+ * byte, low bits first, with the top bit set on every byte but the last. So an
+ * operator whose children were just written, like the '+' in 'a + 1', takes 3 bytes.
+ */
+public class AstCodec {
+    public static final int MAGIC = 0x43414C43;  // "CALC"
+    public static final int VERSION = 1;
+
+    private static final int KIND_INTEGER = 0;
+    private static final int KIND_DOUBLE = 1;
+    private static final int KIND_VARIABLE = 2;
+    private static final int KIND_OPERATION = 3;
+    private static final int KIND_BITS = 2;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+
+    // Operations with fewer children than this store the count in their header
+    private static final int SEPARATE_CHILD_COUNT = 3;
+    private static final int CHILD_COUNT_BITS = 2;
+
+    // Doubles represent every integer up to this size exactly
+    private static final long MAX_EXACT_INTEGER = 1L << 53;
+
+    private static final int INITIAL_ARRAY_SIZE = 1024;
+    private static final int MAX_NAME_LENGTH = 1 << 20;
+
+    private AstCodec() {
+        // This class only has static methods
+    }
+
+    /**
+     * Writes each name in 'names' bound to the tree at the same index in 'values'.
+     * Flushes 'out', but doesn't close it.
+     */
+    public static void write(OutputStream out, IList<String> names, IList<AstNode> values) throws IOException {
+        if (names.size() != values.size()) {
+            throw new IllegalArgumentException("Number of names and values are not the same.");
+        }
+
+        // Number every distinct node (children first), and count the uses of each name
+        Map<AstNode, Integer> nodeIndices = new IdentityHashMap<>();
+        IList<AstNode> nodes = new ArrayList<>();
+        Map<String, Integer> nameUses = new HashMap<>();
+        for (String name : names) {
+            nameUses.merge(name, 1, Integer::sum);
+        }
+        for (AstNode value : values) {
+            addNodes(value, nodeIndices, nodes, nameUses);
+        }
+
+        String[] nameTable = nameUses.keySet().toArray(new String[0]);
+        Arrays.sort(nameTable, (a, b) -> {
+            int byUses = Integer.compare(nameUses.get(b), nameUses.get(a));
+            return byUses != 0 ? byUses : a.compareTo(b);
+        });
+        Map<String, Integer> nameIndices = new HashMap<>();
+        for (int i = 0; i < nameTable.length; i++) {
+            nameIndices.put(nameTable[i], i);
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out));
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+
+        writeVarint(output, nameTable.length);
+        byte[] previous = new byte[0];
+        for (String name : nameTable) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+            while (shared < bytes.length && shared < previous.length && bytes[shared] == previous[shared]) {
+                shared += 1;
+            }
+            writeVarint(output, shared);
+            writeVarint(output, bytes.length - shared);
+            output.write(bytes, shared, bytes.length - shared);
+            previous = bytes;
+        }
+
+        writeVarint(output, nodes.size());
+        int index = 0;
+        for (AstNode node : nodes) {
+            writeNode(output, node, index, nodeIndices, nameIndices);
+            index += 1;
+        }
+
+        writeVarint(output, names.size());
+        for (int i = 0; i < names.size(); i++) {
+            writeVarint(output, nameIndices.get(names.get(i)));
+            writeVarint(output, nodeIndices.get(values.get(i)));
+        }
+        output.flush();
+    }
+
+    /**
+     * Numbers every node of the given tree that hasn't been numbered yet, children
+     * first. Trees can be far deeper than the call stack, so we keep our own stack.
+     */
+    private static void addNodes(AstNode root,
+                                 Map<AstNode, Integer> nodeIndices,
+                                 IList<AstNode> nodes,
+                                 Map<String, Integer> nameUses) {
+        ArrayDeque<AstNode> stack = new ArrayDeque<>();
+        ArrayDeque<Integer> nextChild = new ArrayDeque<>();
+        if (!nodeIndices.containsKey(root)) {
+            stack.push(root);
+            nextChild.push(0);
+        }
+
+        while (!stack.isEmpty()) {
+            AstNode node = stack.peek();
+            int childIndex = nextChild.pop();
+            IList<AstNode> children = node.getChildren();
+
+            // Skip over children that are already numbered
+            while (childIndex < children.size() && nodeIndices.containsKey(children.get(childIndex))) {
+                childIndex += 1;
+            }
+            if (childIndex < children.size()) {
+                nextChild.push(childIndex + 1);
+                stack.push(children.get(childIndex));
+                nextChild.push(0);
+                continue;
+            }
+
+            stack.pop();
+            if (!nodeIndices.containsKey(node)) {
+                if (!node.isNumber()) {
+                    nameUses.merge(node.getName(), 1, Integer::sum);
+                }
+                nodeIndices.put(node, nodes.size());
+                nodes.add(node);
+            }
+        }
+    }
+
+    private static void writeNode(DataOutputStream output,
+                                  AstNode node,
+                                  int index,
+                                  Map<AstNode, Integer> nodeIndices,
+                                  Map<String, Integer> nameIndices) throws IOException {
+        if (node.isNumber()) {
+            double value = node.getNumericValue();
+            if (isSmallInteger(value)) {
+                long integer = (long) value;
+                writeHeader(output, KIND_INTEGER, (integer << 1) ^ (integer >> 63));
+            } else {
+                writeHeader(output, KIND_DOUBLE, 0);
+                output.writeDouble(value);
+            }
+        } else if (node.isVariable()) {
+            writeHeader(output, KIND_VARIABLE, nameIndices.get(node.getName()));
+        } else {
+            IList<AstNode> children = node.getChildren();
+            long nameIndex = nameIndices.get(node.getName());
+            int childCount = Math.min(children.size(), SEPARATE_CHILD_COUNT);
+            writeHeader(output, KIND_OPERATION, (nameIndex << CHILD_COUNT_BITS) | childCount);
+            if (childCount == SEPARATE_CHILD_COUNT) {
+                writeVarint(output, children.size());
+            }
+            for (AstNode child : children) {
+                writeVarint(output, index - nodeIndices.get(child));
+            }
+        }
+    }
+
+    private static void writeHeader(DataOutputStream output, int kind, long payload) throws IOException {
+        writeVarint(output, (payload << KIND_BITS) | kind);
+    }
+
+    private static boolean isSmallInteger(double value) {
+        // -0.0 would come back as 0.0
+        return value == (long) value
+                && Math.abs(value) <= MAX_EXACT_INTEGER
+                && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0);
+    }
+
+    /**
+     * Reads the trees written by 'write', adding each name and its (interned) tree to
+     * 'names' and 'values'. May read past the end of the encoded data.
+     *
+     * @throws IOException  if reading fails, or the data is not in this format
+     */
+    public static void read(InputStream in, IList<String> names, IList<AstNode> values) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(in));
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a calculator snapshot");
+        }
+        int version = input.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        int numNames = readCount(input);
+        String[] nameTable = new String[Math.min(numNames, INITIAL_ARRAY_SIZE)];
+        byte[] previous = new byte[0];
+        for (int i = 0; i < numNames; i++) {
+            long shared = readVarint(input);
+            long rest = readVarint(input);
+            if (shared > previous.length || rest > MAX_NAME_LENGTH) {
+                throw new IOException("Corrupt snapshot: name " + i + " has a bad length");
+            }
+            byte[] bytes = Arrays.copyOf(previous, (int) (shared + rest));
+            input.readFully(bytes, (int) shared, (int) rest);
+            nameTable = ensureCapacity(nameTable, i);
+            nameTable[i] = new String(bytes, StandardCharsets.UTF_8);
+            previous = bytes;
+        }
+
+        int numNodes = readCount(input);
+        AstNode[] nodes = new AstNode[Math.min(numNodes, INITIAL_ARRAY_SIZE)];
+        for (int i = 0; i < numNodes; i++) {
+            nodes = ensureCapacity(nodes, i);
+            nodes[i] = readNode(input, i, nodes, numNames, nameTable);
+        }
+
+        int numBindings = readCount(input);
+        for (int i = 0; i < numBindings; i++) {
+            names.add(nameTable[readIndex(input, numNames)]);
+            values.add(nodes[readIndex(input, numNodes)]);
+        }
+    }
+
+    private static AstNode readNode(DataInputStream input, int index, AstNode[] nodes, int numNames,
+                                    String[] nameTable) throws IOException {
+        long header = readVarint(input);
+        long payload = header >>> KIND_BITS;
+        switch ((int) (header & KIND_MASK)) {
+            case KIND_INTEGER:
+                return AstInterner.number((payload >>> 1) ^ -(payload & 1));
+            case KIND_DOUBLE:
+                if (payload != 0) {
+                    throw new IOException("Corrupt snapshot: node " + index + " has a bad header");
+                }
+                return AstInterner.number(input.readDouble());
+            case KIND_VARIABLE:
+                return AstInterner.variable(nameTable[checkIndex(payload, numNames)]);
+            default:
+                String name = nameTable[checkIndex(payload >>> CHILD_COUNT_BITS, numNames)];
+                int numChildren = (int) (payload & ((1 << CHILD_COUNT_BITS) - 1));
+                if (numChildren == SEPARATE_CHILD_COUNT) {
+                    numChildren = readCount(input);
+                }
+                // The list grows as needed, so a corrupt count can't make us allocate a huge array
+                IList<AstNode> children = new ArrayList<>(Math.max(1, Math.min(numChildren, INITIAL_ARRAY_SIZE)));
+                for (int i = 0; i < numChildren; i++) {
+                    long offset = readVarint(input);
+                    if (offset < 1 || offset > index) {
+                        throw new IOException("Corrupt snapshot: node " + index + " has a bad child");
+                    }
+                    children.add(nodes[index - (int) offset]);
+                }
+                return AstInterner.operation(name, children);
+        }
+    }
+
+    /**
+     * Returns the given array, or a copy twice as large if it has no room at 'index'.
+     * (We don't trust the counts in the data enough to allocate everything up front.)
+     */
+    private static <T> T[] ensureCapacity(T[] array, int index) {
+        if (index < array.length) {
+            return array;
+        }
+        return Arrays.copyOf(array, Math.max(2 * array.length, index + 1));
+    }
+
+    private static int readIndex(DataInputStream input, int limit) throws IOException {
+        return checkIndex(readVarint(input), limit);
+    }
+
+    private static int checkIndex(long index, int limit) throws IOException {
+        if (index < 0 || index >= limit) {
+            throw new IOException("Corrupt snapshot: index " + index + " is out of range");
+        }
+        return (int) index;
+    }
+
+    /**
+     * Reads a count of items that follow. Every item takes at least one byte, so a
+     * count that's too large for an array can only be corrupt data.
+     */
+    private static int readCount(DataInputStream input) throws IOException {
+        long count = readVarint(input);
+        if (count > Integer.MAX_VALUE - 8) {
+            throw new IOException("Corrupt snapshot: count " + count + " is too large");
+        }
+        return (int) count;
+    }
+
+    private static void writeVarint(DataOutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt snapshot: variable-length integer is too long");
+    }
+}
@@ -0,0 +1,212 @@
+package calculator.ast;
+
+import datastructures.interfaces.IList;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Hands out a single shared AstNode for every distinct structure ("hash-consing").
+ *
+ * Interning the same structure twice returns the same object, so repeated
+ * subexpressions take up memory only once, and two interned trees can be compared
+ * with '==' instead of a deep 'equals'. Every interned node's children are interned
+ * as well, and AstNode.equals checks for identity before comparing structure, so
+ * looking up a node whose children are already interned (as the parser, the
+ * simplifier and AstCodec build them) compares each child with a single '=='. Only
+ * 'intern' on a freshly built tree compares whole subtrees.
+ *
+ * The table only holds weak references: a node is forgotten as soon as nothing else
+ * uses it.
+ *
+ * All methods are thread-safe. Every server session, plot worker and calculator
+ * interns nodes, so the table is split into SEGMENTS, each with its own lock, and
+ * threads only wait for each other when they look up nodes in the same segment.
+ */
+public class AstInterner {
+    private static final int SEGMENT_BITS = 6;
+    private static final Segment[] SEGMENTS = new Segment[1 << SEGMENT_BITS];
+
+    static {
+        for (int i = 0; i < SEGMENTS.length; i++) {
+            SEGMENTS[i] = new Segment();
+        }
+    }
+
+    private AstInterner() {
+        // This class only has static methods
+    }
+
+    /**
+     * Returns the shared node for the given number.
+     */
+    public static AstNode number(double value) {
+        return intern(new AstNode(value));
+    }
+
+    /**
+     * Returns the shared node for the given variable.
+     */
+    public static AstNode variable(String name) {
+        return intern(new AstNode(name));
+    }
+
+    /**
+     * Returns the shared node for the given operation. The children do not need to
+     * be interned already.
+     */
+    public static AstNode operation(String name, IList<AstNode> children) {
+        return intern(new AstNode(name, children));
+    }
+
+    /**
+     * Returns the shared node with the same structure as the given one, interning
+     * it (and all of its descendants) if it's the first of its kind.
+     */
+    public static AstNode intern(AstNode node) {
+        Segment segment = segmentFor(node);
+        AstNode existing = segment.get(node);
+        if (existing != null) {
+            return existing;
+        }
+
+        // Make sure the children are the shared ones before sharing this node
+        AstNode canonical = node.isOperation() ? node.mapChildren(AstInterner::intern) : node;
+        if (canonical != node) {
+            // 'mapChildren' already interned the rebuilt node
+            return canonical;
+        }
+        return segment.putIfAbsent(node);
+    }
+
+    /**
+     * Returns the number of distinct structures currently interned.
+     */
+    public static int size() {
+        int size = 0;
+        for (Segment segment : SEGMENTS) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private static Segment segmentFor(AstNode node) {
+        // The segments index their chains with the low bits of the hash code, so we
+        // pick the segment with the high bits of a Fibonacci hash
+        return SEGMENTS[(node.hashCode() * 0x9E3779B9) >>> (32 - SEGMENT_BITS)];
+    }
+
+    /**
+     * A weak reference to an interned node, which is also a link in a chain of the
+     * segment's hash table. It remembers the node's hash code, so it can still be
+     * found (and unlinked) once the node is gone.
+     */
+    private static class Entry extends WeakReference<AstNode> {
+        public final int hash;
+        public Entry next;
+
+        public Entry(AstNode node, ReferenceQueue<AstNode> queue, Entry next) {
+            super(node, queue);
+            this.hash = node.hashCode();
+            this.next = next;
+        }
+    }
+
+    /**
+     * A hash table of weak references to nodes that resolves collisions using separate
+     * chaining, guarded by its own lock. Entries whose node has been garbage collected
+     * are queued by the garbage collector, and unlinked the next time the segment is
+     * used.
+     */
+    private static class Segment {
+        private static final int INITIAL_CAPACITY = 16;
+        private static final double MAX_LOAD_FACTOR = 0.75;
+
+        private final ReferenceQueue<AstNode> queue = new ReferenceQueue<>();
+        private Entry[] chains = new Entry[INITIAL_CAPACITY];
+        private int size = 0;
+
+        public synchronized AstNode get(AstNode node) {
+            this.expungeStaleEntries();
+            return this.find(node);
+        }
+
+        /**
+         * Returns the node with the same structure as the given one, adding the given
+         * one if there is none.
+         */
+        public synchronized AstNode putIfAbsent(AstNode node) {
+            this.expungeStaleEntries();
+            AstNode existing = this.find(node);
+            if (existing != null) {
+                return existing;
+            }
+            int index = indexFor(node.hashCode(), this.chains.length);
+            this.chains[index] = new Entry(node, this.queue, this.chains[index]);
+            this.size += 1;
+            if (this.size > this.chains.length * MAX_LOAD_FACTOR) {
+                this.resize();
+            }
+            return node;
+        }
+
+        public synchronized int size() {
+            this.expungeStaleEntries();
+            return this.size;
+        }
+
+        private static int indexFor(int hash, int numChains) {
+            return (hash ^ (hash >>> 16)) & (numChains - 1);
+        }
+
+        private AstNode find(AstNode node) {
+            int hash = node.hashCode();
+            for (Entry entry = this.chains[indexFor(hash, this.chains.length)]; entry != null; entry = entry.next) {
+                if (entry.hash == hash) {
+                    AstNode candidate = entry.get();
+                    if (candidate != null && candidate.equals(node)) {
+                        return candidate;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void resize() {
+            Entry[] newChains = new Entry[this.chains.length * 2];
+            for (Entry head : this.chains) {
+                Entry entry = head;
+                while (entry != null) {
+                    Entry next = entry.next;
+                    int index = indexFor(entry.hash, newChains.length);
+                    entry.next = newChains[index];
+                    newChains[index] = entry;
+                    entry = next;
+                }
+            }
+            this.chains = newChains;
+        }
+
+        private void expungeStaleEntries() {
+            Reference<? extends AstNode> stale;
+            while ((stale = this.queue.poll()) != null) {
+                Entry entry = (Entry) stale;
+                int index = indexFor(entry.hash, this.chains.length);
+                Entry previous = null;
+                for (Entry current = this.chains[index]; current != null; current = current.next) {
+                    if (current == entry) {
+                        if (previous == null) {
+                            this.chains[index] = current.next;
+                        } else {
+                            previous.next = current.next;
+                        }
+                        this.size -= 1;
+                        break;
+                    }
+                    previous = current;
+                }
+            }
+        }
+    }
+}
@@ -1,31 +1,52 @@
 package calculator.ast;
 
 import calculator.errors.EvaluationError;
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.ArrayList;
 import datastructures.interfaces.IList;
 
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.UnaryOperator;
+
 /**
  * Represents a single node in an abstract syntax tree (AST).
  *
  * See spec for more details on what an AST is.
+ *
+ * AstNodes are immutable: the list of children is copied when the node is created,
+ * and the list returned by 'getChildren()' cannot be modified. This means a subtree
+ * can safely be shared by any number of parents.
+ *
+ * Two AstNodes are 'equals' if they have the same structure, and every node caches
+ * its hash code. Use AstInterner to get the one shared copy of a given structure.
  */
 public class AstNode {
+    private static final AstNode[] NO_CHILDREN = new AstNode[0];
+    private static final IList<AstNode> NO_CHILDREN_LIST = new ChildList(NO_CHILDREN);
+
+    // Lazily filled in for numbers; see 'toString()'
     private String name;
-    private IList<AstNode> children;
-    private ExprType type;
+    private final double numericValue;
+    private final AstNode[] children;
+    private final IList<AstNode> childrenView;
+    private final ExprType type;
+    private final int hash;
 
     /**
      * Creates a leaf node representing a single number.
+     *
+     * The value is stored as a primitive double; the textual form is only
+     * produced (and cached) if someone asks for it via 'toString()'.
      */
     public AstNode(double number) {
-        this("" + number, new DoubleLinkedList<>(), ExprType.NUMBER);
+        this(null, number, NO_CHILDREN, ExprType.NUMBER);
     }
 
     /**
      * Creates a leaf node representing a variable.
      */
     public AstNode(String name) {
-        this(name, new DoubleLinkedList<>(), ExprType.VARIABLE);
+        this(name, 0.0, NO_CHILDREN, ExprType.VARIABLE);
     }
 
     /**
@@ -48,13 +69,35 @@ public class AstNode {
      * function with no arguments.
      */
     public AstNode(String name, IList<AstNode> children) {
-        this(name, children, ExprType.OPERATION);
+        this(name, 0.0, toArray(children), ExprType.OPERATION);
     }
 
-    private AstNode(String name, IList<AstNode> children, ExprType type) {
+    private AstNode(String name, double numericValue, AstNode[] children, ExprType type) {
         this.name = name;
+        this.numericValue = numericValue;
         this.children = children;
+        this.childrenView = children.length == 0 ? NO_CHILDREN_LIST : new ChildList(children);
         this.type = type;
+
+        int hashCode = type == ExprType.NUMBER ? Double.hashCode(numericValue) : name.hashCode();
+        hashCode = 31 * hashCode + type.ordinal();
+        for (AstNode child : children) {
+            hashCode = 31 * hashCode + child.hash;
+        }
+        this.hash = hashCode;
+    }
+
+    private static AstNode[] toArray(IList<AstNode> children) {
+        if (children.isEmpty()) {
+            return NO_CHILDREN;
+        }
+        AstNode[] array = new AstNode[children.size()];
+        int index = 0;
+        for (AstNode child : children) {
+            array[index] = child;
+            index++;
+        }
+        return array;
     }
 
     /**
@@ -100,17 +143,94 @@ public class AstNode {
         if (!this.isNumber()) {
             throw new EvaluationError("Attempted to call 'getNumericValue()' on a variable or operation AstNode");
         }
-        return Double.parseDouble(this.name);
+        return this.numericValue;
     }
 
     /**
-     * Returns this node's children.
+     * Returns this node's children, as a list that cannot be modified.
      *
      * If this node represents a number or variable, the returned list
      * is guaranteed to be empty.
      */
     public IList<AstNode> getChildren() {
-        return this.children;
+        return this.childrenView;
+    }
+
+    /**
+     * Returns this operation with every child replaced by the result of applying the
+     * given function to it.
+     *
+     * If the function returns every child unchanged, this node itself is returned, so
+     * rewriting a tree that needs no changes allocates nothing. Otherwise, the new
+     * node is interned (see AstInterner).
+     */
+    public AstNode mapChildren(UnaryOperator<AstNode> function) {
+        IList<AstNode> newChildren = null;
+        for (int i = 0; i < this.children.length; i++) {
+            AstNode newChild = function.apply(this.children[i]);
+            if (newChildren == null && newChild != this.children[i]) {
+                newChildren = new ArrayList<>(this.children.length);
+                for (int j = 0; j < i; j++) {
+                    newChildren.add(this.children[j]);
+                }
+            }
+            if (newChildren != null) {
+                newChildren.add(newChild);
+            }
+        }
+        return newChildren == null ? this : AstInterner.operation(this.name, newChildren);
+    }
+
+    /**
+     * Returns 'true' if the other object is an AstNode with the same structure as this
+     * one: the same kind of node with the same number or name, and equal children.
+     *
+     * Numbers are compared like Double.equals does, so NaN equals NaN but 0.0 does not
+     * equal -0.0.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof AstNode)) {
+            return false;
+        }
+        AstNode that = (AstNode) other;
+        if (this.hash != that.hash || this.type != that.type) {
+            return false;
+        }
+        if (this.isNumber()) {
+            return Double.doubleToLongBits(this.numericValue) == Double.doubleToLongBits(that.numericValue);
+        }
+        if (!this.name.equals(that.name) || this.children.length != that.children.length) {
+            return false;
+        }
+        for (int i = 0; i < this.children.length; i++) {
+            if (!this.children[i].equals(that.children[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    /**
+     * Returns the number, variable name, or operation name this node represents.
+     *
+     * This is meant for debugging only: use 'Calculator.convertToString' to
+     * render an entire expression.
+     */
+    @Override
+    public String toString() {
+        if (this.name == null) {
+            this.name = "" + this.numericValue;
+        }
+        return this.name;
     }
 
     private enum ExprType {
@@ -118,4 +238,87 @@ public class AstNode {
         VARIABLE,
         OPERATION,
     }
+
+    /**
+     * A read-only IList view of a node's children.
+     */
+    private static class ChildList implements IList<AstNode> {
+        private final AstNode[] array;
+
+        public ChildList(AstNode[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public AstNode get(int index) {
+            if (index < 0 || index >= this.array.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            return this.array[index];
+        }
+
+        @Override
+        public int size() {
+            return this.array.length;
+        }
+
+        @Override
+        public int indexOf(AstNode item) {
+            for (int i = 0; i < this.array.length; i++) {
+                if (item == null ? this.array[i] == null : item.equals(this.array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean contains(AstNode other) {
+            return this.indexOf(other) != -1;
+        }
+
+        @Override
+        public Iterator<AstNode> iterator() {
+            return new Iterator<AstNode>() {
+                private int index = 0;
+
+                public boolean hasNext() {
+                    return this.index < array.length;
+                }
+
+                public AstNode next() {
+                    if (!this.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    this.index++;
+                    return array[this.index - 1];
+                }
+            };
+        }
+
+        @Override
+        public void add(AstNode item) {
+            throw new UnsupportedOperationException("AstNode children cannot be modified");
+        }
+
+        @Override
+        public AstNode remove() {
+            throw new UnsupportedOperationException("AstNode children cannot be modified");
+        }
+
+        @Override
+        public void set(int index, AstNode item) {
+            throw new UnsupportedOperationException("AstNode children cannot be modified");
+        }
+
+        @Override
+        public void insert(int index, AstNode item) {
+            throw new UnsupportedOperationException("AstNode children cannot be modified");
+        }
+
+        @Override
+        public AstNode delete(int index) {
+            throw new UnsupportedOperationException("AstNode children cannot be modified");
+        }
+    }
 }
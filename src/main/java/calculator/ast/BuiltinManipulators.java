@@ -67,7 +67,7 @@ public class BuiltinManipulators {
         }
 
         // Record and return result
-        env.getVariables().put(var.getName(), expr);
+        env.setVariable(var.getName(), expr);
         return expr;
     }
 
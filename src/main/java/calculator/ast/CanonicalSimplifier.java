@@ -0,0 +1,478 @@
+package calculator.ast;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rewrites expressions into a canonical polynomial form, so that sums and products
+ * which are equal as polynomials come out as the same tree.
+ *
+ * A canonical sum is a list of terms joined by '+' and '-' (left to right), where:
+ *
+ * - Each term is a number times a product of distinct factors ('monomial'), and no
+ *   two terms have the same monomial.
+ * - Terms are sorted by degree (highest first), and the constant term comes last.
+ *
+ * A canonical product is an optional numeric coefficient followed by distinct bases,
+ * in sorted order, each raised to a numeric power other than 0 (the power is left out
+ * if it's 1). Products of sums are multiplied out, unless the result would have more
+ * than MAX_EXPANDED_TERMS terms.
+ *
+ * The trees we build only ever use the calculator's ordinary binary operators, so
+ * everything that evaluates expressions keeps working. Internally, though, we treat
+ * chains of '+' and '*' as flat lists of terms and factors.
+ *
+ * Division and every function other than the arithmetic operators are left alone,
+ * apart from 'x / 1'.
+ */
+class CanonicalSimplifier {
+    // Multiplying out a product of sums can make it exponentially larger
+    public static final int MAX_EXPANDED_TERMS = 64;
+
+    private static final AstNode ZERO = AstInterner.number(0);
+    private static final AstNode ONE = AstInterner.number(1);
+    private static final AstNode MINUS_ONE = AstInterner.number(-1);
+
+    private CanonicalSimplifier() {
+        // Only static methods
+    }
+
+    /**
+     * Returns the canonical form of the given node, assuming its children are already
+     * in canonical form.
+     */
+    public static AstNode canonicalize(AstNode node) {
+        if (!node.isOperation()) {
+            return node;
+        }
+        IList<AstNode> children = node.getChildren();
+        String name = node.getName();
+
+        if (children.size() == 1 && name.equals("negate")) {
+            return product(MINUS_ONE, children.get(0));
+        } else if (children.size() == 2) {
+            AstNode left = children.get(0);
+            AstNode right = children.get(1);
+            switch (name) {
+                case "+":
+                    return sum(left, right);
+                case "-":
+                    return sum(left, product(MINUS_ONE, right));
+                case "*":
+                    return product(left, right);
+                case "^":
+                    return power(left, right);
+                case "/":
+                    return right.equals(ONE) ? left : node;
+                default:
+                    return node;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns the canonical form of the sum of the given canonical expressions.
+     */
+    private static AstNode sum(AstNode... addends) {
+        IList<AstNode> terms = new ArrayList<>();
+        for (AstNode addend : addends) {
+            addTerms(addend, terms);
+        }
+        return buildSum(terms);
+    }
+
+    /**
+     * Adds the terms of the given canonical expression to 'out'.
+     */
+    private static void addTerms(AstNode node, IList<AstNode> out) {
+        // Canonical sums are left-deep, and each right-hand side is a single term
+        int start = out.size();
+        while (isSum(node)) {
+            AstNode right = node.getChildren().get(1);
+            out.add(node.getName().equals("+") ? right : product(MINUS_ONE, right));
+            node = node.getChildren().get(0);
+        }
+        out.add(node);
+
+        // We walked the chain from the right, so the terms are backwards
+        for (int i = start, j = out.size() - 1; i < j; i++, j--) {
+            AstNode temp = out.get(i);
+            out.set(i, out.get(j));
+            out.set(j, temp);
+        }
+    }
+
+    /**
+     * Collects like terms among the given canonical terms, and joins what's left.
+     */
+    private static AstNode buildSum(IList<AstNode> terms) {
+        double constant = 0.0;
+        Map<AstNode, Term> collected = new LinkedHashMap<>();
+        for (AstNode node : terms) {
+            if (node.isNumber()) {
+                constant += node.getNumericValue();
+            } else {
+                // The factors of a canonical term are already in canonical order
+                IList<AstNode> factors = new ArrayList<>();
+                double coefficient = addFactors(node, factors);
+                AstNode monomial = joinProduct(1.0, factors);
+                Term term = collected.get(monomial);
+                if (term == null) {
+                    collected.put(monomial, new Term(monomial, factors, coefficient));
+                } else {
+                    term.coefficient += coefficient;
+                }
+            }
+        }
+
+        int numNonzero = 0;
+        Term[] nonzero = new Term[collected.size()];
+        for (Term term : collected.values()) {
+            if (term.coefficient != 0.0) {
+                nonzero[numNonzero] = term;
+                numNonzero += 1;
+            }
+        }
+        Arrays.sort(nonzero, 0, numNonzero);
+
+        // We write 'a - 2 * x' instead of 'a + -2 * x'
+        AstNode out = null;
+        for (int i = 0; i < numNonzero; i++) {
+            Term term = nonzero[i];
+            if (out == null) {
+                out = joinProduct(term.coefficient, term.factors);
+            } else if (term.coefficient < 0) {
+                out = binary("-", out, joinProduct(-term.coefficient, term.factors));
+            } else {
+                out = binary("+", out, joinProduct(term.coefficient, term.factors));
+            }
+        }
+        if (out == null) {
+            return AstInterner.number(constant);
+        } else if (constant < 0) {
+            return binary("-", out, AstInterner.number(-constant));
+        } else if (constant > 0) {
+            return binary("+", out, AstInterner.number(constant));
+        }
+        return out;
+    }
+
+    private static AstNode scale(double coefficient, AstNode monomial) {
+        IList<AstNode> factors = new ArrayList<>();
+        double monomialCoefficient = addFactors(monomial, factors);
+        return buildProduct(coefficient * monomialCoefficient, factors);
+    }
+
+    /**
+     * Returns the canonical form of the product of the given canonical expressions.
+     */
+    private static AstNode product(AstNode... multiplicands) {
+        double coefficient = 1.0;
+        IList<AstNode> factors = new ArrayList<>();
+        for (AstNode multiplicand : multiplicands) {
+            coefficient *= addFactors(multiplicand, factors);
+        }
+        return buildProduct(coefficient, factors);
+    }
+
+    /**
+     * Adds the non-numeric factors of the given canonical expression to 'out', and
+     * returns the product of its numeric factors.
+     */
+    private static double addFactors(AstNode node, IList<AstNode> out) {
+        double coefficient = 1.0;
+        if (node.isNumber()) {
+            coefficient = node.getNumericValue();
+        } else if (node.isOperation() && node.getName().equals("negate")) {
+            coefficient = -addFactors(node.getChildren().get(0), out);
+        } else if (node.isOperation() && node.getName().equals("*") && node.getChildren().size() == 2) {
+            coefficient = addFactors(node.getChildren().get(0), out);
+            coefficient *= addFactors(node.getChildren().get(1), out);
+        } else {
+            out.add(node);
+        }
+        return coefficient;
+    }
+
+    /**
+     * Multiplies out any sums among the given factors (if that doesn't make the result
+     * too big), collects like factors, and joins what's left.
+     */
+    private static AstNode buildProduct(double coefficient, IList<AstNode> factors) {
+        if (coefficient == 0.0) {
+            return ZERO;
+        }
+
+        int numSums = 0;
+        long numExpandedTerms = 1;
+        for (AstNode factor : factors) {
+            if (isSum(factor)) {
+                numSums += 1;
+                numExpandedTerms = Math.min(numExpandedTerms * countTerms(factor), Integer.MAX_VALUE);
+            }
+        }
+        // Scaling a single sum never makes it any longer, so we always do that
+        boolean onlyScaling = numSums == 1 && factors.size() == 1;
+        if (numSums > 0 && (onlyScaling || numExpandedTerms <= MAX_EXPANDED_TERMS)) {
+            return expand(coefficient, factors);
+        }
+
+        // Like the powers in 'power', only integer exponents can be added safely:
+        // x ^ 0.5 * x ^ 0.5 is not x when x < 0, so 'x ^ 0.5' is just another factor
+        Map<AstNode, Double> exponents = new LinkedHashMap<>();
+        for (AstNode factor : factors) {
+            if (isIntegerPower(factor)) {
+                double exponent = factor.getChildren().get(1).getNumericValue();
+                exponents.merge(factor.getChildren().get(0), exponent, Double::sum);
+            } else {
+                exponents.merge(factor, 1.0, Double::sum);
+            }
+        }
+
+        int numEntries = 0;
+        @SuppressWarnings("unchecked")
+        Map.Entry<AstNode, Double>[] entries = (Map.Entry<AstNode, Double>[]) new Map.Entry<?, ?>[exponents.size()];
+        for (Map.Entry<AstNode, Double> entry : exponents.entrySet()) {
+            if (entry.getValue() != 0.0) {
+                entries[numEntries] = entry;
+                numEntries += 1;
+            }
+        }
+        Arrays.sort(entries, 0, numEntries, Comparator.comparing(Map.Entry::getKey, CanonicalSimplifier::compareNodes));
+
+        IList<AstNode> collected = new ArrayList<>();
+        for (int i = 0; i < numEntries; i++) {
+            Map.Entry<AstNode, Double> entry = entries[i];
+            AstNode base = entry.getKey();
+            double exponent = entry.getValue();
+            collected.add(exponent == 1.0 ? base : binary("^", base, AstInterner.number(exponent)));
+        }
+        return joinProduct(coefficient, collected);
+    }
+
+    /**
+     * Joins the given factors, which must already be canonical and in order, into a
+     * product. The coefficient goes first, and a coefficient of -1 becomes a 'negate'.
+     */
+    private static AstNode joinProduct(double coefficient, IList<AstNode> factors) {
+        AstNode out = null;
+        if (factors.isEmpty() || (coefficient != 1.0 && coefficient != -1.0)) {
+            out = AstInterner.number(coefficient);
+        }
+        for (AstNode factor : factors) {
+            out = out == null ? factor : binary("*", out, factor);
+        }
+        if (coefficient == -1.0 && !factors.isEmpty()) {
+            IList<AstNode> negated = new ArrayList<>();
+            negated.add(out);
+            out = AstInterner.operation("negate", negated);
+        }
+        return out;
+    }
+
+    /**
+     * Multiplies out the sums among the given factors.
+     */
+    private static AstNode expand(double coefficient, IList<AstNode> factors) {
+        IList<IList<AstNode>> products = new ArrayList<>();
+        products.add(new ArrayList<>());
+        for (AstNode factor : factors) {
+            if (isSum(factor)) {
+                IList<AstNode> terms = new ArrayList<>();
+                addTerms(factor, terms);
+                IList<IList<AstNode>> expanded = new ArrayList<>();
+                for (IList<AstNode> partial : products) {
+                    for (AstNode term : terms) {
+                        IList<AstNode> next = new ArrayList<>(partial.size() + 1);
+                        for (AstNode previous : partial) {
+                            next.add(previous);
+                        }
+                        next.add(term);
+                        expanded.add(next);
+                    }
+                }
+                products = expanded;
+            } else {
+                for (IList<AstNode> partial : products) {
+                    partial.add(factor);
+                }
+            }
+        }
+
+        // None of the products contain sums any more, so this doesn't recurse forever
+        IList<AstNode> terms = new ArrayList<>();
+        for (IList<AstNode> partial : products) {
+            AstNode[] multiplicands = new AstNode[partial.size()];
+            for (int i = 0; i < multiplicands.length; i++) {
+                multiplicands[i] = partial.get(i);
+            }
+            terms.add(scale(coefficient, product(multiplicands)));
+        }
+        return buildSum(terms);
+    }
+
+    /**
+     * Returns the canonical form of 'base ^ exponent'.
+     */
+    private static AstNode power(AstNode base, AstNode exponent) {
+        if (!exponent.isNumber()) {
+            return binary("^", base, exponent);
+        }
+        double e = exponent.getNumericValue();
+        if (base.isNumber()) {
+            return AstInterner.number(Math.pow(base.getNumericValue(), e));
+        } else if (e == 0.0) {
+            return ONE;
+        } else if (e == 1.0) {
+            return base;
+        } else if (!isInteger(e)) {
+            return binary("^", base, exponent);
+        }
+
+        // Only integer powers can be distributed safely: (x ^ 0.5) ^ 2 is not x when x < 0
+        if (isIntegerPower(base)) {
+            return power(base.getChildren().get(0),
+                    AstInterner.number(base.getChildren().get(1).getNumericValue() * e));
+        } else if (isSum(base)) {
+            int numTerms = countTerms(base);
+            if (e > 1.0 && Math.pow(numTerms, e) <= MAX_EXPANDED_TERMS) {
+                AstNode[] copies = new AstNode[(int) e];
+                Arrays.fill(copies, base);
+                return product(copies);
+            }
+            return binary("^", base, exponent);
+        }
+
+        IList<AstNode> factors = new ArrayList<>();
+        double coefficient = addFactors(base, factors);
+        if (factors.size() == 1 && coefficient == 1.0) {
+            return binary("^", base, exponent);
+        }
+        AstNode[] powers = new AstNode[factors.size() + 1];
+        powers[0] = AstInterner.number(Math.pow(coefficient, e));
+        for (int i = 0; i < factors.size(); i++) {
+            powers[i + 1] = power(factors.get(i), exponent);
+        }
+        return product(powers);
+    }
+
+    /**
+     * An arbitrary but fixed total order on nodes: numbers, then variables, then
+     * operations; each sorted by value, name, or name and then structure.
+     */
+    private static int compareNodes(AstNode a, AstNode b) {
+        if (a == b) {
+            return 0;
+        }
+        int byKind = Integer.compare(kind(a), kind(b));
+        if (byKind != 0) {
+            return byKind;
+        } else if (a.isNumber()) {
+            return Double.compare(a.getNumericValue(), b.getNumericValue());
+        }
+
+        int byName = a.getName().compareTo(b.getName());
+        if (byName != 0 || a.isVariable()) {
+            return byName;
+        }
+
+        // Comparing large subtrees child by child is slow, so we only do that when
+        // their (cached) hash codes collide
+        int byHash = Integer.compare(a.hashCode(), b.hashCode());
+        if (byHash != 0) {
+            return byHash;
+        }
+        IList<AstNode> aChildren = a.getChildren();
+        IList<AstNode> bChildren = b.getChildren();
+        int bySize = Integer.compare(aChildren.size(), bChildren.size());
+        if (bySize != 0) {
+            return bySize;
+        }
+        for (int i = 0; i < aChildren.size(); i++) {
+            int byChild = compareNodes(aChildren.get(i), bChildren.get(i));
+            if (byChild != 0) {
+                return byChild;
+            }
+        }
+        return 0;
+    }
+
+    private static int kind(AstNode node) {
+        return node.isNumber() ? 0 : node.isVariable() ? 1 : 2;
+    }
+
+    private static int countTerms(AstNode sum) {
+        int count = 1;
+        while (isSum(sum)) {
+            count += 1;
+            sum = sum.getChildren().get(0);
+        }
+        return count;
+    }
+
+    private static boolean isSum(AstNode node) {
+        return node.isOperation() && node.getChildren().size() == 2
+                && (node.getName().equals("+") || node.getName().equals("-"));
+    }
+
+    private static boolean isPower(AstNode node) {
+        return node.isOperation() && node.getChildren().size() == 2 && node.getName().equals("^");
+    }
+
+    private static boolean isIntegerPower(AstNode node) {
+        return isPower(node) && node.getChildren().get(1).isNumber()
+                && isInteger(node.getChildren().get(1).getNumericValue());
+    }
+
+    private static boolean isInteger(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value);
+    }
+
+    private static AstNode binary(String name, AstNode left, AstNode right) {
+        IList<AstNode> children = new ArrayList<>();
+        children.add(left);
+        children.add(right);
+        return AstInterner.operation(name, children);
+    }
+
+    /**
+     * A term of a sum while we're collecting like terms: 'coefficient * monomial'.
+     */
+    private static class Term implements Comparable<Term> {
+        public final AstNode monomial;
+        public final IList<AstNode> factors;
+        public final double degree;
+        public double coefficient;
+
+        public Term(AstNode monomial, IList<AstNode> factors, double coefficient) {
+            this.monomial = monomial;
+            this.factors = factors;
+            this.coefficient = coefficient;
+
+            double degree = 0.0;
+            for (AstNode factor : factors) {
+                if (isPower(factor) && factor.getChildren().get(1).isNumber()) {
+                    degree += factor.getChildren().get(1).getNumericValue();
+                } else {
+                    degree += 1.0;
+                }
+            }
+            this.degree = degree;
+        }
+
+        /**
+         * Orders terms by degree (highest first), then by 'compareNodes'.
+         */
+        @Override
+        public int compareTo(Term other) {
+            int byDegree = Double.compare(other.degree, this.degree);
+            return byDegree != 0 ? byDegree : compareNodes(this.monomial, other.monomial);
+        }
+    }
+}
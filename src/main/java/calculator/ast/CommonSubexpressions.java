@@ -0,0 +1,150 @@
+package calculator.ast;
+
+import calculator.errors.EvaluationError;
+import datastructures.interfaces.IDictionary;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the subexpressions that occur more than once in an expression (including
+ * inside the definitions of the variables it uses), so that evaluating it numerically
+ * can compute each of them only once.
+ *
+ * In 'sin(x) ^ 2 + cos(x) ^ 2 + sin(x) * cos(x)', for example, 'sin(x)' and 'cos(x)'
+ * each occur twice.
+ *
+ * The expression is interned first, so identical subtrees are the very same AstNode
+ * object, and the rest only needs to compare nodes by identity. Each repeated
+ * subexpression gets a slot that holds its value during one evaluation; call
+ * 'beginEvaluation' before evaluating the expression again (for example, after
+ * changing the value of a variable it depends on).
+ */
+public class CommonSubexpressions {
+    private final AstNode expression;
+    private final Map<AstNode, Integer> slots;
+    private final double[] values;
+    private final int[] evaluatedIn;
+    private int evaluation;
+
+    private CommonSubexpressions(AstNode expression, Map<AstNode, Integer> slots) {
+        this.expression = expression;
+        this.slots = slots;
+        this.values = new double[slots.size()];
+        this.evaluatedIn = new int[slots.size()];
+        this.evaluation = 1;
+    }
+
+    /**
+     * Finds the repeated subexpressions of the given expression. Variables are looked
+     * through to their definitions, except for the given parameters, whose values may
+     * change between evaluations.
+     *
+     * @throws EvaluationError  if a variable is (indirectly) defined in terms of itself
+     */
+    public static CommonSubexpressions find(IDictionary<String, AstNode> variables,
+                                            AstNode expr,
+                                            String... parameters) {
+        AstNode shared = AstInterner.intern(expr);
+        Map<AstNode, Integer> useCounts = new IdentityHashMap<>();
+        countUses(variables, parameters, shared, useCounts, new HashSet<>());
+
+        Map<AstNode, Integer> slots = new IdentityHashMap<>();
+        for (Map.Entry<AstNode, Integer> entry : useCounts.entrySet()) {
+            if (entry.getValue() > 1) {
+                slots.put(entry.getKey(), slots.size());
+            }
+        }
+        return new CommonSubexpressions(shared, slots);
+    }
+
+    private static void countUses(IDictionary<String, AstNode> variables,
+                                  String[] parameters,
+                                  AstNode node,
+                                  Map<AstNode, Integer> useCounts,
+                                  Set<String> variablesBeingExpanded) {
+        if (node.isVariable()) {
+            String name = node.getName();
+            AstNode definition = variables.getOrDefault(name, null);
+            if (definition == null || isParameter(parameters, name)) {
+                return;
+            }
+            if (!variablesBeingExpanded.add(name)) {
+                throw new EvaluationError("Variable '" + name + "' is defined in terms of itself");
+            }
+            countUses(variables, parameters, definition, useCounts, variablesBeingExpanded);
+            variablesBeingExpanded.remove(name);
+        } else if (node.isOperation()) {
+            Integer count = useCounts.get(node);
+            if (count != null) {
+                // We've already looked inside this subexpression
+                useCounts.put(node, count + 1);
+                return;
+            }
+            useCounts.put(node, 1);
+            for (AstNode child : node.getChildren()) {
+                countUses(variables, parameters, child, useCounts, variablesBeingExpanded);
+            }
+        }
+    }
+
+    private static boolean isParameter(String[] parameters, String name) {
+        for (String parameter : parameters) {
+            if (parameter.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the (interned) expression to evaluate. Only its nodes, and those of the
+     * variable definitions it uses, have slots.
+     */
+    public AstNode getExpression() {
+        return this.expression;
+    }
+
+    /**
+     * Returns the number of distinct subexpressions that occur more than once.
+     */
+    public int getNumRepeated() {
+        return this.slots.size();
+    }
+
+    /**
+     * Forgets the values computed during the previous evaluation.
+     */
+    public void beginEvaluation() {
+        this.evaluation += 1;
+    }
+
+    /**
+     * Returns the slot of the given node, or -1 if it doesn't occur more than once.
+     */
+    public int slotOf(AstNode node) {
+        if (this.slots.isEmpty()) {
+            return -1;
+        }
+        Integer slot = this.slots.get(node);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Returns whether the given slot's value has been computed during this evaluation.
+     */
+    public boolean hasValue(int slot) {
+        return this.evaluatedIn[slot] == this.evaluation;
+    }
+
+    public double getValue(int slot) {
+        return this.values[slot];
+    }
+
+    public void putValue(int slot, double value) {
+        this.values[slot] = value;
+        this.evaluatedIn[slot] = this.evaluation;
+    }
+}
@@ -0,0 +1,221 @@
+package calculator.ast;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of which variables are defined in terms of which other variables, and
+ * remembers the numeric and simplified value of each variable once it has been
+ * computed, so reading a variable at the end of a long chain of definitions is a
+ * single lookup the second time around.
+ *
+ * When a variable is (re)defined, only the cached values of that variable and of
+ * the variables that (directly or indirectly) depend on it are thrown away.
+ *
+ * The graph only knows about definitions it was told about through 'define' and
+ * 'remove'. A cached value is never used if the variable's definition was since
+ * replaced behind the graph's back, but changing a variable *another* variable
+ * depends on without telling the graph leaves the latter's value stale.
+ */
+public class DependencyGraph {
+    private final Map<String, Vertex> vertices;
+
+    public DependencyGraph() {
+        this.vertices = new HashMap<>();
+    }
+
+    /**
+     * Records that the given variable is now defined to be 'definition', and returns
+     * the names of every variable whose value may have changed as a result: the
+     * variable itself, followed by everything that depends on it.
+     */
+    public IList<String> define(String name, AstNode definition) {
+        Vertex vertex = this.getOrCreateVertex(name);
+        this.setDependencies(vertex, findVariables(definition));
+        vertex.definition = definition;
+        return this.invalidate(vertex);
+    }
+
+    /**
+     * Records that the given variable is no longer defined, and returns the names of
+     * every variable whose value may have changed as a result.
+     */
+    public IList<String> remove(String name) {
+        Vertex vertex = this.getOrCreateVertex(name);
+        this.setDependencies(vertex, new String[0]);
+        vertex.definition = null;
+        return this.invalidate(vertex);
+    }
+
+    /**
+     * Returns the names of the variables the given variable's definition mentions,
+     * or an empty list if the variable is not defined.
+     */
+    public IList<String> getDependencies(String name) {
+        IList<String> out = new ArrayList<>();
+        Vertex vertex = this.vertices.get(name);
+        if (vertex != null) {
+            for (String dependency : vertex.dependencies) {
+                out.add(dependency);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the cached numeric value of the variable whose current definition is
+     * 'definition', or null if there isn't one.
+     */
+    public Double getNumericValue(String name, AstNode definition) {
+        Vertex vertex = this.getCurrentVertex(name, definition);
+        return vertex == null ? null : vertex.numericValue;
+    }
+
+    /**
+     * Remembers the numeric value of the variable whose current definition is
+     * 'definition'. Does nothing if the graph doesn't know about that definition.
+     */
+    public void putNumericValue(String name, AstNode definition, double value) {
+        Vertex vertex = this.getCurrentVertex(name, definition);
+        if (vertex != null) {
+            vertex.numericValue = value;
+        }
+    }
+
+    /**
+     * Returns the cached simplified value of the variable whose current definition is
+     * 'definition', or null if there isn't one.
+     */
+    public AstNode getSimplifiedValue(String name, AstNode definition) {
+        Vertex vertex = this.getCurrentVertex(name, definition);
+        return vertex == null ? null : vertex.simplifiedValue;
+    }
+
+    /**
+     * Remembers the simplified value of the variable whose current definition is
+     * 'definition'. Does nothing if the graph doesn't know about that definition.
+     */
+    public void putSimplifiedValue(String name, AstNode definition, AstNode value) {
+        Vertex vertex = this.getCurrentVertex(name, definition);
+        if (vertex != null) {
+            vertex.simplifiedValue = value;
+        }
+    }
+
+    /**
+     * Forgets every cached simplified value (but not the numeric values), for when
+     * the way expressions are simplified changes.
+     */
+    public void clearSimplifiedValues() {
+        for (Vertex vertex : this.vertices.values()) {
+            vertex.simplifiedValue = null;
+        }
+    }
+
+    private Vertex getCurrentVertex(String name, AstNode definition) {
+        Vertex vertex = this.vertices.get(name);
+        if (vertex == null || vertex.definition != definition) {
+            return null;
+        }
+        return vertex;
+    }
+
+    private Vertex getOrCreateVertex(String name) {
+        Vertex vertex = this.vertices.get(name);
+        if (vertex == null) {
+            vertex = new Vertex(name);
+            this.vertices.put(name, vertex);
+        }
+        return vertex;
+    }
+
+    private void setDependencies(Vertex vertex, String[] dependencies) {
+        for (String oldDependency : vertex.dependencies) {
+            this.vertices.get(oldDependency).dependents.remove(vertex.name);
+        }
+        for (String newDependency : dependencies) {
+            this.getOrCreateVertex(newDependency).dependents.add(vertex.name);
+        }
+        vertex.dependencies = dependencies;
+    }
+
+    /**
+     * Clears the cached values of the given vertex and everything that depends on it,
+     * and returns their names. Definitions may be circular, so we remember which
+     * vertices we've already visited.
+     */
+    private IList<String> invalidate(Vertex start) {
+        IList<String> invalidated = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        ArrayDeque<Vertex> queue = new ArrayDeque<>();
+        visited.add(start.name);
+        queue.add(start);
+
+        while (!queue.isEmpty()) {
+            Vertex vertex = queue.remove();
+            vertex.numericValue = null;
+            vertex.simplifiedValue = null;
+            invalidated.add(vertex.name);
+
+            for (String dependent : vertex.dependents) {
+                if (visited.add(dependent)) {
+                    queue.add(this.vertices.get(dependent));
+                }
+            }
+        }
+        return invalidated;
+    }
+
+    /**
+     * Returns the distinct names of the variables the given expression mentions.
+     *
+     * Expressions may share subtrees, so we visit each distinct node only once.
+     */
+    private static String[] findVariables(AstNode expr) {
+        Set<String> names = new HashSet<>();
+        Set<AstNode> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<AstNode> stack = new ArrayDeque<>();
+        stack.push(expr);
+
+        while (!stack.isEmpty()) {
+            AstNode node = stack.pop();
+            if (node.isVariable()) {
+                names.add(node.getName());
+            } else if (node.isOperation() && seen.add(node)) {
+                for (AstNode child : node.getChildren()) {
+                    stack.push(child);
+                }
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+
+    private static class Vertex {
+        public final String name;
+        public final Set<String> dependents;
+        public String[] dependencies;
+
+        // The definition the cached values below were computed from, or null if
+        // the variable is undefined
+        public AstNode definition;
+        public Double numericValue;
+        public AstNode simplifiedValue;
+
+        public Vertex(String name) {
+            this.name = name;
+            this.dependents = new HashSet<>();
+            this.dependencies = new String[0];
+            this.definition = null;
+            this.numericValue = null;
+            this.simplifiedValue = null;
+        }
+    }
+}
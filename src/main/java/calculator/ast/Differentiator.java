@@ -0,0 +1,179 @@
+package calculator.ast;
+
+import calculator.errors.EvaluationError;
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Differentiates expressions symbolically.
+ *
+ * Applied naively, the product and chain rules copy the expression they differentiate,
+ * so the derivative of a deeply nested expression can be exponentially larger than
+ * the expression itself. Instead:
+ *
+ * - The derivative of each distinct subtree is computed once and then shared, so the
+ *   result is a DAG that refers back to the (shared) subtrees of the input.
+ * - Every node we build is put into canonical form (see CanonicalSimplifier) as we
+ *   go, so zeroes and ones from the rules vanish immediately and like terms are
+ *   collected. The derivative of a polynomial is a polynomial of the same size.
+ *
+ * The calculator has no logarithm, so powers whose exponent depends on the variable
+ * can't be differentiated.
+ */
+class Differentiator {
+    private static final AstNode ZERO = AstInterner.number(0);
+    private static final AstNode ONE = AstInterner.number(1);
+
+    private final String variable;
+    private final Map<AstNode, AstNode> canonicalForms;
+    private final Map<AstNode, AstNode> derivatives;
+    private final Map<AstNode, Boolean> dependsOnVariable;
+
+    private Differentiator(String variable) {
+        this.variable = variable;
+        this.canonicalForms = new IdentityHashMap<>();
+        this.derivatives = new IdentityHashMap<>();
+        this.dependsOnVariable = new IdentityHashMap<>();
+    }
+
+    /**
+     * Returns the derivative of the given expression with respect to the given variable,
+     * in canonical form. Any other variables are treated as constants.
+     *
+     * @throws EvaluationError  if the expression uses an operation we can't differentiate
+     *                          (including powers whose exponent depends on the variable)
+     */
+    public static AstNode derive(AstNode expr, String variable) {
+        Differentiator differentiator = new Differentiator(variable);
+        return differentiator.derivative(differentiator.canonicalize(expr));
+    }
+
+    /**
+     * Returns the canonical form of the given expression, rewriting each distinct
+     * subtree only once.
+     */
+    private AstNode canonicalize(AstNode node) {
+        if (!node.isOperation()) {
+            return node;
+        }
+        AstNode result = this.canonicalForms.get(node);
+        if (result == null) {
+            result = CanonicalSimplifier.canonicalize(node.mapChildren(this::canonicalize));
+            this.canonicalForms.put(node, result);
+        }
+        return result;
+    }
+
+    private AstNode derivative(AstNode node) {
+        if (node.isNumber()) {
+            return ZERO;
+        } else if (node.isVariable()) {
+            return node.getName().equals(this.variable) ? ONE : ZERO;
+        } else if (!this.dependsOnVariable(node)) {
+            return ZERO;
+        }
+
+        AstNode result = this.derivatives.get(node);
+        if (result == null) {
+            result = this.derivativeOfOperation(node);
+            this.derivatives.put(node, result);
+        }
+        return result;
+    }
+
+    private AstNode derivativeOfOperation(AstNode node) {
+        String name = node.getName();
+        IList<AstNode> children = node.getChildren();
+
+        if (children.size() == 1) {
+            AstNode inner = children.get(0);
+            AstNode innerDerivative = this.derivative(inner);
+            switch (name) {
+                case "negate":
+                    return build("negate", innerDerivative);
+                case "sin":
+                    // (sin(u))' = cos(u) * u'
+                    return build("*", build("cos", inner), innerDerivative);
+                case "cos":
+                    // (cos(u))' = -sin(u) * u'
+                    return build("*", build("negate", build("sin", inner)), innerDerivative);
+                default:
+                    throw new EvaluationError("Cannot differentiate '" + name + "'");
+            }
+        } else if (children.size() == 2) {
+            AstNode left = children.get(0);
+            AstNode right = children.get(1);
+            switch (name) {
+                case "+":
+                    return build("+", this.derivative(left), this.derivative(right));
+                case "-":
+                    return build("-", this.derivative(left), this.derivative(right));
+                case "*":
+                    // (uv)' = u'v + uv'
+                    return build("+",
+                            build("*", this.derivative(left), right),
+                            build("*", left, this.derivative(right)));
+                case "/": {
+                    // (u/v)' = (u'v - uv') / v^2
+                    AstNode numerator = build("-",
+                            build("*", this.derivative(left), right),
+                            build("*", left, this.derivative(right)));
+                    // The canonical form keeps every division, so we drop '0 / v^2' here
+                    if (numerator.equals(ZERO)) {
+                        return ZERO;
+                    }
+                    return build("/", numerator, build("^", right, AstInterner.number(2)));
+                }
+                case "^":
+                    if (this.dependsOnVariable(right)) {
+                        throw new EvaluationError("Cannot differentiate a power whose exponent depends on '"
+                                + this.variable + "'");
+                    }
+                    // (u^n)' = n * u^(n - 1) * u'
+                    return build("*",
+                            build("*", right, build("^", left, build("-", right, ONE))),
+                            this.derivative(left));
+                default:
+                    throw new EvaluationError("Cannot differentiate '" + name + "'");
+            }
+        } else {
+            throw new EvaluationError("Cannot differentiate '" + name + "'");
+        }
+    }
+
+    private boolean dependsOnVariable(AstNode node) {
+        if (node.isNumber()) {
+            return false;
+        } else if (node.isVariable()) {
+            return node.getName().equals(this.variable);
+        }
+
+        Boolean result = this.dependsOnVariable.get(node);
+        if (result == null) {
+            result = false;
+            for (AstNode child : node.getChildren()) {
+                if (this.dependsOnVariable(child)) {
+                    result = true;
+                    break;
+                }
+            }
+            this.dependsOnVariable.put(node, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the canonical form of the given operation, whose children must already be
+     * in canonical form.
+     */
+    private static AstNode build(String name, AstNode... children) {
+        IList<AstNode> list = new ArrayList<>(children.length);
+        for (AstNode child : children) {
+            list.add(child);
+        }
+        return CanonicalSimplifier.canonicalize(AstInterner.operation(name, list));
+    }
+}
@@ -1,10 +1,15 @@
 package calculator.ast;
 
+import calculator.compiler.BatchCompiler;
+import calculator.compiler.ClosureCompiler;
+import calculator.compiler.CompiledExpression;
+import calculator.compiler.EvaluationMode;
+import calculator.compiler.ExpressionCompiler;
 import calculator.interpreter.Environment;
 import calculator.errors.EvaluationError;
 import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.IList;
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.DoubleArrayList;
 import calculator.gui.ImageDrawer;
 
 /**
@@ -16,6 +21,9 @@ import calculator.gui.ImageDrawer;
  * pairs in some cases.
  */
 public class ExpressionManipulators {
+    // The most points 'plotAdaptive' will evaluate, no matter how small the tolerance
+    public static final int MAX_ADAPTIVE_EVALUATIONS = 10000;
+
     /**
      * Checks to make sure that the given node is an operation AstNode with the expected
      * name and number of children. Throws an EvaluationError otherwise.
@@ -57,50 +65,98 @@ public class ExpressionManipulators {
     public static AstNode handleToDouble(Environment env, AstNode node) {
         assertNodeMatches(node, "toDouble", 1);
         AstNode exprToConvert = node.getChildren().get(0);
-        return new AstNode(toDoubleHelper(env.getVariables(), exprToConvert));
+
+        // We only evaluate the expression once here, which is never enough to make up
+        // for the cost of generating bytecode, so only the closure mode differs
+        if (env.getEvaluationMode() == EvaluationMode.CLOSURES) {
+            CompiledExpression expr = ClosureCompiler.compile(env.getVariables(), exprToConvert);
+            return AstInterner.number(expr.evaluate(new double[0]));
+        }
+
+        // Each subexpression that occurs several times is only evaluated once
+        IDictionary<String, AstNode> variables = env.getVariables();
+        CommonSubexpressions repeated = CommonSubexpressions.find(variables, exprToConvert);
+        return AstInterner.number(
+                toDoubleHelper(variables, env.getDependencyGraph(), repeated, repeated.getExpression()));
+    }
+
+    private static double toDoubleHelper(IDictionary<String, AstNode> variables,
+                                         DependencyGraph graph,
+                                         AstNode node) {
+        return toDoubleHelper(variables, graph, null, node);
     }
 
-    private static double toDoubleHelper(IDictionary<String, AstNode> variables, AstNode node) {
+    /**
+     * Evaluates the given node. If 'repeated' isn't null, the value of every repeated
+     * subexpression is remembered in it the first time it's computed.
+     */
+    private static double toDoubleHelper(IDictionary<String, AstNode> variables,
+                                         DependencyGraph graph,
+                                         CommonSubexpressions repeated,
+                                         AstNode node) {
         // There are three types of nodes, so we have three cases. 
         if (node.isNumber()) {
             return node.getNumericValue();
         } else if (node.isVariable()) {
-            String var = node.getName();
-            if (!variables.containsKey(var)) {
+            AstNode value = variables.getOrDefault(node.getName(), null);
+            if (value == null) {
                 throw new EvaluationError("Undefined variable");
             }
-            return toDoubleHelper(variables, variables.get(var));
+            // Variables at the end of long chains of definitions are expensive to
+            // expand, so we remember their values until something they depend on changes
+            Double cached = graph.getNumericValue(node.getName(), value);
+            if (cached != null) {
+                return cached;
+            }
+            double result = toDoubleHelper(variables, graph, repeated, value);
+            graph.putNumericValue(node.getName(), value, result);
+            return result;
         } else {
-            String operation = node.getName();
-            IList<AstNode> children = node.getChildren();
-
-            if (children.size() == 2) {
-                double leftHandSide = toDoubleHelper(variables, children.get(0));
-                double rightHandSide = toDoubleHelper(variables, children.get(1));
-                switch(operation) {
-                    case "+":
-                        return leftHandSide + rightHandSide;
-                    case "-":
-                        return leftHandSide - rightHandSide;
-                    case "*":
-                        return leftHandSide * rightHandSide;
-                    case "/":
-                        return leftHandSide / rightHandSide;
-                    default:
-                        return Math.pow(leftHandSide, rightHandSide);
-                }
-            } else {
-                double value = toDoubleHelper(variables, children.get(0));
-                switch (operation) {
-                    case "negate":
-                        return -value;
-                    case "sin":
-                        return Math.sin(value);
-                    case "cos":
-                        return Math.cos(value);
-                    default:
-                        throw new EvaluationError("Unknown operation");
-                }
+            int slot = repeated == null ? -1 : repeated.slotOf(node);
+            if (slot == -1) {
+                return applyOperation(variables, graph, repeated, node);
+            } else if (!repeated.hasValue(slot)) {
+                repeated.putValue(slot, applyOperation(variables, graph, repeated, node));
+            }
+            return repeated.getValue(slot);
+        }
+    }
+
+    private static double applyOperation(IDictionary<String, AstNode> variables,
+                                         DependencyGraph graph,
+                                         CommonSubexpressions repeated,
+                                         AstNode node) {
+        String operation = node.getName();
+        IList<AstNode> children = node.getChildren();
+
+        if (children.size() == 2) {
+            double leftHandSide = toDoubleHelper(variables, graph, repeated, children.get(0));
+            double rightHandSide = toDoubleHelper(variables, graph, repeated, children.get(1));
+            switch(operation) {
+                case "+":
+                    return leftHandSide + rightHandSide;
+                case "-":
+                    return leftHandSide - rightHandSide;
+                case "*":
+                    return leftHandSide * rightHandSide;
+                case "/":
+                    return leftHandSide / rightHandSide;
+                case "^":
+                    return Math.pow(leftHandSide, rightHandSide);
+                default:
+                    throw new EvaluationError("Unknown operation");
+            }
+        } else {
+            double value = toDoubleHelper(variables, graph, repeated, children.get(0));
+            switch (operation) {
+                case "negate":
+                    return -value;
+                case "sin":
+                    return Math.sin(value);
+                case "cos":
+                    return Math.cos(value);
+                default:
+                    throw new EvaluationError("Unknown operation");
             }
         }
     }
@@ -127,6 +183,10 @@ public class ExpressionManipulators {
      *
      * That is, whenever you see expressions of the form "NUM + NUM", or
      * "NUM - NUM", or "NUM * NUM", simplify them.
+     *
+     * If the environment's simplification mode is CANONICAL, sums and products are
+     * also rewritten into canonical polynomial form (see CanonicalSimplifier), so
+     * "x + x + x" becomes "3 * x".
      */
     public static AstNode handleSimplify(Environment env, AstNode node) {
         // Try writing this one on your own!
@@ -139,50 +199,107 @@ public class ExpressionManipulators {
         //         the current level? Or before?
 
         assertNodeMatches(node, "simplify", 1);
-        return simplifyHelper(env.getVariables(), node.getChildren().get(0));
+        SimplifyCache.Reads reads = new SimplifyCache.Reads();
+        return simplifyHelper(env, node.getChildren().get(0), reads);
     }
 
-    private static AstNode simplifyHelper(IDictionary<String, AstNode> variables, AstNode node) {
+    /**
+     * Simplifies the given node, adding the name of every variable whose definition
+     * the result depends on to 'reads'.
+     */
+    private static AstNode simplifyHelper(Environment env, AstNode node, SimplifyCache.Reads reads) {
         if (node.isNumber()) {
             return node;
         } else if (node.isVariable()) {
-            String var = node.getName();
-            if (!variables.containsKey(var)) {
+            // The result depends on this variable even if it's undefined right now. Since
+            // the variable counts as changed whenever anything it depends on changes, that
+            // is the only name we need to record when its value was cached.
+            reads.add(node.getName());
+            AstNode value = env.getVariables().getOrDefault(node.getName(), null);
+            if (value == null) {
                 return node;
-            } else {
-                return simplifyHelper(variables, variables.get(var));
             }
+            DependencyGraph graph = env.getDependencyGraph();
+            AstNode cached = graph.getSimplifiedValue(node.getName(), value);
+            if (cached != null) {
+                return cached;
+            }
+            AstNode result = simplifyHelper(env, value, reads);
+            graph.putSimplifiedValue(node.getName(), value, result);
+            return result;
         } else {
-            String operation = node.getName();
-            IList<AstNode> children = node.getChildren();
-            IList<AstNode> newChildren = new DoubleLinkedList<>();
-
-            if (children.size() == 2) {
-                newChildren.add(simplifyHelper(variables, children.get(0)));
-                newChildren.add(simplifyHelper(variables, children.get(1)));
-                AstNode newLeftChild = newChildren.get(0);
-                AstNode newRightChild = newChildren.get(1);
-                if (newLeftChild.isNumber() && newRightChild.isNumber() &&
-                        (operation.equals("+") || operation.equals("-") || operation.equals("*"))) {
-                    double val1 = toDoubleHelper(variables, newLeftChild);
-                    double val2 = toDoubleHelper(variables, newRightChild);
-                    switch(operation) {
-                        case "+":
-                            return new AstNode(val1 + val2);
-                        case "-":
-                            return new AstNode(val1 - val2);
-                        default:
-                            return new AstNode(val1 * val2);
-                    }
-                }
-            } else {
-                newChildren.add(simplifyHelper(variables, children.get(0)));
+            SimplifyCache cache = env.getSimplifyCache();
+            AstNode cached = cache.get(node, reads);
+            if (cached != null) {
+                return cached;
             }
 
-            return new AstNode(node.getName(), newChildren);
+            SimplifyCache.Reads childReads = new SimplifyCache.Reads();
+            AstNode simplified = node.mapChildren(child -> simplifyHelper(env, child, childReads));
+            AstNode result = env.getSimplificationMode() == SimplificationMode.CANONICAL
+                    ? CanonicalSimplifier.canonicalize(simplified)
+                    : foldConstants(simplified);
+            cache.put(node, result, childReads);
+            reads.addAll(childReads);
+            return result;
         }
     }
 
+    /**
+     * Accepts a 'derive(expr, var)' AstNode and returns the derivative of 'expr' with
+     * respect to 'var'. Any variables in 'expr' are replaced by their definitions first;
+     * every other variable is treated as a constant.
+     *
+     * The result is in canonical form (see CanonicalSimplifier), and shares any
+     * repeated subexpressions instead of copying them (see Differentiator).
+     *
+     * Example:
+     *
+     * >>> derive(x ^ 3 + 2 * x * y, x)
+     * 3 * x ^ 2 + 2 * y
+     *
+     * @throws EvaluationError  if 'var' is not a variable, or is already defined
+     * @throws EvaluationError  if 'expr' uses an operation that can't be differentiated
+     */
+    public static AstNode handleDerive(Environment env, AstNode node) {
+        assertNodeMatches(node, "derive", 2);
+        IList<AstNode> children = node.getChildren();
+
+        AstNode var = children.get(1);
+        if (!var.isVariable()) {
+            throw new EvaluationError("Can only differentiate with respect to a variable");
+        } else if (env.getVariables().containsKey(var.getName())) {
+            throw new EvaluationError("var is already defined");
+        }
+
+        AstNode expr = simplifyHelper(env, children.get(0), new SimplifyCache.Reads());
+        return Differentiator.derive(expr, var.getName());
+    }
+
+    /**
+     * Given an operation whose children have already been simplified, evaluates it if it
+     * combines two numbers with '+', '-' or '*', and returns it unchanged otherwise.
+     */
+    private static AstNode foldConstants(AstNode node) {
+        String operation = node.getName();
+        IList<AstNode> children = node.getChildren();
+
+        if (children.size() == 2 && children.get(0).isNumber() && children.get(1).isNumber()
+                && (operation.equals("+") || operation.equals("-") || operation.equals("*"))) {
+            double val1 = children.get(0).getNumericValue();
+            double val2 = children.get(1).getNumericValue();
+            switch(operation) {
+                case "+":
+                    return AstInterner.number(val1 + val2);
+                case "-":
+                    return AstInterner.number(val1 - val2);
+                default:
+                    return AstInterner.number(val1 * val2);
+            }
+        }
+        return node;
+    }
+
     /**
      * Accepts an Environment variable and a 'plot(exprToPlot, var, varMin, varMax, step)'
      * AstNode and generates the corresponding plot on the ImageDrawer attached to the
@@ -220,8 +337,10 @@ public class ExpressionManipulators {
      */
     public static AstNode plot(Environment env, AstNode node) {
         assertNodeMatches(node, "plot", 5);
+        ImageDrawer drawer = getImageDrawer(env);
         IList<AstNode> children = node.getChildren();
         IDictionary<String, AstNode> variables = env.getVariables();
+        DependencyGraph graph = env.getDependencyGraph();
 
         AstNode var = children.get(1);
         if (variables.containsKey(var.getName())) {
@@ -236,14 +355,14 @@ public class ExpressionManipulators {
             throw new EvaluationError("undefined variable");
         }
 
-        double min = toDoubleHelper(variables, varMin);
-        double max = toDoubleHelper(variables, varMax);
+        double min = toDoubleHelper(variables, graph, varMin);
+        double max = toDoubleHelper(variables, graph, varMax);
         if (min > max) {
             throw new EvaluationError("varMin > varMax");
         }
 
         AstNode step = children.get(4);
-        double increment = toDoubleHelper(variables, step);
+        double increment = toDoubleHelper(variables, graph, step);
         if (increment <= 0.0) {
             throw new EvaluationError("step is 0 or negative");
         }
@@ -252,18 +371,162 @@ public class ExpressionManipulators {
             throw new EvaluationError("undefined variable");
         }
 
-        IList<Double> xValues = new DoubleLinkedList<>();
-        IList<Double> yValues = new DoubleLinkedList<>();
-        String varName = var.getName();
-        for (double i = 0; i <= max - min; i += increment) {
-            double xVal = min + i;
-            xValues.add(xVal);
-            variables.put(varName, new AstNode(xVal));
-            yValues.add(toDoubleHelper(variables, children.get(0)));
-            variables.remove(varName);
+        double[] xs = samplePoints(min, max, increment);
+        double[] ys = evaluateAt(env, children.get(0), var.getName(), xs);
+
+        drawer.drawScatterPlot("", "x-axis", "y-axis", DoubleArrayList.wrap(xs), DoubleArrayList.wrap(ys));
+        return new AstNode(1);
+    }
+
+    /**
+     * Accepts an Environment variable and a 'plotAdaptive(exprToPlot, var, varMin, varMax, tolerance)'
+     * AstNode and plots the expression on the ImageDrawer attached to the environment,
+     * like 'plot' does. Returns some arbitrary AstNode.
+     *
+     * Instead of sampling at a fixed step, this samples densely only where the curve
+     * bends: it keeps adding points until joining them with straight lines is never
+     * off by more than 'tolerance' (in y), or until it has evaluated
+     * MAX_ADAPTIVE_EVALUATIONS points.
+     *
+     * Example:
+     *
+     * >>> plotAdaptive(sin(x) * x, x, -50, 50, 0.01)
+     *
+     * @throws EvaluationError  if any of the expressions contains an undefined variable.
+     * @throws EvaluationError  if varMin > varMax
+     * @throws EvaluationError  if 'var' was already defined
+     * @throws EvaluationError  if 'tolerance' is zero or negative
+     */
+    public static AstNode plotAdaptive(Environment env, AstNode node) {
+        assertNodeMatches(node, "plotAdaptive", 5);
+        ImageDrawer drawer = getImageDrawer(env);
+        IList<AstNode> children = node.getChildren();
+        IDictionary<String, AstNode> variables = env.getVariables();
+        DependencyGraph graph = env.getDependencyGraph();
+
+        AstNode var = children.get(1);
+        if (variables.containsKey(var.getName())) {
+            throw new EvaluationError("var is already defined");
         }
-        ImageDrawer drawer = env.getImageDrawer();
+
+        double min = toDoubleHelper(variables, graph, children.get(2));
+        double max = toDoubleHelper(variables, graph, children.get(3));
+        if (min > max) {
+            throw new EvaluationError("varMin > varMax");
+        }
+
+        double tolerance = toDoubleHelper(variables, graph, children.get(4));
+        if (tolerance <= 0.0) {
+            throw new EvaluationError("tolerance is 0 or negative");
+        }
+
+        // The points are chosen one at a time, so the batch modes don't apply here
+        CompiledExpression expr = compileForPoints(env, AstInterner.intern(children.get(0)), var.getName());
+
+        DoubleArrayList xValues = new DoubleArrayList();
+        DoubleArrayList yValues = new DoubleArrayList();
+        AdaptiveSampler.sample(expr, min, max, tolerance, MAX_ADAPTIVE_EVALUATIONS, xValues, yValues);
+
         drawer.drawScatterPlot("", "x-axis", "y-axis", xValues, yValues);
         return new AstNode(1);
     }
+
+    /**
+     * Returns the environment's image drawer. Calculators running without a window
+     * (such as BatchRunner's) don't have one.
+     */
+    private static ImageDrawer getImageDrawer(Environment env) {
+        ImageDrawer drawer = env.getImageDrawer();
+        if (drawer == null) {
+            throw new EvaluationError("Cannot plot: there is nowhere to draw");
+        }
+        return drawer;
+    }
+
+    /**
+     * Returns every x value from 'min' to 'max' (inclusive), 'increment' apart.
+     *
+     * Each value is computed as 'min' plus a running sum of the increments, so the
+     * points (including any rounding error) are the same however they are evaluated.
+     */
+    private static double[] samplePoints(double min, double max, double increment) {
+        int numPoints = 0;
+        for (double i = 0; i <= max - min; i += increment) {
+            numPoints += 1;
+        }
+        double[] xs = new double[numPoints];
+        int index = 0;
+        for (double i = 0; index < numPoints; i += increment) {
+            xs[index] = min + i;
+            index += 1;
+        }
+        return xs;
+    }
+
+    /**
+     * Evaluates 'expr' at every one of the given values of 'var', using the evaluation
+     * mode the environment selects.
+     */
+    private static double[] evaluateAt(Environment env, AstNode expr, String var, double[] xs) {
+        IDictionary<String, AstNode> variables = env.getVariables();
+        double[] ys = new double[xs.length];
+
+        // Interning turns every subexpression that occurs several times into a single
+        // node, which the batch compilers then evaluate only once per point
+        expr = AstInterner.intern(expr);
+
+        switch (env.getEvaluationMode()) {
+            case BATCH:
+                BatchCompiler.compile(variables, expr, var).evaluate(xs, ys);
+                break;
+            case PARALLEL_BATCH:
+                BatchCompiler.compile(variables, expr, var).evaluateInParallel(xs, ys);
+                break;
+            default:
+                CompiledExpression compiled = compileForPoints(env, expr, var);
+                double[] args = new double[1];
+                for (int i = 0; i < xs.length; i++) {
+                    args[0] = xs[i];
+                    ys[i] = compiled.evaluate(args);
+                }
+                break;
+        }
+        return ys;
+    }
+
+    /**
+     * Prepares the given (interned) expression for evaluating at one value of 'var' at a
+     * time, the way the environment's evaluation mode selects. Only BYTECODE generates
+     * a class. The batch modes can't batch up single points, so they use closures,
+     * which need no code generation either.
+     */
+    private static CompiledExpression compileForPoints(Environment env, AstNode expr, String var) {
+        switch (env.getEvaluationMode()) {
+            case TREE_WALKING:
+                return treeWalker(env, expr, var);
+            case BYTECODE:
+                return ExpressionCompiler.compile(env.getVariables(), expr, var);
+            default:
+                return ClosureCompiler.compile(env.getVariables(), expr, var);
+        }
+    }
+
+    /**
+     * Returns an expression of 'var' that walks the tree every time it's evaluated.
+     *
+     * We bind 'var' in a scope of our own, which leaves the calculator's variables (and
+     * the values it has cached for them) untouched. Other variables may be defined in
+     * terms of 'var', so it still has to be set through the scope for their cached
+     * values to be thrown away.
+     */
+    private static CompiledExpression treeWalker(Environment env, AstNode expr, String var) {
+        Environment scope = env.pushScope();
+        IDictionary<String, AstNode> scopeVariables = scope.getVariables();
+        CommonSubexpressions repeated = CommonSubexpressions.find(scopeVariables, expr, var);
+        return args -> {
+            scope.setVariable(var, new AstNode(args[0]));
+            repeated.beginEvaluation();
+            return toDoubleHelper(scopeVariables, scope.getDependencyGraph(), repeated, expr);
+        };
+    }
 }
@@ -0,0 +1,21 @@
+package calculator.ast;
+
+/**
+ * The different ways 'simplify' (which runs on every expression the calculator
+ * evaluates) can rewrite an expression.
+ */
+public enum SimplificationMode {
+    /**
+     * Substitute variables and fold 'NUM + NUM', 'NUM - NUM' and 'NUM * NUM', leaving
+     * everything else exactly as it was written.
+     */
+    CONSTANT_FOLDING,
+
+    /**
+     * Also rewrite sums and products into a canonical polynomial form: like terms and
+     * like factors are collected, terms are sorted, and identities such as 'x * 1',
+     * 'x + 0' and 'x ^ 1' are applied (see CanonicalSimplifier). Expressions built up
+     * step by step stay small, but they are no longer printed the way they were written.
+     */
+    CANONICAL,
+}
@@ -0,0 +1,188 @@
+package calculator.ast;
+
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the results of simplifying subtrees, so simplifying the same subtree
+ * again (for example, every time a variable defined in terms of it is used) is a
+ * single lookup.
+ *
+ * The result of simplifying a subtree depends on the definitions of the variables
+ * it reads, directly or through other variables. Every variable has a version
+ * number that changes whenever it is (re)assigned, and every entry records the
+ * version of each variable its result depends on -- including variables that were
+ * undefined at the time. An entry is only used if all of those versions are still
+ * current.
+ *
+ * The cache holds at most 'capacity' entries and evicts the least recently used
+ * entry when it is full.
+ */
+public class SimplifyCache {
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private final Map<AstNode, Entry> entries;
+    private final IDictionary<String, Long> versions;
+    private long nextVersion;
+
+    private long hits;
+    private long misses;
+
+    public SimplifyCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @throws IllegalArgumentException  if the capacity is negative
+     */
+    public SimplifyCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must be non-negative: " + capacity);
+        }
+        this.entries = new LinkedHashMap<AstNode, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<AstNode, Entry> eldest) {
+                return this.size() > capacity;
+            }
+        };
+        this.versions = new ChainedHashDictionary<>();
+        this.nextVersion = 1;
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Returns the cached result of simplifying the given node and adds the variables
+     * it depends on to 'reads', or returns null if there is no up-to-date result.
+     */
+    public AstNode get(AstNode node, Reads reads) {
+        Entry entry = this.entries.get(node);
+        if (entry != null && !this.isCurrent(entry)) {
+            this.entries.remove(node);
+            entry = null;
+        }
+        if (entry == null) {
+            this.misses += 1;
+            return null;
+        }
+        this.hits += 1;
+        for (String name : entry.names) {
+            reads.add(name);
+        }
+        return entry.result;
+    }
+
+    /**
+     * Records that simplifying the given node produced 'result', reading the current
+     * definitions of the given variables.
+     */
+    public void put(AstNode node, AstNode result, Reads reads) {
+        String[] names = Arrays.copyOf(reads.names, reads.size);
+        long[] nameVersions = new long[names.length];
+        for (int i = 0; i < names.length; i++) {
+            nameVersions[i] = this.versionOf(names[i]);
+        }
+        this.entries.put(node, new Entry(result, names, nameVersions));
+    }
+
+    /**
+     * Marks every cached result that depends on the given variable as out of date.
+     * This must be called whenever a variable is assigned or removed.
+     */
+    public void variableChanged(String name) {
+        this.versions.put(name, this.nextVersion);
+        this.nextVersion += 1;
+    }
+
+    /**
+     * Forgets every cached result. The hit and miss counts are left alone.
+     */
+    public void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Returns the number of results currently cached.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the number of lookups that found an up-to-date result.
+     */
+    public long getHitCount() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not.
+     */
+    public long getMissCount() {
+        return this.misses;
+    }
+
+    private long versionOf(String name) {
+        return this.versions.getOrDefault(name, 0L);
+    }
+
+    private boolean isCurrent(Entry entry) {
+        for (int i = 0; i < entry.names.length; i++) {
+            if (this.versionOf(entry.names[i]) != entry.versions[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Entry {
+        public final AstNode result;
+        public final String[] names;
+        public final long[] versions;
+
+        public Entry(AstNode result, String[] names, long[] versions) {
+            this.result = result;
+            this.names = names;
+            this.versions = versions;
+        }
+    }
+
+    /**
+     * The set of variable names read while simplifying some subtree.
+     *
+     * Expressions rarely mention more than a handful of distinct variables, so this
+     * is just an array we search linearly.
+     */
+    public static class Reads {
+        private String[] names;
+        private int size;
+
+        public Reads() {
+            this.names = new String[4];
+            this.size = 0;
+        }
+
+        public void add(String name) {
+            for (int i = 0; i < this.size; i++) {
+                if (this.names[i].equals(name)) {
+                    return;
+                }
+            }
+            if (this.size == this.names.length) {
+                this.names = Arrays.copyOf(this.names, this.size * 2);
+            }
+            this.names[this.size] = name;
+            this.size += 1;
+        }
+
+        public void addAll(Reads other) {
+            for (int i = 0; i < other.size; i++) {
+                this.add(other.names[i]);
+            }
+        }
+    }
+}
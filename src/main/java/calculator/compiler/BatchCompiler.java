@@ -0,0 +1,220 @@
+package calculator.compiler;
+
+import calculator.ast.AstNode;
+import calculator.errors.EvaluationError;
+import datastructures.interfaces.IDictionary;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Converts an AstNode that 'toDouble' could evaluate into a BatchExpression of a
+ * single variable.
+ *
+ * Every node becomes one instruction that writes to a register. Registers are
+ * reused as soon as the value they hold has been read for the last time, so the
+ * number of registers grows with the depth of the tree, not its size.
+ *
+ * As with the other compilers, variables other than the parameter are replaced by
+ * their definitions, and a definition used several times is only evaluated once:
+ * its register is kept alive until its last use.
+ */
+public class BatchCompiler {
+    private final VariableResolver resolver;
+
+    // How many times the value of each operation node is used
+    private final Map<AstNode, Integer> useCounts;
+    // The register holding the value of each operation node that has been emitted
+    private final Map<AstNode, Integer> registersOfNodes;
+
+    // How many more times the value in each register will be read
+    private int[] pendingReads;
+    private int[] freeRegisters;
+    private int numFreeRegisters;
+    private int numRegisters;
+
+    private int[] code;
+    private int codeLength;
+    private double[] constants;
+    private int numConstants;
+
+    private BatchCompiler(IDictionary<String, AstNode> variables, String parameter) {
+        this.resolver = new VariableResolver(variables, new String[] {parameter});
+        this.useCounts = new IdentityHashMap<>();
+        this.registersOfNodes = new IdentityHashMap<>();
+
+        this.pendingReads = new int[8];
+        this.freeRegisters = new int[8];
+        this.numFreeRegisters = 0;
+        this.numRegisters = BatchExpression.INPUT_REGISTER + 1;
+
+        this.code = new int[16 * BatchExpression.INSTRUCTION_SIZE];
+        this.codeLength = 0;
+        this.constants = new double[8];
+        this.numConstants = 0;
+    }
+
+    /**
+     * Converts the given expression into a BatchExpression that evaluates it for
+     * many values of 'parameter' at once.
+     *
+     * The parameter shadows any variable with the same name.
+     *
+     * @throws EvaluationError  if the expression contains an undefined variable
+     * @throws EvaluationError  if the expression uses an unknown operation
+     * @throws EvaluationError  if a variable is (indirectly) defined in terms of itself
+     */
+    public static BatchExpression compile(IDictionary<String, AstNode> variables,
+                                          AstNode expr,
+                                          String parameter) {
+        return new BatchCompiler(variables, parameter).compile(expr);
+    }
+
+    private BatchExpression compile(AstNode expr) {
+        this.countUses(expr);
+        int result = this.emit(expr);
+        return new BatchExpression(
+                Arrays.copyOf(this.code, this.codeLength),
+                Arrays.copyOf(this.constants, this.numConstants),
+                this.numRegisters,
+                result);
+    }
+
+    /**
+     * Visits the tree in exactly the same order as 'emit' will, counting how many
+     * times the value of each operation node is needed.
+     */
+    private void countUses(AstNode node) {
+        if (node.isVariable()) {
+            String name = node.getName();
+            if (this.resolver.parameterIndex(name) == -1) {
+                this.countUses(this.resolver.beginExpanding(name));
+                this.resolver.endExpanding(name);
+            }
+        } else if (node.isOperation()) {
+            Integer count = this.useCounts.get(node);
+            if (count != null) {
+                this.useCounts.put(node, count + 1);
+                return;
+            }
+            this.useCounts.put(node, 1);
+            VariableResolver.lookupOperator(node);
+            for (AstNode child : node.getChildren()) {
+                this.countUses(child);
+            }
+        }
+    }
+
+    /**
+     * Emits the instructions computing the given node, and returns the register its
+     * value ends up in.
+     */
+    private int emit(AstNode node) {
+        if (node.isNumber()) {
+            int register = this.allocateRegister(1);
+            this.addInstruction(BatchExpression.LOAD_CONSTANT, register, this.addConstant(node.getNumericValue()), 0);
+            return register;
+        } else if (node.isVariable()) {
+            String name = node.getName();
+            if (this.resolver.parameterIndex(name) != -1) {
+                return BatchExpression.INPUT_REGISTER;
+            }
+            int register = this.emit(this.resolver.beginExpanding(name));
+            this.resolver.endExpanding(name);
+            return register;
+        }
+
+        Integer known = this.registersOfNodes.get(node);
+        if (known != null) {
+            return known;
+        }
+
+        Operator op = VariableResolver.lookupOperator(node);
+        int first = this.emit(node.getChildren().get(0));
+        int second = op.getArity() == 2 ? this.emit(node.getChildren().get(1)) : 0;
+
+        // Releasing the operands first lets the result overwrite one of them in place
+        this.release(first);
+        if (op.getArity() == 2) {
+            this.release(second);
+        }
+        int register = this.allocateRegister(this.useCounts.get(node));
+        this.addInstruction(opcodeOf(op), register, first, second);
+        this.registersOfNodes.put(node, register);
+        return register;
+    }
+
+    private static int opcodeOf(Operator op) {
+        switch (op) {
+            case ADD:
+                return BatchExpression.ADD;
+            case SUBTRACT:
+                return BatchExpression.SUBTRACT;
+            case MULTIPLY:
+                return BatchExpression.MULTIPLY;
+            case DIVIDE:
+                return BatchExpression.DIVIDE;
+            case POWER:
+                return BatchExpression.POWER;
+            case NEGATE:
+                return BatchExpression.NEGATE;
+            case SIN:
+                return BatchExpression.SIN;
+            case COS:
+                return BatchExpression.COS;
+            default:
+                throw new AssertionError("Unhandled operator " + op);
+        }
+    }
+
+    private int allocateRegister(int reads) {
+        int register;
+        if (this.numFreeRegisters > 0) {
+            this.numFreeRegisters -= 1;
+            register = this.freeRegisters[this.numFreeRegisters];
+        } else {
+            register = this.numRegisters;
+            this.numRegisters += 1;
+            if (register >= this.pendingReads.length) {
+                this.pendingReads = Arrays.copyOf(this.pendingReads, this.pendingReads.length * 2);
+            }
+        }
+        this.pendingReads[register] = reads;
+        return register;
+    }
+
+    private void release(int register) {
+        if (register == BatchExpression.INPUT_REGISTER) {
+            return;
+        }
+        this.pendingReads[register] -= 1;
+        if (this.pendingReads[register] == 0) {
+            if (this.numFreeRegisters == this.freeRegisters.length) {
+                this.freeRegisters = Arrays.copyOf(this.freeRegisters, this.freeRegisters.length * 2);
+            }
+            this.freeRegisters[this.numFreeRegisters] = register;
+            this.numFreeRegisters += 1;
+        }
+    }
+
+    private int addConstant(double value) {
+        if (this.numConstants == this.constants.length) {
+            this.constants = Arrays.copyOf(this.constants, this.constants.length * 2);
+        }
+        this.constants[this.numConstants] = value;
+        this.numConstants += 1;
+        return this.numConstants - 1;
+    }
+
+    private void addInstruction(int opcode, int destination, int first, int second) {
+        if (this.codeLength == this.code.length) {
+            this.code = Arrays.copyOf(this.code, this.code.length * 2);
+        }
+        this.code[this.codeLength] = opcode;
+        this.code[this.codeLength + 1] = destination;
+        this.code[this.codeLength + 2] = first;
+        this.code[this.codeLength + 3] = second;
+        this.codeLength += BatchExpression.INSTRUCTION_SIZE;
+    }
+}
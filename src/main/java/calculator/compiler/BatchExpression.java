@@ -0,0 +1,228 @@
+package calculator.compiler;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An expression of one variable that evaluates many points at once.
+ *
+ * The expression is stored as a flat list of instructions over 'registers', where
+ * each register holds the value of one intermediate result for a whole block of
+ * points. Each instruction is then a simple loop over primitive arrays, which the
+ * JIT can unroll and (for the arithmetic operators) turn into SIMD instructions.
+ *
+ * Points are processed in blocks of BLOCK_SIZE so the registers stay small enough
+ * to remain in cache no matter how many points are evaluated.
+ *
+ * Use BatchCompiler to create one of these. Instances are immutable, so the same
+ * BatchExpression may be used by several threads at once.
+ */
+public final class BatchExpression {
+    // Instruction opcodes
+    static final int LOAD_CONSTANT = 0;
+    static final int ADD = 1;
+    static final int SUBTRACT = 2;
+    static final int MULTIPLY = 3;
+    static final int DIVIDE = 4;
+    static final int POWER = 5;
+    static final int NEGATE = 6;
+    static final int SIN = 7;
+    static final int COS = 8;
+
+    // Every instruction is stored as four ints: opcode, destination, and two operands
+    static final int INSTRUCTION_SIZE = 4;
+
+    // The register the value of the variable is loaded into
+    static final int INPUT_REGISTER = 0;
+
+    private static final int BLOCK_SIZE = 512;
+
+    // Ranges smaller than this are not worth handing to another thread
+    private static final int PARALLEL_THRESHOLD = 16 * BLOCK_SIZE;
+
+    private final int[] code;
+    private final double[] constants;
+    private final int numRegisters;
+    private final int resultRegister;
+
+    BatchExpression(int[] code, double[] constants, int numRegisters, int resultRegister) {
+        this.code = code;
+        this.constants = constants;
+        this.numRegisters = numRegisters;
+        this.resultRegister = resultRegister;
+    }
+
+    /**
+     * Evaluates the expression at every value in 'inputs' and stores the value at
+     * inputs[i] in results[i].
+     *
+     * @throws IllegalArgumentException  if 'results' is shorter than 'inputs'
+     */
+    public void evaluate(double[] inputs, double[] results) {
+        if (results.length < inputs.length) {
+            throw new IllegalArgumentException("results is shorter than inputs");
+        }
+        this.evaluate(inputs, 0, inputs.length, results);
+    }
+
+    /**
+     * Does the same thing as 'evaluate(inputs, results)', but splits the inputs into
+     * chunks and evaluates them on the common ForkJoinPool.
+     *
+     * Every point is still evaluated by exactly the same instructions, so the results
+     * are identical to evaluating them sequentially.
+     *
+     * @throws IllegalArgumentException  if 'results' is shorter than 'inputs'
+     */
+    public void evaluateInParallel(double[] inputs, double[] results) {
+        if (results.length < inputs.length) {
+            throw new IllegalArgumentException("results is shorter than inputs");
+        }
+        if (inputs.length <= PARALLEL_THRESHOLD) {
+            this.evaluate(inputs, 0, inputs.length, results);
+        } else {
+            ForkJoinPool.commonPool().invoke(new EvaluateTask(this, inputs, 0, inputs.length, results));
+        }
+    }
+
+    /**
+     * Evaluates the expression at inputs[from] to inputs[to - 1], storing each result
+     * at the same index in 'results'.
+     */
+    public void evaluate(double[] inputs, int from, int to, double[] results) {
+        double[][] registers = new double[this.numRegisters][BLOCK_SIZE];
+        for (int start = from; start < to; start += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, to - start);
+            System.arraycopy(inputs, start, registers[INPUT_REGISTER], 0, length);
+            this.run(registers, length);
+            System.arraycopy(registers[this.resultRegister], 0, results, start, length);
+        }
+    }
+
+    private void run(double[][] registers, int length) {
+        int[] code = this.code;
+        for (int pc = 0; pc < code.length; pc += INSTRUCTION_SIZE) {
+            double[] out = registers[code[pc + 1]];
+            switch (code[pc]) {
+                case LOAD_CONSTANT:
+                    fill(out, this.constants[code[pc + 2]], length);
+                    break;
+                case ADD:
+                    add(out, registers[code[pc + 2]], registers[code[pc + 3]], length);
+                    break;
+                case SUBTRACT:
+                    subtract(out, registers[code[pc + 2]], registers[code[pc + 3]], length);
+                    break;
+                case MULTIPLY:
+                    multiply(out, registers[code[pc + 2]], registers[code[pc + 3]], length);
+                    break;
+                case DIVIDE:
+                    divide(out, registers[code[pc + 2]], registers[code[pc + 3]], length);
+                    break;
+                case POWER:
+                    power(out, registers[code[pc + 2]], registers[code[pc + 3]], length);
+                    break;
+                case NEGATE:
+                    negate(out, registers[code[pc + 2]], length);
+                    break;
+                case SIN:
+                    sin(out, registers[code[pc + 2]], length);
+                    break;
+                case COS:
+                    cos(out, registers[code[pc + 2]], length);
+                    break;
+                default:
+                    throw new AssertionError("Unknown opcode " + code[pc]);
+            }
+        }
+    }
+
+    // Each operation gets its own small method so the JIT compiles (and vectorizes)
+    // every loop on its own, regardless of how large 'run' gets.
+
+    private static void fill(double[] out, double value, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = value;
+        }
+    }
+
+    private static void add(double[] out, double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = a[i] + b[i];
+        }
+    }
+
+    private static void subtract(double[] out, double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = a[i] - b[i];
+        }
+    }
+
+    private static void multiply(double[] out, double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = a[i] * b[i];
+        }
+    }
+
+    private static void divide(double[] out, double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = a[i] / b[i];
+        }
+    }
+
+    private static void power(double[] out, double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = Math.pow(a[i], b[i]);
+        }
+    }
+
+    private static void negate(double[] out, double[] a, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = -a[i];
+        }
+    }
+
+    private static void sin(double[] out, double[] a, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = Math.sin(a[i]);
+        }
+    }
+
+    private static void cos(double[] out, double[] a, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = Math.cos(a[i]);
+        }
+    }
+
+    private static class EvaluateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // Tasks are never serialized, and BatchExpression isn't Serializable
+        private final transient BatchExpression expr;
+        private final double[] inputs;
+        private final int from;
+        private final int to;
+        private final double[] results;
+
+        public EvaluateTask(BatchExpression expr, double[] inputs, int from, int to, double[] results) {
+            this.expr = expr;
+            this.inputs = inputs;
+            this.from = from;
+            this.to = to;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= PARALLEL_THRESHOLD) {
+                this.expr.evaluate(this.inputs, this.from, this.to, this.results);
+            } else {
+                // Split on a block boundary so no block is shared between two tasks
+                int middle = this.from + (this.to - this.from) / 2 / BLOCK_SIZE * BLOCK_SIZE;
+                invokeAll(
+                        new EvaluateTask(this.expr, this.inputs, this.from, middle, this.results),
+                        new EvaluateTask(this.expr, this.inputs, middle, this.to, this.results));
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package calculator.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A minimal writer for Java class files, just capable enough to produce the
+ * straight-line arithmetic methods ExpressionCompiler needs.
+ *
+ * The generated classes never branch, so we can target class file version 52
+ * (Java 8) and skip stack map frames entirely.
+ *
+ * Adding a constant or a method throws IllegalStateException if the class file would
+ * break one of the format's limits (65535 constant pool slots, or 65535 bytes of code
+ * in a method).
+ *
+ * See chapter 4 of the JVM specification for the format.
+ */
+class ClassFileBuilder {
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PRIVATE = 0x0002;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    // Opcodes
+    public static final int DCONST_0 = 0x0e;
+    public static final int DCONST_1 = 0x0f;
+    public static final int ICONST_0 = 0x03;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC2_W = 0x14;
+    public static final int ALOAD_0 = 0x2a;
+    public static final int ALOAD_1 = 0x2b;
+    public static final int DALOAD = 0x31;
+    public static final int DADD = 0x63;
+    public static final int DSUB = 0x67;
+    public static final int DMUL = 0x6b;
+    public static final int DDIV = 0x6f;
+    public static final int DNEG = 0x77;
+    public static final int DRETURN = 0xaf;
+    public static final int RETURN = 0xb1;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKESTATIC = 0xb8;
+
+    private static final int MAJOR_VERSION = 52;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream constantPoolBytes;
+    private final DataOutputStream constantPool;
+    private final Map<String, Integer> constantIndices;
+    private int constantPoolCount;
+
+    private final ByteArrayOutputStream methodBytes;
+    private final DataOutputStream methods;
+    private int methodCount;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+
+    public ClassFileBuilder(String className, String superName, String... interfaceNames) {
+        this.constantPoolBytes = new ByteArrayOutputStream();
+        this.constantPool = new DataOutputStream(this.constantPoolBytes);
+        this.constantIndices = new HashMap<>();
+        this.constantPoolCount = 1;
+
+        this.methodBytes = new ByteArrayOutputStream();
+        this.methods = new DataOutputStream(this.methodBytes);
+        this.methodCount = 0;
+
+        this.thisClass = this.classConstant(className);
+        this.superClass = this.classConstant(superName);
+        this.interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            this.interfaces[i] = this.classConstant(interfaceNames[i]);
+        }
+    }
+
+    /**
+     * Returns the constant pool index of the given UTF-8 string, adding it if needed.
+     */
+    public int utf8Constant(String value) {
+        String key = "U" + value;
+        Integer index = this.constantIndices.get(key);
+        if (index == null) {
+            index = this.addConstant(key, 1);
+            try {
+                this.constantPool.writeByte(CONSTANT_UTF8);
+                this.constantPool.writeUTF(value);
+            } catch (IOException ex) {
+                throw new AssertionError(ex);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the constant pool index of the given double, adding it if needed.
+     */
+    public int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        String key = "D" + bits;
+        Integer index = this.constantIndices.get(key);
+        if (index == null) {
+            // Doubles famously take up two constant pool slots
+            index = this.addConstant(key, 2);
+            try {
+                this.constantPool.writeByte(CONSTANT_DOUBLE);
+                this.constantPool.writeLong(bits);
+            } catch (IOException ex) {
+                throw new AssertionError(ex);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the constant pool index of the given class, where 'internalName'
+     * uses slashes instead of dots (for example, "java/lang/Math").
+     */
+    public int classConstant(String internalName) {
+        String key = "C" + internalName;
+        Integer index = this.constantIndices.get(key);
+        if (index == null) {
+            int nameIndex = this.utf8Constant(internalName);
+            index = this.addConstant(key, 1);
+            try {
+                this.constantPool.writeByte(CONSTANT_CLASS);
+                this.constantPool.writeShort(nameIndex);
+            } catch (IOException ex) {
+                throw new AssertionError(ex);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the constant pool index of a reference to the given method.
+     */
+    public int methodConstant(String owner, String name, String descriptor) {
+        String key = "M" + owner + "." + name + descriptor;
+        Integer index = this.constantIndices.get(key);
+        if (index == null) {
+            int classIndex = this.classConstant(owner);
+            int nameIndex = this.utf8Constant(name);
+            int descriptorIndex = this.utf8Constant(descriptor);
+            int nameAndTypeIndex = this.addConstant("N" + name + descriptor, 1);
+            index = this.addConstant(key, 1);
+            try {
+                this.constantPool.writeByte(CONSTANT_NAME_AND_TYPE);
+                this.constantPool.writeShort(nameIndex);
+                this.constantPool.writeShort(descriptorIndex);
+                this.constantPool.writeByte(CONSTANT_METHODREF);
+                this.constantPool.writeShort(classIndex);
+                this.constantPool.writeShort(nameAndTypeIndex);
+            } catch (IOException ex) {
+                throw new AssertionError(ex);
+            }
+        }
+        return index;
+    }
+
+    private int addConstant(String key, int numSlots) {
+        int index = this.constantPoolCount;
+        if (index + numSlots > 0xFFFF) {
+            throw new IllegalStateException("Constant pool is full");
+        }
+        this.constantIndices.put(key, index);
+        this.constantPoolCount += numSlots;
+        return index;
+    }
+
+    /**
+     * Adds a method with the given bytecode as its body.
+     *
+     * @throws IllegalStateException if the code is longer than a method may be
+     */
+    public void addMethod(int accessFlags, String name, String descriptor,
+                          int maxStack, int maxLocals, byte[] code) {
+        if (code.length > 0xFFFF) {
+            throw new IllegalStateException("Method body is too large: " + code.length + " bytes");
+        }
+        int nameIndex = this.utf8Constant(name);
+        int descriptorIndex = this.utf8Constant(descriptor);
+        int codeAttributeIndex = this.utf8Constant("Code");
+        try {
+            this.methods.writeShort(accessFlags);
+            this.methods.writeShort(nameIndex);
+            this.methods.writeShort(descriptorIndex);
+            this.methods.writeShort(1);
+
+            this.methods.writeShort(codeAttributeIndex);
+            this.methods.writeInt(12 + code.length);
+            this.methods.writeShort(maxStack);
+            this.methods.writeShort(maxLocals);
+            this.methods.writeInt(code.length);
+            this.methods.write(code);
+            this.methods.writeShort(0);
+            this.methods.writeShort(0);
+        } catch (IOException ex) {
+            throw new AssertionError(ex);
+        }
+        this.methodCount += 1;
+    }
+
+    /**
+     * Returns the complete class file.
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(this.constantPoolCount);
+            this.constantPoolBytes.writeTo(out);
+
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(this.thisClass);
+            out.writeShort(this.superClass);
+            out.writeShort(this.interfaces.length);
+            for (int index : this.interfaces) {
+                out.writeShort(index);
+            }
+
+            // No fields
+            out.writeShort(0);
+
+            out.writeShort(this.methodCount);
+            this.methodBytes.writeTo(out);
+
+            // No class attributes
+            out.writeShort(0);
+        } catch (IOException ex) {
+            throw new AssertionError(ex);
+        }
+        return bytes.toByteArray();
+    }
+}
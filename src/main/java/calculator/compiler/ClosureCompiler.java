@@ -0,0 +1,104 @@
+package calculator.compiler;
+
+import calculator.ast.AstNode;
+import calculator.errors.EvaluationError;
+import datastructures.interfaces.IDictionary;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Converts an AstNode that 'toDouble' could evaluate into a tree of lambdas, one
+ * per AST node, with every operation already resolved to the code that computes it
+ * and every parameter already resolved to its index in the argument array.
+ *
+ * Evaluating the result still walks a tree, but unlike 'toDouble' it never compares
+ * operation names or looks variables up in a dictionary. Unlike ExpressionCompiler,
+ * it does not generate any code at runtime, so it works anywhere and costs very
+ * little to build.
+ *
+ * Variables that are not parameters are replaced by their definitions, exactly as
+ * 'toDouble' would expand them; a definition that is used several times is only
+ * converted once and then shared.
+ */
+public class ClosureCompiler {
+    private final VariableResolver resolver;
+    private final Map<AstNode, CompiledExpression> compiledOperations;
+
+    private ClosureCompiler(IDictionary<String, AstNode> variables, String[] parameters) {
+        this.resolver = new VariableResolver(variables, parameters);
+        this.compiledOperations = new IdentityHashMap<>();
+    }
+
+    /**
+     * Converts the given expression into a CompiledExpression whose 'evaluate' method
+     * receives the values of the given parameters, in order.
+     *
+     * Parameters shadow any variable with the same name.
+     *
+     * @throws EvaluationError  if the expression contains an undefined variable
+     * @throws EvaluationError  if the expression uses an unknown operation
+     * @throws EvaluationError  if a variable is (indirectly) defined in terms of itself
+     */
+    public static CompiledExpression compile(IDictionary<String, AstNode> variables,
+                                             AstNode expr,
+                                             String... parameters) {
+        return new ClosureCompiler(variables, parameters).convert(expr);
+    }
+
+    private CompiledExpression convert(AstNode node) {
+        if (node.isNumber()) {
+            double value = node.getNumericValue();
+            return args -> value;
+        } else if (node.isVariable()) {
+            String name = node.getName();
+            int index = this.resolver.parameterIndex(name);
+            if (index != -1) {
+                return args -> args[index];
+            }
+            CompiledExpression definition = this.convert(this.resolver.beginExpanding(name));
+            this.resolver.endExpanding(name);
+            return definition;
+        } else {
+            CompiledExpression known = this.compiledOperations.get(node);
+            if (known == null) {
+                known = this.convertOperation(node);
+                this.compiledOperations.put(node, known);
+            }
+            return known;
+        }
+    }
+
+    private CompiledExpression convertOperation(AstNode node) {
+        Operator op = VariableResolver.lookupOperator(node);
+        CompiledExpression first = this.convert(node.getChildren().get(0));
+        if (op.getArity() == 1) {
+            switch (op) {
+                case NEGATE:
+                    return args -> -first.evaluate(args);
+                case SIN:
+                    return args -> Math.sin(first.evaluate(args));
+                case COS:
+                    return args -> Math.cos(first.evaluate(args));
+                default:
+                    throw new AssertionError("Unhandled operator " + op);
+            }
+        }
+
+        CompiledExpression second = this.convert(node.getChildren().get(1));
+        switch (op) {
+            case ADD:
+                return args -> first.evaluate(args) + second.evaluate(args);
+            case SUBTRACT:
+                return args -> first.evaluate(args) - second.evaluate(args);
+            case MULTIPLY:
+                return args -> first.evaluate(args) * second.evaluate(args);
+            case DIVIDE:
+                return args -> first.evaluate(args) / second.evaluate(args);
+            case POWER:
+                return args -> Math.pow(first.evaluate(args), second.evaluate(args));
+            default:
+                throw new AssertionError("Unhandled operator " + op);
+        }
+    }
+}
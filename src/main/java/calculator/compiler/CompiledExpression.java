@@ -0,0 +1,15 @@
+package calculator.compiler;
+
+/**
+ * An expression that has been converted, ahead of time, into something that
+ * can be evaluated directly on doubles without walking an AstNode tree.
+ *
+ * Instances are created by ExpressionCompiler.
+ */
+public interface CompiledExpression {
+    /**
+     * Evaluates the expression, where 'args[i]' holds the value of the i-th
+     * parameter the expression was compiled with.
+     */
+    double evaluate(double[] args);
+}
@@ -0,0 +1,37 @@
+package calculator.compiler;
+
+/**
+ * The different ways the calculator can evaluate an expression numerically.
+ */
+public enum EvaluationMode {
+    /**
+     * Walk the AstNode tree directly, looking up every operation and variable by
+     * name each time. Nothing is prepared ahead of time, and no code is generated.
+     */
+    TREE_WALKING,
+
+    /**
+     * Convert the tree once into a tree of pre-resolved lambdas (see ClosureCompiler).
+     * This needs no runtime code generation.
+     */
+    CLOSURES,
+
+    /**
+     * Generate and load a Java class for the expression (see ExpressionCompiler).
+     * This has the highest up-front cost but is the fastest to evaluate repeatedly.
+     */
+    BYTECODE,
+
+    /**
+     * Evaluate every point of a plot at once, one array loop per operation (see
+     * BatchCompiler). Single values (as in 'toDouble') are evaluated by walking
+     * the tree, and points chosen one at a time (as in 'plotAdaptive') as CLOSURES.
+     */
+    BATCH,
+
+    /**
+     * Like BATCH, but large plots are split into chunks that are evaluated on
+     * several cores at once. The results are identical to BATCH.
+     */
+    PARALLEL_BATCH,
+}
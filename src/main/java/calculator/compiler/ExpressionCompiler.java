@@ -0,0 +1,405 @@
+package calculator.compiler;
+
+import calculator.ast.AstNode;
+import calculator.errors.EvaluationError;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Compiles an AstNode that 'toDouble' could evaluate into a freshly generated
+ * Java class, so that evaluating it repeatedly (for example, once per sample
+ * point in 'plot') runs as JIT-compiled straight-line code instead of walking
+ * the tree and looking up operation and variable names every time.
+ *
+ * Variables that are not parameters are replaced by their definitions at compile
+ * time, exactly as 'toDouble' would expand them at evaluation time.
+ *
+ * The JIT refuses to compile very large methods, so whenever a node's bytecode would
+ * exceed METHOD_SIZE_LIMIT, its largest children are moved into their own static
+ * helper methods until it fits. A subtree that is reachable more than once
+ * (typically the definition of a variable used several times) is only turned into
+ * one helper method.
+ *
+ * An expression can also be too big for a class file altogether (for example, one
+ * with more than about 32,000 distinct numbers); those are handed to ClosureCompiler
+ * instead.
+ *
+ * On Java 15 and later, the generated class is defined as a hidden class; on older
+ * versions, it is defined by a throwaway class loader. Either way, it can be
+ * unloaded as soon as the CompiledExpression is no longer reachable.
+ */
+public class ExpressionCompiler {
+    // HotSpot does not JIT-compile methods larger than 8000 bytes; stay well under that
+    private static final int METHOD_SIZE_LIMIT = 4000;
+    // aload_0, invokestatic
+    private static final int HELPER_CALL_SIZE = 4;
+
+    private static final String CLASS_NAME = "calculator/compiler/GeneratedExpression";
+    private static final String HELPER_DESCRIPTOR = "([D)D";
+    private static final String MATH = "java/lang/Math";
+
+    private final VariableResolver resolver;
+
+    // The (effective) number of bytes of code each operation node compiles to
+    private final Map<AstNode, Integer> costs;
+    // The index of the helper method each split-off node compiles to
+    private final Map<AstNode, Integer> helperIndices;
+
+    private ClassFileBuilder classFile;
+
+    private ExpressionCompiler(IDictionary<String, AstNode> variables, String[] parameters) {
+        this.resolver = new VariableResolver(variables, parameters);
+        this.costs = new IdentityHashMap<>();
+        this.helperIndices = new IdentityHashMap<>();
+    }
+
+    /**
+     * Compiles the given expression into a CompiledExpression whose 'evaluate' method
+     * receives the values of the given parameters, in order.
+     *
+     * Parameters shadow any variable with the same name.
+     *
+     * @throws EvaluationError  if the expression contains an undefined variable
+     * @throws EvaluationError  if the expression uses an unknown operation
+     * @throws EvaluationError  if a variable is (indirectly) defined in terms of itself
+     */
+    public static CompiledExpression compile(IDictionary<String, AstNode> variables,
+                                             AstNode expr,
+                                             String... parameters) {
+        ExpressionCompiler compiler = new ExpressionCompiler(variables, parameters);
+        compiler.plan(expr);
+        byte[] bytes;
+        try {
+            bytes = compiler.generate(expr);
+        } catch (IllegalStateException ex) {
+            // The class file would be too big, but the expression itself is fine
+            return ClosureCompiler.compile(variables, expr, parameters);
+        }
+        return instantiate(bytes);
+    }
+
+    /**
+     * Returns the class file for the given (already planned) expression.
+     *
+     * @throws IllegalStateException  if the expression doesn't fit in a class file
+     */
+    private byte[] generate(AstNode expr) {
+        this.classFile = new ClassFileBuilder(
+                CLASS_NAME,
+                "java/lang/Object",
+                "calculator/compiler/CompiledExpression");
+        this.addConstructor();
+
+        // The root always gets a helper method of its own, even if it is small
+        int rootIndex = this.helperIndices.size();
+        for (Map.Entry<AstNode, Integer> helper : this.helperIndices.entrySet()) {
+            this.addHelperMethod(helper.getValue(), helper.getKey());
+        }
+        this.addHelperMethod(rootIndex, expr);
+        this.addEvaluateMethod(rootIndex);
+
+        return this.classFile.toByteArray();
+    }
+
+    /**
+     * Validates the given expression and returns the number of bytes of code needed
+     * to compute it inline, moving children into helpers until that is at most
+     * METHOD_SIZE_LIMIT.
+     */
+    private int plan(AstNode node) {
+        if (node.isNumber()) {
+            // ldc2_w
+            return 3;
+        } else if (node.isVariable()) {
+            String name = node.getName();
+            if (this.resolver.parameterIndex(name) != -1) {
+                // aload_0, sipush, daload
+                return 5;
+            }
+            int cost = this.plan(this.resolver.beginExpanding(name));
+            this.resolver.endExpanding(name);
+            return cost;
+        } else {
+            Integer known = this.costs.get(node);
+            if (known != null) {
+                return known;
+            }
+
+            Operator op = VariableResolver.lookupOperator(node);
+            IList<AstNode> children = node.getChildren();
+            int cost = op == Operator.POWER || op == Operator.SIN || op == Operator.COS ? 3 : 1;
+            int[] childCosts = new int[children.size()];
+            for (int i = 0; i < childCosts.length; i++) {
+                childCosts[i] = this.plan(children.get(i));
+                cost += childCosts[i];
+            }
+
+            // Every child fits in a method by now, so splitting off the largest ones
+            // always works (and only splits off operations)
+            while (cost > METHOD_SIZE_LIMIT) {
+                int largest = 0;
+                for (int i = 1; i < childCosts.length; i++) {
+                    if (childCosts[i] > childCosts[largest]) {
+                        largest = i;
+                    }
+                }
+                AstNode helper = this.operationFor(children.get(largest));
+                this.helperIndices.put(helper, this.helperIndices.size());
+                this.costs.put(helper, HELPER_CALL_SIZE);
+                cost -= childCosts[largest] - HELPER_CALL_SIZE;
+                childCosts[largest] = HELPER_CALL_SIZE;
+            }
+            this.costs.put(node, cost);
+            return cost;
+        }
+    }
+
+    /**
+     * Returns the node the given one compiles to: the definition at the end of a
+     * chain of (non-parameter) variables, or the node itself.
+     */
+    private AstNode operationFor(AstNode node) {
+        while (node.isVariable() && this.resolver.parameterIndex(node.getName()) == -1) {
+            String name = node.getName();
+            node = this.resolver.beginExpanding(name);
+            this.resolver.endExpanding(name);
+        }
+        return node;
+    }
+
+    private void addConstructor() {
+        CodeBuffer code = new CodeBuffer();
+        code.writeByte(ClassFileBuilder.ALOAD_0);
+        code.writeByte(ClassFileBuilder.INVOKESPECIAL);
+        code.writeShort(this.classFile.methodConstant("java/lang/Object", "<init>", "()V"));
+        code.writeByte(ClassFileBuilder.RETURN);
+        this.classFile.addMethod(ClassFileBuilder.ACC_PUBLIC, "<init>", "()V", 1, 1, code.toByteArray());
+    }
+
+    private void addEvaluateMethod(int rootIndex) {
+        CodeBuffer code = new CodeBuffer();
+        code.writeByte(ClassFileBuilder.ALOAD_1);
+        code.writeByte(ClassFileBuilder.INVOKESTATIC);
+        code.writeShort(this.helperConstant(rootIndex));
+        code.writeByte(ClassFileBuilder.DRETURN);
+        this.classFile.addMethod(
+                ClassFileBuilder.ACC_PUBLIC | ClassFileBuilder.ACC_FINAL,
+                "evaluate", HELPER_DESCRIPTOR, 2, 2, code.toByteArray());
+    }
+
+    private int helperConstant(int index) {
+        return this.classFile.methodConstant(CLASS_NAME, "part" + index, HELPER_DESCRIPTOR);
+    }
+
+    /**
+     * Adds a 'private static double part<index>(double[] args)' method computing
+     * the given node.
+     */
+    private void addHelperMethod(int index, AstNode node) {
+        CodeBuffer code = new CodeBuffer();
+        this.emitInline(code, node);
+        code.writeByte(ClassFileBuilder.DRETURN);
+        this.classFile.addMethod(
+                ClassFileBuilder.ACC_PRIVATE | ClassFileBuilder.ACC_STATIC,
+                "part" + index, HELPER_DESCRIPTOR, code.getMaxStack(), 1, code.toByteArray());
+    }
+
+    /**
+     * Emits code that pushes the value of the given node, calling the node's helper
+     * method if it has one.
+     */
+    private void emit(CodeBuffer code, AstNode node) {
+        Integer helperIndex = node.isOperation() ? this.helperIndices.get(node) : null;
+        if (helperIndex != null) {
+            code.writeByte(ClassFileBuilder.ALOAD_0);
+            code.writeByte(ClassFileBuilder.INVOKESTATIC);
+            code.writeShort(this.helperConstant(helperIndex));
+            code.push(1);
+            code.pop(1);
+            code.push(2);
+        } else {
+            this.emitInline(code, node);
+        }
+    }
+
+    /**
+     * Emits code that pushes the value of the given node, ignoring whether the
+     * node itself has a helper method (its children may still use theirs).
+     */
+    private void emitInline(CodeBuffer code, AstNode node) {
+        if (node.isNumber()) {
+            this.emitConstant(code, node.getNumericValue());
+        } else if (node.isVariable()) {
+            String name = node.getName();
+            int index = this.resolver.parameterIndex(name);
+            if (index == -1) {
+                this.emit(code, this.resolver.beginExpanding(name));
+                this.resolver.endExpanding(name);
+            } else {
+                this.emitParameter(code, index);
+            }
+        } else {
+            Operator op = VariableResolver.lookupOperator(node);
+            for (AstNode child : node.getChildren()) {
+                this.emit(code, child);
+            }
+            this.emitOperator(code, op);
+        }
+    }
+
+    private void emitConstant(CodeBuffer code, double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        if (bits == Double.doubleToRawLongBits(0.0)) {
+            code.writeByte(ClassFileBuilder.DCONST_0);
+        } else if (bits == Double.doubleToRawLongBits(1.0)) {
+            code.writeByte(ClassFileBuilder.DCONST_1);
+        } else {
+            code.writeByte(ClassFileBuilder.LDC2_W);
+            code.writeShort(this.classFile.doubleConstant(value));
+        }
+        code.push(2);
+    }
+
+    private void emitParameter(CodeBuffer code, int index) {
+        code.writeByte(ClassFileBuilder.ALOAD_0);
+        code.push(1);
+        if (index <= 5) {
+            code.writeByte(ClassFileBuilder.ICONST_0 + index);
+        } else if (index <= Byte.MAX_VALUE) {
+            code.writeByte(ClassFileBuilder.BIPUSH);
+            code.writeByte(index);
+        } else {
+            code.writeByte(ClassFileBuilder.SIPUSH);
+            code.writeShort(index);
+        }
+        code.push(1);
+        code.writeByte(ClassFileBuilder.DALOAD);
+        code.pop(2);
+        code.push(2);
+    }
+
+    private void emitOperator(CodeBuffer code, Operator op) {
+        switch (op) {
+            case ADD:
+                code.writeByte(ClassFileBuilder.DADD);
+                code.pop(2);
+                break;
+            case SUBTRACT:
+                code.writeByte(ClassFileBuilder.DSUB);
+                code.pop(2);
+                break;
+            case MULTIPLY:
+                code.writeByte(ClassFileBuilder.DMUL);
+                code.pop(2);
+                break;
+            case DIVIDE:
+                code.writeByte(ClassFileBuilder.DDIV);
+                code.pop(2);
+                break;
+            case POWER:
+                code.writeByte(ClassFileBuilder.INVOKESTATIC);
+                code.writeShort(this.classFile.methodConstant(MATH, "pow", "(DD)D"));
+                code.pop(2);
+                break;
+            case NEGATE:
+                code.writeByte(ClassFileBuilder.DNEG);
+                break;
+            case SIN:
+                code.writeByte(ClassFileBuilder.INVOKESTATIC);
+                code.writeShort(this.classFile.methodConstant(MATH, "sin", "(D)D"));
+                break;
+            case COS:
+                code.writeByte(ClassFileBuilder.INVOKESTATIC);
+                code.writeShort(this.classFile.methodConstant(MATH, "cos", "(D)D"));
+                break;
+            default:
+                throw new AssertionError("Unhandled operator " + op);
+        }
+    }
+
+    private static CompiledExpression instantiate(byte[] bytes) {
+        try {
+            return (CompiledExpression) defineClass(bytes).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new EvaluationError("Unexpected fatal error instantiating compiled expression", ex);
+        }
+    }
+
+    private static Class<?> defineClass(byte[] bytes) throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Method defineHiddenClass = findDefineHiddenClass();
+        if (defineHiddenClass == null) {
+            return new GeneratedClassLoader(ExpressionCompiler.class.getClassLoader()).define(bytes);
+        }
+        try {
+            Object noOptions = Array.newInstance(defineHiddenClass.getParameterTypes()[2].getComponentType(), 0);
+            Object hiddenLookup = defineHiddenClass.invoke(lookup, bytes, true, noOptions);
+            return ((MethodHandles.Lookup) hiddenLookup).lookupClass();
+        } catch (InvocationTargetException ex) {
+            throw new EvaluationError("Unexpected fatal error defining compiled expression", ex.getCause());
+        }
+    }
+
+    /**
+     * Returns 'Lookup.defineHiddenClass' if this JVM has it (Java 15+), or null.
+     *
+     * We look it up reflectively so this class still compiles on older JDKs.
+     */
+    private static Method findDefineHiddenClass() {
+        for (Method method : MethodHandles.Lookup.class.getMethods()) {
+            if (method.getName().equals("defineHiddenClass") && method.getParameterCount() == 3) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static class GeneratedClassLoader extends ClassLoader {
+        public GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public Class<?> define(byte[] bytes) {
+            return this.defineClass(CLASS_NAME.replace('/', '.'), bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * A growable buffer of bytecode that also tracks the maximum operand stack
+     * depth (in slots; a double takes two) reached by the code written so far.
+     */
+    private static class CodeBuffer extends ByteArrayOutputStream {
+        private int depth;
+        private int maxDepth;
+
+        public void writeByte(int value) {
+            this.write(value);
+        }
+
+        public void writeShort(int value) {
+            this.write(value >>> 8);
+            this.write(value);
+        }
+
+        public void push(int slots) {
+            this.depth += slots;
+            this.maxDepth = Math.max(this.maxDepth, this.depth);
+        }
+
+        public void pop(int slots) {
+            this.depth -= slots;
+        }
+
+        public int getMaxStack() {
+            return this.maxDepth;
+        }
+    }
+}
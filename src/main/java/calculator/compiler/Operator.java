@@ -0,0 +1,55 @@
+package calculator.compiler;
+
+/**
+ * Every operation the calculator knows how to evaluate numerically.
+ *
+ * Resolving an operation name to one of these constants once, up front, lets
+ * evaluators avoid comparing strings every time they visit a node.
+ */
+public enum Operator {
+    ADD("+", 2),
+    SUBTRACT("-", 2),
+    MULTIPLY("*", 2),
+    DIVIDE("/", 2),
+    POWER("^", 2),
+    NEGATE("negate", 1),
+    SIN("sin", 1),
+    COS("cos", 1);
+
+    private static final Operator[] ALL = values();
+
+    private final String name;
+    private final int arity;
+
+    Operator(String name, int arity) {
+        this.name = name;
+        this.arity = arity;
+    }
+
+    /**
+     * Returns the name of the AstNode operation this operator corresponds to.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the number of arguments this operator takes.
+     */
+    public int getArity() {
+        return this.arity;
+    }
+
+    /**
+     * Returns the operator with the given name that takes the given number of
+     * arguments, or null if there is no such operator.
+     */
+    public static Operator lookup(String name, int arity) {
+        for (Operator op : ALL) {
+            if (op.arity == arity && op.name.equals(name)) {
+                return op;
+            }
+        }
+        return null;
+    }
+}
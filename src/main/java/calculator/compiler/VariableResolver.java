@@ -0,0 +1,77 @@
+package calculator.compiler;
+
+import calculator.ast.AstNode;
+import calculator.errors.EvaluationError;
+import datastructures.interfaces.IDictionary;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Resolves the names in an expression the same way 'toDouble' does, for use by
+ * the compilers in this package.
+ *
+ * Parameters become slot indices. Every other variable is replaced by its definition;
+ * the resolver keeps track of which variables are currently being expanded so that a
+ * variable (indirectly) defined in terms of itself is reported as an error instead of
+ * recursing forever.
+ */
+class VariableResolver {
+    private final IDictionary<String, AstNode> variables;
+    private final String[] parameters;
+    private final Set<String> variablesBeingExpanded;
+
+    public VariableResolver(IDictionary<String, AstNode> variables, String[] parameters) {
+        this.variables = variables;
+        this.parameters = parameters;
+        this.variablesBeingExpanded = new HashSet<>();
+    }
+
+    /**
+     * Returns the index of the given variable in the parameter list, or -1 if it
+     * is not a parameter.
+     */
+    public int parameterIndex(String name) {
+        for (int i = 0; i < this.parameters.length; i++) {
+            if (this.parameters[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the definition of the given (non-parameter) variable and marks it as
+     * being expanded. Every call must be paired with a call to 'endExpanding'.
+     *
+     * @throws EvaluationError  if the variable is undefined
+     * @throws EvaluationError  if the variable is already being expanded
+     */
+    public AstNode beginExpanding(String name) {
+        AstNode definition = this.variables.getOrDefault(name, null);
+        if (definition == null) {
+            throw new EvaluationError("Undefined variable");
+        }
+        if (!this.variablesBeingExpanded.add(name)) {
+            throw new EvaluationError("Variable '" + name + "' is defined in terms of itself");
+        }
+        return definition;
+    }
+
+    public void endExpanding(String name) {
+        this.variablesBeingExpanded.remove(name);
+    }
+
+    /**
+     * Returns the operator the given operation node applies.
+     *
+     * @throws EvaluationError  if the operation is unknown
+     */
+    public static Operator lookupOperator(AstNode node) {
+        Operator op = Operator.lookup(node.getName(), node.getChildren().size());
+        if (op == null) {
+            throw new EvaluationError("Unknown operation");
+        }
+        return op;
+    }
+}
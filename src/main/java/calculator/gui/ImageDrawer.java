@@ -1,5 +1,6 @@
 package calculator.gui;
 
+import datastructures.concrete.DoubleArrayList;
 import datastructures.interfaces.IList;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
@@ -113,6 +114,23 @@ public class ImageDrawer implements ImageObserver {
                 new Rectangle2D.Double(0, 0, this.width, this.height));
     }
 
+    /**
+     * Draws a scatter plot that occupies the entire window, just like the version
+     * that takes an IList, but without boxing or copying any of the coordinates.
+     *
+     * @param title       The title of the scatter plot. To hide the title, pass in the empty string.
+     * @param xAxisLabel  The label for the x axis
+     * @param yAxisLabel  The label for the y axis
+     * @param xValues     The x coordinate values to plot
+     * @param yValues     The y coordinate values to plot
+     */
+    public void drawScatterPlot(String title, String xAxisLabel, String yAxisLabel,
+                                DoubleArrayList xValues, DoubleArrayList yValues) {
+        // DoubleArrayList is an IList, so this goes through the overridable IList version,
+        // which recognizes it and reads the primitive values directly
+        this.drawScatterPlot(title, xAxisLabel, yAxisLabel, (IList<Double>) xValues, (IList<Double>) yValues);
+    }
+
     /**
      * Draws a scatter plot that occupies the given portion of the window.
      *
@@ -136,15 +154,23 @@ public class ImageDrawer implements ImageObserver {
             throw new IllegalArgumentException("Number of 'x' values and 'y' values are not the same.");
         }
 
-        Iterator<Double> xIter = xValues.iterator();
-        Iterator<Double> yIter = yValues.iterator();
+        DoubleArrayList xs = toDoubleArrayList(xValues);
+        DoubleArrayList ys = toDoubleArrayList(yValues);
+
+        // There is no point handing JFreeChart more points than it has pixels to
+        // draw them on, so we keep only the ones that are actually visible.
+        int[] visible = PlotDownsampler.downsample(
+                xs, ys, Math.max(1, (int) Math.ceil(drawRegion.getWidth())));
 
         // We pair the elements together and add them to a series.
         // We pick an arbitrary name for this series -- the user will never
         // see it because we hide the legend anyways.
-        XYSeries series = new XYSeries("Series 1");
-        while (xIter.hasNext()) {
-            series.add(xIter.next(), yIter.next());
+        //
+        // A scatter plot doesn't care what order its points are in, so we ask the
+        // series not to keep them sorted, and not to send out a change event per point.
+        XYSeries series = new XYSeries("Series 1", false, true);
+        for (int index : visible) {
+            series.add(xs.getDouble(index), ys.getDouble(index), false);
         }
 
         // We add our series to the series collection. A SeriesCollection
@@ -167,6 +193,20 @@ public class ImageDrawer implements ImageObserver {
         chart.draw(g2, drawRegion);
     }
 
+    /**
+     * Returns the given list as a DoubleArrayList, copying it only if it isn't one already.
+     */
+    private static DoubleArrayList toDoubleArrayList(IList<Double> values) {
+        if (values instanceof DoubleArrayList) {
+            return (DoubleArrayList) values;
+        }
+        DoubleArrayList copy = new DoubleArrayList(values.size());
+        for (double value : values) {
+            copy.addDouble(value);
+        }
+        return copy;
+    }
+
     @Override
     public boolean imageUpdate(Image img, int infoflags, int x, int y, int newWidth, int newHeight) {
         boolean widthReady = (infoflags & ImageObserver.WIDTH) != 0;
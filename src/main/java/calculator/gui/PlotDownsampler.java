@@ -0,0 +1,90 @@
+package calculator.gui;
+
+import datastructures.concrete.DoubleArrayList;
+
+import java.util.Arrays;
+
+/**
+ * Picks which points of a scatter plot are worth drawing.
+ *
+ * A chart can't show more detail than it has pixels, so once there are more points
+ * than columns of pixels, most of them are drawn on top of each other. For every
+ * pixel column we keep only the points with the smallest and largest y value, so
+ * the result has at most two points per column but still shows every peak and
+ * every trough exactly where it was.
+ */
+public class PlotDownsampler {
+    /**
+     * Returns the indices of the points worth drawing on a chart 'numColumns' pixels
+     * wide, in increasing order within each column.
+     *
+     * Points whose x or y value is NaN can never be drawn, so they are left out.
+     * If there are few enough points to draw them all, returns every index.
+     *
+     * @throws IllegalArgumentException  if 'numColumns' is not positive
+     * @throws IllegalArgumentException  if the lists are not the same size
+     */
+    public static int[] downsample(DoubleArrayList xValues, DoubleArrayList yValues, int numColumns) {
+        if (numColumns <= 0) {
+            throw new IllegalArgumentException("numColumns must be positive");
+        }
+        if (xValues.size() != yValues.size()) {
+            throw new IllegalArgumentException("Number of 'x' values and 'y' values are not the same.");
+        }
+        int length = xValues.size();
+        if (length <= 2 * numColumns) {
+            int[] all = new int[length];
+            for (int i = 0; i < length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        double xMin = Double.POSITIVE_INFINITY;
+        double xMax = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < length; i++) {
+            double x = xValues.getDouble(i);
+            if (!Double.isNaN(x) && !Double.isNaN(yValues.getDouble(i))) {
+                xMin = Math.min(xMin, x);
+                xMax = Math.max(xMax, x);
+            }
+        }
+        // If every x value is the same (or there are no drawable points), one column will do
+        double columnsPerUnit = xMax > xMin ? numColumns / (xMax - xMin) : 0.0;
+
+        int[] lowest = new int[numColumns];
+        int[] highest = new int[numColumns];
+        Arrays.fill(lowest, -1);
+        Arrays.fill(highest, -1);
+        for (int i = 0; i < length; i++) {
+            double x = xValues.getDouble(i);
+            double y = yValues.getDouble(i);
+            if (Double.isNaN(x) || Double.isNaN(y)) {
+                continue;
+            }
+            int column = Math.min((int) ((x - xMin) * columnsPerUnit), numColumns - 1);
+            if (lowest[column] == -1) {
+                lowest[column] = i;
+                highest[column] = i;
+            } else if (y < yValues.getDouble(lowest[column])) {
+                lowest[column] = i;
+            } else if (y > yValues.getDouble(highest[column])) {
+                highest[column] = i;
+            }
+        }
+
+        int[] chosen = new int[2 * numColumns];
+        int numChosen = 0;
+        for (int column = 0; column < numColumns; column++) {
+            if (lowest[column] != -1) {
+                chosen[numChosen] = Math.min(lowest[column], highest[column]);
+                numChosen += 1;
+                if (lowest[column] != highest[column]) {
+                    chosen[numChosen] = Math.max(lowest[column], highest[column]);
+                    numChosen += 1;
+                }
+            }
+        }
+        return Arrays.copyOf(chosen, numChosen);
+    }
+}
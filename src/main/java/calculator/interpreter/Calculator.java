@@ -1,32 +1,45 @@
 package calculator.interpreter;
 
+import calculator.ast.AstCodec;
+import calculator.ast.AstInterner;
 import calculator.ast.AstManipulator;
 import calculator.ast.AstNode;
-import calculator.ast.BuiltinManipulators;
-import calculator.ast.ControlFlowManipulators;
-import calculator.ast.ExpressionManipulators;
+import calculator.ast.DependencyGraph;
+import calculator.ast.SimplificationMode;
+import calculator.ast.SimplifyCache;
+import calculator.compiler.EvaluationMode;
 import calculator.gui.ImageDrawer;
+import calculator.parser.ParseCache;
 import calculator.parser.Parser;
-import datastructures.concrete.DoubleLinkedList;
-import datastructures.concrete.dictionaries.ArrayDictionary;
-import datastructures.interfaces.IDictionary;
+import calculator.parser.ParsingMode;
+import calculator.parser.PrattParser;
+import datastructures.concrete.ArrayList;
+import datastructures.concrete.dictionaries.PersistentHashDictionary;
 import datastructures.interfaces.IList;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Iterator;
 
 public class Calculator {
     // Components used by the calculator
     private Parser parser;
+    private PrattParser prattParser;
+    private ParseCache parseCache;
     private Interpreter interpreter;
 
     // State
-    private IDictionary<String, AstNode> variables;
+    private PersistentHashDictionary<String, AstNode> variables;
     private ImageDrawer imageDrawer;
+    private EvaluationMode evaluationMode;
+    private SimplifyCache simplifyCache;
+    private DependencyGraph dependencyGraph;
+    private SimplificationMode simplificationMode;
+    private ParsingMode parsingMode;
 
     // Internal data
-    private IDictionary<String, AstManipulator> customFunctions;
-    private IDictionary<String, AstManipulator> specialFunctions;
-    private IDictionary<String, Integer> precedenceMap;
+    private FunctionRegistry functions;
 
     private static final int STRONGEST_PRECEDENCE = 0;
     private static final int WEAKEST_PRECEDENCE = Integer.MAX_VALUE;
@@ -36,43 +49,129 @@ public class Calculator {
     }
 
     public Calculator(ImageDrawer imageDrawer) {
+        this(imageDrawer, SimplifyCache.DEFAULT_CAPACITY, ParseCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a calculator whose caches hold at most the given number of entries. Each
+     * entry costs on the order of a hundred bytes, so these bound how much memory the
+     * calculator uses on top of its variables.
+     */
+    public Calculator(ImageDrawer imageDrawer, int simplifyCacheCapacity, int parseCacheCapacity) {
         this.parser = new Parser();
+        this.prattParser = new PrattParser();
+        this.parseCache = new ParseCache(parseCacheCapacity);
         this.interpreter = new Interpreter();
 
-        this.variables = new ArrayDictionary<>();
+        // Persistent, so Environment.pushScope can copy it in O(1) time
+        this.variables = new PersistentHashDictionary<>();
         this.imageDrawer = imageDrawer;
+        this.evaluationMode = EvaluationMode.PARALLEL_BATCH;
+        this.simplifyCache = new SimplifyCache(simplifyCacheCapacity);
+        this.dependencyGraph = new DependencyGraph();
+        this.simplificationMode = SimplificationMode.CONSTANT_FOLDING;
+        this.parsingMode = ParsingMode.ANTLR;
 
-        this.customFunctions = new ArrayDictionary<>();
-        this.specialFunctions = new ArrayDictionary<>();
-        this.precedenceMap = new ArrayDictionary<>();
+        // Shared with every other calculator: it never changes
+        this.functions = FunctionRegistry.BUILTINS;
+    }
 
-        // Your functions
-        this.customFunctions.put("simplify", ExpressionManipulators::handleSimplify);
-        this.customFunctions.put("toDouble", ExpressionManipulators::handleToDouble);
-        this.customFunctions.put("plot", ExpressionManipulators::plot);
+    public void setImageDrawer(ImageDrawer imageDrawer) {
+        this.imageDrawer = imageDrawer;
+    }
 
-        // Internal functions (that need to manipulate control flow or the environment somehow)
-        this.specialFunctions.put("block", BuiltinManipulators::handleBlock);
-        this.specialFunctions.put("assign", BuiltinManipulators::handleAssign);
-        this.specialFunctions.put("quit", BuiltinManipulators::handleQuit);
-        this.specialFunctions.put("exit", BuiltinManipulators::handleQuit);
-        this.specialFunctions.put("clear", BuiltinManipulators::handleClear);
+    public void setEvaluationMode(EvaluationMode evaluationMode) {
+        this.evaluationMode = evaluationMode;
+    }
 
-        // Code you may implement for extra credit
-        this.specialFunctions.put("randomlyPick", ControlFlowManipulators::handleRandomlyPick);
-        this.specialFunctions.put("if", ControlFlowManipulators::handleIf);
-        this.specialFunctions.put("repeat", ControlFlowManipulators::handleRepeat);
+    public void setSimplificationMode(SimplificationMode simplificationMode) {
+        // Everything we remember was simplified the old way
+        this.simplificationMode = simplificationMode;
+        this.simplifyCache.clear();
+        this.dependencyGraph.clearSimplifiedValues();
+    }
 
-        this.precedenceMap.put("^", 1);
-        this.precedenceMap.put("negate", 2);
-        this.precedenceMap.put("*", 3);
-        this.precedenceMap.put("/", 3);
-        this.precedenceMap.put("+", 4);
-        this.precedenceMap.put("-", 4);
+    public void setParsingMode(ParsingMode parsingMode) {
+        // Both parsers produce the same ASTs, so the parse cache stays valid
+        this.parsingMode = parsingMode;
     }
 
-    public void setImageDrawer(ImageDrawer imageDrawer) {
-        this.imageDrawer = imageDrawer;
+    /**
+     * Returns the functions this calculator knows about.
+     */
+    public FunctionRegistry getFunctionRegistry() {
+        return this.functions;
+    }
+
+    /**
+     * Replaces every function this calculator knows about. Registries are immutable,
+     * so many calculators can share one.
+     */
+    public void setFunctionRegistry(FunctionRegistry functions) {
+        this.functions = functions;
+    }
+
+    /**
+     * Adds a custom function to this calculator only (or replaces one). Its arguments
+     * are evaluated before it's called, like those of 'simplify' or 'toDouble'.
+     *
+     * @throws IllegalArgumentException  if the name belongs to a special function
+     */
+    public void defineFunction(String name, AstManipulator manipulator) {
+        // Other calculators may be sharing our registry, so we replace it rather than change it
+        this.functions = this.functions.withCustomFunction(name, manipulator);
+    }
+
+    /**
+     * Returns the cache 'simplify' uses, mainly so its hit and miss counts can be checked.
+     */
+    public SimplifyCache getSimplifyCache() {
+        return this.simplifyCache;
+    }
+
+    /**
+     * Returns the cache of parsed inputs, mainly so its hit and miss counts can be checked.
+     */
+    public ParseCache getParseCache() {
+        return this.parseCache;
+    }
+
+    /**
+     * Writes the definition of every variable to 'out', in the compact binary form
+     * described in AstCodec, so 'restore' can bring them back later (or in another
+     * calculator). Nothing else about the calculator, such as its modes or defined
+     * functions, is saved. Flushes 'out', but doesn't close it.
+     */
+    public void snapshot(OutputStream out) throws IOException {
+        IList<String> names = new ArrayList<>();
+        IList<AstNode> values = new ArrayList<>();
+        this.variables.forEach((name, value) -> {
+            names.add(name);
+            values.add(value);
+        });
+        AstCodec.write(out, names, values);
+    }
+
+    /**
+     * Replaces every variable with the ones saved by 'snapshot'. If the snapshot can't
+     * be read, the variables are left as they were.
+     *
+     * @throws IOException  if reading fails, or the data isn't a snapshot
+     */
+    public void restore(InputStream in) throws IOException {
+        IList<String> names = new ArrayList<>();
+        IList<AstNode> values = new ArrayList<>();
+        AstCodec.read(in, names, values);
+
+        // Everything we remember was computed from the old variables
+        this.variables = new PersistentHashDictionary<>();
+        this.dependencyGraph = new DependencyGraph();
+        this.simplifyCache.clear();
+
+        Environment env = this.prepareEnvironment();
+        for (int i = 0; i < names.size(); i++) {
+            env.setVariable(names.get(i), values.get(i));
+        }
     }
 
     public String evaluate(String input) {
@@ -80,19 +179,34 @@ public class Calculator {
             return "";
         }
         Environment env = this.prepareEnvironment();
-        AstNode ast = this.parser.parse(input + "\n");
+        AstNode ast = this.parseCache.get(input);
+        if (ast == null) {
+            ast = this.parse(input + "\n");
+            this.parseCache.put(input, ast);
+        }
         AstNode normalizedAst = injectSimplify(env, ast);
         AstNode output = this.interpreter.evaluate(env, normalizedAst);
         return this.convertToString(output);
     }
 
+    private AstNode parse(String input) {
+        if (this.parsingMode == ParsingMode.PRATT) {
+            return this.prattParser.parse(input);
+        } else {
+            return this.parser.parse(input);
+        }
+    }
+
     private Environment prepareEnvironment() {
         return new Environment(
                 this.variables,
                 this.imageDrawer,
-                this.customFunctions,
-                this.specialFunctions,
-                this.interpreter);
+                this.functions,
+                this.interpreter,
+                this.evaluationMode,
+                this.simplifyCache,
+                this.dependencyGraph,
+                this.simplificationMode);
     }
 
     private static AstNode injectSimplify(Environment env, AstNode node) {
@@ -105,19 +219,12 @@ public class Calculator {
         } else if (node.isVariable()) {
             return node;
         } else {
-            IList<AstNode> newChildren = new DoubleLinkedList<>();
-            for (AstNode oldChild : node.getChildren()) {
-                newChildren.add(injectSimplifyHelper(env, oldChild));
-            }
-
-            if (env.getSpecialFunctions().containsKey(node.getName())) {
-                for (int i = 0; i < newChildren.size(); i++) {
-                    newChildren.set(i, wrapSimplifyFunc(newChildren.get(i)));
-                }
+            AstNode withChildren = node.mapChildren(child -> injectSimplifyHelper(env, child));
 
-                return wrapSimplifyFunc(new AstNode(node.getName(), newChildren));
+            if (env.getFunctionRegistry().isSpecialFunction(node.getName())) {
+                return wrapSimplifyFunc(withChildren.mapChildren(Calculator::wrapSimplifyFunc));
             } else {
-                return new AstNode(node.getName(), newChildren);
+                return withChildren;
             }
         }
     }
@@ -126,9 +233,9 @@ public class Calculator {
         if (inner.isOperation() && inner.getName().equals("simplify")) {
             return inner;
         } else {
-            IList<AstNode> children = new DoubleLinkedList<>();
+            IList<AstNode> children = new ArrayList<>(1);
             children.add(inner);
-            return new AstNode("simplify", children);
+            return AstInterner.operation("simplify", children);
         }
     }
 
@@ -154,11 +261,11 @@ public class Calculator {
         } else {
             String name = node.getName();
 
-            boolean hasPrecedence = this.precedenceMap.containsKey(name);
-            int currPrecedenceLevel = hasPrecedence ? this.precedenceMap.get(name) : STRONGEST_PRECEDENCE;
+            boolean hasPrecedence = this.functions.hasPrecedence(name);
+            int currPrecedenceLevel = this.functions.getPrecedence(name, STRONGEST_PRECEDENCE);
             int childPrecedenceLevel = hasPrecedence ? currPrecedenceLevel : WEAKEST_PRECEDENCE;
 
-            IList<String> children = new DoubleLinkedList<>();
+            IList<String> children = new ArrayList<>(node.getChildren().size());
             for (AstNode child : node.getChildren()) {
                 children.add(this.convertToString(child, childPrecedenceLevel));
             }
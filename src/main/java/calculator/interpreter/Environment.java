@@ -1,9 +1,14 @@
 package calculator.interpreter;
 
 import calculator.ast.AstNode;
-import calculator.ast.AstManipulator;
+import calculator.ast.DependencyGraph;
+import calculator.ast.SimplificationMode;
+import calculator.ast.SimplifyCache;
+import calculator.compiler.EvaluationMode;
 import calculator.gui.ImageDrawer;
+import datastructures.concrete.dictionaries.PersistentHashDictionary;
 import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
 
 /**
  * An 'Environment' object is a wrapper around every single item in
@@ -23,29 +28,104 @@ import datastructures.interfaces.IDictionary;
 public class Environment {
     private IDictionary<String, AstNode> variables;
     private ImageDrawer imageDrawer;
-    private IDictionary<String, AstManipulator> customFunctions;
-    private IDictionary<String, AstManipulator> specialFunctions;
+    private FunctionRegistry functions;
     private Interpreter interpreter;
+    private EvaluationMode evaluationMode;
+    private SimplifyCache simplifyCache;
+    private DependencyGraph dependencyGraph;
+    private SimplificationMode simplificationMode;
 
+    /**
+     * Creates an environment out of the given collaborators. The simplify cache and
+     * the dependency graph remember things about 'variables', so they must only ever
+     * be used with that dictionary (a Calculator keeps all four together).
+     */
     public Environment(IDictionary<String, AstNode> variables,
                        ImageDrawer imageDrawer,
-                       IDictionary<String, AstManipulator> customFunctions,
-                       IDictionary<String, AstManipulator> specialFunctions,
-                       Interpreter interpreter) {
+                       FunctionRegistry functions,
+                       Interpreter interpreter,
+                       EvaluationMode evaluationMode,
+                       SimplifyCache simplifyCache,
+                       DependencyGraph dependencyGraph,
+                       SimplificationMode simplificationMode) {
         this.variables = variables;
         this.imageDrawer = imageDrawer;
-        this.customFunctions = customFunctions;
-        this.specialFunctions = specialFunctions;
+        this.functions = functions;
         this.interpreter = interpreter;
+        this.evaluationMode = evaluationMode;
+        this.simplifyCache = simplifyCache;
+        this.dependencyGraph = dependencyGraph;
+        this.simplificationMode = simplificationMode;
     }
 
     /**
      * Contains a map of every single currently defined variable.
+     *
+     * To change a variable, use 'setVariable' or 'removeVariable' instead of modifying
+     * this map directly, so the values cached for other variables are kept up to date.
      */
     public IDictionary<String, AstNode> getVariables() {
         return this.variables;
     }
 
+    /**
+     * Defines (or redefines) the given variable, and forgets every cached value that
+     * depended on its old definition.
+     */
+    public void setVariable(String name, AstNode value) {
+        this.variables.put(name, value);
+        this.variablesChanged(this.dependencyGraph.define(name, value));
+    }
+
+    /**
+     * Undefines the given variable if it's defined, and forgets every cached value that
+     * depended on it.
+     */
+    public void removeVariable(String name) {
+        if (this.variables.containsKey(name)) {
+            this.variables.remove(name);
+        }
+        this.variablesChanged(this.dependencyGraph.remove(name));
+    }
+
+    /**
+     * Returns a new environment that starts out with the same variables as this one,
+     * but whose variables can be changed without affecting this one (and vice versa),
+     * for binding variables temporarily. Scopes can be nested.
+     *
+     * The scope's variables are always a PersistentHashDictionary, which shares its
+     * contents with its copies. If this environment's variables are one too (as a
+     * Calculator's are), this takes O(1) time; otherwise they're copied into one, in
+     * O(n) time, and scopes pushed from the new scope are O(1) again. Each binding in
+     * the scope then takes O(log n) time. The scope gets its own (initially empty)
+     * caches, so values cached while a variable is bound never leak out of the
+     * scope, and scopes used by different threads share nothing that changes.
+     */
+    public Environment pushScope() {
+        PersistentHashDictionary<String, AstNode> scopeVariables;
+        if (this.variables instanceof PersistentHashDictionary) {
+            scopeVariables = ((PersistentHashDictionary<String, AstNode>) this.variables).copy();
+        } else {
+            scopeVariables = new PersistentHashDictionary<>();
+            this.variables.forEach(scopeVariables::put);
+        }
+        return new Environment(
+                scopeVariables,
+                this.imageDrawer,
+                this.functions,
+                this.interpreter,
+                this.evaluationMode,
+                new SimplifyCache(),
+                new DependencyGraph(),
+                this.simplificationMode);
+    }
+
+    private void variablesChanged(IList<String> names) {
+        for (String name : names) {
+            this.simplifyCache.variableChanged(name);
+        }
+    }
+
     /**
      * Returns a class that contains a variety of useful methods for
      * drawing and plotting data.
@@ -62,31 +142,59 @@ public class Environment {
     }
 
     /**
-     * Returns all custom functions that manipulate an expression in some way.
+     * Returns every function and operator the calculator knows about.
+     *
+     * You should ignore this method.
+     */
+    public FunctionRegistry getFunctionRegistry() {
+        return this.functions;
+    }
+
+    /**
+     * Returns the interpreter that is currently executing the AST.
+     *
+     * You should ignore this method, unless you are working on the
+     * extra credit and are trying to add control flow to our calculator.
+     */
+    public Interpreter getInterpreter() {
+        return this.interpreter;
+    }
+
+    /**
+     * Returns how expressions should be evaluated numerically (by 'toDouble' and 'plot').
      *
      * You should ignore this method.
      */
-    public IDictionary<String, AstManipulator> getCustomFunctions() {
-        return this.customFunctions;
+    public EvaluationMode getEvaluationMode() {
+        return this.evaluationMode;
     }
 
     /**
-     * Returns all functions that manipulate the flow of execution in a special way
-     * somehow.
+     * Returns the cache of previously simplified subtrees. Anything that changes a
+     * variable must tell the cache about it (which 'setVariable' does).
      *
      * You should ignore this method.
      */
-    public IDictionary<String, AstManipulator> getSpecialFunctions() {
-        return this.specialFunctions;
+    public SimplifyCache getSimplifyCache() {
+        return this.simplifyCache;
     }
 
     /**
-     * Returns the interpreter that is currently executing the AST.
+     * Returns the graph of which variables depend on which, along with the values
+     * cached for each variable.
      *
-     * You should ignore this method, unless you are working on the
-     * extra credit and are trying to add control flow to our calculator.
+     * You should ignore this method.
      */
-    public Interpreter getInterpreter() {
-        return this.interpreter;
+    public DependencyGraph getDependencyGraph() {
+        return this.dependencyGraph;
+    }
+
+    /**
+     * Returns how 'simplify' should rewrite expressions.
+     *
+     * You should ignore this method.
+     */
+    public SimplificationMode getSimplificationMode() {
+        return this.simplificationMode;
     }
 }
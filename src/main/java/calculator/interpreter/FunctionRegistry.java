@@ -0,0 +1,159 @@
+package calculator.interpreter;
+
+import calculator.ast.AstManipulator;
+import calculator.ast.BuiltinManipulators;
+import calculator.ast.ControlFlowManipulators;
+import calculator.ast.ExpressionManipulators;
+import datastructures.concrete.dictionaries.StringHashDictionary;
+import datastructures.interfaces.IDictionary;
+
+import java.util.Arrays;
+
+/**
+ * The functions the calculator knows about, and the precedence of each operator.
+ *
+ * A registry never changes once it's built, so one registry can be shared by any
+ * number of calculators and environments, on any number of threads. Every Calculator
+ * starts out with BUILTINS, which is built once, instead of building its own tables.
+ * To give one calculator extra functions, 'withCustomFunction' returns a copy with
+ * the function added; the original (and everyone else using it) is unaffected.
+ *
+ * There are two kinds of functions:
+ *
+ * - Custom functions receive their arguments already evaluated (like 'simplify').
+ * - Special functions receive their arguments unevaluated and take complete control
+ *   of evaluating them (like 'if' or 'assign').
+ */
+public final class FunctionRegistry {
+    /**
+     * A registry with no functions and no operators, mainly for testing individual
+     * manipulators.
+     */
+    public static final FunctionRegistry EMPTY = new FunctionRegistry(
+            new String[0], new AstManipulator[0], new StringHashDictionary<>(), new StringHashDictionary<>());
+
+    /**
+     * The functions and operators every calculator starts out with.
+     */
+    public static final FunctionRegistry BUILTINS = makeBuiltins();
+
+    // The custom functions are also kept in order, so 'withCustomFunction' can copy them
+    private final String[] customNames;
+    private final AstManipulator[] customManipulators;
+
+    // These tables are only written to before the constructor returns
+    private final IDictionary<String, AstManipulator> customFunctions;
+    private final IDictionary<String, AstManipulator> specialFunctions;
+    private final IDictionary<String, Integer> precedences;
+
+    private FunctionRegistry(String[] customNames,
+                             AstManipulator[] customManipulators,
+                             IDictionary<String, AstManipulator> specialFunctions,
+                             IDictionary<String, Integer> precedences) {
+        this.customNames = customNames;
+        this.customManipulators = customManipulators;
+        this.customFunctions = new StringHashDictionary<>(Math.max(1, customNames.length));
+        for (int i = 0; i < customNames.length; i++) {
+            this.customFunctions.put(customNames[i], customManipulators[i]);
+        }
+        this.specialFunctions = specialFunctions;
+        this.precedences = precedences;
+    }
+
+    private static FunctionRegistry makeBuiltins() {
+        // Your functions
+        String[] customNames = {"simplify", "toDouble", "plot", "plotAdaptive", "derive"};
+        AstManipulator[] customManipulators = {
+            ExpressionManipulators::handleSimplify,
+            ExpressionManipulators::handleToDouble,
+            ExpressionManipulators::plot,
+            ExpressionManipulators::plotAdaptive,
+            ExpressionManipulators::handleDerive,
+        };
+
+        // Internal functions (that need to manipulate control flow or the environment somehow)
+        IDictionary<String, AstManipulator> specialFunctions = new StringHashDictionary<>();
+        specialFunctions.put("block", BuiltinManipulators::handleBlock);
+        specialFunctions.put("assign", BuiltinManipulators::handleAssign);
+        specialFunctions.put("quit", BuiltinManipulators::handleQuit);
+        specialFunctions.put("exit", BuiltinManipulators::handleQuit);
+        specialFunctions.put("clear", BuiltinManipulators::handleClear);
+
+        // Code you may implement for extra credit
+        specialFunctions.put("randomlyPick", ControlFlowManipulators::handleRandomlyPick);
+        specialFunctions.put("if", ControlFlowManipulators::handleIf);
+        specialFunctions.put("repeat", ControlFlowManipulators::handleRepeat);
+
+        IDictionary<String, Integer> precedences = new StringHashDictionary<>();
+        precedences.put("^", 1);
+        precedences.put("negate", 2);
+        precedences.put("*", 3);
+        precedences.put("/", 3);
+        precedences.put("+", 4);
+        precedences.put("-", 4);
+
+        return new FunctionRegistry(customNames, customManipulators, specialFunctions, precedences);
+    }
+
+    /**
+     * Returns a registry with the same functions as this one, plus the given custom
+     * function (replacing any custom function with the same name). This registry is
+     * left unchanged.
+     *
+     * @throws IllegalArgumentException  if the name belongs to a special function, which
+     *                                   would always take precedence
+     */
+    public FunctionRegistry withCustomFunction(String name, AstManipulator manipulator) {
+        if (this.specialFunctions.containsKey(name)) {
+            throw new IllegalArgumentException("Cannot redefine special function '" + name + "'");
+        }
+
+        int index = Arrays.asList(this.customNames).indexOf(name);
+        String[] names = this.customNames;
+        AstManipulator[] manipulators;
+        if (index == -1) {
+            index = names.length;
+            names = Arrays.copyOf(names, index + 1);
+            names[index] = name;
+            manipulators = Arrays.copyOf(this.customManipulators, index + 1);
+        } else {
+            // The names don't change, so the new registry can share them
+            manipulators = this.customManipulators.clone();
+        }
+        manipulators[index] = manipulator;
+
+        // The special functions and precedences never change, so they're shared too
+        return new FunctionRegistry(names, manipulators, this.specialFunctions, this.precedences);
+    }
+
+    /**
+     * Returns the custom function with the given name, or null if there is none.
+     */
+    public AstManipulator getCustomFunction(String name) {
+        return this.customFunctions.getOrDefault(name, null);
+    }
+
+    /**
+     * Returns the special function with the given name, or null if there is none.
+     */
+    public AstManipulator getSpecialFunction(String name) {
+        return this.specialFunctions.getOrDefault(name, null);
+    }
+
+    public boolean isSpecialFunction(String name) {
+        return this.specialFunctions.containsKey(name);
+    }
+
+    /**
+     * Returns the precedence of the given operator (a smaller number binds more
+     * tightly), or 'defaultPrecedence' if it isn't an operator.
+     */
+    public int getPrecedence(String name, int defaultPrecedence) {
+        Integer precedence = this.precedences.getOrDefault(name, null);
+        return precedence == null ? defaultPrecedence : precedence;
+    }
+
+    public boolean hasPrecedence(String name) {
+        return this.precedences.containsKey(name);
+    }
+}
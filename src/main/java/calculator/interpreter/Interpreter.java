@@ -1,8 +1,7 @@
 package calculator.interpreter;
 
+import calculator.ast.AstManipulator;
 import calculator.ast.AstNode;
-import datastructures.concrete.DoubleLinkedList;
-import datastructures.interfaces.IList;
 
 public class Interpreter {
     public AstNode evaluate(Environment env, AstNode node) {
@@ -12,21 +11,18 @@ public class Interpreter {
             return node;
         } else if (node.isOperation()) {
             String nodeName = node.getName();
-            if (env.getSpecialFunctions().containsKey(nodeName)) {
+            AstManipulator specialFunction = env.getFunctionRegistry().getSpecialFunction(nodeName);
+            if (specialFunction != null) {
                 // Special functions take complete control
-                return env.getSpecialFunctions().get(nodeName).manipulate(env, node);
+                return specialFunction.manipulate(env, node);
             } else {
                 // Regular, custom functions are executed normally:
                 // we first execute the children before handing control back
                 // to the regular function (if one exists)
-                IList<AstNode> children = new DoubleLinkedList<>();
-                for (AstNode oldChild : node.getChildren()) {
-                    children.add(evaluate(env, oldChild));
-                }
-
-                AstNode output = new AstNode(node.getName(), children);
-                if (env.getCustomFunctions().containsKey(nodeName)) {
-                    output = env.getCustomFunctions().get(nodeName).manipulate(env, output);
+                AstNode output = node.mapChildren(oldChild -> evaluate(env, oldChild));
+                AstManipulator customFunction = env.getFunctionRegistry().getCustomFunction(nodeName);
+                if (customFunction != null) {
+                    output = customFunction.manipulate(env, output);
                 }
                 return output;
             }
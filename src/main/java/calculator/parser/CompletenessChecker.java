@@ -0,0 +1,127 @@
+package calculator.parser;
+
+import calculator.errors.IncompleteInputError;
+
+/**
+ * Decides whether some input is complete, or whether the calculator should wait for
+ * more lines before parsing it. Parser, PrattParser and StatementSplitter all feed it
+ * their tokens, so they always agree on where a statement ends.
+ *
+ * Input is incomplete if the parentheses aren't balanced at a line break the lexer
+ * keeps (it drops the ones inside parentheses) or at the end, or if the last token
+ * is a line continuation.
+ */
+class CompletenessChecker {
+    private int balanceCount;
+    private int lastLine;
+    private boolean lastWasLineContinuation;
+
+    public CompletenessChecker() {
+        this.reset();
+    }
+
+    /**
+     * Forgets every token added so far.
+     */
+    public void reset() {
+        this.balanceCount = 0;
+        this.lastLine = 0;
+        this.lastWasLineContinuation = false;
+    }
+
+    public void addOpenParen(int line) {
+        this.balanceCount += 1;
+        this.addToken(line, false);
+    }
+
+    public void addCloseParen(int line) {
+        this.balanceCount -= 1;
+        this.addToken(line, false);
+    }
+
+    public void addLineContinuation(int line) {
+        this.addToken(line, true);
+    }
+
+    /**
+     * Adds a line break token.
+     *
+     * @throws IncompleteInputError  if the parentheses before it aren't balanced
+     */
+    public void addLineBreak(int line) {
+        this.addToken(line, false);
+        verifyBalanceCount(line, this.balanceCount);
+    }
+
+    /**
+     * Adds any token that doesn't affect whether the input is complete.
+     */
+    public void addOther(int line) {
+        this.addToken(line, false);
+    }
+
+    /**
+     * Checks the input once its last token has been added.
+     *
+     * @throws IncompleteInputError  if the input is incomplete
+     */
+    public void finish(int line) {
+        this.lastLine = line;
+        verifyBalanceCount(this.lastLine, this.balanceCount);
+        if (this.lastWasLineContinuation) {
+            throw new IncompleteInputError("Line continuation at end of file at line " + this.lastLine);
+        }
+    }
+
+    /**
+     * Returns the number of '('s minus the number of ')'s added so far.
+     */
+    public int getBalanceCount() {
+        return this.balanceCount;
+    }
+
+    public boolean endsWithLineContinuation() {
+        return this.lastWasLineContinuation;
+    }
+
+    /**
+     * Returns the index just past the string literal starting at the given index, or -1
+     * if the string isn't closed on the same line (in which case the lexer doesn't
+     * treat the '"' as the start of a string).
+     */
+    public static int findStringEnd(String text, int index) {
+        index += 1;
+        while (index < text.length()) {
+            char ch = text.charAt(index);
+            if (ch == '"') {
+                return index + 1;
+            } else if (ch == '\\' && index + 1 < text.length()
+                    && (text.charAt(index + 1) == '"' || text.charAt(index + 1) == '\\')) {
+                index += 2;
+            } else if (ch == '\\' || ch == '\n' || ch == '\r') {
+                return -1;
+            } else {
+                index += 1;
+            }
+        }
+        return -1;
+    }
+
+    private void addToken(int line, boolean isLineContinuation) {
+        this.lastLine = line;
+        this.lastWasLineContinuation = isLineContinuation;
+    }
+
+    private static void verifyBalanceCount(int lineno, int balanceCount) {
+        if (balanceCount > 0) {
+            // If the balance count is 0, the lexer and parser itself will catch it.
+            throw new IncompleteInputError(
+                    String.format("Parens on line %d are unbalanced; missing %d closing parens",
+                            lineno, balanceCount));
+        } else if (balanceCount < 0) {
+            throw new IncompleteInputError(
+                    String.format("Parens on line %d are unbalanced; missing %d opening parens",
+                            lineno, -balanceCount));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package calculator.parser;
+
+import calculator.ast.AstNode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the ASTs of recently parsed inputs, so scripts that evaluate the same
+ * statements over and over only parse each of them once.
+ *
+ * ASTs are immutable, so a cached AST can be handed out any number of times. Inputs
+ * that differ only in leading or trailing spaces and tabs share an entry, since the
+ * lexer skips those anyway. (Line breaks aren't ignored: a trailing one can complete
+ * a line continuation.) Inputs longer than 'MAX_INPUT_LENGTH' characters
+ * (usually whole files) are unlikely to be repeated and aren't cached.
+ *
+ * The cache holds at most 'capacity' entries and evicts the least recently used
+ * entry when it is full.
+ */
+public class ParseCache {
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final int MAX_INPUT_LENGTH = 1000;
+
+    private final Map<String, AstNode> entries;
+
+    private long hits;
+    private long misses;
+
+    public ParseCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @throws IllegalArgumentException  if the capacity is negative
+     */
+    public ParseCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must be non-negative: " + capacity);
+        }
+        this.entries = new LinkedHashMap<String, AstNode>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AstNode> eldest) {
+                return this.size() > capacity;
+            }
+        };
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Returns the AST of the given input, or null if it isn't cached.
+     */
+    public AstNode get(String input) {
+        AstNode ast = input.length() <= MAX_INPUT_LENGTH ? this.entries.get(normalize(input)) : null;
+        if (ast == null) {
+            this.misses += 1;
+        } else {
+            this.hits += 1;
+        }
+        return ast;
+    }
+
+    /**
+     * Records that parsing the given input produced the given AST.
+     */
+    public void put(String input, AstNode ast) {
+        if (input.length() <= MAX_INPUT_LENGTH) {
+            this.entries.put(normalize(input), ast);
+        }
+    }
+
+    private static String normalize(String input) {
+        int start = 0;
+        int end = input.length();
+        while (start < end && isBlank(input.charAt(start))) {
+            start += 1;
+        }
+        while (end > start && isBlank(input.charAt(end - 1))) {
+            end -= 1;
+        }
+        return input.substring(start, end);
+    }
+
+    private static boolean isBlank(char ch) {
+        return ch == ' ' || ch == '\t';
+    }
+
+    /**
+     * Forgets every cached AST. The hit and miss counts are left alone.
+     */
+    public void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Returns the number of ASTs currently cached.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the number of lookups that found a cached AST.
+     */
+    public long getHitCount() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not.
+     */
+    public long getMissCount() {
+        return this.misses;
+    }
+}
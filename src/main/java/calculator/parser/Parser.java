@@ -1,91 +1,176 @@
 package calculator.parser;
 
+import calculator.ast.AstInterner;
 import calculator.ast.AstNode;
-import calculator.errors.IncompleteInputError;
 import calculator.errors.ParseError;
 import calculator.parser.grammar.CalculatorGrammarLexer;
 import calculator.parser.grammar.CalculatorGrammarParser;
 import calculator.parser.grammar.CalculatorGrammarParserBaseVisitor;
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.ArrayList;
 import datastructures.interfaces.IList;
 import org.antlr.v4.runtime.*;
-
-import java.io.IOException;
-import java.io.StringReader;
-
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * Converts text into an AST.
+ *
+ * Building a lexer and a parser costs more than parsing a short line, so each Parser
+ * creates one of each and points them at every new input instead (only the token
+ * stream between them is new for each input). This means a Parser must not be used
+ * by several threads at once.
+ *
+ * By default, we first parse with ANTLR's SLL prediction, which is much faster than
+ * the full LL prediction it uses otherwise, and give up at the first error. Only if
+ * that fails do we parse again with full LL prediction, which also produces the usual
+ * error messages. SLL can only fail on input that is malformed or needs the extra
+ * context LL looks at, so the result is always the same as parsing with LL alone.
+ */
 public class Parser {
-    public AstNode parse(String rawInput) {
-        CharStream input;
-        try {
-            input = new ANTLRInputStream(new StringReader(rawInput));
-        } catch (IOException ex) {
-            throw new ParseError(
-                    "Unexpected fatal error loading text. This should never happen!",
-                    ex);
-        }
+    /**
+     * A program that uses every rule of the grammar, parsed by 'warmUp'.
+     */
+    private static final String WARM_UP_PROGRAM = String.join("\n",
+            "x := 3",
+            "y := -x ^ 2 ^ 0.5 + (x - 1) * 4 / 2",
+            "z := f(x, (y + 1)\n * 2, g()) # a comment",
+            "toDouble(y) - \\",
+            "    simplify(-(z))",
+            "");
+
+    private static volatile boolean warmedUp = false;
+
+    private final boolean trySllFirst;
+    private final CalculatorGrammarLexer lexer;
+    private CommonTokenStream tokenStream;
+    private final CalculatorGrammarParser parser;
+    private final ANTLRErrorListener errorListener;
+    private final ANTLRErrorStrategy bailErrorStrategy;
+    private final ANTLRErrorStrategy defaultErrorStrategy;
+    private final AstConverter converter;
+
+    public Parser() {
+        this(true);
+    }
+
+    /**
+     * Creates a parser. If 'trySllFirst' is false, every input is parsed with full LL
+     * prediction right away (which is mostly useful for comparing the two).
+     */
+    public Parser(boolean trySllFirst) {
+        this.trySllFirst = trySllFirst;
+        this.errorListener = new ThrowingErrorListener();
 
-        CalculatorGrammarLexer lexer = new CalculatorGrammarLexer(input);
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(new ThrowingErrorListener());
+        this.lexer = new CalculatorGrammarLexer(new ANTLRInputStream(""));
+        this.lexer.removeErrorListeners();
+        this.lexer.addErrorListener(this.errorListener);
 
-        CommonTokenStream tokenStream = this.ensureIsComplete(new CommonTokenStream(lexer));
+        this.tokenStream = new CommonTokenStream(this.lexer);
 
-        CalculatorGrammarParser parser = new CalculatorGrammarParser(tokenStream);
-        parser.removeErrorListeners();
-        parser.addErrorListener(new ThrowingErrorListener());
+        this.parser = new CalculatorGrammarParser(this.tokenStream);
+        this.parser.removeErrorListeners();
+        this.bailErrorStrategy = new BailErrorStrategy();
+        this.defaultErrorStrategy = new DefaultErrorStrategy();
 
-        CalculatorGrammarParser.ProgramContext entryPoint = parser.program();
-        return new AstConverter().visitProgram(entryPoint);
+        this.converter = new AstConverter();
     }
 
-    public CommonTokenStream ensureIsComplete(CommonTokenStream stream) {
-        int balanceCount = 0;
-        int lastLine = 0;
-        boolean lastWasLineContinuation = false;
-        stream.fill();
-        for (Token token : stream.getTokens()) {
-            int type = token.getType();
-            lastLine = token.getLine();
-
-            // Check for parenthesis nesting
-            if (type == CalculatorGrammarLexer.LPAREN) {
-                balanceCount += 1;
-            } else if (type == CalculatorGrammarLexer.RPAREN) {
-                balanceCount -= 1;
-            } else if (type == CalculatorGrammarLexer.LINE_BREAK) {
-                this.verifyBalanceCount(token.getLine(), balanceCount);
-            }
+    /**
+     * Parses a small program that uses every rule of the grammar, once per run.
+     *
+     * ANTLR builds the DFAs it uses for prediction lazily and shares them between all
+     * parsers, so without this, whoever parses the first few inputs pays for building
+     * them. Call this at startup.
+     */
+    public static void warmUp() {
+        if (!warmedUp) {
+            Parser parser = new Parser();
+            parser.parse(WARM_UP_PROGRAM);
+            parser.parseWith(PredictionMode.LL);
+            warmedUp = true;
+        }
+    }
 
-            if (type != CalculatorGrammarLexer.EOF) {
-                lastWasLineContinuation = (type == CalculatorGrammarLexer.LINE_CONTINUATION);
+    public AstNode parse(String rawInput) {
+        // A token stream that has reached the end of one input can't be pointed at
+        // another, so each input gets a new one
+        this.lexer.setInputStream(new ANTLRInputStream(rawInput));
+        this.tokenStream = new CommonTokenStream(this.lexer);
+        this.ensureIsComplete(this.tokenStream);
+
+        CalculatorGrammarParser.ProgramContext entryPoint = null;
+        if (this.trySllFirst) {
+            try {
+                entryPoint = this.parseWith(PredictionMode.SLL);
+            } catch (ParseCancellationException ex) {
+                // Try again below
             }
         }
+        if (entryPoint == null) {
+            entryPoint = this.parseWith(PredictionMode.LL);
+        }
+        return this.converter.visitProgram(entryPoint);
+    }
 
-        this.verifyBalanceCount(lastLine, balanceCount);
-
-        if (lastWasLineContinuation) {
-            throw new IncompleteInputError("Line continuation at end of file at line " + lastLine);
+    /**
+     * Parses the tokens in 'tokenStream' from the start. SLL parsing gives up at the first
+     * error by throwing a ParseCancellationException; LL parsing reports it as a ParseError.
+     */
+    private CalculatorGrammarParser.ProgramContext parseWith(PredictionMode mode) {
+        boolean bail = mode == PredictionMode.SLL;
+
+        // Setting the token stream resets the parser, but not the stream itself
+        this.tokenStream.seek(0);
+        this.parser.setTokenStream(this.tokenStream);
+        this.parser.getInterpreter().setPredictionMode(mode);
+        this.parser.setErrorHandler(bail ? this.bailErrorStrategy : this.defaultErrorStrategy);
+        this.parser.removeErrorListeners();
+        if (!bail) {
+            this.parser.addErrorListener(this.errorListener);
         }
+        return this.parser.program();
+    }
 
+    public CommonTokenStream ensureIsComplete(CommonTokenStream stream) {
+        CompletenessChecker checker = new CompletenessChecker();
+        stream.fill();
+        for (Token token : stream.getTokens()) {
+            int line = token.getLine();
+            switch (token.getType()) {
+                case CalculatorGrammarLexer.LPAREN:
+                    checker.addOpenParen(line);
+                    break;
+                case CalculatorGrammarLexer.RPAREN:
+                    checker.addCloseParen(line);
+                    break;
+                case CalculatorGrammarLexer.LINE_BREAK:
+                    checker.addLineBreak(line);
+                    break;
+                case CalculatorGrammarLexer.LINE_CONTINUATION:
+                    checker.addLineContinuation(line);
+                    break;
+                case CalculatorGrammarLexer.EOF:
+                    checker.finish(line);
+                    break;
+                default:
+                    checker.addOther(line);
+                    break;
+            }
+        }
         return stream;
     }
 
-    private void verifyBalanceCount(int lineno, int balanceCount) {
-        if (balanceCount > 0) {
-            // If the balance count is 0, the lexer and parser itself will catch it.
-            throw new IncompleteInputError(
-                    String.format("Parens on line %d are unbalanced; missing %d closing parens",
-                            lineno, balanceCount));
-        } else if (balanceCount < 0) {
-            throw new IncompleteInputError(
-                    String.format("Parens on line %d are unbalanced; missing %d opening parens",
-                            lineno, -balanceCount));
-        }
+    /**
+     * Returns the error for a string literal: the grammar accepts them, but the
+     * calculator has no use for them.
+     */
+    static ParseError stringsNotSupported(int line, int column) {
+        return new ParseError(String.format("Line %d, col %d: Strings are not supported", line, column));
     }
 
     private static class AstConverter extends CalculatorGrammarParserBaseVisitor<AstNode> {
         private IList<AstNode> asList(AstNode... nodes) {
-            IList<AstNode> list = new DoubleLinkedList<>();
+            IList<AstNode> list = new ArrayList<>(nodes.length);
             for (AstNode node : nodes) {
                 list.add(node);
             }
@@ -94,19 +179,19 @@ public class Parser {
 
         @Override
         public AstNode visitProgram(CalculatorGrammarParser.ProgramContext ctx) {
-            IList<AstNode> params = new DoubleLinkedList<>();
+            IList<AstNode> params = new ArrayList<>(ctx.statements.size());
             for (CalculatorGrammarParser.StatementContext stmt : ctx.statements) {
                 params.add(this.visit(stmt));
             }
-            return new AstNode("block", params);
+            return AstInterner.operation("block", params);
         }
 
         @Override
         public AstNode visitAssignStmt(CalculatorGrammarParser.AssignStmtContext ctx) {
-            return new AstNode(
+            return AstInterner.operation(
                     "assign",
                     this.asList(
-                            new AstNode(ctx.varName.getText()),
+                            AstInterner.variable(ctx.varName.getText()),
                             this.visit(ctx.expr)));
         }
 
@@ -117,7 +202,7 @@ public class Parser {
 
         @Override
         public AstNode visitPowExprBin(CalculatorGrammarParser.PowExprBinContext ctx) {
-            return new AstNode(
+            return AstInterner.operation(
                     ctx.op.getText(),
                     this.asList(this.visit(ctx.left), this.visit(ctx.right)));
         }
@@ -129,7 +214,7 @@ public class Parser {
 
         @Override
         public AstNode visitNegExprUnary(CalculatorGrammarParser.NegExprUnaryContext ctx) {
-            return new AstNode("negate", this.asList(this.visit(ctx.expr)));
+            return AstInterner.operation("negate", this.asList(this.visit(ctx.expr)));
         }
 
         @Override
@@ -139,7 +224,7 @@ public class Parser {
 
         @Override
         public AstNode visitAddExprBin(CalculatorGrammarParser.AddExprBinContext ctx) {
-            return new AstNode(
+            return AstInterner.operation(
                     ctx.op.getText(),
                     this.asList(this.visit(ctx.left), this.visit(ctx.right)));
         }
@@ -151,7 +236,7 @@ public class Parser {
 
         @Override
         public AstNode visitMultExprBin(CalculatorGrammarParser.MultExprBinContext ctx) {
-            return new AstNode(
+            return AstInterner.operation(
                     ctx.op.getText(),
                     this.asList(this.visit(ctx.left), this.visit(ctx.right)));
         }
@@ -163,23 +248,23 @@ public class Parser {
 
         @Override
         public AstNode visitNumber(CalculatorGrammarParser.NumberContext ctx) {
-            return new AstNode(Double.parseDouble(ctx.value.getText()));
+            return AstInterner.number(Double.parseDouble(ctx.value.getText()));
         }
 
         @Override
         public AstNode visitRawString(CalculatorGrammarParser.RawStringContext ctx) {
-            throw new UnsupportedOperationException();
+            throw stringsNotSupported(ctx.getStart().getLine(), ctx.getStart().getCharPositionInLine());
         }
 
         @Override
         public AstNode visitVariable(CalculatorGrammarParser.VariableContext ctx) {
-            return new AstNode(ctx.getText());
+            return AstInterner.variable(ctx.getText());
         }
 
         @Override
         public AstNode visitFuncName(CalculatorGrammarParser.FuncNameContext ctx) {
             IList<AstNode> params = this.parseArgList(ctx.args);
-            return new AstNode(ctx.funcName.getText(), params);
+            return AstInterner.operation(ctx.funcName.getText(), params);
         }
 
         @Override
@@ -193,7 +278,7 @@ public class Parser {
         }
 
         private IList<AstNode> parseArgList(CalculatorGrammarParser.ArglistContext args) {
-            IList<AstNode> out = new DoubleLinkedList<>();
+            IList<AstNode> out = new ArrayList<>(args.values.size());
             for (CalculatorGrammarParser.AddExprContext item : args.values) {
                 out.add(this.visit(item));
             }
@@ -213,7 +298,7 @@ public class Parser {
             if (e == null) {
                 error = msg;
             } else {
-                String tokenText = this.escape(e.getOffendingToken().getText());
+                String tokenText = escape(e.getOffendingToken().getText());
                 error = String.format("Unxpected '%s'", tokenText);
             }
             throw new ParseError(
@@ -225,7 +310,7 @@ public class Parser {
                     e);
         }
 
-        private String escape(String str) {
+        static String escape(String str) {
             StringBuilder builder = new StringBuilder();
             for (int i = 0; i < str.length(); i++) {
                 char ch = str.charAt(i);
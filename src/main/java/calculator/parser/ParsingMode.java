@@ -0,0 +1,18 @@
+package calculator.parser;
+
+/**
+ * The different parsers the calculator can use to turn its input into an AST. Both
+ * accept exactly the same language and produce exactly the same ASTs.
+ */
+public enum ParsingMode {
+    /**
+     * Use Parser, which is generated by ANTLR from the grammar files.
+     */
+    ANTLR,
+
+    /**
+     * Use PrattParser, which is written by hand and is several times faster on short
+     * inputs. Syntax errors other than incomplete input have different messages.
+     */
+    PRATT,
+}
@@ -0,0 +1,448 @@
+package calculator.parser;
+
+import calculator.ast.AstInterner;
+import calculator.ast.AstNode;
+import calculator.errors.ParseError;
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+
+import java.util.Arrays;
+
+/**
+ * A hand-written parser for the same language as Parser, which produces exactly the
+ * same ASTs but doesn't use ANTLR.
+ *
+ * Most of the time ANTLR spends on a short line goes into building token objects,
+ * parse tree contexts and visiting them. This parser instead splits the input into
+ * tokens stored in a few reusable arrays, then builds the AST directly by precedence
+ * climbing (a Pratt parser): each binary operator has a precedence, and the operand
+ * to its right is parsed by only consuming operators that bind more tightly.
+ *
+ * It mirrors the grammar in CalculatorGrammarLexer.g4 and CalculatorGrammarParser.g4
+ * exactly -- including which inputs are rejected as incomplete -- so the two can be
+ * used interchangeably. Only the messages of other syntax errors differ. Like Parser,
+ * a PrattParser must not be used by several threads at once.
+ */
+public class PrattParser {
+    // Token types
+    private static final int NUMBER = 0;
+    private static final int IDENTIFIER = 1;
+    private static final int STRING = 2;
+    private static final int ASSIGN = 3;
+    private static final int PLUS = 4;
+    private static final int MINUS = 5;
+    private static final int MULTIPLY = 6;
+    private static final int DIVIDE = 7;
+    private static final int POW = 8;
+    private static final int COMMA = 9;
+    private static final int LPAREN = 10;
+    private static final int RPAREN = 11;
+    private static final int LINE_BREAK = 12;
+    private static final int LINE_CONTINUATION = 13;
+    private static final int ERROR_TOKEN = 14;
+    private static final int EOF = 15;
+
+    // Operator precedences: operators with a higher one bind more tightly
+    private static final int NO_PRECEDENCE = 0;
+    private static final int ADD_PRECEDENCE = 1;
+    private static final int MULTIPLY_PRECEDENCE = 2;
+
+    private String input;
+
+    // The tokens, one entry per token in each array. Line continuations are only used
+    // to detect incomplete input; 'position' skips over them.
+    private int[] types;
+    private int[] starts;
+    private int[] ends;
+    private int[] lines;
+    private int[] columns;
+    private int numTokens;
+
+    private final CompletenessChecker completenessChecker;
+
+    private int position;
+    // The index of the first string token, or -1 if there isn't one
+    private int firstString;
+
+    public PrattParser() {
+        this.types = new int[64];
+        this.starts = new int[64];
+        this.ends = new int[64];
+        this.lines = new int[64];
+        this.columns = new int[64];
+        this.completenessChecker = new CompletenessChecker();
+    }
+
+    public AstNode parse(String rawInput) {
+        this.input = rawInput;
+        this.tokenize();
+        this.ensureIsComplete();
+
+        this.position = -1;
+        this.advance();
+        this.firstString = -1;
+        AstNode program = this.parseProgram();
+        if (this.firstString != -1) {
+            // The grammar accepts strings, but nothing knows what to do with them (so,
+            // like Parser, we only complain once the whole input is known to be valid)
+            throw Parser.stringsNotSupported(this.lines[this.firstString], this.columns[this.firstString]);
+        }
+        this.input = null;
+        return program;
+    }
+
+    // ---- Tokenizing ----
+
+    private void tokenize() {
+        String text = this.input;
+        int length = text.length();
+        int index = 0;
+        int line = 1;
+        int column = 0;
+
+        // The number of parentheses we're inside of, according to the lexer: the lexer
+        // ignores line breaks inside parentheses, but only counts a ')' that closes one
+        int depth = 0;
+
+        this.numTokens = 0;
+        while (index < length) {
+            char ch = text.charAt(index);
+            int start = index;
+            int startLine = line;
+            int startColumn = column;
+            int type;
+
+            if (ch == ' ' || ch == '\t') {
+                index += 1;
+                column += 1;
+                continue;
+            } else if (ch == '#') {
+                while (index < length && !isLineBreak(text.charAt(index))) {
+                    index += 1;
+                    column += 1;
+                }
+                continue;
+            } else if (isLineBreak(ch)) {
+                while (index < length && isLineBreak(text.charAt(index))) {
+                    if (text.charAt(index) == '\n') {
+                        line += 1;
+                        column = 0;
+                    } else {
+                        column += 1;
+                    }
+                    index += 1;
+                }
+                if (depth > 0) {
+                    continue;
+                }
+                type = LINE_BREAK;
+            } else if (ch == '\\' && index + 1 < length && isLineBreak(text.charAt(index + 1))) {
+                index += 1;
+                column += 1;
+                while (index < length && isLineBreak(text.charAt(index))) {
+                    if (text.charAt(index) == '\n') {
+                        line += 1;
+                        column = 0;
+                    } else {
+                        column += 1;
+                    }
+                    index += 1;
+                }
+                type = LINE_CONTINUATION;
+            } else if (isIdentifierStart(ch)) {
+                index += 1;
+                while (index < length && isIdentifierPart(text.charAt(index))) {
+                    index += 1;
+                }
+                column += index - start;
+                type = IDENTIFIER;
+            } else if (isDigit(ch)) {
+                index = skipDigits(text, index);
+                if (index + 1 < length && text.charAt(index) == '.' && isDigit(text.charAt(index + 1))) {
+                    index = skipDigits(text, index + 1);
+                }
+                column += index - start;
+                type = NUMBER;
+            } else if (ch == '"' && CompletenessChecker.findStringEnd(text, index) != -1) {
+                index = CompletenessChecker.findStringEnd(text, index);
+                column += index - start;
+                type = STRING;
+            } else if (ch == ':' && index + 1 < length && text.charAt(index + 1) == '=') {
+                index += 2;
+                column += 2;
+                type = ASSIGN;
+            } else {
+                index += 1;
+                column += 1;
+                type = singleCharacterType(ch);
+                if (type == LPAREN) {
+                    depth += 1;
+                } else if (type == RPAREN && depth > 0) {
+                    depth -= 1;
+                }
+            }
+            this.addToken(type, start, index, startLine, startColumn);
+        }
+        this.addToken(EOF, length, length, line, column);
+    }
+
+    private static boolean isLineBreak(char ch) {
+        return ch == '\n' || ch == '\r';
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private static boolean isIdentifierStart(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '_';
+    }
+
+    private static boolean isIdentifierPart(char ch) {
+        return isIdentifierStart(ch) || isDigit(ch);
+    }
+
+    private static int skipDigits(String text, int index) {
+        while (index < text.length() && isDigit(text.charAt(index))) {
+            index += 1;
+        }
+        return index;
+    }
+
+    private static int singleCharacterType(char ch) {
+        switch (ch) {
+            case '+':
+                return PLUS;
+            case '-':
+                return MINUS;
+            case '*':
+                return MULTIPLY;
+            case '/':
+                return DIVIDE;
+            case '^':
+                return POW;
+            case ',':
+                return COMMA;
+            case '(':
+                return LPAREN;
+            case ')':
+                return RPAREN;
+            default:
+                return ERROR_TOKEN;
+        }
+    }
+
+    private void addToken(int type, int start, int end, int line, int column) {
+        if (this.numTokens == this.types.length) {
+            int capacity = this.types.length * 2;
+            this.types = Arrays.copyOf(this.types, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.ends = Arrays.copyOf(this.ends, capacity);
+            this.lines = Arrays.copyOf(this.lines, capacity);
+            this.columns = Arrays.copyOf(this.columns, capacity);
+        }
+        this.types[this.numTokens] = type;
+        this.starts[this.numTokens] = start;
+        this.ends[this.numTokens] = end;
+        this.lines[this.numTokens] = line;
+        this.columns[this.numTokens] = column;
+        this.numTokens += 1;
+    }
+
+    private void ensureIsComplete() {
+        this.completenessChecker.reset();
+        for (int i = 0; i < this.numTokens; i++) {
+            int line = this.lines[i];
+            switch (this.types[i]) {
+                case LPAREN:
+                    this.completenessChecker.addOpenParen(line);
+                    break;
+                case RPAREN:
+                    this.completenessChecker.addCloseParen(line);
+                    break;
+                case LINE_BREAK:
+                    this.completenessChecker.addLineBreak(line);
+                    break;
+                case LINE_CONTINUATION:
+                    this.completenessChecker.addLineContinuation(line);
+                    break;
+                case EOF:
+                    this.completenessChecker.finish(line);
+                    break;
+                default:
+                    this.completenessChecker.addOther(line);
+                    break;
+            }
+        }
+    }
+
+    // ---- Parsing ----
+
+    private int peek() {
+        return this.types[this.position];
+    }
+
+    private int peekNext() {
+        int next = this.position + 1;
+        while (this.types[next] == LINE_CONTINUATION) {
+            next += 1;
+        }
+        return this.types[next];
+    }
+
+    private void advance() {
+        // The EOF token is always last, so this never runs off the end
+        do {
+            this.position += 1;
+        } while (this.types[this.position] == LINE_CONTINUATION);
+    }
+
+    private String text() {
+        return this.input.substring(this.starts[this.position], this.ends[this.position]);
+    }
+
+    private void expect(int type) {
+        if (this.peek() != type) {
+            throw this.unexpected();
+        }
+        this.advance();
+    }
+
+    private ParseError unexpected() {
+        String text = this.peek() == EOF ? "<EOF>" : this.text();
+        return new ParseError(String.format(
+                "Line %d, col %d: Unexpected '%s'",
+                this.lines[this.position],
+                this.columns[this.position],
+                Parser.ThrowingErrorListener.escape(text)));
+    }
+
+    private AstNode parseProgram() {
+        IList<AstNode> statements = new ArrayList<>();
+        while (this.peek() != EOF) {
+            statements.add(this.parseStatement());
+        }
+        return AstInterner.operation("block", statements);
+    }
+
+    private AstNode parseStatement() {
+        AstNode statement;
+        if (this.peek() == IDENTIFIER && this.peekNext() == ASSIGN) {
+            AstNode variable = AstInterner.variable(this.text());
+            this.advance();
+            this.advance();
+            statement = AstInterner.operation("assign", asList(variable, this.parseExpression(ADD_PRECEDENCE)));
+        } else {
+            statement = this.parseExpression(ADD_PRECEDENCE);
+        }
+        this.expect(LINE_BREAK);
+        return statement;
+    }
+
+    /**
+     * Parses a sum or product, consuming only binary operators whose precedence is at
+     * least 'minPrecedence'. All of them are left-associative.
+     */
+    private AstNode parseExpression(int minPrecedence) {
+        AstNode left = this.parseNegation();
+        while (true) {
+            int type = this.peek();
+            int precedence = precedenceOf(type);
+            if (precedence == NO_PRECEDENCE || precedence < minPrecedence) {
+                return left;
+            }
+            String name = this.text();
+            this.advance();
+            AstNode right = this.parseExpression(precedence + 1);
+            left = AstInterner.operation(name, asList(left, right));
+        }
+    }
+
+    private static int precedenceOf(int type) {
+        switch (type) {
+            case PLUS:
+            case MINUS:
+                return ADD_PRECEDENCE;
+            case MULTIPLY:
+            case DIVIDE:
+                return MULTIPLY_PRECEDENCE;
+            default:
+                return NO_PRECEDENCE;
+        }
+    }
+
+    private AstNode parseNegation() {
+        if (this.peek() == MINUS) {
+            this.advance();
+            return AstInterner.operation("negate", asList(this.parseNegation()));
+        }
+        return this.parsePower();
+    }
+
+    /**
+     * Parses a power, which is right-associative. Neither side may be negated without
+     * parentheses, so we go straight to atoms.
+     */
+    private AstNode parsePower() {
+        AstNode base = this.parseAtom();
+        if (this.peek() != POW) {
+            return base;
+        }
+        this.advance();
+        return AstInterner.operation("^", asList(base, this.parsePower()));
+    }
+
+    private AstNode parseAtom() {
+        switch (this.peek()) {
+            case NUMBER: {
+                AstNode number = AstInterner.number(Double.parseDouble(this.text()));
+                this.advance();
+                return number;
+            }
+            case STRING:
+                if (this.firstString == -1) {
+                    this.firstString = this.position;
+                }
+                this.advance();
+                return AstInterner.number(0);
+            case IDENTIFIER: {
+                String name = this.text();
+                this.advance();
+                if (this.peek() != LPAREN) {
+                    return AstInterner.variable(name);
+                }
+                this.advance();
+                return AstInterner.operation(name, this.parseArguments());
+            }
+            case LPAREN: {
+                this.advance();
+                AstNode inner = this.parseExpression(ADD_PRECEDENCE);
+                this.expect(RPAREN);
+                return inner;
+            }
+            default:
+                throw this.unexpected();
+        }
+    }
+
+    private IList<AstNode> parseArguments() {
+        IList<AstNode> arguments = new ArrayList<>();
+        if (this.peek() != RPAREN) {
+            arguments.add(this.parseExpression(ADD_PRECEDENCE));
+            while (this.peek() == COMMA) {
+                this.advance();
+                arguments.add(this.parseExpression(ADD_PRECEDENCE));
+            }
+        }
+        this.expect(RPAREN);
+        return arguments;
+    }
+
+    private static IList<AstNode> asList(AstNode... nodes) {
+        IList<AstNode> list = new ArrayList<>(nodes.length);
+        for (AstNode node : nodes) {
+            list.add(node);
+        }
+        return list;
+    }
+}
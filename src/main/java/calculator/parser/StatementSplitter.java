@@ -0,0 +1,135 @@
+package calculator.parser;
+
+/**
+ * Splits a script, fed to it one line at a time, into the pieces the calculator can
+ * evaluate one after another -- the same pieces someone typing the script into the
+ * calculator window would end up submitting.
+ *
+ * A statement ends at the first line break that the parsers would accept as complete
+ * (see CompletenessChecker): one where the parentheses are balanced, and that isn't
+ * preceded by a line continuation ('\'). We find the tokens that matter with the same
+ * rules as the lexer, so parentheses inside comments and string literals don't count.
+ *
+ * If a line break is reached while there are more ')'s than '('s, no amount of extra
+ * input can make the statement complete, so it ends there anyway (and evaluating it
+ * reports the error). A '(' that is never closed, on the other hand, makes the rest
+ * of the script part of the same statement.
+ */
+public class StatementSplitter {
+    private static final int MAX_RETAINED_CAPACITY = 4096;
+
+    private final StringBuilder buffer;
+    private final CompletenessChecker checker;
+    private int firstLineNumber;
+    private int lineNumber;
+
+    public StatementSplitter() {
+        this.buffer = new StringBuilder();
+        this.checker = new CompletenessChecker();
+        this.lineNumber = 0;
+        this.reset();
+    }
+
+    /**
+     * Adds the next line of the script (without its line break), and returns whether
+     * it ends a statement, which can then be retrieved with 'takeStatement'.
+     *
+     * Lines that are blank or only hold a comment are skipped when they're not part
+     * of a statement, since the calculator would reject them.
+     */
+    public boolean addLine(String line) {
+        this.lineNumber += 1;
+        if (this.buffer.length() == 0) {
+            if (isBlankOrComment(line)) {
+                return false;
+            }
+            this.firstLineNumber = this.lineNumber;
+        } else {
+            this.buffer.append('\n');
+        }
+        this.buffer.append(line);
+
+        this.scan(line);
+        return !this.checker.endsWithLineContinuation() && this.checker.getBalanceCount() <= 0;
+    }
+
+    /**
+     * Returns the text of the current statement (which may be incomplete, if the script
+     * has ended) and starts a new one.
+     */
+    public String takeStatement() {
+        String statement = this.buffer.toString();
+        this.reset();
+        return statement;
+    }
+
+    /**
+     * Returns whether any part of a statement has been added since the last one was taken.
+     */
+    public boolean hasPartialStatement() {
+        return this.buffer.length() > 0;
+    }
+
+    /**
+     * Returns the number of characters in the current statement so far.
+     */
+    public int getLength() {
+        return this.buffer.length();
+    }
+
+    /**
+     * Returns the line number (starting from 1) the current statement starts on.
+     */
+    public int getFirstLineNumber() {
+        return this.firstLineNumber;
+    }
+
+    private void reset() {
+        this.buffer.setLength(0);
+
+        // Let a huge statement's buffer go rather than holding on to it forever
+        if (this.buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            this.buffer.trimToSize();
+        }
+        this.firstLineNumber = 0;
+        this.checker.reset();
+    }
+
+    /**
+     * Adds the tokens in the given line that CompletenessChecker cares about.
+     */
+    private void scan(String line) {
+        int index = 0;
+        while (index < line.length()) {
+            char ch = line.charAt(index);
+            if (ch == '#') {
+                return;
+            } else if (ch == '"' && CompletenessChecker.findStringEnd(line, index) != -1) {
+                index = CompletenessChecker.findStringEnd(line, index);
+                this.checker.addOther(this.lineNumber);
+                continue;
+            } else if (ch == '(') {
+                this.checker.addOpenParen(this.lineNumber);
+            } else if (ch == ')') {
+                this.checker.addCloseParen(this.lineNumber);
+            } else if (ch == '\\' && index == line.length() - 1) {
+                this.checker.addLineContinuation(this.lineNumber);
+            } else if (ch != ' ' && ch != '\t') {
+                this.checker.addOther(this.lineNumber);
+            }
+            index += 1;
+        }
+    }
+
+    private static boolean isBlankOrComment(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch == '#') {
+                return true;
+            } else if (ch != ' ' && ch != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
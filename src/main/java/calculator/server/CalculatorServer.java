@@ -0,0 +1,320 @@
+package calculator.server;
+
+import calculator.interpreter.Calculator;
+import calculator.parser.Parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A server that lets many people use the calculator at once over a simple line
+ * protocol: a client sends statements, one or more lines each (exactly as they would be
+ * typed into the calculator window), and the server answers each complete statement
+ * with one line -- its result, or an error starting with 'ERROR:'. 'quit()' or 'exit()'
+ * closes the connection.
+ *
+ * Every connection gets its own Calculator, so sessions can't see each other's
+ * variables. The only state they share is immutable or thread-safe: the interned AST
+ * nodes, the FunctionRegistry every Calculator starts out with, and ANTLR's
+ * prediction DFAs (which Parser.warmUp builds before the first connection).
+ *
+ * A statement that fails with anything but one of the calculator's own errors is a
+ * bug: it's logged to System.err, counted by 'getNumInternalErrors', and closes that
+ * session.
+ *
+ * Most sessions are idle most of the time, so we don't give each one a thread.
+ * Instead, a single I/O thread waits on all of the connections with a Selector, and
+ * hands statements that are ready to a small pool of workers (one per core by
+ * default). While a session's statements are being evaluated, we stop reading from
+ * it, so a fast client can't queue up unbounded work; together with the limits on
+ * line, statement and cache sizes, this bounds the memory each session uses apart
+ * from its variables.
+ *
+ * The server only listens on the loopback address.
+ *
+ * Usage: java calculator.server.CalculatorServer [port] [numWorkers]
+ */
+public class CalculatorServer implements Closeable {
+    public static final int DEFAULT_PORT = 5555;
+
+    public static final int MAX_STATEMENT_LENGTH = 1 << 16;
+    public static final int MAX_RESPONSE_LENGTH = 1 << 16;
+    public static final int SESSION_SIMPLIFY_CACHE_CAPACITY = 1000;
+    public static final int SESSION_PARSE_CACHE_CAPACITY = 100;
+
+    static final int RETAINED_LINE_CAPACITY = 4096;
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    // Evaluating a deeply nested expression recurses deeply, and there are only a few
+    // workers, so we can afford to give them large stacks
+    private static final long WORKER_STACK_SIZE = 64L << 20;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final Thread ioThread;
+    private final Queue<Session> evaluatedSessions;
+    private volatile boolean running;
+
+    private final AtomicInteger numOpenSessions;
+    private final AtomicLong numSessions;
+    private final AtomicLong numInternalErrors;
+
+    /**
+     * Creates a server listening on the given port (or any free port, if it's 0). It
+     * doesn't accept connections until 'start' is called.
+     */
+    public CalculatorServer(int port, int numWorkers) throws IOException {
+        if (numWorkers <= 0) {
+            throw new IllegalArgumentException("Need at least one worker: " + numWorkers);
+        }
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.serverChannel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(numWorkers, runnable -> {
+            Thread thread = new Thread(null, runnable,
+                    "calculator-worker-" + workerCount.incrementAndGet(), WORKER_STACK_SIZE);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ioThread = new Thread(this::run, "calculator-io");
+        this.evaluatedSessions = new ConcurrentLinkedQueue<>();
+        this.numOpenSessions = new AtomicInteger();
+        this.numSessions = new AtomicLong();
+        this.numInternalErrors = new AtomicLong();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int numWorkers = args.length > 1
+                ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+
+        CalculatorServer server = new CalculatorServer(port, numWorkers);
+        server.start();
+        System.out.println("Listening on port " + server.getPort() + " with " + numWorkers + " workers");
+        server.ioThread.join();
+    }
+
+    public int getPort() {
+        return this.serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the number of connections currently open.
+     */
+    public int getNumOpenSessions() {
+        return this.numOpenSessions.get();
+    }
+
+    /**
+     * Returns the number of connections accepted so far.
+     */
+    public long getNumSessions() {
+        return this.numSessions.get();
+    }
+
+    /**
+     * Returns the number of sessions closed because evaluating a statement failed with
+     * something other than one of the calculator's own errors. This should always be 0.
+     */
+    public long getNumInternalErrors() {
+        return this.numInternalErrors.get();
+    }
+
+    public void start() {
+        Parser.warmUp();
+        this.running = true;
+        this.ioThread.start();
+    }
+
+    /**
+     * Stops the server and closes every connection. Statements being evaluated are
+     * abandoned.
+     */
+    @Override
+    public void close() throws IOException {
+        this.running = false;
+        this.selector.wakeup();
+        try {
+            this.ioThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        this.workers.shutdownNow();
+        try {
+            this.workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        try {
+            while (this.running) {
+                this.selector.select();
+
+                Session evaluated;
+                while ((evaluated = this.evaluatedSessions.poll()) != null) {
+                    evaluated.setBusy(false);
+                    SelectionKey key = evaluated.getChannel().keyFor(this.selector);
+                    if (key != null && key.isValid()) {
+                        this.updateInterest(key, evaluated);
+                    }
+                }
+
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isValid() && key.isAcceptable()) {
+                            this.accept();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            this.read(key, readBuffer);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            this.write(key);
+                        }
+                    } catch (IOException ex) {
+                        // The client went away: there's no one to tell
+                        this.closeSession(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException ex) {
+            // Nothing to do but shut down
+        } finally {
+            this.shutDown();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = this.serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Calculator calculator = new Calculator(null, SESSION_SIMPLIFY_CACHE_CAPACITY, SESSION_PARSE_CACHE_CAPACITY);
+        channel.register(this.selector, SelectionKey.OP_READ, new Session(channel, calculator));
+        this.numOpenSessions.incrementAndGet();
+        this.numSessions.incrementAndGet();
+    }
+
+    private void read(SelectionKey key, ByteBuffer readBuffer) throws IOException {
+        Session session = (Session) key.attachment();
+        readBuffer.clear();
+        int numRead = session.getChannel().read(readBuffer);
+        if (numRead < 0) {
+            session.setClosing();
+            this.updateInterest(key, session);
+            return;
+        }
+        readBuffer.flip();
+
+        if (!session.receive(readBuffer)) {
+            this.updateInterest(key, session);
+        } else if (session.hasPendingStatements()) {
+            // Don't read any more until these have been evaluated
+            key.interestOps(0);
+            session.setBusy(true);
+            this.workers.execute(() -> {
+                try {
+                    session.evaluatePending();
+                } catch (RuntimeException | StackOverflowError ex) {
+                    // A bug in the calculator (or an absurdly deep expression): the other
+                    // sessions can carry on, but this one can't, and someone needs to know
+                    session.abandon();
+                    this.numInternalErrors.incrementAndGet();
+                    System.err.println("Closing a session after an internal error:");
+                    ex.printStackTrace();
+                } finally {
+                    this.evaluatedSessions.add(session);
+                    this.selector.wakeup();
+                }
+            });
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Session session = (Session) key.attachment();
+        ByteBuffer response;
+        while ((response = session.peekResponse()) != null) {
+            session.getChannel().write(response);
+            if (response.hasRemaining()) {
+                // The socket's buffer is full: wait until it's writable again
+                return;
+            }
+            session.removeResponse();
+        }
+        this.updateInterest(key, session);
+    }
+
+    /**
+     * Decides what to wait for next on an idle session: sending its responses, closing
+     * it, or reading more statements.
+     */
+    private void updateInterest(SelectionKey key, Session session) {
+        if (session.isBusy()) {
+            return;
+        } else if (session.peekResponse() != null) {
+            key.interestOps(SelectionKey.OP_WRITE);
+        } else if (session.isClosing()) {
+            this.closeSession(key);
+        } else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void closeSession(SelectionKey key) {
+        if (!key.channel().isOpen()) {
+            return;
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ex) {
+            // It's closed either way
+        }
+        if (key.attachment() instanceof Session) {
+            this.numOpenSessions.decrementAndGet();
+        }
+    }
+
+    private void shutDown() {
+        for (SelectionKey key : this.selector.keys()) {
+            this.closeSession(key);
+        }
+        try {
+            this.selector.close();
+            this.serverChannel.close();
+        } catch (IOException ex) {
+            // We're shutting down anyway
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package calculator.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Benchmarks a CalculatorServer: opens many sessions at once, then keeps them all busy
+ * with a mix of statements and reports the throughput and latency.
+ *
+ * Opening a connection per thread would limit the number of sessions to the number of
+ * threads the client can afford, so instead every session stays open the whole time,
+ * and a few driver threads take turns sending one statement to each of their sessions
+ * and waiting for the answer. The number of drivers is the number of statements in
+ * flight at once.
+ *
+ * Usage: java calculator.server.LoadGenerator host port numSessions numDrivers numRounds
+ */
+public class LoadGenerator {
+    private static final String[] STATEMENTS = {
+        "x := x + 1",
+        "y := (x + 1) * (x - 1)",
+        "toDouble(sin(x) * x ^ 2 + y)",
+        "simplify(y + 2 * 3)",
+        "derive(t ^ 3 + y * t, t)",
+    };
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 5) {
+            System.err.println("Usage: java calculator.server.LoadGenerator "
+                    + "<host> <port> <numSessions> <numDrivers> <numRounds>");
+            System.exit(1);
+        }
+        Result result = run(
+                InetAddress.getByName(args[0]),
+                Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]),
+                Integer.parseInt(args[4]));
+        System.out.println(result);
+    }
+
+    /**
+     * Opens 'numSessions' sessions, then sends each of them 'numRounds' statements, with
+     * 'numDrivers' statements in flight at a time.
+     *
+     * @throws IOException  if a connection fails, or a statement gets an error response
+     */
+    public static Result run(InetAddress host, int port, int numSessions, int numDrivers, int numRounds)
+            throws IOException, InterruptedException {
+        Connection[] connections = new Connection[numSessions];
+        try {
+            for (int i = 0; i < numSessions; i++) {
+                connections[i] = new Connection(new Socket(host, port));
+                connections[i].send("x := " + i);
+            }
+
+            Driver[] drivers = new Driver[numDrivers];
+            long start = System.nanoTime();
+            for (int i = 0; i < numDrivers; i++) {
+                drivers[i] = new Driver(connections, i, numDrivers, numRounds);
+                drivers[i].start();
+            }
+
+            long[] latencies = new long[0];
+            for (Driver driver : drivers) {
+                driver.join();
+                if (driver.error != null) {
+                    throw driver.error;
+                }
+                latencies = concat(latencies, driver.latencies, driver.numLatencies);
+            }
+            return new Result(numSessions, System.nanoTime() - start, latencies);
+        } finally {
+            for (Connection connection : connections) {
+                if (connection != null) {
+                    connection.socket.close();
+                }
+            }
+        }
+    }
+
+    private static long[] concat(long[] first, long[] second, int secondLength) {
+        long[] out = Arrays.copyOf(first, first.length + secondLength);
+        System.arraycopy(second, 0, out, first.length, secondLength);
+        return out;
+    }
+
+    private static class Connection {
+        public final Socket socket;
+        public final OutputStream output;
+        public final BufferedReader input;
+
+        public Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.socket.setTcpNoDelay(true);
+            this.output = socket.getOutputStream();
+            this.input = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Sends a one-line statement and returns the response.
+         */
+        public String send(String statement) throws IOException {
+            this.output.write((statement + "\n").getBytes(StandardCharsets.UTF_8));
+            this.output.flush();
+            String response = this.input.readLine();
+            if (response == null) {
+                throw new IOException("Server closed the connection");
+            } else if (response.startsWith("ERROR:")) {
+                throw new IOException("'" + statement + "' failed: " + response);
+            }
+            return response;
+        }
+    }
+
+    private static class Driver extends Thread {
+        private final Connection[] connections;
+        private final int first;
+        private final int step;
+        private final int numRounds;
+
+        public long[] latencies;
+        public int numLatencies;
+        public IOException error;
+
+        public Driver(Connection[] connections, int first, int step, int numRounds) {
+            this.connections = connections;
+            this.first = first;
+            this.step = step;
+            this.numRounds = numRounds;
+            this.latencies = new long[16];
+            this.numLatencies = 0;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int round = 0; round < this.numRounds; round++) {
+                    String statement = STATEMENTS[round % STATEMENTS.length];
+                    for (int i = this.first; i < this.connections.length; i += this.step) {
+                        long start = System.nanoTime();
+                        this.connections[i].send(statement);
+                        this.record(System.nanoTime() - start);
+                    }
+                }
+            } catch (IOException ex) {
+                this.error = ex;
+            }
+        }
+
+        private void record(long latency) {
+            if (this.numLatencies == this.latencies.length) {
+                this.latencies = Arrays.copyOf(this.latencies, this.latencies.length * 2);
+            }
+            this.latencies[this.numLatencies] = latency;
+            this.numLatencies += 1;
+        }
+    }
+
+    /**
+     * The outcome of a benchmark run. Latencies are in nanoseconds.
+     */
+    public static class Result {
+        private final int numSessions;
+        private final long elapsedNanos;
+        private final long[] latencies;
+
+        public Result(int numSessions, long elapsedNanos, long[] latencies) {
+            this.numSessions = numSessions;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+            Arrays.sort(this.latencies);
+        }
+
+        public long getNumStatements() {
+            return this.latencies.length;
+        }
+
+        public double getStatementsPerSecond() {
+            return this.latencies.length / (this.elapsedNanos / 1e9);
+        }
+
+        /**
+         * Returns the latency that the given fraction of statements beat (e.g. 0.99 for
+         * the 99th percentile).
+         */
+        public long getLatencyPercentile(double fraction) {
+            if (this.latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(this.latencies.length - 1, Math.floor(fraction * this.latencies.length));
+            return this.latencies[index];
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%d sessions, %d statements in %.3f seconds: %.1f statements/second, "
+                            + "latency p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                    this.numSessions,
+                    this.getNumStatements(),
+                    this.elapsedNanos / 1e9,
+                    this.getStatementsPerSecond(),
+                    this.getLatencyPercentile(0.5) / 1e6,
+                    this.getLatencyPercentile(0.99) / 1e6,
+                    this.getLatencyPercentile(1.0) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package calculator.server;
+
+import calculator.errors.EvaluationError;
+import calculator.errors.QuitError;
+import calculator.interpreter.Calculator;
+import calculator.parser.StatementSplitter;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+/**
+ * The state of one connection to the server: its own calculator, the statement it's
+ * in the middle of receiving, the statements waiting to be evaluated and the
+ * responses waiting to be sent.
+ *
+ * A session is only ever used by one thread at a time. While 'busy' is true, a worker
+ * owns it and evaluates its pending statements; otherwise the server's I/O thread
+ * does. The hand-offs between the two go through the worker pool and a concurrent
+ * queue, which make each side's changes visible to the other.
+ */
+class Session {
+    private final SocketChannel channel;
+    private final Calculator calculator;
+    private final StatementSplitter splitter;
+
+    // The bytes of the line being received
+    private byte[] line;
+    private int lineLength;
+
+    private final Queue<String> statements;
+    private final Queue<ByteBuffer> responses;
+
+    private boolean busy;
+    private boolean closing;
+
+    public Session(SocketChannel channel, Calculator calculator) {
+        this.channel = channel;
+        this.calculator = calculator;
+        this.splitter = new StatementSplitter();
+        this.line = new byte[128];
+        this.lineLength = 0;
+        this.statements = new ArrayDeque<>();
+        this.responses = new ArrayDeque<>();
+        this.busy = false;
+        this.closing = false;
+    }
+
+    public SocketChannel getChannel() {
+        return this.channel;
+    }
+
+    /**
+     * Splits the given bytes into lines, and the lines into statements, which are queued
+     * up for 'evaluatePending'. If a line or statement gets too long, queues an error
+     * response, marks the session as closing and returns false.
+     */
+    public boolean receive(ByteBuffer bytes) {
+        while (bytes.hasRemaining()) {
+            byte b = bytes.get();
+            if (b != '\n') {
+                if (this.lineLength == this.line.length) {
+                    if (this.lineLength >= CalculatorServer.MAX_STATEMENT_LENGTH) {
+                        return this.refuse("Line is longer than " + CalculatorServer.MAX_STATEMENT_LENGTH
+                                + " bytes");
+                    }
+                    this.line = Arrays.copyOf(this.line, this.line.length * 2);
+                }
+                this.line[this.lineLength] = b;
+                this.lineLength += 1;
+                continue;
+            }
+
+            // Lines may end with "\r\n"
+            int length = this.lineLength;
+            if (length > 0 && this.line[length - 1] == '\r') {
+                length -= 1;
+            }
+            String text = new String(this.line, 0, length, StandardCharsets.UTF_8);
+            this.lineLength = 0;
+            if (this.line.length > CalculatorServer.RETAINED_LINE_CAPACITY) {
+                this.line = new byte[128];
+            }
+
+            if (this.splitter.addLine(text)) {
+                this.statements.add(this.splitter.takeStatement());
+            } else if (this.splitter.getLength() > CalculatorServer.MAX_STATEMENT_LENGTH) {
+                return this.refuse("Statement is longer than " + CalculatorServer.MAX_STATEMENT_LENGTH
+                        + " characters");
+            }
+        }
+        return true;
+    }
+
+    private boolean refuse(String message) {
+        this.statements.clear();
+        this.respond("ERROR: " + message);
+        this.closing = true;
+        return false;
+    }
+
+    public boolean hasPendingStatements() {
+        return !this.statements.isEmpty();
+    }
+
+    /**
+     * Evaluates every pending statement in order, queueing one response line for each.
+     * This is what the worker threads run.
+     *
+     * Only the calculator's own errors (bad input, failed evaluation) become error
+     * responses. Anything else is a bug, and is thrown to the caller, which should
+     * 'abandon' the session.
+     */
+    public void evaluatePending() {
+        String statement;
+        while ((statement = this.statements.poll()) != null) {
+            String response;
+            try {
+                response = this.calculator.evaluate(statement);
+            } catch (EvaluationError ex) {
+                response = "ERROR: " + ex.getMessage();
+            } catch (QuitError ex) {
+                this.statements.clear();
+                this.closing = true;
+                return;
+            }
+            this.respond(response);
+        }
+    }
+
+    /**
+     * Gives up on this session after an unexpected error: its calculator may be in any
+     * state, so we drop its pending statements and close it after one last response.
+     */
+    public void abandon() {
+        this.refuse("Internal error; closing the session");
+    }
+
+    private void respond(String response) {
+        // Each response is exactly one line
+        if (response.length() > CalculatorServer.MAX_RESPONSE_LENGTH) {
+            response = response.substring(0, CalculatorServer.MAX_RESPONSE_LENGTH) + "...";
+        }
+        response = response.replace('\n', ' ').replace('\r', ' ') + "\n";
+        this.responses.add(ByteBuffer.wrap(response.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns the response that should be sent next, or null if there is none.
+     */
+    public ByteBuffer peekResponse() {
+        return this.responses.peek();
+    }
+
+    public void removeResponse() {
+        this.responses.remove();
+    }
+
+    public boolean isBusy() {
+        return this.busy;
+    }
+
+    public void setBusy(boolean busy) {
+        this.busy = busy;
+    }
+
+    public boolean isClosing() {
+        return this.closing;
+    }
+
+    public void setClosing() {
+        this.closing = true;
+    }
+}
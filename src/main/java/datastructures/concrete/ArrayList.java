@@ -0,0 +1,188 @@
+package datastructures.concrete;
+
+import datastructures.interfaces.IList;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import misc.exceptions.EmptyContainerException;
+
+/**
+ * An IList backed by a resizable array.
+ *
+ * Unlike DoubleLinkedList, 'get' and 'set' run in O(1) time, and each element
+ * costs a single array slot instead of a separate node object. Adding to the end
+ * runs in amortized O(1) time; inserting or deleting anywhere else needs to shift
+ * the subsequent elements over.
+ */
+public class ArrayList<T> implements IList<T> {
+    private static final int DEFAULT_CAPACITY = 4;
+    private static final Object[] EMPTY_ARRAY = new Object[0];
+
+    private T[] array;
+    private int size;
+
+    /**
+     * Creates an empty list. No backing array is allocated until the first
+     * element is added.
+     */
+    public ArrayList() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty list with room for the given number of elements before
+     * it needs to resize.
+     *
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public ArrayList(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Capacity must be non-negative: " + initialCapacity);
+        }
+        this.array = initialCapacity == 0 ? makeEmptyArray() : makeArray(initialCapacity);
+        this.size = 0;
+    }
+
+    /**
+     * Returns a new, empty array of the given size that can contain T objects.
+     */
+    @SuppressWarnings("unchecked")
+    private T[] makeArray(int arraySize) {
+        return (T[]) new Object[arraySize];
+    }
+
+    /**
+     * Returns the shared zero-length array used by lists with no capacity.
+     */
+    @SuppressWarnings("unchecked")
+    private T[] makeEmptyArray() {
+        return (T[]) EMPTY_ARRAY;
+    }
+
+    /**
+     * Makes sure the backing array has room for at least one more element,
+     * doubling its length if it is currently full.
+     */
+    private void ensureRoomForOneMore() {
+        if (size == array.length) {
+            T[] newArray = makeArray(Math.max(DEFAULT_CAPACITY, array.length * 2));
+            System.arraycopy(array, 0, newArray, 0, size);
+            array = newArray;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    @Override
+    public void add(T item) {
+        ensureRoomForOneMore();
+        array[size] = item;
+        size++;
+    }
+
+    @Override
+    public T remove() {
+        if (isEmpty()) {
+            throw new EmptyContainerException();
+        }
+        size--;
+        T result = array[size];
+        array[size] = null;
+        return result;
+    }
+
+    @Override
+    public T get(int index) {
+        checkIndex(index);
+        return array[index];
+    }
+
+    @Override
+    public void set(int index, T item) {
+        checkIndex(index);
+        array[index] = item;
+    }
+
+    @Override
+    public void insert(int index, T item) {
+        if (index < 0 || index >= size + 1) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureRoomForOneMore();
+        System.arraycopy(array, index, array, index + 1, size - index);
+        array[index] = item;
+        size++;
+    }
+
+    @Override
+    public T delete(int index) {
+        checkIndex(index);
+        T result = array[index];
+        System.arraycopy(array, index + 1, array, index, size - index - 1);
+        size--;
+        array[size] = null;
+        return result;
+    }
+
+    @Override
+    public int indexOf(T item) {
+        for (int i = 0; i < size; i++) {
+            T current = array[i];
+            if (item == null ? current == null : item.equals(current)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(T other) {
+        return indexOf(other) != -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new ArrayListIterator();
+    }
+
+    private class ArrayListIterator implements Iterator<T> {
+        private int index;
+
+        public ArrayListIterator() {
+            this.index = 0;
+        }
+
+        /**
+         * Returns 'true' if the iterator still has elements to look at;
+         * returns 'false' otherwise.
+         */
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        /**
+         * Returns the next item in the iteration and internally updates the
+         * iterator to advance one element forward.
+         *
+         * @throws NoSuchElementException if we have reached the end of the iteration and
+         *         there are no more elements to look at.
+         */
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T result = array[index];
+            index++;
+            return result;
+        }
+    }
+}
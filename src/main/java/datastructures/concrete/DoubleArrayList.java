@@ -0,0 +1,227 @@
+package datastructures.concrete;
+
+import datastructures.interfaces.IList;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import misc.exceptions.EmptyContainerException;
+
+/**
+ * A list of doubles backed by a resizable double[].
+ *
+ * Each element costs 8 bytes, instead of a reference plus a boxed Double object
+ * (and, for DoubleLinkedList, a node). Use the primitive methods ('addDouble',
+ * 'getDouble' and 'setDouble') to avoid allocating anything per element.
+ *
+ * The list also implements IList<Double>, so it can be passed to any code that
+ * expects an IList; those methods box and unbox on the way in and out. Since the
+ * elements are primitives, the list cannot contain null.
+ */
+public class DoubleArrayList implements IList<Double> {
+    private static final int DEFAULT_CAPACITY = 4;
+    private static final double[] EMPTY_ARRAY = new double[0];
+
+    private double[] array;
+    private int size;
+
+    /**
+     * Creates an empty list. No backing array is allocated until the first
+     * element is added.
+     */
+    public DoubleArrayList() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty list with room for the given number of elements before
+     * it needs to resize.
+     *
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public DoubleArrayList(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Capacity must be non-negative: " + initialCapacity);
+        }
+        this.array = initialCapacity == 0 ? EMPTY_ARRAY : new double[initialCapacity];
+        this.size = 0;
+    }
+
+    private DoubleArrayList(double[] array, int size) {
+        this.array = array;
+        this.size = size;
+    }
+
+    /**
+     * Returns a list containing every element of the given array, using the array
+     * itself as its backing array instead of copying it.
+     *
+     * Changes made through 'set' are visible in the array (and vice versa) until the
+     * list next needs to grow.
+     */
+    public static DoubleArrayList wrap(double[] array) {
+        return new DoubleArrayList(array, array.length);
+    }
+
+    /**
+     * Makes sure the backing array has room for at least one more element,
+     * doubling its length if it is currently full.
+     */
+    private void ensureRoomForOneMore() {
+        if (size == array.length) {
+            array = Arrays.copyOf(array, Math.max(DEFAULT_CAPACITY, array.length * 2));
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Adds the given value to the end of the list.
+     */
+    public void addDouble(double value) {
+        ensureRoomForOneMore();
+        array[size] = value;
+        size++;
+    }
+
+    /**
+     * Returns the value at the given index.
+     *
+     * @throws IndexOutOfBoundsException if the index is negative or not less than the size
+     */
+    public double getDouble(int index) {
+        checkIndex(index);
+        return array[index];
+    }
+
+    /**
+     * Overwrites the value at the given index.
+     *
+     * @throws IndexOutOfBoundsException if the index is negative or not less than the size
+     */
+    public void setDouble(int index, double value) {
+        checkIndex(index);
+        array[index] = value;
+    }
+
+    /**
+     * Returns a new array containing every element of the list, in order.
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(array, size);
+    }
+
+    @Override
+    public void add(Double item) {
+        addDouble(item);
+    }
+
+    @Override
+    public Double remove() {
+        if (isEmpty()) {
+            throw new EmptyContainerException();
+        }
+        size--;
+        return array[size];
+    }
+
+    @Override
+    public Double get(int index) {
+        return getDouble(index);
+    }
+
+    @Override
+    public void set(int index, Double item) {
+        setDouble(index, item);
+    }
+
+    @Override
+    public void insert(int index, Double item) {
+        if (index < 0 || index >= size + 1) {
+            throw new IndexOutOfBoundsException();
+        }
+        double value = item;
+        ensureRoomForOneMore();
+        System.arraycopy(array, index, array, index + 1, size - index);
+        array[index] = value;
+        size++;
+    }
+
+    @Override
+    public Double delete(int index) {
+        checkIndex(index);
+        double result = array[index];
+        System.arraycopy(array, index + 1, array, index, size - index - 1);
+        size--;
+        return result;
+    }
+
+    /**
+     * Returns the index of the first element equal to the given one, or -1 if there
+     * is none. Like Double.equals, NaN is equal to itself and 0.0 is not equal to -0.0.
+     */
+    @Override
+    public int indexOf(Double item) {
+        if (item == null) {
+            return -1;
+        }
+        long bits = Double.doubleToLongBits(item);
+        for (int i = 0; i < size; i++) {
+            if (Double.doubleToLongBits(array[i]) == bits) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Double other) {
+        return indexOf(other) != -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<Double> iterator() {
+        return new DoubleArrayListIterator();
+    }
+
+    private class DoubleArrayListIterator implements Iterator<Double> {
+        private int index;
+
+        public DoubleArrayListIterator() {
+            this.index = 0;
+        }
+
+        /**
+         * Returns 'true' if the iterator still has elements to look at;
+         * returns 'false' otherwise.
+         */
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        /**
+         * Returns the next item in the iteration and internally updates the
+         * iterator to advance one element forward.
+         *
+         * @throws NoSuchElementException if we have reached the end of the iteration and
+         *         there are no more elements to look at.
+         */
+        public Double next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            double result = array[index];
+            index++;
+            return result;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package datastructures.concrete.dictionaries;
 import datastructures.interfaces.IDictionary;
 import misc.exceptions.NoSuchKeyException;
 
+import java.util.function.BiConsumer;
+
 public class ArrayDictionary<K, V> implements IDictionary<K, V> {
     public static final int NUM_PAIRS = 100;
     private Pair<K, V>[] pairs;
@@ -130,6 +132,13 @@ public class ArrayDictionary<K, V> implements IDictionary<K, V> {
         return size;
     }
 
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(pairs[i].key, pairs[i].value);
+        }
+    }
+
     private static class Pair<K, V> {
         public K key;
         public V value;
@@ -0,0 +1,222 @@
+package datastructures.concrete.dictionaries;
+
+import datastructures.interfaces.IDictionary;
+import misc.exceptions.NoSuchKeyException;
+
+import java.util.function.BiConsumer;
+
+/**
+ * A hash table that resolves collisions using separate chaining.
+ *
+ * Each bucket holds a singly-linked chain of entries. Every entry remembers its
+ * key's hash code, so resizing never needs to call 'hashCode()' again and most
+ * mismatches within a chain are rejected without calling 'equals()'. Once the
+ * number of pairs exceeds the load factor times the number of buckets, the table
+ * doubles in size, keeping 'get', 'put', 'remove' and 'containsKey' O(1) on
+ * average.
+ *
+ * Like ArrayDictionary, this dictionary accepts null keys.
+ */
+public class ChainedHashDictionary<K, V> implements IDictionary<K, V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+    // The largest power of two an array can hold
+    private static final int MAX_CHAINS = 1 << 30;
+    private static final int MAX_CAPACITY = (int) (MAX_CHAINS * MAX_LOAD_FACTOR);
+
+    private Entry<K, V>[] chains;
+    private int size;
+    private int resizeThreshold;
+
+    public ChainedHashDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty dictionary that can hold roughly the given number of
+     * pairs before it needs to resize.
+     *
+     * @throws IllegalArgumentException if the capacity is not positive
+     * @throws IllegalArgumentException if the capacity is more than MAX_CAPACITY
+     */
+    public ChainedHashDictionary(int initialCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + initialCapacity);
+        } else if (initialCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be at most " + MAX_CAPACITY + ": " + initialCapacity);
+        }
+        int numChains = 1;
+        while (numChains * MAX_LOAD_FACTOR < initialCapacity) {
+            numChains *= 2;
+        }
+        this.chains = makeArrayOfChains(numChains);
+        this.size = 0;
+        this.resizeThreshold = (int) (numChains * MAX_LOAD_FACTOR);
+    }
+
+    /**
+     * Returns a new, empty array of the given size that can contain
+     * Entry objects.
+     *
+     * @param arraySize number of chains; must be a power of two
+     * @return an array of the given size
+     */
+    @SuppressWarnings("unchecked")
+    private Entry<K, V>[] makeArrayOfChains(int arraySize) {
+        return (Entry<K, V>[]) new Entry<?, ?>[arraySize];
+    }
+
+    /**
+     * Returns the hash code of the given key, with the high bits mixed into the
+     * low ones. We pick chains by masking off the low bits, so this keeps keys
+     * whose hash codes only differ in their upper bits from piling into one chain.
+     */
+    private static int hash(Object key) {
+        if (key == null) {
+            return 0;
+        }
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int indexFor(int hash, int numChains) {
+        return hash & (numChains - 1);
+    }
+
+    private static boolean keysAreEqual(Object key, int hash, Entry<?, ?> entry) {
+        if (entry.hash != hash) {
+            return false;
+        }
+        if (key == null || entry.key == null) {
+            return entry.key == key;
+        } else {
+            return key == entry.key || key.equals(entry.key);
+        }
+    }
+
+    /**
+     * Returns the entry for the given key, or null if there is none.
+     */
+    private Entry<K, V> findEntry(K key) {
+        int hash = hash(key);
+        Entry<K, V> current = chains[indexFor(hash, chains.length)];
+        while (current != null) {
+            if (keysAreEqual(key, hash, current)) {
+                return current;
+            }
+            current = current.next;
+        }
+        return null;
+    }
+
+    /**
+     * Moves every entry into a new array of chains twice as large.
+     */
+    private void resize() {
+        Entry<K, V>[] newChains = makeArrayOfChains(chains.length * 2);
+        for (Entry<K, V> head : chains) {
+            Entry<K, V> current = head;
+            while (current != null) {
+                Entry<K, V> next = current.next;
+                int index = indexFor(current.hash, newChains.length);
+                current.next = newChains[index];
+                newChains[index] = current;
+                current = next;
+            }
+        }
+        chains = newChains;
+        resizeThreshold = (int) (newChains.length * MAX_LOAD_FACTOR);
+    }
+
+    @Override
+    public V get(K key) {
+        Entry<K, V> entry = findEntry(key);
+        if (entry == null) {
+            throw new NoSuchKeyException();
+        }
+        return entry.value;
+    }
+
+    @Override
+    public V getOrDefault(K key, V defaultValue) {
+        Entry<K, V> entry = findEntry(key);
+        return entry == null ? defaultValue : entry.value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        int hash = hash(key);
+        int index = indexFor(hash, chains.length);
+        for (Entry<K, V> current = chains[index]; current != null; current = current.next) {
+            if (keysAreEqual(key, hash, current)) {
+                current.value = value;
+                return;
+            }
+        }
+        chains[index] = new Entry<>(hash, key, value, chains[index]);
+        size++;
+        if (size > resizeThreshold) {
+            resize();
+        }
+    }
+
+    @Override
+    public V remove(K key) {
+        int hash = hash(key);
+        int index = indexFor(hash, chains.length);
+        Entry<K, V> prev = null;
+        Entry<K, V> current = chains[index];
+        while (current != null) {
+            if (keysAreEqual(key, hash, current)) {
+                if (prev == null) {
+                    chains[index] = current.next;
+                } else {
+                    prev.next = current.next;
+                }
+                size--;
+                return current.value;
+            }
+            prev = current;
+            current = current.next;
+        }
+        throw new NoSuchKeyException();
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return findEntry(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Entry<K, V> head : chains) {
+            for (Entry<K, V> current = head; current != null; current = current.next) {
+                action.accept(current.key, current.value);
+            }
+        }
+    }
+
+    private static class Entry<K, V> {
+        public final int hash;
+        public final K key;
+        public V value;
+        public Entry<K, V> next;
+
+        public Entry(int hash, K key, V value, Entry<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package datastructures.concrete.dictionaries;
+
+import datastructures.interfaces.IDictionary;
+import misc.exceptions.NoSuchKeyException;
+
+import java.util.function.BiConsumer;
+
+/**
+ * A dictionary whose pairs live in a hash array mapped trie (HAMT), which is never
+ * modified once built: 'put' and 'remove' build a new path from the root down to
+ * the changed pair and share every other node with the old trie.
+ *
+ * Each level of the trie uses 5 more bits of the key's hash code to choose among up
+ * to 32 children. A node only stores the children that exist, along with a 32-bit
+ * map of which ones those are, so 'get', 'put' and 'remove' touch O(log32 n) small
+ * nodes. Keys whose hash codes are identical end up together in a collision node.
+ *
+ * Because the trie is immutable, 'copy' is O(1): the copy and the original start out
+ * sharing the whole trie, and changes to either one are invisible to the other. Each
+ * dictionary object on its own is no more thread-safe than any other dictionary, but
+ * copies can be used (and changed) by different threads at the same time.
+ *
+ * Like the other dictionaries, this one accepts a null key; it is stored
+ * separately from the trie.
+ */
+public class PersistentHashDictionary<K, V> implements IDictionary<K, V> {
+    private static final int BITS_PER_LEVEL = 5;
+    private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+
+    private Node root;
+    private int size;
+
+    private boolean hasNullKey;
+    private V nullKeyValue;
+
+    public PersistentHashDictionary() {
+        this.root = BitmapNode.EMPTY;
+        this.size = 0;
+        this.hasNullKey = false;
+        this.nullKeyValue = null;
+    }
+
+    private PersistentHashDictionary(PersistentHashDictionary<K, V> other) {
+        this.root = other.root;
+        this.size = other.size;
+        this.hasNullKey = other.hasNullKey;
+        this.nullKeyValue = other.nullKeyValue;
+    }
+
+    /**
+     * Returns a dictionary with the same pairs as this one, in O(1) time. Changing
+     * either dictionary afterwards doesn't affect the other.
+     */
+    public PersistentHashDictionary<K, V> copy() {
+        return new PersistentHashDictionary<>(this);
+    }
+
+    private static int hash(Object key) {
+        // The top levels of the trie only look at the low bits, so we mix the high bits in
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        if (key == null) {
+            if (!this.hasNullKey) {
+                throw new NoSuchKeyException();
+            }
+            return this.nullKeyValue;
+        }
+        Entry entry = this.root.find(key, hash(key), 0);
+        if (entry == null) {
+            throw new NoSuchKeyException();
+        }
+        return (V) entry.value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(K key, V defaultValue) {
+        if (key == null) {
+            return this.hasNullKey ? this.nullKeyValue : defaultValue;
+        }
+        Entry entry = this.root.find(key, hash(key), 0);
+        return entry == null ? defaultValue : (V) entry.value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        if (key == null) {
+            if (!this.hasNullKey) {
+                this.hasNullKey = true;
+                this.size += 1;
+            }
+            this.nullKeyValue = value;
+            return;
+        }
+        int hash = hash(key);
+        if (this.root.find(key, hash, 0) == null) {
+            this.size += 1;
+        }
+        this.root = this.root.with(new Entry(key, hash, value), 0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(K key) {
+        if (key == null) {
+            if (!this.hasNullKey) {
+                throw new NoSuchKeyException();
+            }
+            V value = this.nullKeyValue;
+            this.hasNullKey = false;
+            this.nullKeyValue = null;
+            this.size -= 1;
+            return value;
+        }
+        int hash = hash(key);
+        Entry entry = this.root.find(key, hash, 0);
+        if (entry == null) {
+            throw new NoSuchKeyException();
+        }
+        Node newRoot = this.root.without(key, hash, 0);
+        this.root = newRoot == null ? BitmapNode.EMPTY : newRoot;
+        this.size -= 1;
+        return (V) entry.value;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        if (key == null) {
+            return this.hasNullKey;
+        }
+        return this.root.find(key, hash(key), 0) != null;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (this.hasNullKey) {
+            action.accept(null, this.nullKeyValue);
+        }
+        this.root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    private static class Entry {
+        public final Object key;
+        public final int hash;
+        public final Object value;
+
+        public Entry(Object key, int hash, Object value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+
+        public boolean matches(Object key, int hash) {
+            return this.hash == hash && (this.key == key || this.key.equals(key));
+        }
+    }
+
+    /**
+     * A node of the trie. Every slot of a node holds either an Entry or another Node.
+     */
+    private abstract static class Node {
+        /**
+         * Returns the entry for the given key, or null if there is none. 'shift' is
+         * the number of hash bits the levels above this node have used.
+         */
+        public abstract Entry find(Object key, int hash, int shift);
+
+        /**
+         * Returns a copy of this node that also contains the given entry, replacing
+         * the entry with the same key if there is one.
+         */
+        public abstract Node with(Entry entry, int shift);
+
+        /**
+         * Returns a copy of this node without the given key, or null if that leaves
+         * it empty.
+         *
+         * Precondition: the key is present.
+         */
+        public abstract Node without(Object key, int hash, int shift);
+
+        /**
+         * Calls 'action' on every entry under this node.
+         */
+        public abstract void forEach(BiConsumer<Object, Object> action);
+
+        /**
+         * Returns what the parent should store in place of this node: its only entry,
+         * if it has just one, or else the node itself.
+         */
+        public abstract Object collapse();
+    }
+
+    private static class BitmapNode extends Node {
+        public static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        // Bit i is set if there is a slot for the hash bits 'i' at this level; the
+        // slots are stored in order, with no gaps
+        private final int bitmap;
+        private final Object[] slots;
+
+        public BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private static int bitFor(int hash, int shift) {
+            return 1 << ((hash >>> shift) & LEVEL_MASK);
+        }
+
+        private int indexOf(int bit) {
+            return Integer.bitCount(this.bitmap & (bit - 1));
+        }
+
+        @Override
+        public Entry find(Object key, int hash, int shift) {
+            int bit = bitFor(hash, shift);
+            if ((this.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = this.slots[this.indexOf(bit)];
+            if (slot instanceof Entry) {
+                Entry entry = (Entry) slot;
+                return entry.matches(key, hash) ? entry : null;
+            }
+            return ((Node) slot).find(key, hash, shift + BITS_PER_LEVEL);
+        }
+
+        @Override
+        public Node with(Entry entry, int shift) {
+            int bit = bitFor(entry.hash, shift);
+            int index = this.indexOf(bit);
+            if ((this.bitmap & bit) == 0) {
+                Object[] newSlots = new Object[this.slots.length + 1];
+                System.arraycopy(this.slots, 0, newSlots, 0, index);
+                newSlots[index] = entry;
+                System.arraycopy(this.slots, index, newSlots, index + 1, this.slots.length - index);
+                return new BitmapNode(this.bitmap | bit, newSlots);
+            }
+
+            Object slot = this.slots[index];
+            Object replacement;
+            if (slot instanceof Node) {
+                replacement = ((Node) slot).with(entry, shift + BITS_PER_LEVEL);
+            } else if (((Entry) slot).matches(entry.key, entry.hash)) {
+                replacement = entry;
+            } else {
+                replacement = merge((Entry) slot, entry, shift + BITS_PER_LEVEL);
+            }
+            Object[] newSlots = this.slots.clone();
+            newSlots[index] = replacement;
+            return new BitmapNode(this.bitmap, newSlots);
+        }
+
+        /**
+         * Returns a node containing two entries with different keys, which both
+         * belong in the same slot of the level above.
+         */
+        private static Node merge(Entry first, Entry second, int shift) {
+            if (first.hash == second.hash) {
+                return new CollisionNode(first.hash, new Entry[] {first, second});
+            }
+            int firstBit = bitFor(first.hash, shift);
+            int secondBit = bitFor(second.hash, shift);
+            if (firstBit == secondBit) {
+                return new BitmapNode(firstBit, new Object[] {merge(first, second, shift + BITS_PER_LEVEL)});
+            } else if (Integer.compareUnsigned(firstBit, secondBit) < 0) {
+                return new BitmapNode(firstBit | secondBit, new Object[] {first, second});
+            } else {
+                return new BitmapNode(firstBit | secondBit, new Object[] {second, first});
+            }
+        }
+
+        @Override
+        public Node without(Object key, int hash, int shift) {
+            int bit = bitFor(hash, shift);
+            int index = this.indexOf(bit);
+            Object slot = this.slots[index];
+
+            Object replacement = null;
+            if (slot instanceof Node) {
+                Node child = ((Node) slot).without(key, hash, shift + BITS_PER_LEVEL);
+                replacement = child == null ? null : child.collapse();
+            }
+
+            if (replacement != null) {
+                Object[] newSlots = this.slots.clone();
+                newSlots[index] = replacement;
+                return new BitmapNode(this.bitmap, newSlots);
+            } else if (this.slots.length == 1) {
+                return null;
+            } else {
+                Object[] newSlots = new Object[this.slots.length - 1];
+                System.arraycopy(this.slots, 0, newSlots, 0, index);
+                System.arraycopy(this.slots, index + 1, newSlots, index, newSlots.length - index);
+                return new BitmapNode(this.bitmap & ~bit, newSlots);
+            }
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (Object slot : this.slots) {
+                if (slot instanceof Entry) {
+                    action.accept(((Entry) slot).key, ((Entry) slot).value);
+                } else {
+                    ((Node) slot).forEach(action);
+                }
+            }
+        }
+
+        @Override
+        public Object collapse() {
+            if (this.slots.length == 1 && this.slots[0] instanceof Entry) {
+                return this.slots[0];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Holds every entry whose key has one particular hash code.
+     */
+    private static class CollisionNode extends Node {
+        private final int hash;
+        private final Entry[] entries;
+
+        public CollisionNode(int hash, Entry[] entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < this.entries.length; i++) {
+                if (this.entries[i].key.equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Entry find(Object key, int hash, int shift) {
+            if (hash != this.hash) {
+                return null;
+            }
+            int index = this.indexOf(key);
+            return index == -1 ? null : this.entries[index];
+        }
+
+        @Override
+        public Node with(Entry entry, int shift) {
+            if (entry.hash != this.hash) {
+                // The new entry only shares some of our hash bits: put both under a new node
+                Node parent = new BitmapNode(BitmapNode.bitFor(this.hash, shift), new Object[] {this});
+                return parent.with(entry, shift);
+            }
+            int index = this.indexOf(entry.key);
+            Entry[] newEntries;
+            if (index == -1) {
+                newEntries = new Entry[this.entries.length + 1];
+                System.arraycopy(this.entries, 0, newEntries, 0, this.entries.length);
+                newEntries[this.entries.length] = entry;
+            } else {
+                newEntries = this.entries.clone();
+                newEntries[index] = entry;
+            }
+            return new CollisionNode(this.hash, newEntries);
+        }
+
+        @Override
+        public Node without(Object key, int hash, int shift) {
+            int index = this.indexOf(key);
+            if (this.entries.length == 1) {
+                return null;
+            }
+            Entry[] newEntries = new Entry[this.entries.length - 1];
+            System.arraycopy(this.entries, 0, newEntries, 0, index);
+            System.arraycopy(this.entries, index + 1, newEntries, index, newEntries.length - index);
+            return new CollisionNode(this.hash, newEntries);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (Entry entry : this.entries) {
+                action.accept(entry.key, entry.value);
+            }
+        }
+
+        @Override
+        public Object collapse() {
+            return this.entries.length == 1 ? this.entries[0] : this;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package datastructures.concrete.dictionaries;
+
+import datastructures.interfaces.IDictionary;
+import misc.exceptions.NoSuchKeyException;
+
+import java.util.function.BiConsumer;
+
+/**
+ * A hash table specialized for String keys, meant for symbol tables such as the
+ * calculator's function registries.
+ *
+ * Collisions are resolved using open addressing with linear probing: keys, their
+ * hash codes and values live in three flat parallel arrays, so a lookup touches a
+ * few adjacent array slots instead of chasing pointers through chain nodes. The
+ * hash code of each stored key is kept alongside it, and Strings cache their own
+ * hash code, so a probe that hits a different key is almost always rejected by
+ * comparing two ints instead of calling 'equals()'.
+ *
+ * Removal uses backward-shift deletion instead of tombstones, so tables that see
+ * a lot of put/remove churn never degrade.
+ *
+ * Like the other dictionaries, this one accepts a null key; it is stored
+ * separately from the table.
+ */
+public class StringHashDictionary<V> implements IDictionary<String, V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double MAX_LOAD_FACTOR = 0.5;
+    // The largest power of two an array can hold
+    private static final int MAX_SLOTS = 1 << 30;
+    private static final int MAX_CAPACITY = (int) (MAX_SLOTS * MAX_LOAD_FACTOR);
+
+    private String[] keys;
+    private int[] hashes;
+    private V[] values;
+    private int mask;
+    private int shift;
+    private int size;
+    private int resizeThreshold;
+
+    private boolean hasNullKey;
+    private V nullKeyValue;
+
+    public StringHashDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty dictionary that can hold roughly the given number of
+     * pairs before it needs to resize.
+     *
+     * @throws IllegalArgumentException if the capacity is not positive
+     * @throws IllegalArgumentException if the capacity is more than MAX_CAPACITY
+     */
+    public StringHashDictionary(int initialCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + initialCapacity);
+        } else if (initialCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be at most " + MAX_CAPACITY + ": " + initialCapacity);
+        }
+        int numSlots = 2;
+        while (numSlots * MAX_LOAD_FACTOR < initialCapacity) {
+            numSlots *= 2;
+        }
+        this.allocate(numSlots);
+        this.size = 0;
+        this.hasNullKey = false;
+        this.nullKeyValue = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int numSlots) {
+        this.keys = new String[numSlots];
+        this.hashes = new int[numSlots];
+        this.values = (V[]) new Object[numSlots];
+        this.mask = numSlots - 1;
+        this.shift = 32 - Integer.numberOfTrailingZeros(numSlots);
+        this.resizeThreshold = (int) (numSlots * MAX_LOAD_FACTOR);
+    }
+
+    /**
+     * Returns the slot a key with the given hash code would ideally occupy.
+     *
+     * We use Fibonacci hashing (multiplying by 2^32 / phi and keeping the top bits)
+     * since String hash codes of similar names tend to differ only in their low bits.
+     */
+    private int homeSlot(int hash) {
+        return (hash * 0x9E3779B9) >>> this.shift;
+    }
+
+    /**
+     * Returns the slot containing the given non-null key, or -1 if it is absent.
+     */
+    private int findSlot(String key) {
+        int hash = key.hashCode();
+        int slot = this.homeSlot(hash);
+        String current = this.keys[slot];
+        while (current != null) {
+            if (this.hashes[slot] == hash && (current == key || current.equals(key))) {
+                return slot;
+            }
+            slot = (slot + 1) & this.mask;
+            current = this.keys[slot];
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the given pair in the first empty slot at or after its home slot.
+     *
+     * Precondition: the key is not already present, and there is an empty slot.
+     */
+    private void insertNew(String key, int hash, V value) {
+        int slot = this.homeSlot(hash);
+        while (this.keys[slot] != null) {
+            slot = (slot + 1) & this.mask;
+        }
+        this.keys[slot] = key;
+        this.hashes[slot] = hash;
+        this.values[slot] = value;
+    }
+
+    /**
+     * Moves every pair into a table twice as large.
+     */
+    private void resize() {
+        String[] oldKeys = this.keys;
+        int[] oldHashes = this.hashes;
+        V[] oldValues = this.values;
+        this.allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                this.insertNew(oldKeys[i], oldHashes[i], oldValues[i]);
+            }
+        }
+    }
+
+    @Override
+    public V get(String key) {
+        if (key == null) {
+            if (!this.hasNullKey) {
+                throw new NoSuchKeyException();
+            }
+            return this.nullKeyValue;
+        }
+        int slot = this.findSlot(key);
+        if (slot == -1) {
+            throw new NoSuchKeyException();
+        }
+        return this.values[slot];
+    }
+
+    @Override
+    public V getOrDefault(String key, V defaultValue) {
+        if (key == null) {
+            return this.hasNullKey ? this.nullKeyValue : defaultValue;
+        }
+        int slot = this.findSlot(key);
+        return slot == -1 ? defaultValue : this.values[slot];
+    }
+
+    @Override
+    public void put(String key, V value) {
+        if (key == null) {
+            if (!this.hasNullKey) {
+                this.hasNullKey = true;
+                this.size++;
+            }
+            this.nullKeyValue = value;
+            return;
+        }
+        int slot = this.findSlot(key);
+        if (slot != -1) {
+            this.values[slot] = value;
+            return;
+        }
+        this.insertNew(key, key.hashCode(), value);
+        this.size++;
+        if (this.size > this.resizeThreshold) {
+            this.resize();
+        }
+    }
+
+    @Override
+    public V remove(String key) {
+        if (key == null) {
+            if (!this.hasNullKey) {
+                throw new NoSuchKeyException();
+            }
+            V result = this.nullKeyValue;
+            this.hasNullKey = false;
+            this.nullKeyValue = null;
+            this.size--;
+            return result;
+        }
+        int slot = this.findSlot(key);
+        if (slot == -1) {
+            throw new NoSuchKeyException();
+        }
+        V result = this.values[slot];
+        this.deleteSlot(slot);
+        this.size--;
+        return result;
+    }
+
+    /**
+     * Empties the given slot, then shifts later members of the same probe run
+     * backwards so that every remaining key is still reachable from its home slot.
+     */
+    private void deleteSlot(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & this.mask;
+            if (this.keys[slot] == null) {
+                break;
+            }
+            // The key in 'slot' may move into the hole only if its home slot is not
+            // (cyclically) in the range (hole, slot].
+            int home = this.homeSlot(this.hashes[slot]);
+            if (((slot - home) & this.mask) >= ((slot - hole) & this.mask)) {
+                this.keys[hole] = this.keys[slot];
+                this.hashes[hole] = this.hashes[slot];
+                this.values[hole] = this.values[slot];
+                hole = slot;
+            }
+        }
+        this.keys[hole] = null;
+        this.hashes[hole] = 0;
+        this.values[hole] = null;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        if (key == null) {
+            return this.hasNullKey;
+        }
+        return this.findSlot(key) != -1;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super V> action) {
+        if (this.hasNullKey) {
+            action.accept(null, this.nullKeyValue);
+        }
+        for (int slot = 0; slot < this.keys.length; slot++) {
+            if (this.keys[slot] != null) {
+                action.accept(this.keys[slot], this.values[slot]);
+            }
+        }
+    }
+}
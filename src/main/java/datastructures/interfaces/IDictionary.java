@@ -2,6 +2,8 @@ package datastructures.interfaces;
 
 import misc.exceptions.NoSuchKeyException;
 
+import java.util.function.BiConsumer;
+
 /**
  * Represents a data structure that contains a bunch of key-value mappings. Each key must be unique.
  */
@@ -59,4 +61,10 @@ public interface IDictionary<K, V> {
     public default boolean isEmpty() {
         return this.size() == 0;
     }
+
+    /**
+     * Calls 'action' on every key-value pair in this dictionary, in no particular order.
+     * The dictionary must not be modified until this returns.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action);
 }
@@ -0,0 +1,147 @@
+package calculator;
+
+import calculator.ast.AstInterner;
+import calculator.ast.AstNode;
+import calculator.parser.Parser;
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestAstInterner extends BaseTest {
+    private static AstNode parseExpression(String input) {
+        // The parser wraps every program in a 'block' node
+        return new Parser().parse(input + "\n").getChildren().get(0);
+    }
+
+    private static AstNode makeOperation(String name, AstNode... children) {
+        IList<AstNode> list = new ArrayList<>();
+        for (AstNode child : children) {
+            list.add(child);
+        }
+        return new AstNode(name, list);
+    }
+
+    @Test(timeout=SECOND)
+    public void testStructuralEquality() {
+        AstNode a = makeOperation("+", new AstNode("x"), makeOperation("*", new AstNode(2), new AstNode("y")));
+        AstNode b = makeOperation("+", new AstNode("x"), makeOperation("*", new AstNode(2), new AstNode("y")));
+        AstNode c = makeOperation("+", new AstNode("x"), makeOperation("*", new AstNode(3), new AstNode("y")));
+        assertNotSame(a, b);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertFalse(a.equals(c));
+
+        // Variables, operations and numbers are never equal to each other
+        assertFalse(new AstNode("f").equals(makeOperation("f")));
+        assertFalse(new AstNode("1").equals(new AstNode(1)));
+
+        // Numbers follow Double.equals
+        assertEquals(new AstNode(Double.NaN), new AstNode(Double.NaN));
+        assertFalse(new AstNode(0.0).equals(new AstNode(-0.0)));
+    }
+
+    @Test(timeout=SECOND)
+    public void testInterningSharesStructure() {
+        AstNode a = AstInterner.intern(parseExpression("(x + 1) * (x + 1) - sin(x + 1)"));
+        AstNode b = AstInterner.intern(makeOperation("+", new AstNode("x"), new AstNode(1)));
+        assertSame(a.getChildren().get(0).getChildren().get(0), b);
+        assertSame(a.getChildren().get(0).getChildren().get(1), b);
+        assertSame(a.getChildren().get(1).getChildren().get(0), b);
+
+        assertSame(a, AstInterner.intern(parseExpression("(x + 1) * (x + 1) - sin(x + 1)")));
+        assertSame(AstInterner.number(4), AstInterner.intern(new AstNode(4)));
+        assertSame(AstInterner.variable("y"), AstInterner.intern(new AstNode("y")));
+    }
+
+    @Test(timeout=SECOND)
+    public void testParserInterns() {
+        Parser parser = new Parser();
+        assertSame(parser.parse("a * b + c\n"), parser.parse("a * b + c\n"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testMapChildrenKeepsUnchangedNodes() {
+        AstNode node = AstInterner.intern(parseExpression("x * y + 2"));
+        assertSame(node, node.mapChildren(child -> child));
+
+        AstNode renamed = node.mapChildren(child -> child.isNumber() ? AstInterner.number(3) : child);
+        assertSame(AstInterner.intern(parseExpression("x * y + 3")), renamed);
+        assertSame(node.getChildren().get(0), renamed.getChildren().get(0));
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testInterningAcrossThreads() throws InterruptedException {
+        int numThreads = 8;
+        int numNodes = 5000;
+        AstNode[][] results = new AstNode[numThreads][numNodes];
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            AstNode[] result = results[i];
+            threads[i] = new Thread(() -> {
+                try {
+                    for (int j = 0; j < numNodes; j++) {
+                        result[j] = AstInterner.intern(makeOperation("+",
+                                new AstNode("x"),
+                                makeOperation("*", new AstNode(j % 100), new AstNode(j / 100))));
+                    }
+                } catch (RuntimeException ex) {
+                    failure.compareAndSet(null, ex);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        for (int j = 0; j < numNodes; j++) {
+            for (int i = 1; i < numThreads; i++) {
+                assertSame(results[0][j], results[i][j]);
+            }
+            assertSame(results[0][j].getChildren().get(0), results[0][0].getChildren().get(0));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testChildrenCannotBeModified() {
+        IList<AstNode> children = new ArrayList<>();
+        children.add(new AstNode("x"));
+        AstNode node = new AstNode("sin", children);
+
+        // Changing the original list doesn't affect the node
+        children.add(new AstNode("y"));
+        assertEquals(1, node.getChildren().size());
+
+        try {
+            node.getChildren().add(new AstNode("z"));
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException ex) {
+            // Do nothing: this is ok
+        }
+        try {
+            node.getChildren().set(0, new AstNode("z"));
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException ex) {
+            // Do nothing: this is ok
+        }
+        assertTrue(node.getChildren().contains(new AstNode("x")));
+    }
+}
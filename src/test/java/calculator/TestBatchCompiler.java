@@ -0,0 +1,160 @@
+package calculator;
+
+import analysis.utils.AnalysisUtils;
+import calculator.ast.AstNode;
+import calculator.compiler.BatchCompiler;
+import calculator.compiler.BatchExpression;
+import calculator.compiler.CompiledExpression;
+import calculator.compiler.ExpressionCompiler;
+import calculator.errors.EvaluationError;
+import calculator.parser.Parser;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static org.junit.Assert.fail;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestBatchCompiler extends BaseTest {
+    private static AstNode parseExpression(String input) {
+        // The parser wraps every program in a 'block' node
+        return new Parser().parse(input + "\n").getChildren().get(0);
+    }
+
+    private static double[] makeInputs(int numPoints) {
+        double[] xs = new double[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            xs[i] = -10.0 + i * 0.0137;
+        }
+        return xs;
+    }
+
+    /**
+     * Checks that evaluating the expression in a batch gives exactly the same results
+     * as evaluating it one point at a time.
+     */
+    private static void assertBatchMatches(IDictionary<String, AstNode> variables, AstNode expr, int numPoints) {
+        double[] xs = makeInputs(numPoints);
+        double[] ys = new double[numPoints];
+        BatchCompiler.compile(variables, expr, "x").evaluate(xs, ys);
+
+        CompiledExpression expected = ExpressionCompiler.compile(variables, expr, "x");
+        for (int i = 0; i < numPoints; i++) {
+            assertEquals(expected.evaluate(new double[] {xs[i]}), ys[i]);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestOperators() {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        String[] inputs = {
+            "x", "3", "x + 4", "x - 4", "4 * x", "x / 4", "x ^ 2", "2 ^ x", "-x",
+            "sin(x)", "cos(x)", "x * x * x - x / (x + 1)", "2 ^ 0.5 * sin(x / 3) - cos(-x) / 7",
+        };
+        for (String input : inputs) {
+            assertBatchMatches(variables, parseExpression(input), 100);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testManyPoints() {
+        // Spans several blocks, with a partial block at the end
+        AstNode expr = parseExpression("x ^ 2 + 4 * x + 4");
+        assertBatchMatches(new ChainedHashDictionary<>(), expr, 0);
+        assertBatchMatches(new ChainedHashDictionary<>(), expr, 1);
+        assertBatchMatches(new ChainedHashDictionary<>(), expr, 10000);
+        assertBatchMatches(new ChainedHashDictionary<>(), expr, 100003);
+    }
+
+    @Test(timeout=SECOND)
+    public void testRange() {
+        BatchExpression expr = BatchCompiler.compile(new ChainedHashDictionary<>(), parseExpression("x * 2"), "x");
+        double[] xs = makeInputs(2000);
+        double[] ys = new double[2000];
+        expr.evaluate(xs, 700, 1900, ys);
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i >= 700 && i < 1900 ? xs[i] * 2 : 0.0, ys[i]);
+        }
+
+        try {
+            expr.evaluate(xs, new double[1999]);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // Do nothing: this is ok
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testParallelMatchesSequential() {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        variables.put("y", AnalysisUtils.makeLargeExpression(20, "x"));
+        BatchExpression expr = BatchCompiler.compile(variables, parseExpression("sin(y) / x + y ^ 0.5"), "x");
+
+        for (int numPoints : new int[] {0, 1, 100, 100003, 1000000}) {
+            double[] xs = makeInputs(numPoints);
+            double[] sequential = new double[numPoints];
+            double[] parallel = new double[numPoints];
+            expr.evaluate(xs, sequential);
+            expr.evaluateInParallel(xs, parallel);
+            for (int i = 0; i < numPoints; i++) {
+                assertEquals(sequential[i], parallel[i]);
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testVariables() {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        variables.put("c", parseExpression("4"));
+        variables.put("y", parseExpression("c * x - sin(c)"));
+        assertBatchMatches(variables, parseExpression("y * y + c * y - x"), 1000);
+
+        // The parameter shadows variables
+        variables.put("x", parseExpression("100"));
+        assertBatchMatches(variables, parseExpression("y * y + c * y - x"), 1000);
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testLargeExpressions() {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        assertBatchMatches(variables, AnalysisUtils.makeLargeExpression(5000, "x"), 1000);
+
+        StringBuilder input = new StringBuilder("x");
+        for (int i = 1; i < 1000; i++) {
+            input.append(" + x * ").append(i);
+        }
+        assertBatchMatches(variables, parseExpression(input.toString()), 1000);
+    }
+
+    @Test(timeout=SECOND)
+    public void testSharedDefinitionsEvaluateOnce() {
+        // Fully expanded, 'v12' would have millions of nodes
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        variables.put("v0", AnalysisUtils.makeLargeExpression(100, "x"));
+        for (int i = 1; i <= 12; i++) {
+            variables.put("v" + i, parseExpression("v" + (i - 1) + " * 0.5 + v" + (i - 1) + " * 0.5"));
+        }
+        assertBatchMatches(variables, parseExpression("v12 - v0 + v3"), 1000);
+    }
+
+    @Test(timeout=SECOND)
+    public void testErrors() {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        variables.put("a", parseExpression("b + 1"));
+        variables.put("b", parseExpression("a * 2"));
+
+        String[] badInputs = {"3 + undefined", "mystery(x)", "mystery(x, x)", "a"};
+        for (String input : badInputs) {
+            try {
+                BatchCompiler.compile(variables, parseExpression(input), "x");
+                fail("Expected EvaluationError for " + input);
+            } catch (EvaluationError err) {
+                // Do nothing: this is ok
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package calculator;
+
+import calculator.errors.IncompleteInputError;
+import calculator.errors.ParseError;
+import calculator.interpreter.Calculator;
+import calculator.parser.Parser;
+import calculator.parser.StatementSplitter;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestBatchRunner extends BaseTest {
+    private static String run(String script, BatchRunner.Summary[] summary) throws IOException {
+        StringWriter output = new StringWriter();
+        BatchRunner runner = new BatchRunner(new Calculator());
+        summary[0] = runner.run(new BufferedReader(new StringReader(script)), output);
+        return output.toString();
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestRunScript() throws IOException {
+        String script = String.join("\n",
+                "# Set things up",
+                "x := 3",
+                "",
+                "y := f(x,",
+                "       x + 1) # the ')' here counts, but not this one: )",
+                "z := x + \\",
+                "     2",
+                "toDouble(z * 2)");
+        BatchRunner.Summary[] summary = new BatchRunner.Summary[1];
+        assertEquals("3\nf(3, 4)\n5\n10\n", run(script, summary));
+        assertEquals(4L, summary[0].getNumStatements());
+        assertEquals(0L, summary[0].getNumErrors());
+    }
+
+    @Test(timeout=SECOND)
+    public void testErrorsDontStopTheScript() throws IOException {
+        String script = String.join("\n",
+                "x := 3",
+                "x +",
+                "x + 1)",
+                "plot(x, y, 0, 1, 0.5)",
+                "x * 2",
+                "(x + 1");
+        BatchRunner.Summary[] summary = new BatchRunner.Summary[1];
+        String[] lines = run(script, summary).split("\n");
+        assertEquals(6, lines.length);
+        assertEquals("3", lines[0]);
+        assertTrue(lines[1], lines[1].startsWith("ERROR: line 2: "));
+        assertTrue(lines[2], lines[2].startsWith("ERROR: line 3: "));
+        assertTrue(lines[3], lines[3].startsWith("ERROR: line 4: "));
+        assertEquals("6", lines[4]);
+        assertTrue(lines[5], lines[5].startsWith("ERROR: line 6: "));
+        assertEquals(6L, summary[0].getNumStatements());
+        assertEquals(4L, summary[0].getNumErrors());
+    }
+
+    @Test(timeout=SECOND)
+    public void testQuitStopsTheScript() throws IOException {
+        BatchRunner.Summary[] summary = new BatchRunner.Summary[1];
+        assertEquals("1\n", run("1\nquit()\n2\n", summary));
+    }
+
+    @Test(timeout=SECOND)
+    public void testSplitter() {
+        StatementSplitter splitter = new StatementSplitter();
+        assertFalse(splitter.addLine("   # just a comment"));
+        assertFalse(splitter.hasPartialStatement());
+
+        assertFalse(splitter.addLine("f((1,"));
+        assertFalse(splitter.addLine("  \"(\" # ("));
+        assertFalse(splitter.addLine("), 2) + \\"));
+        assertTrue(splitter.addLine("3"));
+        assertEquals(2, splitter.getFirstLineNumber());
+        assertEquals("f((1,\n  \"(\" # (\n), 2) + \\\n3", splitter.takeStatement());
+        assertFalse(splitter.hasPartialStatement());
+
+        // Extra ')'s can never be matched, so the statement ends anyway
+        assertTrue(splitter.addLine("x)) + 1"));
+        assertEquals(6, splitter.getFirstLineNumber());
+    }
+
+    @Test(timeout=SECOND)
+    public void testSplitterAgreesWithParser() {
+        String[] scripts = {
+            "f(1,\n2)",
+            "(\n\"(\" + 1\n)",
+            "1 + \\\n2",
+            "1 + \\\n\n2",
+            ") (\n1",
+            "g((\n# )\n)\n)",
+        };
+        for (String script : scripts) {
+            StatementSplitter splitter = new StatementSplitter();
+            String[] lines = script.split("\n", -1);
+            String soFar = "";
+            for (String line : lines) {
+                soFar += line + "\n";
+                boolean complete = true;
+                try {
+                    new Parser().parse(soFar);
+                } catch (IncompleteInputError err) {
+                    complete = false;
+                } catch (ParseError err) {
+                    // Do nothing: complete, but wrong
+                }
+                assertEquals(script + " up to " + line, complete, splitter.addLine(line));
+                if (complete) {
+                    splitter.takeStatement();
+                    soFar = "";
+                }
+            }
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testLongScript() throws IOException {
+        int numStatements = 20000;
+        StringBuilder script = new StringBuilder("x := 0\n");
+        for (int i = 1; i < numStatements; i++) {
+            script.append("x := x + 1\n");
+        }
+        BatchRunner.Summary[] summary = new BatchRunner.Summary[1];
+        String output = run(script.toString(), summary);
+        assertTrue(output.endsWith("\n" + (numStatements - 1) + "\n"));
+        assertEquals((long) numStatements, summary[0].getNumStatements());
+        assertEquals(0L, summary[0].getNumErrors());
+        assertTrue(summary[0].getStatementsPerSecond() > 0);
+    }
+}
@@ -1,5 +1,7 @@
 package calculator;
 
+import calculator.ast.ExpressionManipulators;
+import calculator.compiler.EvaluationMode;
 import calculator.errors.EvaluationError;
 import calculator.gui.ImageDrawer;
 import calculator.interpreter.Calculator;
@@ -14,6 +16,7 @@ import org.junit.runners.MethodSorters;
 import java.awt.geom.Rectangle2D;
 import java.util.Arrays;
 
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
@@ -197,6 +200,44 @@ public class TestCalculator extends BaseTest {
         }
     }
 
+    @Test(timeout=SECOND)
+    public void testEvaluationModesAgree() {
+        String[] inputs = {
+            "toDouble(2 ^ 0.5 * sin(1 / 3) - cos(-2.75) / 7)",
+            "toDouble(c * c + step)",
+            "plot(a^2 + c*a + c, a, -10, 10, step)",
+            "plot(sin(x) / x - -x, x, -2, 3, 0.1)",
+        };
+        String[] expectedOutputs = null;
+        IList<Double> expectedYs = null;
+        for (EvaluationMode mode : EvaluationMode.values()) {
+            FakeImageDrawer drawer = new FakeImageDrawer();
+            Calculator calc = new Calculator(drawer);
+            calc.setEvaluationMode(mode);
+            calc.evaluate("c := 4");
+            calc.evaluate("step := 0.25");
+
+            String[] outputs = new String[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                outputs[i] = calc.evaluate(inputs[i]);
+            }
+            assertEquals("x", calc.evaluate("x"));
+
+            if (expectedOutputs == null) {
+                expectedOutputs = outputs;
+                expectedYs = drawer.lastYValues;
+                continue;
+            }
+            for (int i = 0; i < inputs.length; i++) {
+                assertEquals(mode + ": " + inputs[i], expectedOutputs[i], outputs[i]);
+            }
+            assertEquals(expectedYs.size(), drawer.lastYValues.size());
+            for (int i = 0; i < expectedYs.size(); i++) {
+                assertEquals(mode.toString(), expectedYs.get(i), drawer.lastYValues.get(i));
+            }
+        }
+    }
+
     @Test(timeout=SECOND)
     public void testPlotCleansUpVariable() {
         Calculator calc = new Calculator();
@@ -233,6 +274,24 @@ public class TestCalculator extends BaseTest {
         }
     }
 
+    @Test(timeout=SECOND)
+    public void testPlotFailsWithoutDrawer() {
+        // These would take far longer than the timeout to sample
+        Calculator calc = new Calculator();
+        String[] inputs = {
+            "plot(x, x, 0, 1000000000, 0.001)",
+            "plotAdaptive(sin(x), x, 0, 1000000000, 0.000000000001)",
+        };
+        for (String input : inputs) {
+            try {
+                calc.evaluate(input);
+                fail("Expected EvaluationError");
+            } catch (EvaluationError err) {
+                // Do nothing: this is ok
+            }
+        }
+    }
+
     @Test(timeout=SECOND)
     public void testPlotFailsOnBadInput() {
         Calculator calc = new Calculator();
@@ -261,6 +320,135 @@ public class TestCalculator extends BaseTest {
         }
     }
 
+    @Test(timeout=SECOND)
+    public void testPlotAdaptive() {
+        FakeImageDrawer drawer = new FakeImageDrawer();
+        Calculator calc = new Calculator(drawer);
+
+        calc.evaluate("c := 4");
+        calc.evaluate("plotAdaptive(x^2 + c*x + c, x, -10, 10, 0.01)");
+        IList<Double> xs = drawer.lastXValues;
+        IList<Double> ys = drawer.lastYValues;
+        assertEquals(xs.size(), ys.size());
+        assertEquals(-10.0, xs.get(0));
+        assertEquals(10.0, xs.get(xs.size() - 1));
+
+        // Far fewer points than a fixed step giving the same accuracy would need
+        assertTrue(xs.size() < 2000);
+        for (int i = 0; i < xs.size(); i++) {
+            double x = xs.get(i);
+            assertEquals(x * x + 4 * x + 4, ys.get(i));
+            if (i > 0) {
+                double previousX = xs.get(i - 1);
+                assertTrue(previousX < x);
+
+                double midX = (previousX + x) / 2;
+                double chord = (ys.get(i - 1) + ys.get(i)) / 2;
+                assertTrue(Math.abs(midX * midX + 4 * midX + 4 - chord) <= 0.01);
+            }
+        }
+        assertEquals("x", calc.evaluate("x"));
+
+        // Straight lines never need refining
+        calc.evaluate("plotAdaptive(3 * x + 1, x, 0, 1, 0.001)");
+        assertEquals(129, drawer.lastXValues.size());
+
+        calc.evaluate("plotAdaptive(5, x, 2, 2, 0.001)");
+        assertEquals(1, drawer.lastXValues.size());
+        assertEquals(5.0, drawer.lastYValues.get(0));
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testPlotAdaptiveInEveryMode() {
+        IList<Double> expectedXs = null;
+        IList<Double> expectedYs = null;
+        for (EvaluationMode mode : EvaluationMode.values()) {
+            FakeImageDrawer drawer = new FakeImageDrawer();
+            Calculator calc = new Calculator(drawer);
+            calc.setEvaluationMode(mode);
+            calc.evaluate("c := 4");
+            calc.evaluate("y := sin(x) * c");
+            calc.evaluate("plotAdaptive(y / (x ^ 2 + 1) + c, x, -5, 5, 0.001)");
+            assertEquals("x", calc.evaluate("x"));
+
+            if (expectedXs == null) {
+                expectedXs = drawer.lastXValues;
+                expectedYs = drawer.lastYValues;
+                continue;
+            }
+            assertEquals(mode.toString(), expectedXs.size(), drawer.lastXValues.size());
+            for (int i = 0; i < expectedXs.size(); i++) {
+                assertEquals(mode.toString(), expectedXs.get(i), drawer.lastXValues.get(i));
+                assertEquals(mode.toString(), expectedYs.get(i), drawer.lastYValues.get(i));
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testPlotAdaptiveRespectsBudget() {
+        FakeImageDrawer drawer = new FakeImageDrawer();
+        Calculator calc = new Calculator(drawer);
+
+        // Oscillates infinitely fast around 0, and is undefined at 0
+        calc.evaluate("plotAdaptive(sin(1 / x), x, -1, 1, 0.000001)");
+        IList<Double> xs = drawer.lastXValues;
+        assertTrue(xs.size() <= ExpressionManipulators.MAX_ADAPTIVE_EVALUATIONS);
+        for (int i = 1; i < xs.size(); i++) {
+            assertTrue(xs.get(i - 1) < xs.get(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testPlotAdaptiveFailsOnBadInput() {
+        Calculator calc = new Calculator();
+        calc.setImageDrawer(new FakeImageDrawer());
+
+        String[] badInputs = {
+            "plotAdaptive(3 * x + a, x, 0, 10, 0.1)",
+            "plotAdaptive(3 * x, x, 10, 0, 0.1)",
+            "plotAdaptive(3 * x, x, 0, 10, 0)",
+            "plotAdaptive(3 * x, x, 0, b, 0.1)",
+        };
+        for (String input : badInputs) {
+            try {
+                calc.evaluate(input);
+                fail("Expected EvaluationError for " + input);
+            } catch (EvaluationError err) {
+                // Do nothing
+            }
+        }
+
+        calc.evaluate("x := 3");
+        try {
+            calc.evaluate("plotAdaptive(3 * x, x, 0, 10, 0.1)");
+            fail("Expected EvaluationError");
+        } catch (EvaluationError err) {
+            // Do nothing
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testTreeWalkingPlotLeavesVariablesAlone() {
+        FakeImageDrawer drawer = new FakeImageDrawer();
+        Calculator calc = new Calculator(drawer);
+        calc.setEvaluationMode(EvaluationMode.TREE_WALKING);
+        calc.evaluate("y := x ^ 2");
+        calc.evaluate("z := y + 1");
+        calc.evaluate("plot(z, x, 0, 3, 1)");
+        assertEquals(10.0, drawer.lastYValues.get(3));
+
+        // Nothing computed while 'x' was bound may be remembered afterwards
+        assertEquals("x", calc.evaluate("x"));
+        try {
+            calc.evaluate("toDouble(z)");
+            fail("Expected EvaluationError");
+        } catch (EvaluationError err) {
+            // Do nothing
+        }
+        calc.evaluate("x := 5");
+        assertEquals("26", calc.evaluate("toDouble(z)"));
+    }
+
     private static class FakeImageDrawer extends ImageDrawer {
         public IList<Double> lastXValues;
         public IList<Double> lastYValues;
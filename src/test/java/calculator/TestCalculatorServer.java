@@ -0,0 +1,147 @@
+package calculator;
+
+import calculator.server.CalculatorServer;
+import calculator.server.LoadGenerator;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestCalculatorServer extends BaseTest {
+    private static CalculatorServer startServer() throws IOException {
+        CalculatorServer server = new CalculatorServer(0, 2);
+        server.start();
+        return server;
+    }
+
+    private static class Client implements AutoCloseable {
+        private final Socket socket;
+        private final OutputStream output;
+        private final BufferedReader input;
+
+        public Client(int port) throws IOException {
+            this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            this.output = this.socket.getOutputStream();
+            this.input = new BufferedReader(
+                    new InputStreamReader(this.socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        public void send(String text) throws IOException {
+            this.output.write(text.getBytes(StandardCharsets.UTF_8));
+            this.output.flush();
+        }
+
+        public String receive() throws IOException {
+            return this.input.readLine();
+        }
+
+        public String evaluate(String statement) throws IOException {
+            this.send(statement + "\n");
+            return this.receive();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.socket.close();
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void basicTestEvaluates() throws IOException {
+        try (CalculatorServer server = startServer();
+             Client client = new Client(server.getPort())) {
+            assertEquals("3", client.evaluate("1 + 2"));
+            assertEquals("5", client.evaluate("x := 5"));
+            assertEquals("25", client.evaluate("x * x"));
+            assertEquals(0L, server.getNumInternalErrors());
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testSessionsAreIsolated() throws IOException {
+        try (CalculatorServer server = startServer();
+             Client first = new Client(server.getPort());
+             Client second = new Client(server.getPort())) {
+            assertEquals("1", first.evaluate("x := 1"));
+            assertEquals("x", second.evaluate("x"));
+            assertEquals("2", second.evaluate("x := 2"));
+            assertEquals("1", first.evaluate("x"));
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testMultiLineAndPipelinedStatements() throws IOException {
+        try (CalculatorServer server = startServer();
+             Client client = new Client(server.getPort())) {
+            // One statement over three lines, then two statements in one write
+            client.send("(1 +\r\n");
+            client.send("2) * \\\n3\n");
+            assertEquals("9", client.receive());
+
+            client.send("a := 2\na * 10\n");
+            assertEquals("2", client.receive());
+            assertEquals("20", client.receive());
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testErrorsAreReported() throws IOException {
+        try (CalculatorServer server = startServer();
+             Client client = new Client(server.getPort())) {
+            assertTrue(client.evaluate("3 4").startsWith("ERROR:"));
+            assertTrue(client.evaluate("plot(x, x, 1, 2, 1)").startsWith("ERROR:"));
+
+            // The session survives
+            assertEquals("7", client.evaluate("3 + 4"));
+            assertEquals(0L, server.getNumInternalErrors());
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testQuitClosesConnection() throws IOException {
+        try (CalculatorServer server = startServer();
+             Client client = new Client(server.getPort())) {
+            assertEquals("1", client.evaluate("1"));
+            client.send("quit()\n");
+            assertNull(client.receive());
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testOverlongStatementClosesConnection() throws IOException {
+        try (CalculatorServer server = startServer();
+             Client client = new Client(server.getPort())) {
+            StringBuilder line = new StringBuilder("(");
+            while (line.length() <= CalculatorServer.MAX_STATEMENT_LENGTH) {
+                line.append("1 + 1 + 1 + 1 + 1 + 1 + 1 + 1 + ");
+            }
+            client.send(line.toString() + "\n");
+            assertTrue(client.receive().startsWith("ERROR:"));
+            assertNull(client.receive());
+        }
+    }
+
+    @Test(timeout=20 * SECOND)
+    public void testManyConcurrentSessions() throws IOException, InterruptedException {
+        try (CalculatorServer server = startServer()) {
+            LoadGenerator.Result result = LoadGenerator.run(
+                    InetAddress.getLoopbackAddress(), server.getPort(), 200, 8, 5);
+            assertEquals(1000L, result.getNumStatements());
+            assertEquals(200L, server.getNumSessions());
+            assertEquals(0L, server.getNumInternalErrors());
+        }
+    }
+}
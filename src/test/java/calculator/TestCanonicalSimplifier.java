@@ -0,0 +1,146 @@
+package calculator;
+
+import calculator.ast.SimplificationMode;
+import calculator.interpreter.Calculator;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static org.junit.Assert.assertTrue;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestCanonicalSimplifier extends BaseTest {
+    private static Calculator makeCalculator() {
+        Calculator calc = new Calculator();
+        calc.setSimplificationMode(SimplificationMode.CANONICAL);
+        return calc;
+    }
+
+    private static void assertSimplifiesTo(String expected, String input) {
+        assertEquals(input, expected, makeCalculator().evaluate(input));
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestLikeTerms() {
+        assertSimplifiesTo("3 * x", "x + x + x");
+        assertSimplifiesTo("6 * x", "2 * x * 3");
+        assertSimplifiesTo("0", "x - x");
+        assertSimplifiesTo("x ^ 3", "x * x * x");
+        assertSimplifiesTo("2 * sin(x)", "sin(x) + sin(x)");
+        assertSimplifiesTo("x - 2 * y", "x - y - y");
+        assertSimplifiesTo("-x + 3", "3 - x");
+        assertSimplifiesTo("-x + y", "-(x - y)");
+    }
+
+    @Test(timeout=SECOND)
+    public void testIdentities() {
+        assertSimplifiesTo("x", "x * 1");
+        assertSimplifiesTo("x", "1 * x");
+        assertSimplifiesTo("x", "x + 0");
+        assertSimplifiesTo("x", "x ^ 1");
+        assertSimplifiesTo("1", "x ^ 0");
+        assertSimplifiesTo("0", "0 * x");
+        assertSimplifiesTo("x", "x / 1");
+        assertSimplifiesTo("x", "--x");
+        assertSimplifiesTo("81", "3 ^ 4");
+    }
+
+    @Test(timeout=SECOND)
+    public void testPolynomials() {
+        assertSimplifiesTo("x ^ 2 + 2 * x + 1", "(x + 1) * (x + 1)");
+        assertSimplifiesTo("x ^ 2 + 2 * x + 1", "(x + 1) ^ 2");
+        assertSimplifiesTo("x ^ 2 - 1", "(x + 1) * (x - 1)");
+        assertSimplifiesTo("2 * x + 2", "2 * (x + 1)");
+        assertSimplifiesTo("4 * x ^ 2", "(2 * x) ^ 2");
+        assertSimplifiesTo("x ^ 6", "(x ^ 2) ^ 3");
+        assertSimplifiesTo("x ^ 3 * y + x * y ^ 2", "x * y * (x ^ 2 + y)");
+    }
+
+    @Test(timeout=SECOND)
+    public void testEquivalentExpressionsMatch() {
+        String[] inputs = {
+            "x * y + 2 * x + 1",
+            "1 + x * 2 + y * x",
+            "(y + 2) * x + 1",
+            "x * (y + 1) + x + 1",
+            "(x + 1) * (y + 2) - y - 1",
+        };
+        Calculator calc = makeCalculator();
+        String expected = calc.evaluate(inputs[0]);
+        for (String input : inputs) {
+            String actual = calc.evaluate(input);
+            assertEquals(input, expected, actual);
+
+            // The canonical form is canonical
+            assertEquals(input, expected, calc.evaluate(actual));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testOtherOperationsAreKept() {
+        assertSimplifiesTo("x / 2", "x / 2");
+        assertSimplifiesTo("sin(x + 1)", "sin(1 + x)");
+        assertSimplifiesTo("2 ^ x", "2 ^ x");
+        assertSimplifiesTo("x ^ 0.5", "x ^ 0.5");
+        assertSimplifiesTo("mystery(x, 2 * y)", "mystery(x, y + y)");
+    }
+
+    @Test(timeout=SECOND)
+    public void testExpressionsBuiltStepByStepStaySmall() {
+        Calculator calc = makeCalculator();
+        calc.evaluate("y := 0");
+        for (int i = 0; i < 200; i++) {
+            calc.evaluate("y := y + 2 * x + 1");
+        }
+        assertEquals("400 * x + 200", calc.evaluate("y"));
+        calc.evaluate("x := 3");
+        assertEquals("1400", calc.evaluate("y"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testValuesAreUnchanged() {
+        String[] inputs = {
+            "(x + 1) ^ 3 - x * (x - 2) / 3",
+            "sin(x) * sin(x) + cos(x) * 2 - x ^ (0 - 1)",
+            "-(x - 2 * x) * (4 - x) ^ 2",
+        };
+        for (String input : inputs) {
+            double[] values = new double[2];
+            Calculator[] calcs = {new Calculator(), makeCalculator()};
+            for (int i = 0; i < calcs.length; i++) {
+                // We define 'x' afterwards so the expression is rewritten symbolically
+                calcs[i].evaluate("y := " + input);
+                calcs[i].evaluate("x := 1.5");
+                values[i] = Double.parseDouble(calcs[i].evaluate("toDouble(y)"));
+            }
+            assertTrue(input, Math.abs(values[0] - values[1]) < 1e-9);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testFractionalPowersAreNotAdded() {
+        assertSimplifiesTo("x ^ 5", "x ^ 2 * x ^ 3");
+        assertSimplifiesTo("x ^ 0.5 * x ^ 1.5", "x ^ 1.5 * x ^ 0.5");
+
+        // These are NaN for x < 0, so they can't become 'x' and 'x ^ 2'
+        String[] inputs = {"x ^ 0.5 * x ^ 0.5", "x ^ 1.5 * x ^ 0.5"};
+        for (String input : inputs) {
+            Calculator calc = makeCalculator();
+            calc.evaluate("y := " + input);
+            calc.evaluate("x := -4");
+            assertEquals(input, "NaN", calc.evaluate("toDouble(y)"));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSwitchingModes() {
+        Calculator calc = new Calculator();
+        assertEquals("x + x", calc.evaluate("x + x"));
+        calc.setSimplificationMode(SimplificationMode.CANONICAL);
+        assertEquals("2 * x", calc.evaluate("x + x"));
+        calc.setSimplificationMode(SimplificationMode.CONSTANT_FOLDING);
+        assertEquals("x + x", calc.evaluate("x + x"));
+    }
+}
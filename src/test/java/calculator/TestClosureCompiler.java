@@ -0,0 +1,23 @@
+package calculator;
+
+import calculator.ast.AstNode;
+import calculator.compiler.ClosureCompiler;
+import calculator.compiler.CompiledExpression;
+import datastructures.interfaces.IDictionary;
+
+import org.junit.FixMethodOrder;
+import org.junit.runners.MethodSorters;
+
+/**
+ * This test _extends_ TestExpressionCompiler, so every test in that class is also
+ * run against ClosureCompiler.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestClosureCompiler extends TestExpressionCompiler {
+    @Override
+    protected CompiledExpression compile(IDictionary<String, AstNode> variables,
+                                         AstNode expr,
+                                         String... parameters) {
+        return ClosureCompiler.compile(variables, expr, parameters);
+    }
+}
@@ -0,0 +1,119 @@
+package calculator;
+
+import calculator.ast.AstNode;
+import calculator.ast.CommonSubexpressions;
+import calculator.errors.EvaluationError;
+import calculator.interpreter.Calculator;
+import calculator.parser.Parser;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestCommonSubexpressions extends BaseTest {
+    private static AstNode parse(String input) {
+        return new Parser().parse(input + "\n").getChildren().get(0);
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestFindsRepeats() {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        CommonSubexpressions repeated = CommonSubexpressions.find(
+                variables, parse("sin(x) ^ 2 + cos(x) ^ 2 + sin(x) * cos(x)"));
+        assertEquals(2, repeated.getNumRepeated());
+
+        repeated = CommonSubexpressions.find(variables, parse("sin(x) + cos(x)"));
+        assertEquals(0, repeated.getNumRepeated());
+    }
+
+    @Test(timeout=SECOND)
+    public void testRepeatsThroughVariables() {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        variables.put("a", parse("sin(x) * 2"));
+        variables.put("b", parse("sin(x) * 2 + 1"));
+
+        // 'a' is used twice, and its definition also occurs inside 'b'
+        CommonSubexpressions repeated = CommonSubexpressions.find(variables, parse("a + a * b"));
+        assertEquals(1, repeated.getNumRepeated());
+
+        // Parameters aren't looked through
+        repeated = CommonSubexpressions.find(variables, parse("a + a * b"), "a");
+        assertEquals(0, repeated.getNumRepeated());
+    }
+
+    @Test(timeout=SECOND)
+    public void testSlotsAreForgottenBetweenEvaluations() {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        AstNode expr = parse("sin(x) + sin(x)");
+        CommonSubexpressions repeated = CommonSubexpressions.find(variables, expr);
+        int slot = repeated.slotOf(repeated.getExpression().getChildren().get(0));
+        assertTrue(slot >= 0);
+        assertEquals(-1, repeated.slotOf(repeated.getExpression()));
+
+        repeated.beginEvaluation();
+        assertTrue(!repeated.hasValue(slot));
+        repeated.putValue(slot, 0.5);
+        assertTrue(repeated.hasValue(slot));
+        assertEquals(0.5, repeated.getValue(slot));
+
+        repeated.beginEvaluation();
+        assertTrue(!repeated.hasValue(slot));
+    }
+
+    @Test(timeout=SECOND)
+    public void testSelfReferenceIsAnError() {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        variables.put("a", parse("b + 1"));
+        variables.put("b", parse("a * 2"));
+        try {
+            CommonSubexpressions.find(variables, parse("a"));
+            fail("Expected EvaluationError");
+        } catch (EvaluationError err) {
+            // Do nothing: this is ok
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testToDoubleValuesAreUnchanged() {
+        Calculator calc = new Calculator();
+        calc.evaluate("s := sin(x) ^ 2");
+        calc.evaluate("c := cos(x) ^ 2");
+        calc.evaluate("t := (s + c) * (s + c) + s");
+        calc.evaluate("x := 0.5");
+        double expected = 1 + Math.pow(Math.sin(0.5), 2);
+        assertTrue(Math.abs(expected - Double.parseDouble(calc.evaluate("toDouble(t)"))) < 1e-9);
+
+        calc.evaluate("x := 2");
+        expected = 1 + Math.pow(Math.sin(2), 2);
+        assertTrue(Math.abs(expected - Double.parseDouble(calc.evaluate("toDouble(t)"))) < 1e-9);
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testDeeplySharedExpressions() {
+        // Each level refers to the previous one twice, so without sharing, evaluating
+        // the last level would take 2^40 steps
+        //
+        // (We define them all in one go, since printing any of them would take forever)
+        StringBuilder definitions = new StringBuilder("v0 := x\n");
+        for (int i = 1; i <= 40; i++) {
+            definitions.append("v" + i + " := sin(v" + (i - 1) + ") + v" + (i - 1) + "\n");
+        }
+        definitions.append("x := 1");
+
+        Calculator calc = new Calculator();
+        assertEquals("1", calc.evaluate(definitions.toString()));
+        double expected = 1;
+        for (int i = 1; i <= 40; i++) {
+            expected = Math.sin(expected) + expected;
+        }
+        double actual = Double.parseDouble(calc.evaluate("toDouble(v40)"));
+        assertTrue(Math.abs(expected - actual) < 1e-6 * Math.abs(expected));
+    }
+}
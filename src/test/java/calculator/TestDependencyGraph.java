@@ -0,0 +1,126 @@
+package calculator;
+
+import calculator.ast.AstInterner;
+import calculator.ast.AstNode;
+import calculator.ast.DependencyGraph;
+import calculator.interpreter.Calculator;
+import calculator.parser.Parser;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestDependencyGraph extends BaseTest {
+    private static AstNode parseExpression(String input) {
+        // The parser wraps every program in a 'block' node
+        return new Parser().parse(input + "\n").getChildren().get(0);
+    }
+
+    private static void assertListContains(IList<String> list, String... expected) {
+        assertEquals(expected.length, list.size());
+        for (String item : expected) {
+            assertEquals(item, true, list.contains(item));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestDependentsAreInvalidated() {
+        DependencyGraph graph = new DependencyGraph();
+        AstNode a = parseExpression("b + 1");
+        AstNode b = parseExpression("c * 2");
+        AstNode d = parseExpression("5");
+        graph.define("a", a);
+        graph.define("b", b);
+        graph.define("d", d);
+        graph.putNumericValue("a", a, 7.0);
+        graph.putNumericValue("b", b, 6.0);
+        graph.putNumericValue("d", d, 5.0);
+
+        assertListContains(graph.getDependencies("a"), "b");
+        assertListContains(graph.define("c", parseExpression("4")), "c", "b", "a");
+        assertNull(graph.getNumericValue("a", a));
+        assertNull(graph.getNumericValue("b", b));
+        assertEquals(5.0, graph.getNumericValue("d", d));
+    }
+
+    @Test(timeout=SECOND)
+    public void testOutdatedDefinitionsAreIgnored() {
+        DependencyGraph graph = new DependencyGraph();
+        AstNode oldDefinition = parseExpression("x + 1");
+        AstNode newDefinition = parseExpression("x + 2");
+        graph.define("a", oldDefinition);
+
+        graph.putSimplifiedValue("a", oldDefinition, AstInterner.number(3));
+        assertSame(AstInterner.number(3), graph.getSimplifiedValue("a", oldDefinition));
+        assertNull(graph.getSimplifiedValue("a", newDefinition));
+
+        // Variables the graph was never told about are never cached
+        graph.putNumericValue("unknown", newDefinition, 3.0);
+        assertNull(graph.getNumericValue("unknown", newDefinition));
+    }
+
+    @Test(timeout=SECOND)
+    public void testRedefiningReplacesDependencies() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.define("a", parseExpression("b"));
+        graph.define("a", parseExpression("c + c"));
+
+        assertListContains(graph.getDependencies("a"), "c");
+        assertListContains(graph.define("b", parseExpression("1")), "b");
+        assertListContains(graph.remove("c"), "c", "a");
+        assertListContains(graph.remove("a"), "a");
+        assertListContains(graph.define("c", parseExpression("1")), "c");
+    }
+
+    @Test(timeout=SECOND)
+    public void testCircularDefinitions() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.define("a", parseExpression("b + 1"));
+        graph.define("b", parseExpression("c + 1"));
+        assertListContains(graph.define("c", parseExpression("a + b")), "c", "b", "a");
+    }
+
+    @Test(timeout=SECOND)
+    public void testCalculatorRedefinitions() {
+        Calculator calc = new Calculator();
+        calc.evaluate("y := x * 2");
+        calc.evaluate("z := y + 1");
+        calc.evaluate("x := 3");
+        assertEquals("7", calc.evaluate("toDouble(z)"));
+        assertEquals("7", calc.evaluate("z"));
+
+        calc.evaluate("x := 4");
+        assertEquals("9", calc.evaluate("toDouble(z)"));
+        assertEquals("9", calc.evaluate("z"));
+
+        // 'y' was expanded when 'z' was assigned, so 'z' only depends on 'x'
+        calc.evaluate("y := x");
+        assertEquals("9", calc.evaluate("toDouble(z)"));
+        assertEquals("4", calc.evaluate("toDouble(y)"));
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testLongChains() {
+        int length = 1000;
+        StringBuilder definitions = new StringBuilder("v0 := x\n");
+        for (int i = 1; i <= length; i++) {
+            definitions.append("v" + i + " := v" + (i - 1) + " + 1\n");
+        }
+        definitions.append("1");
+
+        Calculator calc = new Calculator();
+        calc.evaluate(definitions.toString());
+        for (int x = 0; x < 100; x++) {
+            calc.evaluate("x := " + x);
+            for (int j = 0; j < 100; j++) {
+                assertEquals("" + (length + x), calc.evaluate("toDouble(v" + length + ")"));
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package calculator;
+
+import analysis.utils.AnalysisUtils;
+import calculator.ast.AstInterner;
+import calculator.ast.AstNode;
+import calculator.ast.ExpressionManipulators;
+import calculator.ast.SimplificationMode;
+import calculator.compiler.EvaluationMode;
+import calculator.errors.EvaluationError;
+import calculator.interpreter.Calculator;
+import calculator.interpreter.Environment;
+import datastructures.concrete.ArrayList;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestDerive extends BaseTest {
+    private static Environment makeEnvironment() {
+        return AnalysisUtils.makeEnvironment(new ChainedHashDictionary<>(), EvaluationMode.PARALLEL_BATCH);
+    }
+
+    private static AstNode operation(String name, AstNode... children) {
+        IList<AstNode> list = new ArrayList<>();
+        for (AstNode child : children) {
+            list.add(child);
+        }
+        return AstInterner.operation(name, list);
+    }
+
+    private static int countDistinctNodes(AstNode node, Set<AstNode> seen) {
+        if (!seen.add(node)) {
+            return 0;
+        }
+        int count = 1;
+        for (AstNode child : node.getChildren()) {
+            count += countDistinctNodes(child, seen);
+        }
+        return count;
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestRules() {
+        Calculator calc = new Calculator();
+        assertEquals("3 * x ^ 2 + 2 * y", calc.evaluate("derive(x ^ 3 + 2 * x * y, x)"));
+        assertEquals("0", calc.evaluate("derive(y + 3, x)"));
+        assertEquals("1", calc.evaluate("derive(x, x)"));
+        assertEquals("-sin(x)", calc.evaluate("derive(cos(x), x)"));
+        assertEquals("2 * x * cos(x ^ 2)", calc.evaluate("derive(sin(x ^ 2), x)"));
+        assertEquals("-1 / x ^ 2", calc.evaluate("derive(1 / x, x)"));
+        assertEquals("0", calc.evaluate("derive(x / x, x)"));
+        assertEquals("0", calc.evaluate("derive(y / (y + 1), x)"));
+        assertEquals("2 * x - 2", calc.evaluate("derive((x - 1) * (x - 1), x)"));
+        assertEquals("0", calc.evaluate("derive(mystery(y), x)"));
+        assertEquals("6 * x", calc.evaluate("derive(derive(x ^ 3, x), x)"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testDefinitionsAreExpanded() {
+        Calculator calc = new Calculator();
+        calc.evaluate("f := x ^ 2 + a * x");
+        assertEquals("a + 2 * x", calc.evaluate("derive(f, x)"));
+        assertEquals("x", calc.evaluate("derive(f, a)"));
+        calc.evaluate("a := 3");
+        assertEquals("2 * x + 3", calc.evaluate("derive(f, x)"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testErrors() {
+        Calculator calc = new Calculator();
+        calc.evaluate("y := 2");
+        String[] badInputs = {
+            "derive(2 ^ x, x)",
+            "derive(x, 3)",
+            "derive(y, y)",
+            "derive(mystery(x), x)",
+        };
+        for (String input : badInputs) {
+            try {
+                calc.evaluate(input);
+                fail("Expected EvaluationError for " + input);
+            } catch (EvaluationError err) {
+                // Do nothing: this is ok
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testPolynomialsStayLinear() {
+        int numTerms = 50;
+        StringBuilder polynomial = new StringBuilder("0");
+        StringBuilder expected = new StringBuilder("0");
+        for (int i = 1; i <= numTerms; i++) {
+            polynomial.append(" + ").append(i).append(" * x ^ ").append(i);
+            expected.append(" + ").append(i * i).append(" * x ^ ").append(i - 1);
+        }
+
+        Calculator calc = new Calculator();
+        String actual = calc.evaluate("derive(" + polynomial + ", x)");
+        assertTrue(actual.length() < 2 * polynomial.length());
+
+        calc.setSimplificationMode(SimplificationMode.CANONICAL);
+        assertEquals(calc.evaluate(expected.toString()), actual);
+    }
+
+    private static int derivativeSize(int depth) {
+        // f_i = sin(f_(i-1)) * f_(i-1), so the fully expanded tree, and a derivative
+        // that copied it, would double in size with every level
+        AstNode x = AstInterner.variable("x");
+        AstNode f = x;
+        for (int i = 0; i < depth; i++) {
+            f = operation("*", operation("sin", f), f);
+        }
+
+        Environment env = makeEnvironment();
+        AstNode derivative = ExpressionManipulators.handleDerive(env, operation("derive", f, x));
+        return countDistinctNodes(derivative, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testRepeatedSubexpressionsAreShared() {
+        // The canonical form of each f_i lists all of its factors, so the size grows
+        // quadratically, but not exponentially
+        int smaller = derivativeSize(12);
+        int larger = derivativeSize(24);
+        assertTrue(smaller + " distinct nodes, then " + larger, larger < 8 * smaller);
+    }
+
+    @Test(timeout=SECOND)
+    public void testValuesMatchFiniteDifferences() {
+        String[] inputs = {
+            "sin(x) * cos(x) ^ 2",
+            "(x ^ 3 - 2 * x) / (x + 4)",
+            "sin(sin(x) * x) - x ^ 0.5",
+        };
+        double h = 0.000001;
+        for (String input : inputs) {
+            Calculator calc = new Calculator();
+            calc.evaluate("d := derive(" + input + ", x)");
+            calc.evaluate("f := " + input);
+            calc.evaluate("x := 0.75");
+            double actual = Double.parseDouble(calc.evaluate("toDouble(d)"));
+            calc.evaluate("x := 0.750001");
+            double above = Double.parseDouble(calc.evaluate("toDouble(f)"));
+            calc.evaluate("x := 0.749999");
+            double below = Double.parseDouble(calc.evaluate("toDouble(f)"));
+            assertTrue(input, Math.abs(actual - (above - below) / (2 * h)) < 1e-6);
+        }
+    }
+}
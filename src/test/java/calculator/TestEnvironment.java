@@ -0,0 +1,125 @@
+package calculator;
+
+import analysis.utils.AnalysisUtils;
+import calculator.ast.AstInterner;
+import calculator.ast.AstNode;
+import calculator.ast.ExpressionManipulators;
+import calculator.compiler.EvaluationMode;
+import calculator.interpreter.Environment;
+import calculator.parser.Parser;
+import datastructures.concrete.ArrayList;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.concrete.dictionaries.PersistentHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestEnvironment extends BaseTest {
+    private static Environment makeEnvironment() {
+        return AnalysisUtils.makeEnvironment(new PersistentHashDictionary<>(), EvaluationMode.TREE_WALKING);
+    }
+
+    private static AstNode parse(String input) {
+        return new Parser().parse(input + "\n").getChildren().get(0);
+    }
+
+    private static double toDouble(Environment env, String input) {
+        IList<AstNode> children = new ArrayList<>();
+        children.add(parse(input));
+        return ExpressionManipulators.handleToDouble(env, AstInterner.operation("toDouble", children))
+                .getNumericValue();
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestScopesAreIndependent() {
+        Environment global = makeEnvironment();
+        global.setVariable("a", parse("2"));
+        global.setVariable("b", parse("a * 10"));
+
+        Environment scope = global.pushScope();
+        assertEquals(20.0, toDouble(scope, "b"));
+        scope.setVariable("a", parse("3"));
+        scope.setVariable("c", parse("1"));
+        assertEquals(30.0, toDouble(scope, "b"));
+
+        assertEquals(20.0, toDouble(global, "b"));
+        assertTrue(!global.getVariables().containsKey("c"));
+
+        // The scope was a snapshot: later changes to the global variables don't show up
+        global.setVariable("d", parse("4"));
+        assertTrue(!scope.getVariables().containsKey("d"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testNestedScopes() {
+        Environment global = makeEnvironment();
+        global.setVariable("x", parse("1"));
+        Environment outer = global.pushScope();
+        outer.setVariable("x", parse("2"));
+        Environment inner = outer.pushScope();
+        inner.removeVariable("x");
+
+        assertEquals(1.0, toDouble(global, "x"));
+        assertEquals(2.0, toDouble(outer, "x"));
+        assertTrue(!inner.getVariables().containsKey("x"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testScopesOfPlainDictionaries() {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        Environment global = AnalysisUtils.makeEnvironment(variables, EvaluationMode.PARALLEL_BATCH);
+        global.setVariable("x", AstInterner.number(1));
+        global.setVariable("y", AstInterner.number(2));
+
+        Environment scope = global.pushScope();
+        assertTrue(scope.getVariables() instanceof PersistentHashDictionary);
+        scope.setVariable("x", AstInterner.number(10));
+        assertEquals(12.0, toDouble(scope, "x + y"));
+
+        // The hand-built dictionary is still the global environment's, and unchanged
+        assertSame(variables, global.getVariables());
+        assertEquals(AstInterner.number(1), variables.get("x"));
+        assertEquals(3.0, toDouble(global, "x + y"));
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testScopesOnSeveralThreads() throws InterruptedException {
+        Environment global = makeEnvironment();
+        global.setVariable("y", parse("sin(x) * x + x ^ 2"));
+
+        AtomicInteger numCorrect = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            double x = i + 0.5;
+            Environment scope = global.pushScope();
+            threads[i] = new Thread(() -> {
+                boolean correct = true;
+                for (int j = 0; j < 500; j++) {
+                    double value = x + j;
+                    scope.setVariable("x", AstInterner.number(value));
+                    double expected = Math.sin(value) * value + value * value;
+                    correct &= Math.abs(expected - toDouble(scope, "y")) < 1e-9 * expected;
+                }
+                if (correct) {
+                    numCorrect.incrementAndGet();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(threads.length, numCorrect.get());
+        assertTrue(!global.getVariables().containsKey("x"));
+    }
+}
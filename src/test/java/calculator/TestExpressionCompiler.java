@@ -0,0 +1,155 @@
+package calculator;
+
+import analysis.utils.AnalysisUtils;
+import calculator.ast.AstNode;
+import calculator.compiler.CompiledExpression;
+import calculator.compiler.ExpressionCompiler;
+import calculator.errors.EvaluationError;
+import calculator.interpreter.Calculator;
+import calculator.parser.Parser;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static org.junit.Assert.fail;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestExpressionCompiler extends BaseTest {
+    protected static AstNode parseExpression(String input) {
+        // The parser wraps every program in a 'block' node
+        return new Parser().parse(input + "\n").getChildren().get(0);
+    }
+
+    /**
+     * Subclasses override this to run the same tests against a different compiler.
+     */
+    protected CompiledExpression compile(IDictionary<String, AstNode> variables,
+                                         AstNode expr,
+                                         String... parameters) {
+        return ExpressionCompiler.compile(variables, expr, parameters);
+    }
+
+    private double compileAndEvaluate(IDictionary<String, AstNode> variables,
+                                      String input,
+                                      String[] parameters,
+                                      double... args) {
+        CompiledExpression expr = this.compile(variables, parseExpression(input), parameters);
+        return expr.evaluate(args);
+    }
+
+    private void assertCompilesLikeToDouble(String input) {
+        Calculator calc = new Calculator();
+        double expected = Double.parseDouble(calc.evaluate("toDouble(" + input + ")"));
+        double actual = this.compileAndEvaluate(new ChainedHashDictionary<>(), input, new String[0]);
+        assertEquals(input, expected, actual);
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestOperators() {
+        assertCompilesLikeToDouble("3 + 4");
+        assertCompilesLikeToDouble("3 - 4");
+        assertCompilesLikeToDouble("3 * 4");
+        assertCompilesLikeToDouble("3 / 4");
+        assertCompilesLikeToDouble("3 ^ 4");
+        assertCompilesLikeToDouble("-(3 + 4)");
+        assertCompilesLikeToDouble("sin(42)");
+        assertCompilesLikeToDouble("cos(42)");
+        assertCompilesLikeToDouble("0 * 1 + 1 / 0");
+        assertCompilesLikeToDouble("2 ^ 0.5 * sin(1 / 3) - cos(-2.75) / 7");
+    }
+
+    @Test(timeout=SECOND)
+    public void testParametersAndVariables() {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        variables.put("c", parseExpression("4"));
+        variables.put("y", parseExpression("c * x"));
+        String[] parameters = {"x", "z"};
+
+        assertEquals(2.0 * 2.0 + 4.0 * 2.0 + 4.0 - 1.0,
+                compileAndEvaluate(variables, "x ^ 2 + c * x + c - z", parameters, 2.0, 1.0));
+
+        // 'y' refers to 'x', which is resolved to the parameter
+        assertEquals(12.0, compileAndEvaluate(variables, "y", parameters, 3.0, 0.0));
+
+        // Parameters shadow variables
+        variables.put("x", parseExpression("100"));
+        assertEquals(12.0, compileAndEvaluate(variables, "y", parameters, 3.0, 0.0));
+    }
+
+    @Test(timeout=SECOND)
+    public void testManyParameters() {
+        String[] parameters = new String[300];
+        double[] args = new double[300];
+        StringBuilder input = new StringBuilder("0");
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = "p" + i;
+            args[i] = i;
+            input.append(" + p").append(i);
+        }
+        assertEquals(299.0 * 300.0 / 2.0,
+                compileAndEvaluate(new ChainedHashDictionary<>(), input.toString(), parameters, args));
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testLargeExpressionsAreSplit() {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        int numTerms = 20000;
+        CompiledExpression balanced = this.compile(
+                variables, AnalysisUtils.makeLargeExpression(numTerms, "x"), "x");
+
+        // sum of (i + 0.5) for i = 1..numTerms
+        double coefficientSum = numTerms * (numTerms + 1) / 2.0 + numTerms * 0.5;
+        assertEquals(coefficientSum * 2.0, balanced.evaluate(new double[] {2.0}));
+
+        // The parser produces left-deep trees for chains of '+'
+        StringBuilder input = new StringBuilder("x");
+        for (int i = 1; i < 1000; i++) {
+            input.append(" + x");
+        }
+        assertEquals(1000.0 * 1.5, compileAndEvaluate(variables, input.toString(), new String[] {"x"}, 1.5));
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testTooManyConstants() {
+        // Each term has its own coefficient, and each takes up two of the 65535
+        // constant pool slots a class file has room for
+        int numTerms = 40000;
+        CompiledExpression expr = this.compile(
+                new ChainedHashDictionary<>(), AnalysisUtils.makeLargeExpression(numTerms, "x"), "x");
+        double coefficientSum = numTerms * (numTerms + 1) / 2.0 + numTerms * 0.5;
+        assertEquals(coefficientSum * 2.0, expr.evaluate(new double[] {2.0}));
+    }
+
+    @Test(timeout=SECOND)
+    public void testSharedDefinitionsCompileOnce() {
+        // Each variable doubles the size of the fully expanded tree, so the compiled
+        // result would be far too large if 'v0' were converted again each time
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        variables.put("v0", AnalysisUtils.makeLargeExpression(1000, "x"));
+        for (int i = 1; i <= 12; i++) {
+            variables.put("v" + i, parseExpression("v" + (i - 1) + " - v" + (i - 1) + " + 1"));
+        }
+        assertEquals(1.0, compileAndEvaluate(variables, "v12", new String[] {"x"}, 0.5));
+    }
+
+    @Test(timeout=SECOND)
+    public void testErrors() {
+        IDictionary<String, AstNode> variables = new ChainedHashDictionary<>();
+        variables.put("a", parseExpression("b + 1"));
+        variables.put("b", parseExpression("a * 2"));
+
+        String[] badInputs = {"3 + undefined", "mystery(x)", "mystery(x, x)", "a"};
+        for (String input : badInputs) {
+            try {
+                this.compile(variables, parseExpression(input), "x");
+                fail("Expected EvaluationError for " + input);
+            } catch (EvaluationError err) {
+                // Do nothing: this is ok
+            }
+        }
+    }
+}
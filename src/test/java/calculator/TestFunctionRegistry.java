@@ -0,0 +1,130 @@
+package calculator;
+
+import calculator.ast.AstInterner;
+import calculator.ast.AstManipulator;
+import calculator.ast.AstNode;
+import calculator.interpreter.Calculator;
+import calculator.interpreter.FunctionRegistry;
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestFunctionRegistry extends BaseTest {
+    // twice(a) = 2 * a
+    private static final AstManipulator TWICE = (env, node) -> {
+        IList<AstNode> children = new ArrayList<>();
+        children.add(new AstNode(2));
+        children.add(node.getChildren().get(0));
+        return AstInterner.operation("*", children);
+    };
+
+    @Test(timeout=SECOND)
+    public void basicTestCalculatorsShareBuiltins() {
+        Calculator first = new Calculator();
+        Calculator second = new Calculator();
+        assertSame(FunctionRegistry.BUILTINS, first.getFunctionRegistry());
+        assertSame(FunctionRegistry.BUILTINS, second.getFunctionRegistry());
+
+        assertTrue(FunctionRegistry.BUILTINS.getCustomFunction("simplify") != null);
+        assertTrue(FunctionRegistry.BUILTINS.isSpecialFunction("if"));
+        assertNull(FunctionRegistry.BUILTINS.getSpecialFunction("simplify"));
+        assertNull(FunctionRegistry.BUILTINS.getCustomFunction("nothing"));
+        assertEquals(1, FunctionRegistry.BUILTINS.getPrecedence("^", 0));
+        assertEquals(0, FunctionRegistry.BUILTINS.getPrecedence("sin", 0));
+        assertTrue(!FunctionRegistry.EMPTY.isSpecialFunction("if"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testWithCustomFunctionCopies() {
+        FunctionRegistry extended = FunctionRegistry.BUILTINS.withCustomFunction("twice", TWICE);
+        assertSame(TWICE, extended.getCustomFunction("twice"));
+        assertNull(FunctionRegistry.BUILTINS.getCustomFunction("twice"));
+
+        // Everything else is still there
+        assertSame(FunctionRegistry.BUILTINS.getCustomFunction("derive"), extended.getCustomFunction("derive"));
+        assertSame(FunctionRegistry.BUILTINS.getSpecialFunction("assign"), extended.getSpecialFunction("assign"));
+        assertTrue(extended.hasPrecedence("*"));
+
+        // Replacing a function
+        AstManipulator other = (env, node) -> node;
+        FunctionRegistry replaced = extended.withCustomFunction("twice", other);
+        assertSame(other, replaced.getCustomFunction("twice"));
+        assertSame(TWICE, extended.getCustomFunction("twice"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testSpecialFunctionsCannotBeRedefined() {
+        try {
+            FunctionRegistry.BUILTINS.withCustomFunction("if", TWICE);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // Do nothing: this is ok
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testDefinedFunctionsArePerCalculator() {
+        Calculator first = new Calculator();
+        Calculator second = new Calculator();
+        first.defineFunction("twice", TWICE);
+
+        assertEquals("6", first.evaluate("twice(3)"));
+        assertEquals("2 * x", first.evaluate("twice(x)"));
+        assertEquals("twice(3)", second.evaluate("twice(3)"));
+        assertSame(FunctionRegistry.BUILTINS, second.getFunctionRegistry());
+
+        // A registry can be handed to other calculators as-is
+        second.setFunctionRegistry(first.getFunctionRegistry());
+        assertEquals("8", second.evaluate("twice(4)"));
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testSharedAcrossThreads() throws InterruptedException {
+        FunctionRegistry shared = FunctionRegistry.BUILTINS.withCustomFunction("twice", TWICE);
+        AtomicInteger numCorrect = new AtomicInteger();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            int id = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    Calculator calc = new Calculator();
+                    calc.setFunctionRegistry(shared);
+                    calc.defineFunction("id" + id, (env, node) -> new AstNode(id));
+                    boolean correct = true;
+                    for (int j = 0; j < 200; j++) {
+                        correct &= calc.evaluate("twice(" + j + ") + id" + id + "()").equals("" + (2 * j + id));
+                    }
+                    if (correct) {
+                        numCorrect.incrementAndGet();
+                    }
+                } catch (RuntimeException ex) {
+                    // Otherwise the thread would just die, and all we'd see is a wrong count
+                    failure.compareAndSet(null, ex);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        assertEquals(threads.length, numCorrect.get());
+        assertNull(shared.getCustomFunction("id0"));
+    }
+}
@@ -0,0 +1,95 @@
+package calculator;
+
+import calculator.ast.AstNode;
+import calculator.errors.IncompleteInputError;
+import calculator.errors.ParseError;
+import calculator.interpreter.Calculator;
+import calculator.parser.ParseCache;
+import calculator.parser.Parser;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestParseCache extends BaseTest {
+    @Test(timeout=SECOND)
+    public void basicTestGetAndPut() {
+        ParseCache cache = new ParseCache();
+        AstNode ast = new Parser().parse("x + 1\n");
+
+        assertNull(cache.get("x + 1"));
+        cache.put("x + 1", ast);
+        assertSame(ast, cache.get("x + 1"));
+        assertSame(ast, cache.get("  x + 1\t"));
+        assertNull(cache.get("x+1"));
+        assertEquals(2L, cache.getHitCount());
+        assertEquals(2L, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testLeastRecentlyUsedIsEvicted() {
+        ParseCache cache = new ParseCache(2);
+        Parser parser = new Parser();
+        cache.put("a", parser.parse("a\n"));
+        cache.put("b", parser.parse("b\n"));
+        cache.get("a");
+        cache.put("c", parser.parse("c\n"));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testLongInputsAreNotCached() {
+        ParseCache cache = new ParseCache();
+        StringBuilder input = new StringBuilder("0");
+        while (input.length() <= ParseCache.MAX_INPUT_LENGTH) {
+            input.append(" + 1");
+        }
+        cache.put(input.toString(), new Parser().parse(input + "\n"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testParserRecoversAfterErrors() {
+        Parser parser = new Parser();
+        String[] badInputs = {"(x + 1\n", "x +\n", "x \\\n", "3 $ 4\n"};
+        for (String input : badInputs) {
+            try {
+                parser.parse(input);
+                fail("Expected an error for " + input);
+            } catch (ParseError err) {
+                // Do nothing: this is ok
+            }
+            assertSame(new Parser().parse("(a + b) * c\n"), parser.parse("(a + b) * c\n"));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testCalculatorReusesParses() {
+        Calculator calc = new Calculator();
+        calc.evaluate("x := 0");
+        for (int i = 0; i < 10; i++) {
+            calc.evaluate("x := x + 1");
+        }
+        assertEquals("10", calc.evaluate("x"));
+        assertEquals(9L, calc.getParseCache().getHitCount());
+
+        // Errors aren't cached, so they happen every time
+        for (int i = 0; i < 2; i++) {
+            try {
+                calc.evaluate("x := (x + 1");
+                fail("Expected IncompleteInputError");
+            } catch (IncompleteInputError err) {
+                // Do nothing: this is ok
+            }
+        }
+    }
+}
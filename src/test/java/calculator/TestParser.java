@@ -0,0 +1,83 @@
+package calculator;
+
+import calculator.errors.ParseError;
+import calculator.parser.Parser;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestParser extends BaseTest {
+    private static final String[] GOOD_INPUTS = {
+        "x\n",
+        "x := 3\n",
+        "-x ^ 2 ^ 3 - 4 - 5 / 6 * 7\n",
+        "f(x, (y + 1)\n * 2, g())\n",
+        "a := 1 # comment\nb := a - \\\n 2\n",
+        "--(((x)))\n",
+    };
+
+    private static final String[] BAD_INPUTS = {
+        "x +\n",
+        "3 4\n",
+        ":= 3\n",
+        "f(x,)\n",
+        "x := := 2\n",
+        "(x) (y)\n",
+    };
+
+    @Test(timeout=SECOND)
+    public void basicTestSameAstsAsFullLl() {
+        Parser twoStage = new Parser();
+        Parser fullLl = new Parser(false);
+        for (String input : GOOD_INPUTS) {
+            assertSame(fullLl.parse(input), twoStage.parse(input));
+        }
+    }
+
+    private static String errorMessage(Parser parser, String input) {
+        try {
+            parser.parse(input);
+            fail("Expected ParseError for " + input);
+            return null;
+        } catch (ParseError err) {
+            return err.getMessage();
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSameErrorsAsFullLl() {
+        Parser twoStage = new Parser();
+        Parser fullLl = new Parser(false);
+        for (String input : BAD_INPUTS) {
+            assertEquals(input, errorMessage(fullLl, input), errorMessage(twoStage, input));
+
+            // The parser can still be used afterwards
+            assertSame(fullLl.parse(GOOD_INPUTS[2]), twoStage.parse(GOOD_INPUTS[2]));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testReusedParserMatchesFreshParsers() {
+        // Every input, good or bad, leaves state behind in the reused lexer and parser
+        Parser reused = new Parser();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < GOOD_INPUTS.length; i++) {
+                assertSame(new Parser(false).parse(GOOD_INPUTS[i]), reused.parse(GOOD_INPUTS[i]));
+                assertEquals(errorMessage(new Parser(false), BAD_INPUTS[i]), errorMessage(reused, BAD_INPUTS[i]));
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testWarmUp() {
+        Parser.warmUp();
+        Parser.warmUp();
+        assertSame(new Parser(false).parse(GOOD_INPUTS[3]), new Parser().parse(GOOD_INPUTS[3]));
+    }
+}
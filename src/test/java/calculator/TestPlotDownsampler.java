@@ -0,0 +1,122 @@
+package calculator;
+
+import calculator.gui.PlotDownsampler;
+import datastructures.concrete.DoubleArrayList;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestPlotDownsampler extends BaseTest {
+    @Test(timeout=SECOND)
+    public void testFewPointsAreKept() {
+        double[] xs = {0, 1, 2, 3, 4};
+        double[] ys = {10, 20, 30, 40, 50};
+        int[] visible = PlotDownsampler.downsample(DoubleArrayList.wrap(xs), DoubleArrayList.wrap(ys), 3);
+        assertEquals(5, visible.length);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, visible[i]);
+        }
+        DoubleArrayList empty = new DoubleArrayList();
+        assertEquals(0, PlotDownsampler.downsample(empty, empty, 3).length);
+    }
+
+    @Test(timeout=SECOND)
+    public void testAtMostTwoPointsPerColumn() {
+        int numPoints = 100000;
+        int numColumns = 800;
+        double[] xs = new double[numPoints];
+        double[] ys = new double[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            xs[i] = i * 0.001;
+            ys[i] = Math.sin(xs[i]) * xs[i];
+        }
+
+        int[] visible = PlotDownsampler.downsample(DoubleArrayList.wrap(xs), DoubleArrayList.wrap(ys), numColumns);
+        assertTrue(visible.length <= 2 * numColumns);
+        for (int i = 1; i < visible.length; i++) {
+            assertTrue(visible[i - 1] < visible[i]);
+        }
+
+        // Each column's extremes survive
+        int pointsPerColumn = numPoints / numColumns;
+        for (int column = 0; column < numColumns; column++) {
+            double expectedMin = Double.POSITIVE_INFINITY;
+            double expectedMax = Double.NEGATIVE_INFINITY;
+            double actualMin = Double.POSITIVE_INFINITY;
+            double actualMax = Double.NEGATIVE_INFINITY;
+            for (int i = column * pointsPerColumn; i < (column + 1) * pointsPerColumn; i++) {
+                expectedMin = Math.min(expectedMin, ys[i]);
+                expectedMax = Math.max(expectedMax, ys[i]);
+            }
+            for (int index : visible) {
+                // Stay clear of the column edges, where rounding decides which side a point is on
+                if (index > column * pointsPerColumn + 1 && index < (column + 1) * pointsPerColumn - 1) {
+                    actualMin = Math.min(actualMin, ys[index]);
+                    actualMax = Math.max(actualMax, ys[index]);
+                }
+            }
+            assertTrue(actualMin >= expectedMin && actualMax <= expectedMax);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSpikesSurvive() {
+        int numPoints = 10000;
+        double[] xs = new double[numPoints];
+        double[] ys = new double[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            xs[i] = i;
+        }
+        ys[1234] = 1000.0;
+        ys[8765] = -1000.0;
+
+        int[] visible = PlotDownsampler.downsample(DoubleArrayList.wrap(xs), DoubleArrayList.wrap(ys), 100);
+        boolean sawPeak = false;
+        boolean sawTrough = false;
+        for (int index : visible) {
+            sawPeak |= index == 1234;
+            sawTrough |= index == 8765;
+        }
+        assertTrue(sawPeak);
+        assertTrue(sawTrough);
+    }
+
+    @Test(timeout=SECOND)
+    public void testUndrawablePoints() {
+        int numPoints = 1000;
+        double[] xs = new double[numPoints];
+        double[] ys = new double[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            xs[i] = i < 500 ? 7.0 : Double.NaN;
+            ys[i] = i % 3 == 0 ? Double.NaN : i;
+        }
+
+        // Every drawable point has the same x value, so only two remain
+        int[] visible = PlotDownsampler.downsample(DoubleArrayList.wrap(xs), DoubleArrayList.wrap(ys), 10);
+        assertEquals(2, visible.length);
+        assertEquals(1, visible[0]);
+        assertEquals(499, visible[1]);
+    }
+
+    @Test(timeout=SECOND)
+    public void testBadArguments() {
+        try {
+            PlotDownsampler.downsample(DoubleArrayList.wrap(new double[1]), DoubleArrayList.wrap(new double[1]), 0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // Do nothing: this is ok
+        }
+        try {
+            PlotDownsampler.downsample(DoubleArrayList.wrap(new double[1]), DoubleArrayList.wrap(new double[2]), 1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // Do nothing: this is ok
+        }
+    }
+}
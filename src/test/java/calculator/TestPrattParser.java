@@ -0,0 +1,197 @@
+package calculator;
+
+import calculator.ast.AstNode;
+import calculator.errors.IncompleteInputError;
+import calculator.errors.ParseError;
+import calculator.interpreter.Calculator;
+import calculator.parser.Parser;
+import calculator.parser.ParsingMode;
+import calculator.parser.PrattParser;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestPrattParser extends BaseTest {
+    /**
+     * Returns a description of what parsing the input does: the AST, or the kind of
+     * error (and for incomplete input, which the GUI relies on, the message too).
+     */
+    private static Object outcome(String input, boolean pratt) {
+        try {
+            return pratt ? new PrattParser().parse(input) : new Parser().parse(input);
+        } catch (IncompleteInputError err) {
+            return "IncompleteInputError: " + err.getMessage();
+        } catch (ParseError err) {
+            return "ParseError";
+        }
+    }
+
+    private static void assertSameOutcome(String input) {
+        Object expected = outcome(input, false);
+        Object actual = outcome(input, true);
+        if (expected instanceof AstNode) {
+            assertSame(input, expected, actual);
+        } else {
+            assertEquals(input, expected, actual);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestSameAsts() {
+        String[] inputs = {
+            "x\n",
+            "x := 3\n",
+            "1 - 2 - 3 + 4\n",
+            "8 / 4 / 2 * 3\n",
+            "2 ^ 3 ^ 4\n",
+            "-x ^ 2\n",
+            "--x * -y\n",
+            "2 - -3\n",
+            "f()\n",
+            "f(x, g(y, 2), (z))\n",
+            "(1 + 2) * (3.25 - x)\n",
+            "a := 1\nb := a\n\n\r\nc := b\n",
+            "f(x,\n  y\n)\n",
+            "x + \\\n y\n",
+            "x # comment\n",
+            "",
+        };
+        for (String input : inputs) {
+            assertSameOutcome(input);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSameErrors() {
+        String[] inputs = {
+            "x\n" + "x",
+            "\nx\n",
+            "# comment\nx\n",
+            "x +\n",
+            "x ^ -2\n",
+            "f(x,)\n",
+            "f(,)\n",
+            "3 4\n",
+            "x := := 3\n",
+            "f(x) := 3\n",
+            "3.\n",
+            "1.2.3\n",
+            "x : 3\n",
+            "$\n",
+            "x \\ y\n",
+            "\"a string\"\n",
+            "\"unclosed\n",
+            "\"a\" +\n",
+            "(x + 1\n",
+            "x + 1)\n",
+            ")(\nx)\n",
+            "f((x)\n",
+            "x \\\n",
+            "x \\\n\n",
+        };
+        for (String input : inputs) {
+            assertSameOutcome(input);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testStringsAreParseErrors() {
+        String input = "x := 1\ny + f(2, \"a\") * \"b\"\n";
+        for (boolean pratt : new boolean[] {false, true}) {
+            try {
+                if (pratt) {
+                    new PrattParser().parse(input);
+                } else {
+                    new Parser().parse(input);
+                }
+                fail("Expected ParseError");
+            } catch (ParseError err) {
+                assertEquals("Line 2, col 9: Strings are not supported", err.getMessage());
+            }
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testRandomInputs() {
+        String[] pieces = {
+            "x", "y1", "3", "2.5", "f(", "g(", "(", ")", "+", "-", "*", "/", "^", ",", ":=",
+            "\n", " ", "\\\n", "#c\n", "\"s\"", "$", ".", "\r",
+        };
+        Random random = new Random(20);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder input = new StringBuilder();
+            int length = 1 + random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                input.append(pieces[random.nextInt(pieces.length)]);
+            }
+            input.append("\n");
+            assertSameOutcome(input.toString());
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRandomValidPrograms() {
+        Random random = new Random(20);
+        for (int i = 0; i < 200; i++) {
+            StringBuilder program = new StringBuilder();
+            for (int j = 0; j < 5; j++) {
+                if (random.nextBoolean()) {
+                    program.append("v := ");
+                }
+                appendExpression(random, program, 4);
+                program.append("\n");
+            }
+            assertTrue(program.toString(), outcome(program.toString(), false) instanceof AstNode);
+            assertSameOutcome(program.toString());
+        }
+    }
+
+    private static void appendExpression(Random random, StringBuilder out, int depth) {
+        int choice = depth == 0 ? random.nextInt(2) : random.nextInt(7);
+        if (choice == 0) {
+            out.append(random.nextInt(10));
+        } else if (choice == 1) {
+            out.append("x");
+        } else if (choice == 2) {
+            out.append("-");
+            appendExpression(random, out, depth - 1);
+        } else if (choice == 3) {
+            out.append("f(");
+            appendExpression(random, out, depth - 1);
+            out.append(",\n");
+            appendExpression(random, out, depth - 1);
+            out.append(")");
+        } else {
+            char op = "+-*/^".charAt(random.nextInt(5));
+            out.append("(");
+            appendExpression(random, out, depth - 1);
+            out.append(op == '^' ? ") " : " ").append(op).append(op == '^' ? " (" : " ");
+            appendExpression(random, out, depth - 1);
+            out.append(")");
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testCalculatorParsingMode() {
+        Calculator calc = new Calculator();
+        calc.setParsingMode(ParsingMode.PRATT);
+        calc.evaluate("y := x ^ 2 ^ 1 - -x");
+        calc.evaluate("x := 3");
+        assertEquals("12", calc.evaluate("toDouble(y)"));
+        try {
+            calc.evaluate("(y + 1");
+            fail("Expected IncompleteInputError");
+        } catch (IncompleteInputError err) {
+            // Do nothing: this is ok
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package calculator;
+
+import calculator.ast.AstInterner;
+import calculator.ast.AstNode;
+import calculator.ast.SimplifyCache;
+import calculator.interpreter.Calculator;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestSimplifyCache extends BaseTest {
+    private static SimplifyCache.Reads readsOf(String... names) {
+        SimplifyCache.Reads reads = new SimplifyCache.Reads();
+        for (String name : names) {
+            reads.add(name);
+        }
+        return reads;
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestGetAndPut() {
+        SimplifyCache cache = new SimplifyCache();
+        AstNode node = AstInterner.variable("expr");
+        AstNode result = AstInterner.number(3);
+
+        assertNull(cache.get(node, new SimplifyCache.Reads()));
+        cache.put(node, result, readsOf("a", "b"));
+        assertSame(result, cache.get(node, new SimplifyCache.Reads()));
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testChangedVariablesInvalidate() {
+        SimplifyCache cache = new SimplifyCache();
+        AstNode node = AstInterner.variable("expr");
+        cache.put(node, AstInterner.number(3), readsOf("a", "b"));
+
+        cache.variableChanged("c");
+        assertSame(AstInterner.number(3), cache.get(node, new SimplifyCache.Reads()));
+
+        cache.variableChanged("b");
+        assertNull(cache.get(node, new SimplifyCache.Reads()));
+        assertEquals(0, cache.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testLeastRecentlyUsedIsEvicted() {
+        SimplifyCache cache = new SimplifyCache(2);
+        AstNode a = AstInterner.variable("a");
+        AstNode b = AstInterner.variable("b");
+        AstNode c = AstInterner.variable("c");
+        cache.put(a, a, readsOf());
+        cache.put(b, b, readsOf());
+        cache.get(a, new SimplifyCache.Reads());
+        cache.put(c, c, readsOf());
+
+        assertEquals(2, cache.size());
+        assertSame(a, cache.get(a, new SimplifyCache.Reads()));
+        assertNull(cache.get(b, new SimplifyCache.Reads()));
+        assertSame(c, cache.get(c, new SimplifyCache.Reads()));
+    }
+
+    @Test(timeout=SECOND)
+    public void testHitsPassOnDependencies() {
+        SimplifyCache cache = new SimplifyCache();
+        AstNode node = AstInterner.variable("expr");
+        cache.put(node, node, readsOf("a", "b"));
+
+        // A hit must still report what the cached result depends on, so that results
+        // built on top of it are invalidated too
+        SimplifyCache.Reads reads = readsOf("b", "c");
+        cache.get(node, reads);
+        SimplifyCache.Reads expected = readsOf("a", "b", "c");
+        AstNode parent = AstInterner.variable("parent");
+        cache.put(parent, parent, reads);
+        cache.variableChanged("a");
+        assertNull(cache.get(parent, new SimplifyCache.Reads()));
+        cache.put(parent, parent, expected);
+        assertSame(parent, cache.get(parent, new SimplifyCache.Reads()));
+    }
+
+    @Test(timeout=SECOND)
+    public void testCalculatorRedefinitions() {
+        Calculator calc = new Calculator();
+        assertEquals("a + b", calc.evaluate("a + b"));
+        calc.evaluate("b := 2");
+        assertEquals("a + 2", calc.evaluate("a + b"));
+        calc.evaluate("a := c * 3");
+        assertEquals("c * 3 + 2", calc.evaluate("a + b"));
+        calc.evaluate("c := 2");
+        assertEquals("8", calc.evaluate("a + b"));
+        calc.evaluate("c := 1");
+        assertEquals("5", calc.evaluate("a + b"));
+
+        long hits = calc.getSimplifyCache().getHitCount();
+        assertEquals("5", calc.evaluate("a + b"));
+        assertTrue(calc.getSimplifyCache().getHitCount() > hits);
+    }
+
+    @Test(timeout=SECOND)
+    public void testSharedSubtreesAreSimplifiedOnce() {
+        // Each definition doubles the size of the fully expanded tree, but the stored
+        // definitions share their halves, so only the number of distinct subtrees matters
+        //
+        // (We define them all in one go, since printing any of them would take forever)
+        StringBuilder definitions = new StringBuilder("v0 := x\n");
+        for (int i = 1; i <= 40; i++) {
+            definitions.append("v" + i + " := v" + (i - 1) + " + v" + (i - 1) + "\n");
+        }
+        definitions.append("x := 1");
+
+        Calculator calc = new Calculator();
+        assertEquals("1", calc.evaluate(definitions.toString()));
+        assertEquals("1099511627776", calc.evaluate("v40"));
+    }
+}
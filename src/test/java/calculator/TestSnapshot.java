@@ -0,0 +1,212 @@
+package calculator;
+
+import calculator.ast.AstCodec;
+import calculator.ast.AstInterner;
+import calculator.ast.AstNode;
+import calculator.interpreter.Calculator;
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestSnapshot extends BaseTest {
+    private static byte[] snapshot(Calculator calc) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        calc.snapshot(out);
+        return out.toByteArray();
+    }
+
+    private static Calculator restore(byte[] bytes) throws IOException {
+        Calculator calc = new Calculator();
+        calc.restore(new ByteArrayInputStream(bytes));
+        return calc;
+    }
+
+    private static AstNode operation(String name, AstNode... children) {
+        IList<AstNode> list = new ArrayList<>();
+        for (AstNode child : children) {
+            list.add(child);
+        }
+        return AstInterner.operation(name, list);
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestRoundTrip() throws IOException {
+        Calculator calc = new Calculator();
+        calc.evaluate("a := 3");
+        calc.evaluate("b := sin(x) ^ 2 + a * y");
+        calc.evaluate("c := 0.1 - 123456789012");
+        calc.evaluate("d := -7 / z");
+
+        Calculator restored = restore(snapshot(calc));
+        for (String name : new String[] {"a", "b", "c", "d", "x"}) {
+            assertEquals(calc.evaluate(name), restored.evaluate(name));
+        }
+        assertEquals("3", restored.evaluate("a"));
+        assertEquals("sin(x) ^ 2 + 3 * y", restored.evaluate("b"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testNumbersAreExact() throws IOException {
+        double[] values = {
+            0.0, -0.0, 1.0, -1.0, 0.1, -2.5e-300, 1e300, Double.NaN, Double.NEGATIVE_INFINITY,
+            Double.MIN_VALUE, 9007199254740993.0, -9007199254740992.0, Long.MAX_VALUE, 4e18,
+        };
+        IList<String> names = new ArrayList<>();
+        IList<AstNode> trees = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            names.add("v" + i);
+            trees.add(AstInterner.number(values[i]));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AstCodec.write(out, names, trees);
+        IList<String> readNames = new ArrayList<>();
+        IList<AstNode> readTrees = new ArrayList<>();
+        AstCodec.read(new ByteArrayInputStream(out.toByteArray()), readNames, readTrees);
+
+        assertEquals(values.length, readTrees.size());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(names.get(i), readNames.get(i));
+            long expected = Double.doubleToRawLongBits(values[i]);
+            assertEquals(expected, Double.doubleToRawLongBits(readTrees.get(i).getNumericValue()));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRestoreReplacesVariables() throws IOException {
+        Calculator calc = new Calculator();
+        calc.evaluate("b := a + 1");
+        calc.evaluate("a := 1");
+        byte[] bytes = snapshot(calc);
+
+        Calculator other = new Calculator();
+        other.evaluate("q := 5");
+        other.evaluate("a := 100");
+        assertEquals("101", other.evaluate("toDouble(a + 1)"));
+        other.restore(new ByteArrayInputStream(bytes));
+        assertEquals("q", other.evaluate("q"));
+        assertEquals("2", other.evaluate("toDouble(b)"));
+
+        // Restored variables depend on each other like any others
+        other.evaluate("a := 10");
+        assertEquals("11", other.evaluate("toDouble(b)"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testCorruptSnapshotsAreRejected() throws IOException {
+        Calculator calc = new Calculator();
+        calc.evaluate("a := sin(x) + 2");
+        byte[] bytes = snapshot(calc);
+
+        Calculator other = new Calculator();
+        other.evaluate("b := 4");
+        byte[][] corrupt = {
+            new byte[0],
+            "a := sin(x) + 2".getBytes("UTF-8"),
+            Arrays.copyOf(bytes, bytes.length - 1),
+            // One name ('f'), then one operation that claims to have 2^31 - 16 children
+            new byte[] {0x43, 0x41, 0x4C, 0x43, 1, 1, 0, 1, 'f', 1, 15, (byte) 0xF0, (byte) 0xFF,
+                        (byte) 0xFF, (byte) 0xFF, 0x07},
+        };
+        for (byte[] input : corrupt) {
+            try {
+                other.restore(new ByteArrayInputStream(input));
+                fail("Expected IOException");
+            } catch (IOException ex) {
+                // Do nothing: this is ok
+            }
+        }
+
+        // Flipping any single byte must never be worse than an IOException
+        for (int i = 0; i < bytes.length; i++) {
+            for (int bit = 0; bit < 8; bit++) {
+                byte[] flipped = bytes.clone();
+                flipped[i] = (byte) (flipped[i] ^ (1 << bit));
+                try {
+                    other.restore(new ByteArrayInputStream(flipped));
+                } catch (IOException ex) {
+                    // Do nothing: this is ok
+                }
+            }
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testDeepAndSharedTrees() throws IOException {
+        // 100000 nested operations: far too deep to write or read recursively
+        AstNode shared = operation("sin", AstInterner.variable("x"));
+        AstNode deep = AstInterner.number(0);
+        for (int i = 0; i < 100000; i++) {
+            deep = operation(i % 2 == 0 ? "+" : "*", deep, i % 7 == 0 ? shared : AstInterner.number(i));
+        }
+        IList<String> names = new ArrayList<>();
+        IList<AstNode> trees = new ArrayList<>();
+        names.add("deep");
+        trees.add(deep);
+        names.add("shared");
+        trees.add(shared);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AstCodec.write(out, names, trees);
+        IList<String> readNames = new ArrayList<>();
+        IList<AstNode> readTrees = new ArrayList<>();
+        AstCodec.read(new ByteArrayInputStream(out.toByteArray()), readNames, readTrees);
+
+        // Restored trees are interned, so they're the very same nodes
+        assertSame(deep, readTrees.get(0));
+        assertSame(shared, readTrees.get(1));
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testSnapshotIsSmallerThanText() throws IOException {
+        Calculator calc = new Calculator();
+        StringBuilder text = new StringBuilder();
+        // Each definition refers to variables that are defined later, so they stay as written
+        for (int i = 299; i >= 0; i--) {
+            String definition = String.format(
+                    "v%d := sin(v%d * x) ^ 2 + cos(y / %d) * 0.5 - v%d", i, 2 * i + 1, i + 1, 3 * i + 1);
+            calc.evaluate(definition);
+            text.append(definition).append('\n');
+        }
+        byte[] bytes = snapshot(calc);
+        assertTrue(bytes.length < text.length());
+
+        Calculator restored = restore(bytes);
+        assertEquals(calc.evaluate("v299"), restored.evaluate("v299"));
+        calc.evaluate("v900 := 1");
+        restored.evaluate("v900 := 1");
+        assertEquals(calc.evaluate("v1"), restored.evaluate("v1"));
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testSharedSubtreesAreWrittenOnce() throws IOException {
+        // Each variable's value contains the previous one's twice, so printing them all
+        // takes exponential space
+        Calculator calc = new Calculator();
+        calc.evaluate("v0 := x");
+        int textLength = 0;
+        for (int i = 1; i <= 15; i++) {
+            calc.evaluate("v" + i + " := sin(v" + (i - 1) + ") * v" + (i - 1) + " + " + i);
+            textLength += calc.evaluate("v" + i).length();
+        }
+        byte[] bytes = snapshot(calc);
+        assertTrue(bytes.length * 1000 < textLength);
+
+        Calculator restored = restore(bytes);
+        assertEquals(calc.evaluate("v15"), restored.evaluate("v15"));
+    }
+}
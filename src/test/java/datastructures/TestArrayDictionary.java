@@ -13,6 +13,9 @@ import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * This file provides some tests for ArrayDictionary methods.
  *
@@ -351,4 +354,24 @@ public class TestArrayDictionary extends BaseTest {
             assertEquals("newValC", dict.get("keyC"));
         }
     }
+
+    @Test(timeout=SECOND)
+    public void testForEach() {
+        IDictionary<String, Integer> dict = new ArrayDictionary<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            dict.put("key" + i, i);
+            expected.put("key" + i, i);
+        }
+        for (int i = 0; i < 300; i += 3) {
+            dict.remove("key" + i);
+            expected.remove("key" + i);
+        }
+        dict.put(null, -1);
+        expected.put(null, -1);
+
+        Map<String, Integer> seen = new HashMap<>();
+        dict.forEach((key, value) -> assertEquals(null, seen.put(key, value)));
+        assertEquals(expected, seen);
+    }
 }
@@ -0,0 +1,190 @@
+package datastructures;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import misc.exceptions.EmptyContainerException;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This file provides some tests for ArrayList methods.
+ *
+ * The tests mirror the ones in TestDoubleLinkedList, since both classes implement the
+ * same IList interface, and add a few that check the operations ArrayList is meant to
+ * make fast.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestArrayList extends BaseTest {
+    protected IList<String> makeBasicList() {
+        IList<String> list = new ArrayList<>();
+
+        list.add("a");
+        list.add("b");
+        list.add("c");
+
+        return list;
+    }
+
+    protected <T> void assertListMatches(T[] expected, IList<T> actual) {
+        assertEquals(expected.length, actual.size());
+        assertEquals(expected.length == 0, actual.isEmpty());
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("Item at index " + i + " does not match", expected[i], actual.get(i));
+        }
+
+        int index = 0;
+        for (T item : actual) {
+            assertEquals("Iterator item at index " + index + " does not match", expected[index], item);
+            index++;
+        }
+        assertEquals(expected.length, index);
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestAddAndGet() {
+        IList<String> list = makeBasicList();
+        this.assertListMatches(new String[] {"a", "b", "c"}, list);
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestSet() {
+        IList<String> list = makeBasicList();
+        list.set(1, "d");
+        this.assertListMatches(new String[] {"a", "d", "c"}, list);
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestInsertAndDelete() {
+        IList<String> list = makeBasicList();
+        list.insert(0, "x");
+        list.insert(2, "y");
+        list.insert(5, "z");
+        this.assertListMatches(new String[] {"x", "a", "y", "b", "c", "z"}, list);
+
+        assertEquals("x", list.delete(0));
+        assertEquals("b", list.delete(2));
+        assertEquals("z", list.delete(3));
+        this.assertListMatches(new String[] {"a", "y", "c"}, list);
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestIndexOfAndContains() {
+        IList<String> list = makeBasicList();
+        list.add(null);
+
+        assertEquals(1, list.indexOf("b"));
+        assertEquals(3, list.indexOf(null));
+        assertEquals(-1, list.indexOf("d"));
+        assertTrue(list.contains("c"));
+        assertTrue(list.contains(null));
+        assertFalse(list.contains("d"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testRemoveMultiple() {
+        IList<String> list = this.makeBasicList();
+        assertEquals("c", list.remove());
+        assertEquals("b", list.remove());
+        assertEquals("a", list.remove());
+        this.assertListMatches(new String[] {}, list);
+
+        try {
+            list.remove();
+            fail("Expected EmptyContainerException");
+        } catch (EmptyContainerException ex) {
+            // Do nothing: this is ok
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testOutOfBoundsThrowsException() {
+        IList<String> list = this.makeBasicList();
+        int[] badIndices = {-1, 3, 4};
+        for (int index : badIndices) {
+            try {
+                list.get(index);
+                fail("Expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException ex) {
+                // Do nothing: this is ok
+            }
+            try {
+                list.set(index, "d");
+                fail("Expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException ex) {
+                // Do nothing: this is ok
+            }
+            try {
+                list.delete(index);
+                fail("Expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException ex) {
+                // Do nothing: this is ok
+            }
+        }
+
+        try {
+            list.insert(4, "d");
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ex) {
+            // Do nothing: this is ok
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testZeroCapacityListGrows() {
+        IList<Integer> list = new ArrayList<>(0);
+        for (int i = 0; i < 100; i++) {
+            list.add(i);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) list.get(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testIteratorOnEmptyList() {
+        Iterator<String> iter = new ArrayList<String>().iterator();
+        assertFalse(iter.hasNext());
+        try {
+            iter.next();
+            fail("Expected NoSuchElementException");
+        } catch (NoSuchElementException ex) {
+            // Do nothing: this is ok
+        }
+    }
+
+    @Test(timeout=15 * SECOND)
+    public void testAddIsEfficient() {
+        IList<Integer> list = new ArrayList<>();
+        int cap = 5000000;
+        for (int i = 0; i < cap; i++) {
+            list.add(i * 2);
+        }
+        assertEquals(cap, list.size());
+    }
+
+    @Test(timeout=2 * SECOND)
+    public void testGetAndSetAreEfficient() {
+        IList<Integer> list = new ArrayList<>();
+        int cap = 100000;
+        for (int i = 0; i < cap; i++) {
+            list.add(i);
+        }
+
+        for (int i = 0; i < cap; i++) {
+            list.set(i, list.get(cap - i - 1));
+        }
+        assertEquals(cap / 2, (int) list.get(cap / 2 - 1));
+        assertEquals(cap / 2, (int) list.get(cap / 2));
+    }
+}
@@ -0,0 +1,193 @@
+package datastructures;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import misc.BaseTest;
+import misc.exceptions.NoSuchKeyException;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This file provides some tests for ChainedHashDictionary methods.
+ *
+ * Besides the usual put/get/remove behavior, these tests use the 'Wrapper' class from
+ * BaseTest to force keys into the same chain, and check that large dictionaries stay fast.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestChainedHashDictionary extends BaseTest {
+    private IDictionary<String, String> makeBasicDictionary() {
+        IDictionary<String, String> dict = new ChainedHashDictionary<>();
+        dict.put("keyA", "valA");
+        dict.put("keyB", "valB");
+        dict.put("keyC", "valC");
+        return dict;
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestPutAndGet() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+        assertEquals(3, dict.size());
+        assertEquals("valA", dict.get("keyA"));
+        assertEquals("valB", dict.get("keyB"));
+        assertEquals("valC", dict.get("keyC"));
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestPutDuplicateKey() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+        dict.put("keyB", "newValB");
+        assertEquals(3, dict.size());
+        assertEquals("newValB", dict.get("keyB"));
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestRemove() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+        assertEquals("valB", dict.remove("keyB"));
+        assertEquals(2, dict.size());
+        assertFalse(dict.containsKey("keyB"));
+        assertTrue(dict.containsKey("keyA"));
+        assertTrue(dict.containsKey("keyC"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testCapacityLimits() {
+        IDictionary<String, String> dict = new ChainedHashDictionary<>(1);
+        for (int i = 0; i < 100; i++) {
+            dict.put("key" + i, "val" + i);
+        }
+        assertEquals(100, dict.size());
+
+        int[] badCapacities = {0, -1, 1 << 30, Integer.MAX_VALUE};
+        for (int capacity : badCapacities) {
+            try {
+                new ChainedHashDictionary<String, String>(capacity);
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException ex) {
+                // Do nothing: this is ok
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testMissingKeyThrowsException() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+        try {
+            dict.get("keyD");
+            fail("Expected NoSuchKeyException");
+        } catch (NoSuchKeyException ex) {
+            // Do nothing: this is ok
+        }
+
+        try {
+            dict.remove("keyD");
+            fail("Expected NoSuchKeyException");
+        } catch (NoSuchKeyException ex) {
+            // Do nothing: this is ok
+        }
+        assertEquals(3, dict.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testGetOrDefault() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+        assertEquals("valA", dict.getOrDefault("keyA", "default"));
+        assertEquals("default", dict.getOrDefault("keyD", "default"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testNullKey() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+        dict.put(null, "nullVal");
+        assertEquals(4, dict.size());
+        assertTrue(dict.containsKey(null));
+        assertEquals("nullVal", dict.get(null));
+
+        assertEquals("nullVal", dict.remove(null));
+        assertFalse(dict.containsKey(null));
+    }
+
+    @Test(timeout=SECOND)
+    public void testCollidingKeys() {
+        IDictionary<Wrapper<String>, Integer> dict = new ChainedHashDictionary<>();
+        for (int i = 0; i < 100; i++) {
+            // Every key lands in one of two chains
+            dict.put(new Wrapper<>("key" + i, i % 2), i);
+        }
+        assertEquals(100, dict.size());
+
+        for (int i = 0; i < 100; i += 3) {
+            assertEquals(i, (int) dict.remove(new Wrapper<>("key" + i, i % 2)));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            Wrapper<String> key = new Wrapper<>("key" + i, i % 2);
+            if (i % 3 == 0) {
+                assertFalse(dict.containsKey(key));
+            } else {
+                assertEquals(i, (int) dict.get(key));
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testPutRemoveMany() {
+        IDictionary<Integer, Integer> dict = new ChainedHashDictionary<>();
+        int cap = 10000;
+        for (int repeats = 0; repeats < 3; repeats++) {
+            for (int i = 0; i < cap; i++) {
+                dict.put(i, i * 2);
+            }
+            assertEquals(cap, dict.size());
+
+            for (int i = 0; i < cap; i++) {
+                assertEquals(i * 2, (int) dict.remove(i));
+            }
+            assertTrue(dict.isEmpty());
+        }
+    }
+
+    @Test(timeout=2 * SECOND)
+    public void testManyLookupsAreEfficient() {
+        IDictionary<String, Integer> dict = new ChainedHashDictionary<>();
+        int cap = 100000;
+        for (int i = 0; i < cap; i++) {
+            dict.put("var" + i, i);
+        }
+
+        for (int repeats = 0; repeats < 10; repeats++) {
+            for (int i = 0; i < cap; i += 7) {
+                assertEquals(i, (int) dict.get("var" + i));
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testForEach() {
+        IDictionary<String, Integer> dict = new ChainedHashDictionary<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            dict.put("key" + i, i);
+            expected.put("key" + i, i);
+        }
+        for (int i = 0; i < 300; i += 3) {
+            dict.remove("key" + i);
+            expected.remove("key" + i);
+        }
+        dict.put(null, -1);
+        expected.put(null, -1);
+
+        Map<String, Integer> seen = new HashMap<>();
+        dict.forEach((key, value) -> assertEquals(null, seen.put(key, value)));
+        assertEquals(expected, seen);
+    }
+}
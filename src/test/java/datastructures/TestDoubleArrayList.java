@@ -0,0 +1,202 @@
+package datastructures;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.DoubleArrayList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import misc.exceptions.EmptyContainerException;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This file provides some tests for DoubleArrayList methods, both through the IList
+ * interface and through the primitive methods.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestDoubleArrayList extends BaseTest {
+    protected DoubleArrayList makeBasicList() {
+        DoubleArrayList list = new DoubleArrayList();
+
+        list.addDouble(1.0);
+        list.addDouble(2.0);
+        list.addDouble(3.0);
+
+        return list;
+    }
+
+    protected void assertListMatches(double[] expected, DoubleArrayList actual) {
+        assertEquals(expected.length, actual.size());
+        assertEquals(expected.length == 0, actual.isEmpty());
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("Item at index " + i + " does not match", expected[i], actual.getDouble(i));
+            assertEquals("Item at index " + i + " does not match", expected[i], (double) actual.get(i));
+        }
+
+        int index = 0;
+        for (double item : actual) {
+            assertEquals("Iterator item at index " + index + " does not match", expected[index], item);
+            index++;
+        }
+        assertEquals(expected.length, index);
+
+        double[] array = actual.toArray();
+        assertEquals(expected.length, array.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], array[i]);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestAddAndGet() {
+        DoubleArrayList list = makeBasicList();
+        list.add(4.0);
+        this.assertListMatches(new double[] {1.0, 2.0, 3.0, 4.0}, list);
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestSet() {
+        DoubleArrayList list = makeBasicList();
+        list.set(1, 5.0);
+        list.setDouble(2, 6.0);
+        this.assertListMatches(new double[] {1.0, 5.0, 6.0}, list);
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestInsertAndDelete() {
+        DoubleArrayList list = makeBasicList();
+        list.insert(0, 7.0);
+        list.insert(2, 8.0);
+        list.insert(5, 9.0);
+        this.assertListMatches(new double[] {7.0, 1.0, 8.0, 2.0, 3.0, 9.0}, list);
+
+        assertEquals(7.0, (double) list.delete(0));
+        assertEquals(2.0, (double) list.delete(2));
+        assertEquals(9.0, (double) list.delete(3));
+        this.assertListMatches(new double[] {1.0, 8.0, 3.0}, list);
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestIndexOfAndContains() {
+        DoubleArrayList list = makeBasicList();
+        list.addDouble(Double.NaN);
+        list.addDouble(-0.0);
+
+        assertEquals(1, list.indexOf(2.0));
+        assertEquals(3, list.indexOf(Double.NaN));
+        assertEquals(4, list.indexOf(-0.0));
+        assertEquals(-1, list.indexOf(0.0));
+        assertEquals(-1, list.indexOf(null));
+        assertTrue(list.contains(3.0));
+        assertFalse(list.contains(4.0));
+        assertFalse(list.contains(null));
+    }
+
+    @Test(timeout=SECOND)
+    public void testRemoveMultiple() {
+        DoubleArrayList list = this.makeBasicList();
+        assertEquals(3.0, (double) list.remove());
+        assertEquals(2.0, (double) list.remove());
+        assertEquals(1.0, (double) list.remove());
+        this.assertListMatches(new double[] {}, list);
+
+        try {
+            list.remove();
+            fail("Expected EmptyContainerException");
+        } catch (EmptyContainerException ex) {
+            // Do nothing: this is ok
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testOutOfBoundsThrowsException() {
+        DoubleArrayList list = this.makeBasicList();
+        int[] badIndices = {-1, 3, 4};
+        for (int index : badIndices) {
+            try {
+                list.getDouble(index);
+                fail("Expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException ex) {
+                // Do nothing: this is ok
+            }
+            try {
+                list.set(index, 4.0);
+                fail("Expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException ex) {
+                // Do nothing: this is ok
+            }
+            try {
+                list.delete(index);
+                fail("Expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException ex) {
+                // Do nothing: this is ok
+            }
+        }
+
+        try {
+            list.insert(4, 4.0);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ex) {
+            // Do nothing: this is ok
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testWrapSharesArray() {
+        double[] array = {1.0, 2.0, 3.0};
+        DoubleArrayList list = DoubleArrayList.wrap(array);
+        this.assertListMatches(array, list);
+
+        list.setDouble(0, 10.0);
+        assertEquals(10.0, array[0]);
+
+        // Growing copies the array, so the original is left alone from then on
+        list.addDouble(4.0);
+        list.setDouble(1, 20.0);
+        assertEquals(2.0, array[1]);
+        this.assertListMatches(new double[] {10.0, 20.0, 3.0, 4.0}, list);
+    }
+
+    @Test(timeout=SECOND)
+    public void testWorksAsIList() {
+        IList<Double> list = new DoubleArrayList(0);
+        for (int i = 0; i < 100; i++) {
+            list.add(i * 0.5);
+        }
+        double sum = 0.0;
+        for (double item : list) {
+            sum += item;
+        }
+        assertEquals(99.0 * 100.0 / 2.0 * 0.5, sum);
+    }
+
+    @Test(timeout=SECOND)
+    public void testIteratorOnEmptyList() {
+        Iterator<Double> iter = new DoubleArrayList().iterator();
+        assertFalse(iter.hasNext());
+        try {
+            iter.next();
+            fail("Expected NoSuchElementException");
+        } catch (NoSuchElementException ex) {
+            // Do nothing: this is ok
+        }
+    }
+
+    @Test(timeout=15 * SECOND)
+    public void testAddIsEfficient() {
+        DoubleArrayList list = new DoubleArrayList();
+        int cap = 5000000;
+        for (int i = 0; i < cap; i++) {
+            list.addDouble(i * 2);
+        }
+        assertEquals(cap, list.size());
+    }
+}
@@ -0,0 +1,219 @@
+package datastructures;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.dictionaries.PersistentHashDictionary;
+import datastructures.interfaces.IDictionary;
+import misc.BaseTest;
+import misc.exceptions.NoSuchKeyException;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This file provides some tests for PersistentHashDictionary methods.
+ *
+ * Besides the basic behavior, these tests check that copies never see each other's
+ * changes, including when the keys' hash codes collide, and compare long random
+ * sequences of operations on several copies against java.util.HashMap.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestPersistentHashDictionary extends BaseTest {
+    private PersistentHashDictionary<String, String> makeBasicDictionary() {
+        PersistentHashDictionary<String, String> dict = new PersistentHashDictionary<>();
+        dict.put("keyA", "valA");
+        dict.put("keyB", "valB");
+        dict.put("keyC", "valC");
+        return dict;
+    }
+
+    /**
+     * Returns the given number of distinct strings that all share the same hash code.
+     */
+    private String[] makeCollidingKeys(int count) {
+        String[] out = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder builder = new StringBuilder();
+            for (int bit = 0; bit < 10; bit++) {
+                builder.append(((i >> bit) & 1) == 0 ? "Aa" : "BB");
+            }
+            out[i] = builder.toString();
+        }
+        return out;
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestPutAndGet() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+        assertEquals(3, dict.size());
+        assertEquals("valA", dict.get("keyA"));
+        assertEquals("valB", dict.get("keyB"));
+        assertEquals("valC", dict.get("keyC"));
+
+        dict.put("keyB", "newValB");
+        assertEquals(3, dict.size());
+        assertEquals("newValB", dict.get("keyB"));
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestRemove() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+        assertEquals("valB", dict.remove("keyB"));
+        assertEquals(2, dict.size());
+        assertFalse(dict.containsKey("keyB"));
+        assertTrue(dict.containsKey("keyA"));
+        assertTrue(dict.containsKey("keyC"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testMissingKeyThrowsException() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+        try {
+            dict.get("keyD");
+            fail("Expected NoSuchKeyException");
+        } catch (NoSuchKeyException ex) {
+            // Do nothing: this is ok
+        }
+
+        try {
+            dict.remove("keyD");
+            fail("Expected NoSuchKeyException");
+        } catch (NoSuchKeyException ex) {
+            // Do nothing: this is ok
+        }
+        assertEquals("default", dict.getOrDefault("keyD", "default"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testNullKey() {
+        PersistentHashDictionary<String, String> dict = this.makeBasicDictionary();
+        dict.put(null, "nullVal");
+        IDictionary<String, String> copy = dict.copy();
+        assertEquals(4, dict.size());
+        assertEquals("nullVal", dict.remove(null));
+        assertEquals(3, dict.size());
+        assertFalse(dict.containsKey(null));
+        assertEquals("nullVal", copy.get(null));
+        assertEquals(4, copy.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testCopiesAreIndependent() {
+        PersistentHashDictionary<String, String> original = this.makeBasicDictionary();
+        PersistentHashDictionary<String, String> copy = original.copy();
+
+        copy.put("keyA", "copyA");
+        copy.put("keyD", "copyD");
+        copy.remove("keyB");
+        original.put("keyE", "valE");
+
+        assertEquals(4, original.size());
+        assertEquals("valA", original.get("keyA"));
+        assertEquals("valB", original.get("keyB"));
+        assertFalse(original.containsKey("keyD"));
+
+        assertEquals(3, copy.size());
+        assertEquals("copyA", copy.get("keyA"));
+        assertEquals("copyD", copy.get("keyD"));
+        assertFalse(copy.containsKey("keyB"));
+        assertFalse(copy.containsKey("keyE"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testCollidingKeys() {
+        String[] keys = this.makeCollidingKeys(200);
+        PersistentHashDictionary<String, Integer> dict = new PersistentHashDictionary<>();
+        for (int i = 0; i < keys.length; i++) {
+            dict.put(keys[i], i);
+        }
+        PersistentHashDictionary<String, Integer> copy = dict.copy();
+
+        for (int i = 0; i < keys.length; i += 2) {
+            assertEquals(i, (int) dict.remove(keys[i]));
+        }
+        assertEquals(keys.length / 2, dict.size());
+
+        for (int i = 0; i < keys.length; i++) {
+            if (i % 2 == 0) {
+                assertFalse(dict.containsKey(keys[i]));
+            } else {
+                assertEquals(i, (int) dict.get(keys[i]));
+            }
+            assertEquals(i, (int) copy.get(keys[i]));
+        }
+
+        // Keys that share most, but not all, of their hash code with the colliding ones
+        dict.put("Ab", -1);
+        dict.put("BC", -2);
+        assertEquals(-1, (int) dict.get("Ab"));
+        assertEquals(-2, (int) dict.get("BC"));
+        assertEquals(1, (int) dict.get(keys[1]));
+    }
+
+    @Test(timeout=5 * SECOND)
+    @SuppressWarnings("unchecked")
+    public void testRandomOperationsOnCopiesMatchHashMap() {
+        Random rand = new Random(373);
+        PersistentHashDictionary<String, Integer> dict = new PersistentHashDictionary<>();
+        Map<String, Integer> expected = new HashMap<>();
+
+        // Every so often we set aside a copy, then check it wasn't changed at the end
+        IDictionary<String, Integer>[] copies = (IDictionary<String, Integer>[]) new IDictionary<?, ?>[20];
+        Map<String, Integer>[] expectedCopies = (Map<String, Integer>[]) new Map<?, ?>[20];
+
+        for (int i = 0; i < 200000; i++) {
+            if (i % 10000 == 0) {
+                copies[i / 10000] = dict.copy();
+                expectedCopies[i / 10000] = new HashMap<>(expected);
+            }
+            String key = "k" + rand.nextInt(2000);
+            int op = rand.nextInt(3);
+            if (op == 0) {
+                dict.put(key, i);
+                expected.put(key, i);
+            } else if (op == 1) {
+                assertEquals(expected.containsKey(key), dict.containsKey(key));
+                if (expected.containsKey(key)) {
+                    assertEquals(expected.remove(key), dict.remove(key));
+                }
+            } else {
+                assertEquals(expected.get(key), dict.getOrDefault(key, null));
+            }
+            assertEquals(expected.size(), dict.size());
+        }
+
+        for (int i = 0; i < copies.length; i++) {
+            assertEquals(expectedCopies[i].size(), copies[i].size());
+            for (int k = 0; k < 2000; k++) {
+                assertEquals(expectedCopies[i].get("k" + k), copies[i].getOrDefault("k" + k, null));
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testForEach() {
+        IDictionary<String, Integer> dict = new PersistentHashDictionary<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            dict.put("key" + i, i);
+            expected.put("key" + i, i);
+        }
+        for (int i = 0; i < 300; i += 3) {
+            dict.remove("key" + i);
+            expected.remove("key" + i);
+        }
+        dict.put(null, -1);
+        expected.put(null, -1);
+
+        Map<String, Integer> seen = new HashMap<>();
+        dict.forEach((key, value) -> assertEquals(null, seen.put(key, value)));
+        assertEquals(expected, seen);
+    }
+}
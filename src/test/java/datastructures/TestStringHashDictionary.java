@@ -0,0 +1,193 @@
+package datastructures;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.dictionaries.StringHashDictionary;
+import datastructures.interfaces.IDictionary;
+import misc.BaseTest;
+import misc.exceptions.NoSuchKeyException;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This file provides some tests for StringHashDictionary methods.
+ *
+ * Removal in an open-addressing table is the subtle part, so besides the basic
+ * behavior these tests stress removal with keys whose hash codes collide, and
+ * compare a long random sequence of operations against java.util.HashMap.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestStringHashDictionary extends BaseTest {
+    private IDictionary<String, String> makeBasicDictionary() {
+        IDictionary<String, String> dict = new StringHashDictionary<>();
+        dict.put("keyA", "valA");
+        dict.put("keyB", "valB");
+        dict.put("keyC", "valC");
+        return dict;
+    }
+
+    /**
+     * Returns the given number of distinct strings that all share the same hash code.
+     *
+     * "Aa" and "BB" have the same hash code, so any two strings built by concatenating
+     * the same number of those blocks do too.
+     */
+    private String[] makeCollidingKeys(int count) {
+        String[] out = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder builder = new StringBuilder();
+            for (int bit = 0; bit < 10; bit++) {
+                builder.append(((i >> bit) & 1) == 0 ? "Aa" : "BB");
+            }
+            out[i] = builder.toString();
+        }
+        return out;
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestPutAndGet() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+        assertEquals(3, dict.size());
+        assertEquals("valA", dict.get("keyA"));
+        assertEquals("valB", dict.get("keyB"));
+        assertEquals("valC", dict.get("keyC"));
+
+        dict.put("keyB", "newValB");
+        assertEquals(3, dict.size());
+        assertEquals("newValB", dict.get("keyB"));
+    }
+
+    @Test(timeout=SECOND)
+    public void basicTestRemove() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+        assertEquals("valB", dict.remove("keyB"));
+        assertEquals(2, dict.size());
+        assertFalse(dict.containsKey("keyB"));
+        assertTrue(dict.containsKey("keyA"));
+        assertTrue(dict.containsKey("keyC"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testCapacityLimits() {
+        IDictionary<String, String> dict = new StringHashDictionary<>(1);
+        for (int i = 0; i < 100; i++) {
+            dict.put("key" + i, "val" + i);
+        }
+        assertEquals(100, dict.size());
+
+        int[] badCapacities = {0, -1, 1 << 30, Integer.MAX_VALUE};
+        for (int capacity : badCapacities) {
+            try {
+                new StringHashDictionary<String>(capacity);
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException ex) {
+                // Do nothing: this is ok
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testMissingKeyThrowsException() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+        try {
+            dict.get("keyD");
+            fail("Expected NoSuchKeyException");
+        } catch (NoSuchKeyException ex) {
+            // Do nothing: this is ok
+        }
+
+        try {
+            dict.remove("keyD");
+            fail("Expected NoSuchKeyException");
+        } catch (NoSuchKeyException ex) {
+            // Do nothing: this is ok
+        }
+        assertEquals("default", dict.getOrDefault("keyD", "default"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testNullKey() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+        assertFalse(dict.containsKey(null));
+        dict.put(null, "nullVal");
+        assertEquals(4, dict.size());
+        assertEquals("nullVal", dict.get(null));
+        assertEquals("nullVal", dict.remove(null));
+        assertEquals(3, dict.size());
+        assertFalse(dict.containsKey(null));
+    }
+
+    @Test(timeout=SECOND)
+    public void testRemoveWithCollidingKeys() {
+        String[] keys = this.makeCollidingKeys(200);
+        IDictionary<String, Integer> dict = new StringHashDictionary<>();
+        for (int i = 0; i < keys.length; i++) {
+            dict.put(keys[i], i);
+        }
+
+        for (int i = 0; i < keys.length; i += 2) {
+            assertEquals(i, (int) dict.remove(keys[i]));
+        }
+        assertEquals(keys.length / 2, dict.size());
+
+        for (int i = 0; i < keys.length; i++) {
+            if (i % 2 == 0) {
+                assertFalse(dict.containsKey(keys[i]));
+            } else {
+                assertEquals(i, (int) dict.get(keys[i]));
+            }
+        }
+    }
+
+    @Test(timeout=2 * SECOND)
+    public void testRandomOperationsMatchHashMap() {
+        Random rand = new Random(373);
+        IDictionary<String, Integer> dict = new StringHashDictionary<>(1);
+        Map<String, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 200000; i++) {
+            String key = "k" + rand.nextInt(2000);
+            int op = rand.nextInt(3);
+            if (op == 0) {
+                dict.put(key, i);
+                expected.put(key, i);
+            } else if (op == 1) {
+                assertEquals(expected.containsKey(key), dict.containsKey(key));
+                if (expected.containsKey(key)) {
+                    assertEquals(expected.remove(key), dict.remove(key));
+                }
+            } else {
+                assertEquals(expected.get(key), dict.getOrDefault(key, null));
+            }
+            assertEquals(expected.size(), dict.size());
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testForEach() {
+        IDictionary<String, Integer> dict = new StringHashDictionary<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            dict.put("key" + i, i);
+            expected.put("key" + i, i);
+        }
+        for (int i = 0; i < 300; i += 3) {
+            dict.remove("key" + i);
+            expected.remove("key" + i);
+        }
+        dict.put(null, -1);
+        expected.put(null, -1);
+
+        Map<String, Integer> seen = new HashMap<>();
+        dict.forEach((key, value) -> assertEquals(null, seen.put(key, value)));
+        assertEquals(expected, seen);
+    }
+}